@@ -262,6 +262,51 @@ public interface CourseApi {
     }
 
 
+    /**
+     * GET /course/{courseId}/storageStats : Statistiques de déduplication d’un cours.
+     * Retourne le volume des fichiers des rendus restructurés d’un cours et le volume réellement stocké dans le magasin dédupliqué.
+     *
+     * @param courseId Identifiant du cours. (required)
+     * @return Statistiques retournées. (status code 200)
+     * or Cours introuvable. (status code 404)
+     * or Erreur interne. (status code 500)
+     */
+    @Operation(
+            operationId = "getCourseStorageStats",
+            summary = "Statistiques de déduplication d’un cours.",
+            description = "Retourne le volume des fichiers des rendus restructurés d’un cours et le volume réellement stocké dans le magasin dédupliqué.",
+            tags = {"course"},
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Statistiques retournées.", content = {
+                            @Content(mediaType = "application/json", schema = @Schema(implementation = heg.backendspring.models.CourseStorageStatsDto.class))
+                    }),
+                    @ApiResponse(responseCode = "404", description = "Cours introuvable."),
+                    @ApiResponse(responseCode = "500", description = "Erreur interne.")
+            }
+    )
+    @RequestMapping(
+            method = RequestMethod.GET,
+            value = "/course/{courseId}/storageStats",
+            produces = {"application/json"}
+    )
+
+    default ResponseEntity<heg.backendspring.models.CourseStorageStatsDto> getCourseStorageStats(
+            @Parameter(name = "courseId", description = "Identifiant du cours.", required = true, in = ParameterIn.PATH) @PathVariable("courseId") Long courseId
+    ) {
+        getRequest().ifPresent(request -> {
+            for (MediaType mediaType : MediaType.parseMediaTypes(request.getHeader("Accept"))) {
+                if (mediaType.isCompatibleWith(MediaType.valueOf("application/json"))) {
+                    String exampleString = "{ \"courseId\" : 1, \"archives\" : 4, \"files\" : 5200, \"uniqueFiles\" : 1400, \"logicalBytes\" : 52000000, \"storedBytes\" : 13000000, \"dedupRatio\" : 4.0 }";
+                    ApiUtil.setExampleResponse(request, "application/json", exampleString);
+                    break;
+                }
+            }
+        });
+        return new ResponseEntity<>(HttpStatus.NOT_IMPLEMENTED);
+
+    }
+
+
     /**
      * GET /course : Liste des cours.
      * Retourne tous les cours accessibles.
@@ -13,17 +13,22 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.annotation.Generated;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.context.request.NativeWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.List;
 import java.util.Optional;
 
 @Generated(value = "org.openapitools.codegen.languages.SpringCodegen", date = "2025-12-05T15:57:16.628563800+01:00[Europe/Zurich]", comments = "Generator version: 7.9.0")
@@ -87,26 +92,178 @@ public interface SubmissionApi {
     }
 
 
+    /**
+     * POST /course/{courseId}/addRenduStream/{tpNo} : Ajout d’un rendu de TP en flux direct.
+     * Ajoute un rendu de TP envoyé tel quel dans le corps de la requête (sans multipart). Le fichier est écrit une seule fois, son empreinte SHA-256 est calculée et le ZIP est validé pendant la réception.
+     *
+     * @param courseId Identifiant du cours. (required)
+     * @param tpNo     Numéro de TP. (required)
+     * @param body     Fichier ZIP contenant les rendus d’étudiants. (required)
+     * @return Rendu ajouté. (status code 201)
+     * or Fichier invalide. (status code 400)
+     * or Cours ou TP introuvable. (status code 404)
+     * or Erreur interne. (status code 500)
+     */
+    @Operation(
+            operationId = "addSubmissionStream",
+            summary = "Ajout d’un rendu de TP en flux direct.",
+            description = "Ajoute un rendu de TP envoyé tel quel dans le corps de la requête (sans multipart). Le fichier est écrit une seule fois, son empreinte SHA-256 est calculée et le ZIP est validé pendant la réception.",
+            tags = {"submission"},
+            responses = {
+                    @ApiResponse(responseCode = "201", description = "Rendu ajouté.", content = {
+                            @Content(mediaType = "application/json", schema = @Schema(implementation = heg.backendspring.models.SubmissionDto.class))
+                    }),
+                    @ApiResponse(responseCode = "400", description = "Fichier invalide."),
+                    @ApiResponse(responseCode = "404", description = "Cours ou TP introuvable."),
+                    @ApiResponse(responseCode = "500", description = "Erreur interne.")
+            }
+    )
+    @RequestMapping(
+            method = RequestMethod.POST,
+            value = "/course/{courseId}/addRenduStream/{tpNo}",
+            produces = {"application/json"},
+            consumes = {"application/octet-stream"}
+    )
+
+    default ResponseEntity<heg.backendspring.models.SubmissionDto> addSubmissionStream(
+            @Parameter(name = "courseId", description = "Identifiant du cours.", required = true, in = ParameterIn.PATH) @PathVariable("courseId") Long courseId,
+            @Parameter(name = "tpNo", description = "Numéro de TP.", required = true, in = ParameterIn.PATH) @PathVariable("tpNo") Integer tpNo,
+            @Parameter(name = "body", description = "Fichier ZIP contenant les rendus d’étudiants.", required = true) @Valid @RequestBody org.springframework.core.io.InputStreamResource body
+    ) {
+        getRequest().ifPresent(request -> {
+            for (MediaType mediaType : MediaType.parseMediaTypes(request.getHeader("Accept"))) {
+                if (mediaType.isCompatibleWith(MediaType.valueOf("application/json"))) {
+                    String exampleString = "{ \"id\" : 100, \"fileName\" : \"TP1_Rendus.zip\", \"pathStorage\" : \"/data/courses/61-13/TP1/TP1_Rendus.zip\", \"pathFileStructured\" : \"/data/courses/61-13/TP1/TP1_RenduRestructuration.zip\" }";
+                    ApiUtil.setExampleResponse(request, "application/json", exampleString);
+                    break;
+                }
+            }
+        });
+        return new ResponseEntity<>(HttpStatus.NOT_IMPLEMENTED);
+
+    }
+
+
+    /**
+     * POST /jobs/{jobId}/cancel : Annulation d’un traitement des rendus.
+     * Annule un traitement en attente ou en cours. Un traitement déjà terminé est retourné tel quel.
+     *
+     * @param jobId Identifiant du traitement. (required)
+     * @return État du traitement après la demande d’annulation. (status code 200)
+     * or Traitement introuvable. (status code 404)
+     * or Erreur interne. (status code 500)
+     */
+    @Operation(
+            operationId = "cancelProcessingJob",
+            summary = "Annulation d’un traitement des rendus.",
+            description = "Annule un traitement en attente ou en cours. Un traitement déjà terminé est retourné tel quel.",
+            tags = {"submission"},
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "État du traitement après la demande d’annulation.", content = {
+                            @Content(mediaType = "application/json", schema = @Schema(implementation = heg.backendspring.models.ProcessingJobDto.class))
+                    }),
+                    @ApiResponse(responseCode = "404", description = "Traitement introuvable."),
+                    @ApiResponse(responseCode = "500", description = "Erreur interne.")
+            }
+    )
+    @RequestMapping(
+            method = RequestMethod.POST,
+            value = "/jobs/{jobId}/cancel",
+            produces = {"application/json"}
+    )
+
+    default ResponseEntity<heg.backendspring.models.ProcessingJobDto> cancelProcessingJob(
+            @Parameter(name = "jobId", description = "Identifiant du traitement.", required = true, in = ParameterIn.PATH) @PathVariable("jobId") Long jobId
+    ) {
+        getRequest().ifPresent(request -> {
+            for (MediaType mediaType : MediaType.parseMediaTypes(request.getHeader("Accept"))) {
+                if (mediaType.isCompatibleWith(MediaType.valueOf("application/json"))) {
+                    String exampleString = "{ \"id\" : 42, \"courseId\" : 1, \"tpNo\" : 1, \"status\" : \"RUNNING\", \"studentsTotal\" : 48, \"studentsProcessed\" : 17, \"studentFailures\" : 1, \"errorReport\" : \"Dupont Jean_123: Archive exceeds 20000 entries\", \"createdAt\" : \"2025-03-14T10:15:30\", \"startedAt\" : \"2025-03-14T10:15:31\" }";
+                    ApiUtil.setExampleResponse(request, "application/json", exampleString);
+                    break;
+                }
+            }
+        });
+        return new ResponseEntity<>(HttpStatus.NOT_IMPLEMENTED);
+
+    }
+
+
+    /**
+     * POST /uploads/{uploadId}/complete : Finalisation d’un dépôt en plusieurs morceaux.
+     * Assemble les morceaux dans le dossier du TP et crée le rendu.
+     *
+     * @param uploadId Identifiant du dépôt. (required)
+     * @return Rendu ajouté. (status code 201)
+     * or Dépôt incomplet. (status code 400)
+     * or Dépôt, cours ou TP introuvable. (status code 404)
+     * or Erreur interne. (status code 500)
+     */
+    @Operation(
+            operationId = "completeUpload",
+            summary = "Finalisation d’un dépôt en plusieurs morceaux.",
+            description = "Assemble les morceaux dans le dossier du TP et crée le rendu.",
+            tags = {"submission"},
+            responses = {
+                    @ApiResponse(responseCode = "201", description = "Rendu ajouté.", content = {
+                            @Content(mediaType = "application/json", schema = @Schema(implementation = heg.backendspring.models.SubmissionDto.class))
+                    }),
+                    @ApiResponse(responseCode = "400", description = "Dépôt incomplet."),
+                    @ApiResponse(responseCode = "404", description = "Dépôt, cours ou TP introuvable."),
+                    @ApiResponse(responseCode = "500", description = "Erreur interne.")
+            }
+    )
+    @RequestMapping(
+            method = RequestMethod.POST,
+            value = "/uploads/{uploadId}/complete",
+            produces = {"application/json"}
+    )
+
+    default ResponseEntity<heg.backendspring.models.SubmissionDto> completeUpload(
+            @Parameter(name = "uploadId", description = "Identifiant du dépôt.", required = true, in = ParameterIn.PATH) @PathVariable("uploadId") String uploadId
+    ) {
+        getRequest().ifPresent(request -> {
+            for (MediaType mediaType : MediaType.parseMediaTypes(request.getHeader("Accept"))) {
+                if (mediaType.isCompatibleWith(MediaType.valueOf("application/json"))) {
+                    String exampleString = "{ \"id\" : 100, \"fileName\" : \"TP1_Rendus.zip\", \"pathStorage\" : \"/data/courses/61-13/TP1/TP1_Rendus.zip\", \"pathFileStructured\" : \"/data/courses/61-13/TP1/TP1_RenduRestructuration.zip\" }";
+                    ApiUtil.setExampleResponse(request, "application/json", exampleString);
+                    break;
+                }
+            }
+        });
+        return new ResponseEntity<>(HttpStatus.NOT_IMPLEMENTED);
+
+    }
+
+
     /**
      * GET /course/{courseId}/downloadStructuredSubmission/{tpNo} : Téléchargement du rendu restructuré.
-     * Permet de télécharger le fichier ZIP restructuré des rendus d’un TP.
+     * Permet de télécharger le fichier ZIP restructuré des rendus d’un TP. La réponse porte un ETag (empreinte du ZIP) et une date Last-Modified : avec If-None-Match ou If-Modified-Since, un ZIP inchangé n’est pas renvoyé (304). Un téléchargement interrompu reprend avec Range (une seule plage) et If-Range.
      *
      * @param courseId Identifiant du cours. (required)
      * @param tpNo     Numéro de TP. (required)
      * @return Fichier ZIP restructuré retourné. (status code 200)
+     * or Plage demandée du fichier ZIP restructuré (Content-Range). (status code 206)
+     * or Le ZIP restructuré n’a pas changé depuis la version du client. (status code 304)
      * or Cours ou TP introuvable. (status code 404)
+     * or Plage demandée hors du fichier. (status code 416)
      * or Erreur interne. (status code 500)
      */
     @Operation(
             operationId = "downloadStructuredSubmission",
             summary = "Téléchargement du rendu restructuré.",
-            description = "Permet de télécharger le fichier ZIP restructuré des rendus d’un TP.",
+            description = "Permet de télécharger le fichier ZIP restructuré des rendus d’un TP. La réponse porte un ETag (empreinte du ZIP) et une date Last-Modified : avec If-None-Match ou If-Modified-Since, un ZIP inchangé n’est pas renvoyé (304). Un téléchargement interrompu reprend avec Range (une seule plage) et If-Range.",
             tags = {"submission"},
             responses = {
                     @ApiResponse(responseCode = "200", description = "Fichier ZIP restructuré retourné.", content = {
                             @Content(mediaType = "application/zip", schema = @Schema(implementation = org.springframework.core.io.Resource.class))
                     }),
+                    @ApiResponse(responseCode = "206", description = "Plage demandée du fichier ZIP restructuré (Content-Range).", content = {
+                            @Content(mediaType = "application/zip", schema = @Schema(implementation = org.springframework.core.io.Resource.class))
+                    }),
+                    @ApiResponse(responseCode = "304", description = "Le ZIP restructuré n’a pas changé depuis la version du client."),
                     @ApiResponse(responseCode = "404", description = "Cours ou TP introuvable."),
+                    @ApiResponse(responseCode = "416", description = "Plage demandée hors du fichier."),
                     @ApiResponse(responseCode = "500", description = "Erreur interne.")
             }
     )
@@ -125,6 +282,232 @@ public interface SubmissionApi {
     }
 
 
+    /**
+     * GET /course/{courseId}/downloadStructuredSubmission/{tpNo}/students : Téléchargement des dossiers de certains étudiants.
+     * Retourne un ZIP ne contenant que les dossiers des étudiants demandés, extraits du ZIP restructuré du TP. Les fichiers sont recopiés tels quels (sans décompression ni recompression) : la durée dépend de la taille des rendus demandés, pas du nombre d’étudiants. Avec restructuring.student-archives, un seul étudiant demandé reçoit directement son archive précalculée, avec ETag, If-None-Match (304) et Range/If-Range (206, 416) comme le ZIP du TP.
+     *
+     * @param courseId Identifiant du cours. (required)
+     * @param tpNo     Numéro de TP. (required)
+     * @param student  Dossier d’un étudiant dans le ZIP restructuré (\&quot;NomPrenom\&quot;), répétable. (required)
+     * @return ZIP des dossiers demandés. (status code 200)
+     * or Plage demandée de l’archive de l’étudiant (Content-Range). (status code 206)
+     * or L’archive de l’étudiant n’a pas changé depuis la version du client. (status code 304)
+     * or Cours, TP ou dossier d’étudiant introuvable. (status code 404)
+     * or Plage demandée hors de l’archive de l’étudiant. (status code 416)
+     * or Erreur interne. (status code 500)
+     */
+    @Operation(
+            operationId = "downloadStructuredStudents",
+            summary = "Téléchargement des dossiers de certains étudiants.",
+            description = "Retourne un ZIP ne contenant que les dossiers des étudiants demandés, extraits du ZIP restructuré du TP. Les fichiers sont recopiés tels quels (sans décompression ni recompression) : la durée dépend de la taille des rendus demandés, pas du nombre d’étudiants. Avec restructuring.student-archives, un seul étudiant demandé reçoit directement son archive précalculée, avec ETag, If-None-Match (304) et Range/If-Range (206, 416) comme le ZIP du TP.",
+            tags = {"submission"},
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "ZIP des dossiers demandés.", content = {
+                            @Content(mediaType = "application/zip", schema = @Schema(implementation = org.springframework.core.io.Resource.class))
+                    }),
+                    @ApiResponse(responseCode = "206", description = "Plage demandée de l’archive de l’étudiant (Content-Range).", content = {
+                            @Content(mediaType = "application/zip", schema = @Schema(implementation = org.springframework.core.io.Resource.class))
+                    }),
+                    @ApiResponse(responseCode = "304", description = "L’archive de l’étudiant n’a pas changé depuis la version du client."),
+                    @ApiResponse(responseCode = "404", description = "Cours, TP ou dossier d’étudiant introuvable."),
+                    @ApiResponse(responseCode = "416", description = "Plage demandée hors de l’archive de l’étudiant."),
+                    @ApiResponse(responseCode = "500", description = "Erreur interne.")
+            }
+    )
+    @RequestMapping(
+            method = RequestMethod.GET,
+            value = "/course/{courseId}/downloadStructuredSubmission/{tpNo}/students",
+            produces = {"application/zip"}
+    )
+
+    default ResponseEntity<org.springframework.core.io.Resource> downloadStructuredStudents(
+            @Parameter(name = "courseId", description = "Identifiant du cours.", required = true, in = ParameterIn.PATH) @PathVariable("courseId") Long courseId,
+            @Parameter(name = "tpNo", description = "Numéro de TP.", required = true, in = ParameterIn.PATH) @PathVariable("tpNo") Integer tpNo,
+            @NotNull @Parameter(name = "student", description = "Dossier d’un étudiant dans le ZIP restructuré (\"NomPrenom\"), répétable.", required = true, in = ParameterIn.QUERY) @Valid @RequestParam(value = "student", required = true) List<String> student
+    ) {
+        return new ResponseEntity<>(HttpStatus.NOT_IMPLEMENTED);
+
+    }
+
+
+    /**
+     * GET /jobs/{jobId} : État d’un traitement des rendus.
+     * Retourne l’état, la progression et les erreurs d’un traitement lancé avec startProcessSubmission.
+     *
+     * @param jobId Identifiant du traitement. (required)
+     * @return État du traitement. (status code 200)
+     * or Traitement introuvable. (status code 404)
+     * or Erreur interne. (status code 500)
+     */
+    @Operation(
+            operationId = "getProcessingJob",
+            summary = "État d’un traitement des rendus.",
+            description = "Retourne l’état, la progression et les erreurs d’un traitement lancé avec startProcessSubmission.",
+            tags = {"submission"},
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "État du traitement.", content = {
+                            @Content(mediaType = "application/json", schema = @Schema(implementation = heg.backendspring.models.ProcessingJobDto.class))
+                    }),
+                    @ApiResponse(responseCode = "404", description = "Traitement introuvable."),
+                    @ApiResponse(responseCode = "500", description = "Erreur interne.")
+            }
+    )
+    @RequestMapping(
+            method = RequestMethod.GET,
+            value = "/jobs/{jobId}",
+            produces = {"application/json"}
+    )
+
+    default ResponseEntity<heg.backendspring.models.ProcessingJobDto> getProcessingJob(
+            @Parameter(name = "jobId", description = "Identifiant du traitement.", required = true, in = ParameterIn.PATH) @PathVariable("jobId") Long jobId
+    ) {
+        getRequest().ifPresent(request -> {
+            for (MediaType mediaType : MediaType.parseMediaTypes(request.getHeader("Accept"))) {
+                if (mediaType.isCompatibleWith(MediaType.valueOf("application/json"))) {
+                    String exampleString = "{ \"id\" : 42, \"courseId\" : 1, \"tpNo\" : 1, \"status\" : \"RUNNING\", \"studentsTotal\" : 48, \"studentsProcessed\" : 17, \"studentFailures\" : 1, \"errorReport\" : \"Dupont Jean_123: Archive exceeds 20000 entries\", \"createdAt\" : \"2025-03-14T10:15:30\", \"startedAt\" : \"2025-03-14T10:15:31\" }";
+                    ApiUtil.setExampleResponse(request, "application/json", exampleString);
+                    break;
+                }
+            }
+        });
+        return new ResponseEntity<>(HttpStatus.NOT_IMPLEMENTED);
+
+    }
+
+
+    /**
+     * GET /jobs/{jobId}/events : Progression d’un traitement des rendus en direct.
+     * Flux Server-Sent Events : « progress » (ProcessingJobProgressDto), « stage » (changement d’étape : UNZIP, STUDENTS, ZIP, CLEANUP), « warning » (ProcessingJobWarningDto) puis « finished » (ProcessingJobDto), après quoi le flux est fermé.
+     *
+     * @param jobId Identifiant du traitement. (required)
+     * @return Flux d’événements du traitement. (status code 200)
+     * or Traitement introuvable. (status code 404)
+     * or Erreur interne. (status code 500)
+     */
+    @Operation(
+            operationId = "getProcessingJobEvents",
+            summary = "Progression d’un traitement des rendus en direct.",
+            description = "Flux Server-Sent Events : « progress » (ProcessingJobProgressDto), « stage » (changement d’étape : UNZIP, STUDENTS, ZIP, CLEANUP), « warning » (ProcessingJobWarningDto) puis « finished » (ProcessingJobDto), après quoi le flux est fermé.",
+            tags = {"submission"},
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Flux d’événements du traitement.", content = {
+                            @Content(mediaType = "text/event-stream", schema = @Schema(implementation = String.class))
+                    }),
+                    @ApiResponse(responseCode = "404", description = "Traitement introuvable."),
+                    @ApiResponse(responseCode = "500", description = "Erreur interne.")
+            }
+    )
+    @RequestMapping(
+            method = RequestMethod.GET,
+            value = "/jobs/{jobId}/events",
+            produces = {"text/event-stream"}
+    )
+
+    default ResponseEntity<org.springframework.web.servlet.mvc.method.annotation.SseEmitter> getProcessingJobEvents(
+            @Parameter(name = "jobId", description = "Identifiant du traitement.", required = true, in = ParameterIn.PATH) @PathVariable("jobId") Long jobId
+    ) {
+        return new ResponseEntity<>(HttpStatus.NOT_IMPLEMENTED);
+
+    }
+
+
+    /**
+     * GET /uploads/{uploadId} : État d’un dépôt en plusieurs morceaux.
+     * Retourne les octets reçus et les morceaux manquants, pour reprendre un dépôt interrompu.
+     *
+     * @param uploadId Identifiant du dépôt. (required)
+     * @return État du dépôt. (status code 200)
+     * or Dépôt introuvable. (status code 404)
+     * or Erreur interne. (status code 500)
+     */
+    @Operation(
+            operationId = "getUploadStatus",
+            summary = "État d’un dépôt en plusieurs morceaux.",
+            description = "Retourne les octets reçus et les morceaux manquants, pour reprendre un dépôt interrompu.",
+            tags = {"submission"},
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "État du dépôt.", content = {
+                            @Content(mediaType = "application/json", schema = @Schema(implementation = heg.backendspring.models.UploadStatusDto.class))
+                    }),
+                    @ApiResponse(responseCode = "404", description = "Dépôt introuvable."),
+                    @ApiResponse(responseCode = "500", description = "Erreur interne.")
+            }
+    )
+    @RequestMapping(
+            method = RequestMethod.GET,
+            value = "/uploads/{uploadId}",
+            produces = {"application/json"}
+    )
+
+    default ResponseEntity<heg.backendspring.models.UploadStatusDto> getUploadStatus(
+            @Parameter(name = "uploadId", description = "Identifiant du dépôt.", required = true, in = ParameterIn.PATH) @PathVariable("uploadId") String uploadId
+    ) {
+        getRequest().ifPresent(request -> {
+            for (MediaType mediaType : MediaType.parseMediaTypes(request.getHeader("Accept"))) {
+                if (mediaType.isCompatibleWith(MediaType.valueOf("application/json"))) {
+                    String exampleString = "{ \"uploadId\" : \"3f2b6c1e9a4d4f0b8c7e5a1d2b3c4d5e\", \"courseId\" : 1, \"tpNo\" : 1, \"fileSize\" : 2147483648, \"chunkSize\" : 8388608, \"chunkCount\" : 256, \"receivedBytes\" : 2130706432, \"missingChunks\" : [ 128, 129 ] }";
+                    ApiUtil.setExampleResponse(request, "application/json", exampleString);
+                    break;
+                }
+            }
+        });
+        return new ResponseEntity<>(HttpStatus.NOT_IMPLEMENTED);
+
+    }
+
+
+    /**
+     * POST /course/{courseId}/uploads/{tpNo} : Ouverture d’un dépôt en plusieurs morceaux.
+     * Ouvre un dépôt reprenable pour un gros fichier ZIP de rendus. Les morceaux sont ensuite envoyés par offset, dans n’importe quel ordre.
+     *
+     * @param courseId      Identifiant du cours. (required)
+     * @param tpNo          Numéro de TP. (required)
+     * @param uploadInitDto Taille du fichier et, optionnellement, des morceaux. (required)
+     * @return Dépôt ouvert. (status code 201)
+     * or Taille invalide. (status code 400)
+     * or Cours ou TP introuvable. (status code 404)
+     * or Erreur interne. (status code 500)
+     */
+    @Operation(
+            operationId = "initUpload",
+            summary = "Ouverture d’un dépôt en plusieurs morceaux.",
+            description = "Ouvre un dépôt reprenable pour un gros fichier ZIP de rendus. Les morceaux sont ensuite envoyés par offset, dans n’importe quel ordre.",
+            tags = {"submission"},
+            responses = {
+                    @ApiResponse(responseCode = "201", description = "Dépôt ouvert.", content = {
+                            @Content(mediaType = "application/json", schema = @Schema(implementation = heg.backendspring.models.UploadStatusDto.class))
+                    }),
+                    @ApiResponse(responseCode = "400", description = "Taille invalide."),
+                    @ApiResponse(responseCode = "404", description = "Cours ou TP introuvable."),
+                    @ApiResponse(responseCode = "500", description = "Erreur interne.")
+            }
+    )
+    @RequestMapping(
+            method = RequestMethod.POST,
+            value = "/course/{courseId}/uploads/{tpNo}",
+            produces = {"application/json"},
+            consumes = {"application/json"}
+    )
+
+    default ResponseEntity<heg.backendspring.models.UploadStatusDto> initUpload(
+            @Parameter(name = "courseId", description = "Identifiant du cours.", required = true, in = ParameterIn.PATH) @PathVariable("courseId") Long courseId,
+            @Parameter(name = "tpNo", description = "Numéro de TP.", required = true, in = ParameterIn.PATH) @PathVariable("tpNo") Integer tpNo,
+            @Parameter(name = "UploadInitDto", description = "Taille du fichier et, optionnellement, des morceaux.", required = true) @Valid @RequestBody heg.backendspring.models.UploadInitDto uploadInitDto
+    ) {
+        getRequest().ifPresent(request -> {
+            for (MediaType mediaType : MediaType.parseMediaTypes(request.getHeader("Accept"))) {
+                if (mediaType.isCompatibleWith(MediaType.valueOf("application/json"))) {
+                    String exampleString = "{ \"uploadId\" : \"3f2b6c1e9a4d4f0b8c7e5a1d2b3c4d5e\", \"courseId\" : 1, \"tpNo\" : 1, \"fileSize\" : 2147483648, \"chunkSize\" : 8388608, \"chunkCount\" : 256, \"receivedBytes\" : 2130706432, \"missingChunks\" : [ 128, 129 ] }";
+                    ApiUtil.setExampleResponse(request, "application/json", exampleString);
+                    break;
+                }
+            }
+        });
+        return new ResponseEntity<>(HttpStatus.NOT_IMPLEMENTED);
+
+    }
+
+
     /**
      * POST /course/{courseId}/manageTP/{tpNo} : Gestion avancée d’un TP.
      * Effectue des opérations de gestion avancée sur un TP.
@@ -174,22 +557,22 @@ public interface SubmissionApi {
 
     /**
      * POST /course/{courseId}/startProcessSubmission/{tpNo} : Lancement du traitement des rendus.
-     * Lance le processus de restructuration et de traitement des rendus pour un TP.
+     * Lance en arrière-plan le processus de restructuration et de traitement des rendus pour un TP. La réponse est immédiate ; l’état du traitement est consultable avec getProcessingJob.
      *
      * @param courseId Identifiant du cours. (required)
      * @param tpNo     Numéro de TP. (required)
-     * @return Traitement lancé. (status code 200)
+     * @return Traitement mis en file. (status code 202)
      * or Cours ou TP introuvable. (status code 404)
      * or Erreur interne. (status code 500)
      */
     @Operation(
             operationId = "startProcessSubmission",
             summary = "Lancement du traitement des rendus.",
-            description = "Lance le processus de restructuration et de traitement des rendus pour un TP.",
+            description = "Lance en arrière-plan le processus de restructuration et de traitement des rendus pour un TP. La réponse est immédiate ; l’état du traitement est consultable avec getProcessingJob.",
             tags = {"submission"},
             responses = {
-                    @ApiResponse(responseCode = "200", description = "Traitement lancé.", content = {
-                            @Content(mediaType = "application/json", schema = @Schema(implementation = heg.backendspring.models.TPDto.class))
+                    @ApiResponse(responseCode = "202", description = "Traitement mis en file.", content = {
+                            @Content(mediaType = "application/json", schema = @Schema(implementation = heg.backendspring.models.ProcessingJobDto.class))
                     }),
                     @ApiResponse(responseCode = "404", description = "Cours ou TP introuvable."),
                     @ApiResponse(responseCode = "500", description = "Erreur interne.")
@@ -201,14 +584,66 @@ public interface SubmissionApi {
             produces = {"application/json"}
     )
 
-    default ResponseEntity<heg.backendspring.models.TPDto> startProcessSubmission(
+    default ResponseEntity<heg.backendspring.models.ProcessingJobDto> startProcessSubmission(
             @Parameter(name = "courseId", description = "Identifiant du cours.", required = true, in = ParameterIn.PATH) @PathVariable("courseId") Long courseId,
             @Parameter(name = "tpNo", description = "Numéro de TP.", required = true, in = ParameterIn.PATH) @PathVariable("tpNo") Integer tpNo
     ) {
         getRequest().ifPresent(request -> {
             for (MediaType mediaType : MediaType.parseMediaTypes(request.getHeader("Accept"))) {
                 if (mediaType.isCompatibleWith(MediaType.valueOf("application/json"))) {
-                    String exampleString = "{ \"id\" : 10, \"false\" : 1, \"courseId\" : 1, \"submission\" : { \"id\" : 100, \"fileName\" : \"TP1_Rendus.zip\", \"pathStorage\" : \"/data/courses/61-13/TP1/TP1_Rendus.zip\", \"pathFileStructured\" : \"/data/courses/61-13/TP1/TP1_RenduRestructuration.zip\" }, \"statusStudents\" : [ { \"id\" : 1000, \"studentId\" : 300, \"tpId\" : 10, \"studentSubmission\" : true } ] }";
+                    String exampleString = "{ \"id\" : 42, \"courseId\" : 1, \"tpNo\" : 1, \"status\" : \"RUNNING\", \"studentsTotal\" : 48, \"studentsProcessed\" : 17, \"studentFailures\" : 1, \"errorReport\" : \"Dupont Jean_123: Archive exceeds 20000 entries\", \"createdAt\" : \"2025-03-14T10:15:30\", \"startedAt\" : \"2025-03-14T10:15:31\" }";
+                    ApiUtil.setExampleResponse(request, "application/json", exampleString);
+                    break;
+                }
+            }
+        });
+        return new ResponseEntity<>(HttpStatus.NOT_IMPLEMENTED);
+
+    }
+
+
+    /**
+     * PUT /uploads/{uploadId}/chunks/{offset} : Envoi d’un morceau.
+     * Envoie le morceau commençant à l’offset donné (multiple de la taille des morceaux). Un morceau renvoyé remplace le précédent.
+     *
+     * @param uploadId Identifiant du dépôt. (required)
+     * @param offset   Position du morceau dans le fichier, en octets. (required)
+     * @param body     Contenu brut du morceau. (required)
+     * @return Morceau reçu. (status code 200)
+     * or Offset ou taille du morceau invalide. (status code 400)
+     * or Dépôt introuvable. (status code 404)
+     * or Erreur interne. (status code 500)
+     */
+    @Operation(
+            operationId = "uploadChunk",
+            summary = "Envoi d’un morceau.",
+            description = "Envoie le morceau commençant à l’offset donné (multiple de la taille des morceaux). Un morceau renvoyé remplace le précédent.",
+            tags = {"submission"},
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Morceau reçu.", content = {
+                            @Content(mediaType = "application/json", schema = @Schema(implementation = heg.backendspring.models.UploadStatusDto.class))
+                    }),
+                    @ApiResponse(responseCode = "400", description = "Offset ou taille du morceau invalide."),
+                    @ApiResponse(responseCode = "404", description = "Dépôt introuvable."),
+                    @ApiResponse(responseCode = "500", description = "Erreur interne.")
+            }
+    )
+    @RequestMapping(
+            method = RequestMethod.PUT,
+            value = "/uploads/{uploadId}/chunks/{offset}",
+            produces = {"application/json"},
+            consumes = {"application/octet-stream"}
+    )
+
+    default ResponseEntity<heg.backendspring.models.UploadStatusDto> uploadChunk(
+            @Parameter(name = "uploadId", description = "Identifiant du dépôt.", required = true, in = ParameterIn.PATH) @PathVariable("uploadId") String uploadId,
+            @Parameter(name = "offset", description = "Position du morceau dans le fichier, en octets.", required = true, in = ParameterIn.PATH) @PathVariable("offset") Long offset,
+            @Parameter(name = "body", description = "Contenu brut du morceau.", required = true) @Valid @RequestBody org.springframework.core.io.InputStreamResource body
+    ) {
+        getRequest().ifPresent(request -> {
+            for (MediaType mediaType : MediaType.parseMediaTypes(request.getHeader("Accept"))) {
+                if (mediaType.isCompatibleWith(MediaType.valueOf("application/json"))) {
+                    String exampleString = "{ \"uploadId\" : \"3f2b6c1e9a4d4f0b8c7e5a1d2b3c4d5e\", \"courseId\" : 1, \"tpNo\" : 1, \"fileSize\" : 2147483648, \"chunkSize\" : 8388608, \"chunkCount\" : 256, \"receivedBytes\" : 2130706432, \"missingChunks\" : [ 128, 129 ] }";
                     ApiUtil.setExampleResponse(request, "application/json", exampleString);
                     break;
                 }
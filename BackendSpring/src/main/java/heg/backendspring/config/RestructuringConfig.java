@@ -0,0 +1,92 @@
+package heg.backendspring.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import heg.backendspring.utils.archive.ArchiveExtractors;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+@Configuration
+@EnableConfigurationProperties({RestructuringProperties.class, UploadProperties.class})
+public class RestructuringConfig {
+
+    /**
+     * Pool borné utilisé pour traiter les rendus des étudiants en parallèle.
+     * Le nombre de threads (virtuels ou non) limite le nombre d'étudiants traités simultanément.
+     */
+    @Bean(destroyMethod = "close")
+    public ExecutorService restructuringExecutor(RestructuringProperties properties) {
+        int workers = Math.max(1, properties.getWorkers());
+        ThreadFactory factory = properties.isVirtualThreads()
+                ? Thread.ofVirtual().name("restructuring-", 0).factory()
+                : Thread.ofPlatform().name("restructuring-", 0).daemon(true).factory();
+        return Executors.newFixedThreadPool(workers, factory);
+    }
+
+    /**
+     * Workers de la file des traitements ({@code ServiceProcessingJob}) : chaque thread réserve
+     * un traitement en base, l'exécute puis passe au suivant. La requête HTTP qui crée le
+     * traitement rend la main immédiatement et les threads de Tomcat restent libres.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService processingJobExecutor(RestructuringProperties properties) {
+        int workers = Math.max(1, properties.getJobWorkers());
+        return Executors.newFixedThreadPool(workers,
+                Thread.ofPlatform().name("processing-job-", 0).daemon(true).factory());
+    }
+
+    /**
+     * Thread unique qui envoie la progression des traitements aux clients abonnés (SSE) :
+     * les threads de restructuration ne font jamais d'écriture réseau.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledExecutorService jobProgressScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("job-progress").daemon(true).factory());
+    }
+
+    /**
+     * Thread unique qui prolonge les baux des traitements en cours sur cette instance et
+     * remet en file ceux dont le worker a disparu (accès base, hors threads de restructuration).
+     * Supprime aussi les dépôts en plusieurs morceaux abandonnés.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledExecutorService jobQueueScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("job-queue").daemon(true).factory());
+    }
+
+    /**
+     * Pool de connexions des verrous consultatifs des TPs (restructuring.locks.backend=advisory),
+     * sur la même base que le pool principal : un verrou détenu pendant une restructuration garde
+     * sa connexion sans en priver les requêtes et les workers. Aucune connexion n'est ouverte
+     * tant qu'aucun verrou consultatif n'est pris. Pas candidat par défaut : le pool principal
+     * reste le DataSource de l'application.
+     */
+    @Bean(destroyMethod = "close", defaultCandidate = false)
+    public DataSource tpLockDataSource(DataSourceProperties dataSourceProperties, RestructuringProperties properties) {
+        HikariDataSource dataSource = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("tp-locks");
+        dataSource.setMaximumPoolSize(Math.max(1, properties.getLocks().getAdvisoryPoolSize()));
+        dataSource.setMinimumIdle(0);
+        return dataSource;
+    }
+
+    /**
+     * Extracteurs d'archives (zip, 7z, rar, tar) utilisés pour les rendus des étudiants,
+     * avec les limites d'extraction configurées (restructuring.limits).
+     */
+    @Bean
+    public ArchiveExtractors archiveExtractors(RestructuringProperties properties) {
+        return ArchiveExtractors.defaults().withLimits(properties.archiveLimits());
+    }
+}
@@ -0,0 +1,347 @@
+package heg.backendspring.config;
+
+import heg.backendspring.utils.CompressionPolicy;
+import heg.backendspring.utils.ZipWriteOptions;
+import heg.backendspring.utils.archive.ArchiveLimits;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Paramètres du pipeline de restructuration des rendus (préfixe "restructuring").
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "restructuring")
+public class RestructuringProperties {
+
+    /**
+     * Mode de restructuration :
+     * — STREAMING : lecture du zip Cyberlearn entrée par entrée et écriture directe du zip restructuré
+     * — LEGACY : extraction complète sur disque (tmpExtract, RenduRestructuration, propres à chaque traitement) puis re-zip
+     */
+    private Mode mode = Mode.STREAMING;
+
+    /**
+     * Nombre maximum d'étudiants traités en parallèle.
+     */
+    private int workers = 4;
+
+    /**
+     * Nombre maximum de TPs restructurés en même temps par cette instance (traitements en
+     * arrière-plan) ; les traitements suivants attendent leur tour dans la file.
+     */
+    private int jobWorkers = 2;
+
+    /**
+     * Intervalle minimum entre deux événements de progression envoyés aux clients abonnés
+     * à un traitement (les changements intermédiaires sont regroupés).
+     */
+    private Duration progressInterval = Duration.ofMillis(250);
+
+    /**
+     * Utilise des threads virtuels pour les workers (traitement principalement I/O).
+     */
+    private boolean virtualThreads = false;
+
+    /**
+     * Restructuration incrémentale (mode STREAMING) : lors d'un nouveau dépôt du zip Cyberlearn,
+     * seuls les dossiers étudiants nouveaux ou modifiés sont retraités.
+     */
+    private boolean incremental = true;
+
+    /**
+     * Disposition de sortie : en plus du zip restructuré, une archive par étudiant et un manifeste
+     * (nombre de fichiers, volume, empreinte de chaque archive), pour servir un étudiant sans
+     * parcourir le zip du TP.
+     */
+    private boolean studentArchives = false;
+
+    /**
+     * Dossier des règles d'exclusion surchargées ("{COURSE_TYPE}.gitignore" ou
+     * "course-{CODE}.gitignore"), relues dès qu'elles changent. Vide : règles par défaut
+     * du classpath (ignore-rules/) uniquement.
+     */
+    private String ignoreRulesDir = "";
+
+    /**
+     * Paramètres d'écriture des zips restructurés.
+     */
+    private Zip zip = new Zip();
+
+    /**
+     * Stockage dédupliqué des fichiers conservés par la restructuration.
+     */
+    private Dedup dedup = new Dedup();
+
+    /**
+     * Limites d'extraction d'une archive d'étudiant (protection contre les zip bombs).
+     */
+    private Limits limits = new Limits();
+
+    /**
+     * File des traitements en base, partagée entre les instances du backend.
+     */
+    private Queue queue = new Queue();
+
+    /**
+     * Verrous par TP (dépôt, restructuration et mise à jour des statuts d'un même TP sérialisés).
+     */
+    private Locks locks = new Locks();
+
+    /**
+     * Espace de travail des restructurations (dossiers intermédiaires, zips des étudiants).
+     */
+    private Scratch scratch = new Scratch();
+
+    public enum Mode {
+        STREAMING,
+        LEGACY
+    }
+
+    @Getter
+    @Setter
+    public static class Zip {
+
+        /**
+         * Niveau de compression deflate (0-9, -1 = niveau par défaut).
+         */
+        private int compressionLevel = -1;
+
+        /**
+         * Nombre de threads de compression des zips écrits hors d'une restructuration
+         * (0 = nombre de cœurs disponibles) ; une restructuration compresse sur le pool partagé
+         * "restructuringExecutor" (restructuring.workers).
+         */
+        private int parallelism = 0;
+
+        /**
+         * Niveau de compression propre à un cours, par code de cours (prioritaire sur compressionLevel).
+         */
+        private Map<String, Integer> courseLevels = new HashMap<>();
+
+        /**
+         * Stocke sans compression les fichiers déjà compressés (storedExtensions, et contenu
+         * proche du hasard si entropySampling est actif) au lieu de les recompresser.
+         */
+        private boolean storeIncompressible = true;
+
+        /**
+         * Extensions des fichiers stockés sans compression.
+         */
+        private Set<String> storedExtensions = new TreeSet<>(CompressionPolicy.DEFAULT_STORED_EXTENSIONS);
+
+        /**
+         * Mesure l'entropie des premiers octets des fichiers d'extension inconnue.
+         */
+        private boolean entropySampling = true;
+
+        /**
+         * Entropie (bits par octet, 0-8) à partir de laquelle un fichier échantillonné est stocké.
+         */
+        private double maxEntropy = CompressionPolicy.DEFAULT_MAX_ENTROPY;
+    }
+
+    @Getter
+    @Setter
+    public static class Dedup {
+
+        /**
+         * Si actif, les fichiers des zips restructurés sont rangés par SHA-256 dans le
+         * magasin de blobs ; le zip est remplacé par un manifeste et reconstruit à la demande.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Dossier du magasin de blobs.
+         */
+        private String storePath = "DocumentsZip/.blobstore";
+
+        /**
+         * Volume maximal des zips reconstruits gardés en cache pour les téléchargements
+         * suivants ; les moins récemment demandés sont supprimés au-delà.
+         */
+        private DataSize cacheSize = DataSize.ofGigabytes(2);
+
+        /**
+         * Âge minimal d'un blob non référencé avant sa suppression : un blob stocké ou réutilisé
+         * par une restructuration dont le manifeste n'est pas encore enregistré n'est pas supprimé.
+         */
+        private Duration gcGracePeriod = Duration.ofHours(1);
+    }
+
+    @Getter
+    @Setter
+    public static class Limits {
+
+        /**
+         * Nombre maximal d'entrées par archive (0 = illimité).
+         */
+        private int maxEntries = 20_000;
+
+        /**
+         * Volume décompressé maximal par archive (0 = illimité).
+         */
+        private DataSize maxTotalSize = DataSize.ofMegabytes(512);
+
+        /**
+         * Taux de compression maximal (octets décompressés / taille de l'archive, 0 = illimité).
+         */
+        private int maxCompressionRatio = 100;
+
+        /**
+         * Nombre maximal de niveaux de dossiers dans le chemin d'une entrée (0 = illimité).
+         */
+        private int maxDepth = 32;
+
+        /**
+         * Longueur maximale du chemin d'une entrée, en caractères (0 = illimité).
+         */
+        private int maxPathLength = 1024;
+    }
+
+    @Getter
+    @Setter
+    public static class Queue {
+
+        /**
+         * Si actif, cette instance traite les traitements en file (restructuring.job-workers
+         * threads). Sinon elle ne fait que les créer et les suivre.
+         */
+        private boolean worker = true;
+
+        /**
+         * Nom de l'instance dans les identifiants de worker (vide : nom d'hôte). S'il est défini,
+         * il doit être propre à chaque instance : au redémarrage, les traitements encore en cours
+         * au nom de cette instance sont remis en file sans attendre l'expiration de leur bail.
+         */
+        private String nodeId = "";
+
+        /**
+         * Délai entre deux consultations de la file par un worker inoccupé.
+         */
+        private Duration pollInterval = Duration.ofSeconds(2);
+
+        /**
+         * Durée d'un bail : un traitement dont le bail n'est pas prolongé pendant ce délai
+         * (instance arrêtée ou bloquée) est remis en file.
+         */
+        private Duration leaseDuration = Duration.ofSeconds(60);
+
+        /**
+         * Intervalle de prolongation des baux (doit rester bien inférieur à leaseDuration).
+         */
+        private Duration heartbeatInterval = Duration.ofSeconds(15);
+
+        /**
+         * Nombre maximal de réservations d'un traitement : au-delà, un bail expiré le fait échouer.
+         */
+        private int maxAttempts = 3;
+    }
+
+    @Getter
+    @Setter
+    public static class Locks {
+
+        /**
+         * LOCAL : verrous de cette instance uniquement.
+         * ADVISORY : en plus, verrou consultatif PostgreSQL (pg_try_advisory_lock) pour sérialiser
+         * un TP entre plusieurs instances ; chaque verrou détenu occupe une connexion d'un pool
+         * dédié (advisoryPoolSize), une attente n'en occupe pas.
+         */
+        private LockBackend backend = LockBackend.LOCAL;
+
+        /**
+         * Intervalle entre deux tentatives de prise d'un verrou consultatif détenu par une
+         * autre instance (la connexion est rendue au pool entre deux tentatives).
+         */
+        private Duration advisoryRetryInterval = Duration.ofMillis(100);
+
+        /**
+         * Nombre maximal de connexions du pool des verrous consultatifs, donc de TPs verrouillés
+         * en même temps par cette instance ; au-delà, la prise du verrou attend qu'un autre soit libéré.
+         */
+        private int advisoryPoolSize = 10;
+
+        /**
+         * Nombre de verrous locaux entre lesquels les TPs sont répartis (deux TPs qui tombent
+         * sur le même verrou s'attendent mutuellement).
+         */
+        private int stripes = 1024;
+    }
+
+    public enum LockBackend {
+        LOCAL,
+        ADVISORY
+    }
+
+    @Getter
+    @Setter
+    public static class Scratch {
+
+        /**
+         * Dossier de travail local (SSD, tmpfs) : les fichiers intermédiaires y sont écrits au lieu
+         * du dossier du TP, seuls les zips terminés sont écrits sur zip-storage. Vide : dossier du TP.
+         */
+        private String path = "";
+
+        /**
+         * Espace de travail maximal estimé pour un traitement (0 = illimité) ; au-delà, ou si le
+         * dossier n'a plus assez de place libre, la politique {@link #spill} s'applique.
+         */
+        private DataSize maxJobSize = DataSize.ofGigabytes(4);
+
+        /**
+         * STORAGE : le traitement utilise le dossier du TP sur zip-storage.
+         * FAIL : le traitement échoue.
+         */
+        private Spill spill = Spill.STORAGE;
+
+        /**
+         * Âge minimal (dernière modification) d'un fichier de travail supprimé au démarrage :
+         * un dépôt ou un traitement en cours sur une autre instance, qui écrit encore dans le
+         * dossier partagé du TP, n'est pas supprimé.
+         */
+        private Duration cleanupGracePeriod = Duration.ofHours(1);
+    }
+
+    public enum Spill {
+        STORAGE,
+        FAIL
+    }
+
+    public ArchiveLimits archiveLimits() {
+        return new ArchiveLimits(limits.getMaxEntries(), limits.getMaxTotalSize().toBytes(),
+                limits.getMaxCompressionRatio(), limits.getMaxDepth(), limits.getMaxPathLength());
+    }
+
+    public ZipWriteOptions zipWriteOptions() {
+        return new ZipWriteOptions(zip.getCompressionLevel(), zip.getParallelism(), compressionPolicy());
+    }
+
+    /**
+     * Options d'écriture des zips du cours {@code courseCode} : son niveau de compression
+     * (restructuring.zip.course-levels) s'il en a un, sinon le niveau global.
+     */
+    public ZipWriteOptions zipWriteOptions(String courseCode) {
+        int level = courseCode != null
+                ? zip.getCourseLevels().getOrDefault(courseCode, zip.getCompressionLevel())
+                : zip.getCompressionLevel();
+        return new ZipWriteOptions(level, zip.getParallelism(), compressionPolicy());
+    }
+
+    public CompressionPolicy compressionPolicy() {
+        if (!zip.isStoreIncompressible()) {
+            return CompressionPolicy.DEFLATE_ALL;
+        }
+        return new CompressionPolicy(zip.getStoredExtensions(), CompressionPolicy.DEFAULT_DEFLATED_EXTENSIONS,
+                zip.isEntropySampling(), zip.getMaxEntropy());
+    }
+}
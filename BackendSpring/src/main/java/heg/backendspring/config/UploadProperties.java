@@ -0,0 +1,53 @@
+package heg.backendspring.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Paramètres des dépôts de rendus en plusieurs morceaux (préfixe "upload").
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "upload")
+public class UploadProperties {
+
+    /**
+     * Dossier des dépôts en cours (un sous-dossier par dépôt, conservé jusqu'à sa finalisation).
+     */
+    private String dir = "DocumentsZip/.uploads";
+
+    /**
+     * Taille des morceaux proposée au client si elle n'est pas précisée à l'ouverture.
+     */
+    private DataSize chunkSize = DataSize.ofMegabytes(8);
+
+    /**
+     * Taille maximale d'un morceau.
+     */
+    private DataSize maxChunkSize = DataSize.ofMegabytes(64);
+
+    /**
+     * Nombre maximal de morceaux d'un dépôt : fixe la taille minimale des morceaux
+     * (taille du fichier / maxChunks).
+     */
+    private int maxChunks = 10_000;
+
+    /**
+     * Taille maximale du fichier déposé.
+     */
+    private DataSize maxFileSize = DataSize.ofGigabytes(20);
+
+    /**
+     * Durée sans morceau reçu au-delà de laquelle un dépôt non finalisé est supprimé.
+     */
+    private Duration sessionTtl = Duration.ofHours(24);
+
+    /**
+     * Intervalle entre deux recherches de dépôts expirés (la première a lieu au démarrage).
+     */
+    private Duration cleanupInterval = Duration.ofHours(1);
+}
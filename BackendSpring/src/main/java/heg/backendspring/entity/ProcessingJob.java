@@ -0,0 +1,119 @@
+package heg.backendspring.entity;
+
+import heg.backendspring.enums.ProcessingJobStatus;
+import heg.backendspring.utils.RestructuringReport;
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+
+/**
+ * Traitement (restructuration) du rendu d'un TP, exécuté en arrière-plan.
+ * L'état, la progression et les erreurs sont conservés pour être consultés après coup.
+ * <p>
+ * La table sert aussi de file d'attente partagée entre les instances du backend : un worker
+ * réserve un traitement QUEUED pour une durée limitée (bail), qu'il prolonge tant qu'il y
+ * travaille. Un traitement dont le bail a expiré est remis en file.
+ * <p>
+ * Un TP n'a jamais plus d'un traitement actif (QUEUED ou RUNNING), quelle que soit l'instance
+ * qui l'a créé : la colonne active_tp vaut "courseId/tpNo" tant que le traitement est actif et
+ * null ensuite, et porte une contrainte d'unicité (l'équivalent d'un index unique partiel sur
+ * (course_id, tp_no), que toutes les bases ne supportent pas).
+ */
+@Entity
+@Table(name = "processing_job",
+        uniqueConstraints = @UniqueConstraint(name = "uk_processing_job_active_tp", columnNames = "active_tp"))
+@Getter
+@Setter
+@NoArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public class ProcessingJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @EqualsAndHashCode.Include
+    private Long id;
+
+    @Column(name = "course_id", nullable = false)
+    private Long courseId;
+
+    @Column(name = "tp_no", nullable = false)
+    private int tpNo;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private ProcessingJobStatus status;
+
+    @Column(name = "students_total")
+    private int studentsTotal;
+
+    @Column(name = "students_processed")
+    private int studentsProcessed;
+
+    @Column(name = "student_failures")
+    private int studentFailures;
+
+    //Étape en cours, enregistrée à chaque changement d'étape (voir ProcessingJobJournal)
+    @Enumerated(EnumType.STRING)
+    @Column(name = "stage")
+    private RestructuringReport.Stage stage;
+
+    //Worker ("nœud/boot-index") qui détient le traitement
+    @Column(name = "worker_id", length = 100)
+    private String workerId;
+
+    //Fin du bail du worker ; passé ce délai sans prolongation, le traitement est remis en file
+    @Column(name = "lease_until")
+    private LocalDateTime leaseUntil;
+
+    //Nombre de fois où le traitement a été réservé par un worker
+    @Column(name = "attempts")
+    private int attempts;
+
+    //Annulation demandée pendant le traitement, vue par le worker à la prolongation du bail
+    @Column(name = "cancel_requested")
+    private boolean cancelRequested;
+
+    //Erreur ayant interrompu le traitement
+    @Column(name = "error_message", length = 2000)
+    private String errorMessage;
+
+    //Erreurs par étudiant, une par ligne ("dossier: message")
+    //Texte long (text sur PostgreSQL) : un @Lob y serait stocké en large object (oid)
+    @JdbcTypeCode(SqlTypes.LONG32VARCHAR)
+    @Column(name = "error_report")
+    private String errorReport;
+
+    //"courseId/tpNo" tant que le traitement est actif, null une fois terminé (calculé à l'écriture)
+    @Setter(AccessLevel.NONE)
+    @Column(name = "active_tp", length = 50)
+    private String activeTp;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    public ProcessingJob(Long courseId, int tpNo) {
+        this.courseId = courseId;
+        this.tpNo = tpNo;
+        this.status = ProcessingJobStatus.QUEUED;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    @PrePersist
+    @PreUpdate
+    void updateActiveTp() {
+        activeTp = status.isFinished() ? null : courseId + "/" + tpNo;
+    }
+}
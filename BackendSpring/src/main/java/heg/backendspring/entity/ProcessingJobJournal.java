@@ -0,0 +1,62 @@
+package heg.backendspring.entity;
+
+import heg.backendspring.enums.ProcessingJobStatus;
+import heg.backendspring.utils.RestructuringReport;
+import jakarta.persistence.*;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Journal d'un {@link ProcessingJob} : une ligne par transition (réservation par un worker,
+ * changement d'étape, remise en file, fin). Contrairement à la ligne du traitement, remise à
+ * zéro quand il est remis en file, le journal garde l'étape atteinte par chaque tentative.
+ */
+@Entity
+@Table(name = "processing_job_journal", indexes = @Index(name = "idx_processing_job_journal_job", columnList = "job_id"))
+@Getter
+@Setter
+@NoArgsConstructor
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public class ProcessingJobJournal {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @EqualsAndHashCode.Include
+    private Long id;
+
+    @Column(name = "job_id", nullable = false)
+    private Long jobId;
+
+    //Tentative (nombre de réservations du traitement) à laquelle se rapporte la ligne
+    @Column(name = "attempt")
+    private int attempt;
+
+    @Column(name = "worker_id", length = 100)
+    private String workerId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private ProcessingJobStatus status;
+
+    //Étape atteinte (null pour une réservation, une remise en file ou une fin)
+    @Enumerated(EnumType.STRING)
+    @Column(name = "stage")
+    private RestructuringReport.Stage stage;
+
+    @Column(name = "recorded_at", nullable = false)
+    private LocalDateTime recordedAt;
+
+    public ProcessingJobJournal(Long jobId, int attempt, String workerId, ProcessingJobStatus status,
+                                RestructuringReport.Stage stage) {
+        this.jobId = jobId;
+        this.attempt = attempt;
+        this.workerId = workerId;
+        this.status = status;
+        this.stage = stage;
+        this.recordedAt = LocalDateTime.now();
+    }
+}
@@ -28,6 +28,29 @@ public class Submission {
     @Column(name = "path_file_structured")
     private String pathFileStructured;
 
+    /**
+     * Empreinte SHA-256 (hexadécimal) du zip Cyberlearn déposé : un nouveau dépôt identique
+     * ne remplace pas le rendu existant.
+     */
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    /**
+     * Empreinte du zip Cyberlearn dont est issu le zip restructuré, enregistrée avec son chemin
+     * une fois le zip en place : le zip restructuré correspond au rendu si elle est égale à
+     * {@link #contentHash}.
+     */
+    @Column(name = "structured_content_hash", length = 64)
+    private String structuredContentHash;
+
+    /**
+     * Empreinte SHA-256 (hexadécimal) du zip restructuré lui-même, utilisée comme ETag des
+     * téléchargements. Si le zip est rangé dans le magasin de blobs, empreinte de son manifeste :
+     * le zip reconstruit à partir d'un même manifeste est identique octet par octet.
+     */
+    @Column(name = "structured_file_hash", length = 64)
+    private String structuredFileHash;
+
     public Submission(String fileName, String pathStorage, String pathFileStructured) {
         this.fileName = fileName;
         this.pathStorage = pathStorage;
@@ -0,0 +1,9 @@
+package heg.backendspring.enums;
+
+public enum ProcessingJobStatus {
+    QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED;
+
+    public boolean isFinished() {
+        return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+    }
+}
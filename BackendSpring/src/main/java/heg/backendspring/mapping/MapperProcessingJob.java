@@ -0,0 +1,11 @@
+package heg.backendspring.mapping;
+
+import heg.backendspring.entity.ProcessingJob;
+import heg.backendspring.models.ProcessingJobDto;
+import org.mapstruct.Mapper;
+
+@Mapper(config = CentralConfig.class)
+public interface MapperProcessingJob {
+
+    ProcessingJobDto toDto(ProcessingJob entity);
+}
@@ -4,12 +4,16 @@ package heg.backendspring.mapping;
 import heg.backendspring.entity.Submission;
 import heg.backendspring.models.SubmissionDto;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 
 @Mapper(config = CentralConfig.class)
 public interface MapperSubmission {
 
     SubmissionDto toDto(Submission entity);
 
+    //Empreintes du zip restructuré : renseignées par la restructuration uniquement
+    @Mapping(target = "structuredContentHash", ignore = true)
+    @Mapping(target = "structuredFileHash", ignore = true)
     Submission toEntity(SubmissionDto dto);
 
 }
@@ -15,10 +15,15 @@ public interface MapperTP {
     @Mapping(source = "course.id", target = "courseId")
     TPDto toDto(TP entity);
 
+    //Empreintes du zip restructuré : renseignées par la restructuration uniquement
     @Mapping(target = "course", ignore = true)
+    @Mapping(target = "submission.structuredContentHash", ignore = true)
+    @Mapping(target = "submission.structuredFileHash", ignore = true)
     TP toEntity(TPDto dto);
 
     //Update entity from dto
     @Mapping(target = "course", ignore = true)
+    @Mapping(target = "submission.structuredContentHash", ignore = true)
+    @Mapping(target = "submission.structuredFileHash", ignore = true)
     void updateEntityFromDto(TPDto dto, @MappingTarget TP entity);
 }
@@ -0,0 +1,12 @@
+package heg.backendspring.models;
+
+public record CourseStorageStatsDto(
+        Long courseId,
+        int archives,
+        long files,
+        long uniqueFiles,
+        long logicalBytes,
+        long storedBytes,
+        double dedupRatio
+) {
+}
@@ -0,0 +1,23 @@
+package heg.backendspring.models;
+
+import heg.backendspring.enums.ProcessingJobStatus;
+
+import java.time.LocalDateTime;
+
+public record ProcessingJobDto(
+        Long id,
+        Long courseId,
+        Integer tpNo,
+        ProcessingJobStatus status,
+        Integer studentsTotal,
+        Integer studentsProcessed,
+        Integer studentFailures,
+        String workerId,
+        Integer attempts,
+        String errorMessage,
+        String errorReport,
+        LocalDateTime createdAt,
+        LocalDateTime startedAt,
+        LocalDateTime finishedAt
+) {
+}
@@ -0,0 +1,12 @@
+package heg.backendspring.models;
+
+public record ProcessingJobProgressDto(
+        Long jobId,
+        String stage,
+        Integer studentsProcessed,
+        Integer studentsTotal,
+        Integer studentFailures,
+        Long bytesExtracted,
+        Long bytesWritten
+) {
+}
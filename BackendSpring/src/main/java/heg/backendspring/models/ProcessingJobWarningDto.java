@@ -0,0 +1,9 @@
+package heg.backendspring.models;
+
+public record ProcessingJobWarningDto(
+        Long jobId,
+        String student,
+        String message,
+        Boolean limitExceeded
+) {
+}
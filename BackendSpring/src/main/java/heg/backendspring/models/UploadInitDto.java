@@ -0,0 +1,7 @@
+package heg.backendspring.models;
+
+public record UploadInitDto(
+        Long fileSize,
+        Integer chunkSize
+) {
+}
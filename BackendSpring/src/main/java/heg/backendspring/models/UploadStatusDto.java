@@ -0,0 +1,15 @@
+package heg.backendspring.models;
+
+import java.util.List;
+
+public record UploadStatusDto(
+        String uploadId,
+        Long courseId,
+        Integer tpNo,
+        Long fileSize,
+        Integer chunkSize,
+        Integer chunkCount,
+        Long receivedBytes,
+        List<Integer> missingChunks
+) {
+}
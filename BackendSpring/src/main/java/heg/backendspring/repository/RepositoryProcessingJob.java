@@ -0,0 +1,47 @@
+package heg.backendspring.repository;
+
+import heg.backendspring.entity.ProcessingJob;
+import heg.backendspring.enums.ProcessingJobStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface RepositoryProcessingJob extends JpaRepository<ProcessingJob, Long> {
+
+    //Traitement le plus récent d'un TP parmi les états donnés
+    Optional<ProcessingJob> findFirstByCourseIdAndTpNoAndStatusInOrderByIdDesc(Long courseId, int tpNo,
+                                                                              Collection<ProcessingJobStatus> statuses);
+
+    //Traitements dont le bail a expiré (worker arrêté ou injoignable)
+    @Query("SELECT j.id FROM ProcessingJob j WHERE j.status = :status AND j.leaseUntil < :now")
+    List<Long> findIdsByStatusAndLeaseExpired(ProcessingJobStatus status, LocalDateTime now);
+
+    //Traitements dans un état donné dont le worker commence par un préfixe (instance "nœud/")
+    List<ProcessingJob> findAllByStatusAndWorkerIdStartingWith(ProcessingJobStatus status, String prefix);
+
+    //Lire un traitement en verrouillant sa ligne jusqu'à la fin de la transaction
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<ProcessingJob> findWithLockById(Long id);
+
+    //Réserver le plus ancien traitement en attente (verrou jusqu'à la fin de la transaction).
+    //SKIP LOCKED : les lignes verrouillées par un autre worker sont sautées au lieu d'attendre,
+    //chaque worker obtient un traitement différent. Un TP n'a qu'un traitement actif (contrainte
+    //uk_processing_job_active_tp) ; la condition sur RUNNING ne sert qu'aux lignes antérieures à la contrainte.
+    @Query(value = """
+            SELECT * FROM processing_job j
+            WHERE j.status = 'QUEUED'
+              AND NOT EXISTS (SELECT 1 FROM processing_job r
+                              WHERE r.course_id = j.course_id AND r.tp_no = j.tp_no AND r.status = 'RUNNING')
+            ORDER BY j.created_at, j.id
+            LIMIT 1
+            FOR UPDATE SKIP LOCKED""", nativeQuery = true)
+    Optional<ProcessingJob> lockNextQueued();
+}
@@ -0,0 +1,18 @@
+package heg.backendspring.repository;
+
+import heg.backendspring.entity.ProcessingJobJournal;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface RepositoryProcessingJobJournal extends JpaRepository<ProcessingJobJournal, Long> {
+
+    //Journal complet d'un traitement, dans l'ordre
+    List<ProcessingJobJournal> findAllByJobIdOrderById(Long jobId);
+
+    //Dernière étape atteinte par une tentative d'un traitement
+    Optional<ProcessingJobJournal> findFirstByJobIdAndAttemptAndStageNotNullOrderByIdDesc(Long jobId, int attempt);
+}
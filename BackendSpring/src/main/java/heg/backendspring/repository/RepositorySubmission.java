@@ -1,9 +1,26 @@
 package heg.backendspring.repository;
 
 import heg.backendspring.entity.Submission;
+import jakarta.transaction.Transactional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface RepositorySubmission extends JpaRepository<Submission, Long> {
+
+    //Enregistrer le chemin du zip restructuré d'un rendu, l'empreinte du zip dont il est issu
+    //et celle du zip restructuré (sans recharger l'entité)
+    @Transactional
+    @Modifying
+    @Query("UPDATE Submission s SET s.pathFileStructured = :path, s.structuredContentHash = :contentHash, "
+            + "s.structuredFileHash = :fileHash WHERE s.id = :id")
+    int updatePathFileStructured(Long id, String path, String contentHash, String fileHash);
+
+    //Chemins des zips restructurés de tous les rendus (blobs encore référencés)
+    @Query("SELECT s.pathFileStructured FROM Submission s WHERE s.pathFileStructured IS NOT NULL")
+    List<String> findAllPathFileStructured();
 }
@@ -4,21 +4,32 @@ import heg.backendspring.api.CourseApi;
 import heg.backendspring.api.SubmissionApi;
 import heg.backendspring.models.*;
 import heg.backendspring.service.ServiceCourse;
+import heg.backendspring.service.ServiceProcessingJob;
+import heg.backendspring.service.ServiceSubmission;
+import heg.backendspring.service.ServiceUpload;
+import heg.backendspring.utils.FileDownload;
 import heg.backendspring.utils.FileUploadForm;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 
@@ -27,6 +38,9 @@ import java.util.Optional;
 @Slf4j
 public class ControllerCourse implements CourseApi, SubmissionApi {
     private final ServiceCourse serviceCourse;
+    private final ServiceUpload serviceUpload;
+    private final ServiceProcessingJob serviceProcessingJob;
+    private final ServiceSubmission serviceSubmission;
 
     @Override
     public Optional<NativeWebRequest> getRequest() {
@@ -57,13 +71,25 @@ public class ControllerCourse implements CourseApi, SubmissionApi {
     }
 
     @Override
-    public ResponseEntity<TPDto> startProcessSubmission(Long courseId, Integer tpNo) {
-        try {
-            serviceCourse.startZipProcess(courseId, tpNo);
-            return ResponseEntity.accepted().build();
-        } catch (IOException e) {
-            return ResponseEntity.status(500).build();
-        }
+    public ResponseEntity<ProcessingJobDto> startProcessSubmission(Long courseId, Integer tpNo) {
+        return ResponseEntity.accepted().body(serviceProcessingJob.submit(courseId, tpNo));
+    }
+
+    @Override
+    public ResponseEntity<ProcessingJobDto> getProcessingJob(Long jobId) {
+        return ResponseEntity.ok(serviceProcessingJob.getJob(jobId));
+    }
+
+    @Override
+    public ResponseEntity<SseEmitter> getProcessingJobEvents(Long jobId) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(serviceProcessingJob.subscribe(jobId));
+    }
+
+    @Override
+    public ResponseEntity<ProcessingJobDto> cancelProcessingJob(Long jobId) {
+        return ResponseEntity.ok(serviceProcessingJob.cancel(jobId));
     }
 
 
@@ -104,24 +130,127 @@ public class ControllerCourse implements CourseApi, SubmissionApi {
         }
     }
 
+    /**
+     * Le corps est lu en flux (InputStreamResource) : ni spool multipart, ni copie en mémoire.
+     */
+    @Override
+    public ResponseEntity<SubmissionDto> addSubmissionStream(Long courseId, Integer tpNo, InputStreamResource body) {
+        try (InputStream data = body.getInputStream()) {
+            return ResponseEntity.status(201).body(serviceCourse.addSubmissionStreamToTP(courseId, tpNo, data));
+        } catch (IOException e) {
+            log.error("Unable to store streamed submission for course {} TP {}", courseId, tpNo, e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    @Override
+    public ResponseEntity<UploadStatusDto> initUpload(Long courseId, Integer tpNo, UploadInitDto uploadInitDto) {
+        try {
+            return ResponseEntity.status(201).body(serviceUpload.initUpload(courseId, tpNo, uploadInitDto));
+        } catch (IOException e) {
+            log.error("Unable to open upload for course {} TP {}", courseId, tpNo, e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    @Override
+    public ResponseEntity<UploadStatusDto> getUploadStatus(String uploadId) {
+        try {
+            return ResponseEntity.ok(serviceUpload.getUploadStatus(uploadId));
+        } catch (IOException e) {
+            log.error("Unable to read upload {}", uploadId, e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    /**
+     * Comme pour addSubmissionStream, le morceau est copié en flux dans le fichier de session.
+     */
+    @Override
+    public ResponseEntity<UploadStatusDto> uploadChunk(String uploadId, Long offset, InputStreamResource body) {
+        try (InputStream data = body.getInputStream()) {
+            return ResponseEntity.ok(serviceUpload.putChunk(uploadId, offset, data));
+        } catch (IOException e) {
+            log.error("Unable to store chunk at offset {} of upload {}", offset, uploadId, e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    @Override
+    public ResponseEntity<SubmissionDto> completeUpload(String uploadId) {
+        try {
+            return ResponseEntity.status(201).body(serviceUpload.completeUpload(uploadId));
+        } catch (IOException e) {
+            log.error("Unable to complete upload {}", uploadId, e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    /**
+     * La réponse (200, 206, 304 ou 416) est écrite directement par {@link FileDownload} :
+     * reprise des téléchargements interrompus (Range, If-Range), ETag et envoi par sendfile.
+     */
     @Override
     public ResponseEntity<Resource> downloadStructuredSubmission(Long courseId, Integer tpNo) {
         // Récupère le fichier zip restructuré
-        File file = serviceCourse.getTPSubmissionRestructurated(courseId, tpNo);
+        Optional<FileDownload.Source> source = serviceCourse.getTPSubmissionDownloadRestructurated(courseId, tpNo);
 
-        if (file == null || !file.exists()) {
+        if (source.isEmpty() || !Files.isRegularFile(source.get().file())) {
             throw new EntityNotFoundException(
                     "Aucun fichier restructuré trouvé pour le cours " + courseId + " et le TP " + tpNo
             );
         }
 
-        Resource resource = new FileSystemResource(file);
+        return sendFile(source.get());
+    }
 
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getName() + "\"")
-                .contentLength(file.length())
-                .contentType(MediaType.APPLICATION_OCTET_STREAM) // ou MediaType.valueOf("application/zip")
-                .body(resource);
+    /**
+     * Le zip des dossiers demandés est écrit directement dans la réponse, au fur et à mesure
+     * de la copie des entrées. Un seul étudiant dont l'archive a été générée
+     * (restructuring.student-archives) : son archive est servie telle quelle.
+     */
+    @Override
+    public ResponseEntity<Resource> downloadStructuredStudents(Long courseId, Integer tpNo, List<String> student) {
+        if (student != null && new HashSet<>(student).size() == 1) {
+            Optional<FileDownload.Source> archive = serviceCourse.getTPStudentArchiveDownload(courseId, tpNo, student.get(0));
+            if (archive.isPresent()) {
+                return sendFile(archive.get());
+            }
+        }
+        Optional<FileDownload.Source> source = serviceCourse.getTPSubmissionDownloadRestructurated(courseId, tpNo);
+
+        if (source.isEmpty() || !Files.isRegularFile(source.get().file())) {
+            throw new EntityNotFoundException(
+                    "Aucun fichier restructuré trouvé pour le cours " + courseId + " et le TP " + tpNo
+            );
+        }
+
+        HttpServletResponse response = ((ServletRequestAttributes) RequestContextHolder.currentRequestAttributes()).getResponse();
+        try (ServiceSubmission.StudentSelection selection = serviceSubmission.selectStudents(source.get().file(), student)) {
+            String fileName = selection.students().size() == 1
+                    ? "TP" + tpNo + "_" + selection.students().get(0) + ".zip"
+                    : "TP" + tpNo + "_RenduRestructuration_" + selection.students().size() + "_etudiants.zip";
+            response.setContentType("application/zip");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString());
+            serviceSubmission.writeStudents(selection, response.getOutputStream());
+        } catch (IOException e) {
+            if (!response.isCommitted()) {
+                log.error("Unable to send students {} of TP {} of course id={}", student, tpNo, courseId, e);
+                return ResponseEntity.status(500).build();
+            }
+            log.warn("Download of students {} of TP {} interrupted → {}", student, tpNo, e.getMessage());
+        }
+        return null;
+    }
+
+    @Override
+    public ResponseEntity<CourseStorageStatsDto> getCourseStorageStats(Long courseId) {
+        try {
+            return ResponseEntity.ok(serviceCourse.getCourseStorageStats(courseId));
+        } catch (IOException e) {
+            log.error("Unable to compute storage stats for course {}", courseId, e);
+            return ResponseEntity.status(500).build();
+        }
     }
 
     @Override
@@ -165,5 +294,22 @@ public class ControllerCourse implements CourseApi, SubmissionApi {
 
     }
 
-
+    /**
+     * Envoie un fichier avec requêtes conditionnelles et reprise ({@link FileDownload}) ; la réponse
+     * est écrite directement, sans corps retourné.
+     */
+    private ResponseEntity<Resource> sendFile(FileDownload.Source source) {
+        ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.currentRequestAttributes();
+        try {
+            FileDownload.send(attributes.getRequest(), attributes.getResponse(), source);
+        } catch (IOException e) {
+            if (attributes.getResponse() == null || !attributes.getResponse().isCommitted()) {
+                log.error("Unable to send {}", source.file(), e);
+                return ResponseEntity.status(500).build();
+            }
+            // Client déconnecté en cours de route : il reprendra avec une requête Range
+            log.warn("Download of {} interrupted → {}", source.file(), e.getMessage());
+        }
+        return null;
+    }
 }
@@ -0,0 +1,395 @@
+package heg.backendspring.service;
+
+import heg.backendspring.config.RestructuringProperties;
+import heg.backendspring.entity.Course;
+import heg.backendspring.models.CourseStorageStatsDto;
+import heg.backendspring.repository.RepositorySubmission;
+import heg.backendspring.utils.BlobManifest;
+import heg.backendspring.utils.BlobStore;
+import heg.backendspring.utils.SubmissionIngest;
+import heg.backendspring.utils.ZipUtils;
+import heg.backendspring.utils.ZipWriteOptions;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Déduplication des zips restructurés (restructuring.dedup).
+ * <p>
+ * Les fichiers d'un zip restructuré sont rangés dans un {@link BlobStore} commun à tous les
+ * cours : le squelette fourni aux étudiants, le pom.xml ou les ressources communes ne sont
+ * stockés qu'une fois. Le zip est remplacé par un {@link BlobManifest} et reconstruit à partir
+ * du magasin lorsqu'il est demandé (téléchargement), dans un cache borné.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ServiceBlobStore {
+
+    private static final String CACHE_DIR = "cache";
+    private static final int LOCK_STRIPES = 64;
+
+    @Value("${zip-storage.path}")
+    private String zipStoragePath;
+
+    private BlobStore blobStore;
+    //Verrous des zips reconstruits, répartis par chemin
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    //Dernière demande de chaque zip reconstruit (ordre d'éviction)
+    private final Map<Path, Long> lastUsed = new ConcurrentHashMap<>();
+
+    //==============================
+    //       DEPENDANCES
+    //==============================
+    private final RestructuringProperties restructuringProperties;
+    private final RepositorySubmission repositorySubmission;
+
+    @PostConstruct
+    public void init() {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public boolean isEnabled() {
+        return restructuringProperties.getDedup().isEnabled();
+    }
+
+    /**
+     * Range le contenu de {@code zip} dans le magasin, écrit son manifeste à côté puis
+     * supprime le zip. La méthode de chaque entrée et le niveau de compression de
+     * {@code options} sont enregistrés dans le manifeste, pour que le zip reconstruit ne dépende
+     * pas de la configuration du moment.
+     */
+    public BlobManifest store(Path zip, ZipWriteOptions options) throws IOException {
+        BlobStore store = blobStore();
+        List<BlobManifest.Entry> entries = new ArrayList<>();
+        long logicalBytes = 0;
+        long addedBytes = 0;
+
+        try (ZipFile zipFile = ZipFile.builder().setPath(zip).get()) {
+            for (ZipArchiveEntry entry : Collections.list(zipFile.getEntriesInPhysicalOrder())) {
+                if (entry.isDirectory()) {
+                    entries.add(new BlobManifest.Entry(entry.getName(), null, 0, entry.getTime(), methodOf(entry)));
+                    continue;
+                }
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    BlobStore.Stored stored = store.put(in);
+                    entries.add(new BlobManifest.Entry(entry.getName(), stored.hash(), stored.size(), entry.getTime(),
+                            methodOf(entry)));
+                    logicalBytes += stored.size();
+                    if (stored.added()) {
+                        addedBytes += stored.size();
+                    }
+                }
+            }
+        }
+
+        BlobManifest manifest = new BlobManifest(options.compressionLevel(), entries);
+        manifest.write(BlobManifest.pathFor(zip));
+        Files.delete(zip);
+        log.info("Stored {} in blob store: {} byte(s) of files, {} new byte(s)", zip.getFileName(), logicalBytes, addedBytes);
+        return manifest;
+    }
+
+    /**
+     * Retourne le manifeste de {@code zip} s'il a été rangé dans le magasin.
+     */
+    public Optional<BlobManifest> findManifest(Path zip) throws IOException {
+        Path manifest = BlobManifest.pathFor(zip);
+        return Files.isRegularFile(manifest) ? Optional.of(BlobManifest.read(manifest)) : Optional.empty();
+    }
+
+    /**
+     * Empreinte SHA-256 du manifeste de {@code zip} : c'est aussi celle du contenu du zip
+     * reconstruit, identique octet par octet d'une reconstruction à l'autre (ETag).
+     */
+    public String manifestHash(Path zip) throws IOException {
+        return SubmissionIngest.sha256Of(List.of(BlobManifest.pathFor(zip)));
+    }
+
+    /**
+     * Zip à télécharger pour {@code zip} : le zip lui-même s'il existe sur le disque, sinon le
+     * zip reconstruit à partir de son manifeste dans le cache du magasin ("cache/&lt;sha256 du
+     * manifeste&gt;.zip"). Le cache est borné (restructuring.dedup.cache-size) : au-delà, les zips
+     * les moins récemment demandés sont supprimés. Deux reconstructions du même manifeste sont
+     * sérialisées, celles de manifestes différents se font en parallèle.
+     *
+     * @return le zip à servir, ou {@code zip} (inexistant) s'il n'a pas de manifeste
+     */
+    public Path materialize(Path zip) throws IOException {
+        if (Files.exists(zip)) {
+            return zip;
+        }
+        Path manifestFile = BlobManifest.pathFor(zip);
+        if (!Files.isRegularFile(manifestFile)) {
+            return zip;
+        }
+
+        Path cached = cacheDir().resolve(manifestHash(zip) + ".zip");
+        ReentrantLock lock = lockFor(cached);
+        lock.lock();
+        try {
+            if (!Files.exists(cached)) {
+                write(BlobManifest.read(manifestFile), cached);
+                log.info("Materialized {} from blob store into {}", zip, cached.getFileName());
+            }
+            lastUsed.put(cached, System.currentTimeMillis());
+        } finally {
+            lock.unlock();
+        }
+        evict(cached);
+        return cached;
+    }
+
+    /**
+     * Remet {@code zip} en place à partir de son manifeste (copie du zip reconstruit), pour un
+     * traitement qui a besoin du fichier à son emplacement d'origine (restructuration incrémentale).
+     */
+    public void restore(Path zip) throws IOException {
+        Path materialized = materialize(zip);
+        if (materialized.equals(zip) || Files.notExists(materialized)) {
+            return;
+        }
+        Path tmp = zip.resolveSibling(zip.getFileName() + ".tmp");
+        try {
+            Files.copy(materialized, tmp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmp, zip, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Supprime les blobs qui ne sont plus référencés par le manifeste d'aucun rendu, ainsi que
+     * les zips reconstruits des manifestes disparus (à appeler après la suppression d'un TP ou
+     * d'un cours). Seuls les rendus enregistrés en base comptent : les manifestes restés sur le
+     * disque après la suppression de leur cours ne retiennent aucun blob. Les blobs modifiés
+     * depuis moins de restructuring.dedup.gc-grace-period sont conservés (restructuration en cours).
+     *
+     * @return le nombre de blobs supprimés
+     */
+    public int collectGarbage() throws IOException {
+        Path root = Paths.get(restructuringProperties.getDedup().getStorePath()).toAbsolutePath().normalize();
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+
+        //Marquage : contenus et manifestes des rendus existants
+        Set<String> live = new HashSet<>();
+        Set<Path> liveCache = new HashSet<>();
+        for (String path : repositorySubmission.findAllPathFileStructured()) {
+            Path zip = Paths.get(path);
+            Path manifestFile = BlobManifest.pathFor(zip);
+            if (!Files.isRegularFile(manifestFile)) {
+                continue;
+            }
+            for (BlobManifest.Entry entry : BlobManifest.read(manifestFile).entries()) {
+                if (!entry.directory()) {
+                    live.add(entry.sha256());
+                }
+            }
+            liveCache.add(cacheDir().resolve(manifestHash(zip) + ".zip"));
+        }
+
+        //Balayage
+        Instant olderThan = Instant.now().minus(restructuringProperties.getDedup().getGcGracePeriod());
+        BlobStore.Swept swept = blobStore().sweep(live, olderThan);
+        for (Path cached : cachedZips()) {
+            if (!liveCache.contains(cached)) {
+                removeCached(cached);
+            }
+        }
+        log.info("Blob store garbage collection: {} blob(s) still referenced, {} blob(s) removed ({} byte(s))",
+                live.size(), swept.blobs(), swept.bytes());
+        return swept.blobs();
+    }
+
+    /**
+     * {@link #collectGarbage()} une fois la transaction courante validée (immédiatement hors
+     * transaction) : les rendus supprimés par la transaction ne retiennent alors plus leurs blobs,
+     * et une transaction annulée ne supprime rien. Un échec est journalisé sans être propagé.
+     */
+    public void collectGarbageAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            collectGarbageQuietly();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                collectGarbageQuietly();
+            }
+        });
+    }
+
+    /**
+     * Statistiques de déduplication des manifestes d'un cours : volume des fichiers
+     * référencés et volume réellement stocké (contenus distincts).
+     */
+    public CourseStorageStatsDto statsForCourse(Course course) throws IOException {
+        Path courseRoot = Paths.get(zipStoragePath, course.getCode());
+        int archives = 0;
+        long files = 0;
+        long logicalBytes = 0;
+        Map<String, Long> unique = new HashMap<>();
+
+        if (Files.isDirectory(courseRoot)) {
+            List<Path> manifests;
+            try (Stream<Path> paths = Files.walk(courseRoot)) {
+                manifests = paths.filter(p -> p.getFileName().toString().endsWith(".manifest.json")).toList();
+            }
+            for (Path manifest : manifests) {
+                archives++;
+                for (BlobManifest.Entry entry : BlobManifest.read(manifest).entries()) {
+                    if (entry.directory()) {
+                        continue;
+                    }
+                    files++;
+                    logicalBytes += entry.size();
+                    unique.putIfAbsent(entry.sha256(), entry.size());
+                }
+            }
+        }
+
+        long storedBytes = unique.values().stream().mapToLong(Long::longValue).sum();
+        double ratio = storedBytes == 0 ? 1.0 : (double) logicalBytes / storedBytes;
+        return new CourseStorageStatsDto(course.getId(), archives, files, unique.size(), logicalBytes, storedBytes, ratio);
+    }
+
+    // --------------------------------------------------------------------------
+    // Méthodes privées "utilitaires"
+    // --------------------------------------------------------------------------
+
+    private static int methodOf(ZipArchiveEntry entry) {
+        return entry.getMethod() == ZipArchiveEntry.STORED ? ZipArchiveEntry.STORED : ZipArchiveEntry.DEFLATED;
+    }
+
+    private void collectGarbageQuietly() {
+        try {
+            collectGarbage();
+        } catch (IOException | RuntimeException e) {
+            log.error("Blob store garbage collection failed", e);
+        }
+    }
+
+    /**
+     * Écrit le zip décrit par {@code manifest} dans {@code target} (fichier temporaire puis
+     * renommage). Tout ce qui détermine les octets écrits vient du manifeste : méthode de chaque
+     * entrée, niveau de compression et dates (date fixe pour une entrée qui n'en a pas).
+     */
+    private void write(BlobManifest manifest, Path target) throws IOException {
+        BlobStore store = blobStore();
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(tmp)) {
+                out.setLevel(manifest.levelOrDefault());
+                for (BlobManifest.Entry entry : manifest.entries()) {
+                    ZipArchiveEntry zipEntry = new ZipArchiveEntry(entry.name());
+                    zipEntry.setMethod(entry.methodOrDefault());
+                    zipEntry.setTime(ZipUtils.entryTime(entry.time()));
+                    out.putArchiveEntry(zipEntry);
+                    if (!entry.directory()) {
+                        try (InputStream in = store.open(entry.sha256())) {
+                            in.transferTo(out);
+                        }
+                    }
+                    out.closeArchiveEntry();
+                }
+            }
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Supprime les zips reconstruits les moins récemment demandés tant que le cache dépasse
+     * restructuring.dedup.cache-size ; {@code keep} (le zip qui vient d'être demandé) est conservé.
+     */
+    private void evict(Path keep) throws IOException {
+        long limit = restructuringProperties.getDedup().getCacheSize().toBytes();
+        Map<Path, Long> sizes = new HashMap<>();
+        long total = 0;
+        for (Path cached : cachedZips()) {
+            try {
+                long size = Files.size(cached);
+                sizes.put(cached, size);
+                total += size;
+                //Zips présents au démarrage : date de modification à défaut de dernière demande
+                lastUsed.putIfAbsent(cached, Files.getLastModifiedTime(cached).toMillis());
+            } catch (NoSuchFileException e) {
+                lastUsed.remove(cached);
+            }
+        }
+        if (total <= limit) {
+            return;
+        }
+
+        List<Path> oldestFirst = new ArrayList<>(sizes.keySet());
+        oldestFirst.sort(Comparator.comparingLong(cached -> lastUsed.getOrDefault(cached, 0L)));
+        for (Path cached : oldestFirst) {
+            if (total <= limit) {
+                break;
+            }
+            if (!cached.equals(keep) && removeCached(cached)) {
+                total -= sizes.get(cached);
+                log.info("Evicted materialized zip {} from blob store cache", cached.getFileName());
+            }
+        }
+    }
+
+    private boolean removeCached(Path cached) throws IOException {
+        ReentrantLock lock = lockFor(cached);
+        lock.lock();
+        try {
+            lastUsed.remove(cached);
+            return Files.deleteIfExists(cached);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Path> cachedZips() throws IOException {
+        Path cacheDir = cacheDir();
+        try (Stream<Path> paths = Files.list(cacheDir)) {
+            return paths.filter(p -> p.getFileName().toString().endsWith(".zip")).toList();
+        }
+    }
+
+    private ReentrantLock lockFor(Path cached) {
+        return locks[Math.floorMod(cached.hashCode(), locks.length)];
+    }
+
+    private Path cacheDir() throws IOException {
+        return Files.createDirectories(blobStore().getRoot().resolve(CACHE_DIR));
+    }
+
+    private synchronized BlobStore blobStore() throws IOException {
+        Path root = Paths.get(restructuringProperties.getDedup().getStorePath()).toAbsolutePath().normalize();
+        if (blobStore == null || !blobStore.getRoot().equals(root)) {
+            blobStore = new BlobStore(root);
+        }
+        return blobStore;
+    }
+}
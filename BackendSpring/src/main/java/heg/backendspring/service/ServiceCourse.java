@@ -4,6 +4,7 @@ package heg.backendspring.service;
 import heg.backendspring.entity.Course;
 import heg.backendspring.entity.Student;
 import heg.backendspring.entity.TP;
+import heg.backendspring.enums.ProcessingJobStatus;
 import heg.backendspring.enums.StudyType;
 import heg.backendspring.exception.CourseErrorCode;
 import heg.backendspring.exception.CourseException;
@@ -12,13 +13,18 @@ import heg.backendspring.mapping.MapperStudent;
 import heg.backendspring.mapping.MapperTP;
 import heg.backendspring.models.*;
 import heg.backendspring.repository.RepositoryCourse;
+import heg.backendspring.repository.RepositoryProcessingJob;
 import heg.backendspring.repository.RepositoryStudent;
+import heg.backendspring.utils.FileDownload;
+import heg.backendspring.utils.RestructuringReport;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.File;
 import java.io.IOException;
@@ -48,6 +54,11 @@ public class ServiceCourse {
     private final MapperTP mapperTP;
     private final ServiceSubmission serviceSubmission;
     private final ServiceTP serviceTP;
+    private final ServiceBlobStore serviceBlobStore;
+    private final ServiceTPLocks serviceTPLocks;
+    private final ServiceScratchSpace serviceScratchSpace;
+    private final RepositoryProcessingJob repositoryProcessingJob;
+    private final TransactionTemplate transactionTemplate;
 
 
     //==============================
@@ -57,6 +68,7 @@ public class ServiceCourse {
     /**
      * Trouver un cours par son id
      */
+    @Transactional
     public Optional<CourseDto> findCourseById(Long courseId) {
         return repositoryCourse.findById(courseId)
                 .map(mapperCourse::toDto);
@@ -65,6 +77,7 @@ public class ServiceCourse {
     /**
      * Trouver tous les cours
      */
+    @Transactional
     public List<CourseDto> findAllCourses() {
         return repositoryCourse.findAll()
                 .stream()
@@ -127,6 +140,8 @@ public class ServiceCourse {
         }
         course.getStudents().clear();
         repositoryCourse.deleteById(courseId);
+        // Blobs des rendus du cours qui ne sont plus référencés (dédoublonnage)
+        serviceBlobStore.collectGarbageAfterCommit();
         log.info("Deleted course with id: {}", courseId);
     }
 
@@ -243,6 +258,7 @@ public class ServiceCourse {
      *
      * @param no : numéro du TP (pas l'id)
      */
+    @Transactional
     public TPDto addTPtoCourse(Long idCourse, int no) {
         Course course = repositoryCourse.findById(idCourse).get();
         //throw exception si le TP existe déjà
@@ -283,15 +299,17 @@ public class ServiceCourse {
      */
     @Transactional
     public void deleteTPFromCourseByNo(Long idCourse, int no) {
-        Optional<TP> tpOpt = repositoryCourse.findTPByCourseIdAndNo(idCourse, no);
-        if (tpOpt.isPresent()) {
-            TP tp = tpOpt.get();
-            Course course = tp.getCourse();
-            course.getTps().remove(tp);
-            repositoryCourse.save(course);
-            log.info("Deleted TP {} from course {}", no, idCourse);
-            //Delete the TP entity and manage folders if needed
-            serviceTP.deleteTP(tp.getId());
+        try (ServiceTPLocks.TPLock ignored = serviceTPLocks.lock(idCourse, no)) {
+            Optional<TP> tpOpt = repositoryCourse.findTPByCourseIdAndNo(idCourse, no);
+            if (tpOpt.isPresent()) {
+                TP tp = tpOpt.get();
+                Course course = tp.getCourse();
+                course.getTps().remove(tp);
+                repositoryCourse.save(course);
+                log.info("Deleted TP {} from course {}", no, idCourse);
+                //Delete the TP entity and manage folders if needed
+                serviceTP.deleteTP(tp.getId());
+            }
         }
     }
 
@@ -320,36 +338,69 @@ public class ServiceCourse {
 
     /**
      * Méthode permettant d'ajouter un rendu zip pour un TP d'un cours
+     * (sans transaction pendant la copie du zip, voir {@link ServiceTP#addSubmissionToTP})
      */
-    @Transactional
     public SubmissionDto addSubmissionToTP(Long idCourse, int tpNo, InputStream zipFile) {
         Optional<Course> courseOpt = repositoryCourse.findById(idCourse);
         if (courseOpt.isEmpty()) {
             throw new EntityNotFoundException("Course not found with id: " + idCourse);
         } else {
             log.info("Adding submission to TP no={} for course id={}", tpNo, idCourse);
-            Optional<TP> tpOpt = repositoryCourse.findTPByCourseIdAndNo(idCourse, tpNo);
-            TPDto tpDto = serviceTP.addSubmissionToTP(tpOpt.get().getId(), zipFile);
-            return tpDto.submission();
+            try (ServiceTPLocks.TPLock ignored = serviceTPLocks.lock(idCourse, tpNo)) {
+                Optional<TP> tpOpt = repositoryCourse.findTPByCourseIdAndNo(idCourse, tpNo);
+                TPDto tpDto = serviceTP.addSubmissionToTP(tpOpt.get().getId(), zipFile);
+                return tpDto.submission();
+            }
         }
 
     }
 
     /**
-     * Méthode permettant de lancer le traitement du rendu pour un TP
+     * Méthode permettant d'ajouter un rendu zip pour un TP d'un cours, lu directement depuis
+     * le corps de la requête (écriture unique, empreinte et validation en un seul passage)
      */
-    @Transactional
-    public void startZipProcess(Long idCours, int idTp) throws IOException {
-        Course course = repositoryCourse.findById(idCours)
-                .orElseThrow(() -> new EntityNotFoundException("Course not found with id: " + idCours));
-
-        TP tp = repositoryCourse.findTPByCourseIdAndNo(idCours, idTp)
+    public SubmissionDto addSubmissionStreamToTP(Long idCourse, int tpNo, InputStream zipFile) throws IOException {
+        repositoryCourse.findById(idCourse)
+                .orElseThrow(() -> new EntityNotFoundException("Course not found with id: " + idCourse));
+        TP tp = repositoryCourse.findTPByCourseIdAndNo(idCourse, tpNo)
                 .orElseThrow(() -> new EntityNotFoundException(
-                        "TP number " + idTp + " not found for course id: " + idCours
+                        "TP number " + tpNo + " not found for course id: " + idCourse
                 ));
-        log.info("Starting zip process for course id={} tp no={}", idCours, idTp);
-        serviceSubmission.processZipSubmission(course, tp);
+        log.info("Streaming submission to TP no={} for course id={}", tpNo, idCourse);
+        try (ServiceTPLocks.TPLock ignored = serviceTPLocks.lock(idCourse, tpNo)) {
+            return serviceTP.addSubmissionStreamToTP(tp.getId(), zipFile).submission();
+        }
+    }
+
+    /**
+     * Méthode permettant de lancer le traitement du rendu pour un TP
+     */
+    public void startZipProcess(Long idCours, int idTp) throws IOException {
+        startZipProcess(idCours, idTp, new RestructuringReport());
+    }
 
+    /**
+     * Lance le traitement du rendu d'un TP en alimentant {@code report} (progression et erreurs
+     * par étudiant) ; utilisé par les traitements en arrière-plan ({@link ServiceProcessingJob}).
+     * Le verrou du TP est détenu pendant tout le traitement : un dépôt ou une mise à jour des
+     * statuts du même TP attend la fin de la restructuration.
+     * <p>
+     * Aucune transaction n'est détenue pendant le traitement : le cours et le TP sont lus
+     * (lectures courtes, verrou du TP pris), les archives sont traitées sans connexion à la
+     * base, puis le chemin du zip restructuré est enregistré (écriture courte).
+     */
+    public RestructuringReport startZipProcess(Long idCours, int idTp, RestructuringReport report) throws IOException {
+        try (ServiceTPLocks.TPLock ignored = serviceTPLocks.lock(idCours, idTp)) {
+            Course course = repositoryCourse.findById(idCours)
+                    .orElseThrow(() -> new EntityNotFoundException("Course not found with id: " + idCours));
+
+            TP tp = repositoryCourse.findTPByCourseIdAndNo(idCours, idTp)
+                    .orElseThrow(() -> new EntityNotFoundException(
+                            "TP number " + idTp + " not found for course id: " + idCours
+                    ));
+            log.info("Starting zip process for course id={} tp no={}", idCours, idTp);
+            return serviceSubmission.processZipSubmission(course, tp, report);
+        }
     }
 
     /**
@@ -360,22 +411,23 @@ public class ServiceCourse {
      * 2. Pour chaque étudiant de la liste, créer un TP_Status et l'ajouter à la liste
      * 3. Vérifier dans la liste des rendus et mettre à jour le statut du TP_Status
      * 4. Persister la liste des TP_Status
+     * <p>
+     * Seules les lectures et l'enregistrement des statuts ouvrent une transaction (courte) ;
+     * la lecture du zip restructuré se fait sans connexion à la base.
      */
-    @Transactional
     public TPDto manageSubmissionsTP(Long idCourse, int tp_no) {
         log.info("Gestion des rendus pour le TP numéro : {} du cours id : {}", tp_no, idCourse);
-        Optional<Course> course = repositoryCourse.findById(idCourse);
-        if (course.isEmpty()) {
-            throw new EntityNotFoundException("Course not found with id: " + idCourse);
-        }
-
-        //Récupérer le TP
-        Optional<TP> tpOpt = repositoryCourse.findTPByCourseIdAndNo(idCourse, tp_no);
-        if (tpOpt.isEmpty()) {
-            log.info("not found");
-            throw new EntityNotFoundException("TP not found for course id=" + idCourse + " and tp no=" + tp_no);
+        try (ServiceTPLocks.TPLock ignored = serviceTPLocks.lock(idCourse, tp_no)) {
+            Course course = findCourseWithStudents(idCourse);
+
+            //Récupérer le TP
+            Optional<TP> tpOpt = repositoryCourse.findTPByCourseIdAndNo(idCourse, tp_no);
+            if (tpOpt.isEmpty()) {
+                log.info("not found");
+                throw new EntityNotFoundException("TP not found for course id=" + idCourse + " and tp no=" + tp_no);
+            }
+            return serviceTP.addTPStatusListToTP(tpOpt.get(), course.getStudents());
         }
-        return serviceTP.addTPStatusListToTP(tpOpt.get(), course.get().getStudents());
     }
 
     /**
@@ -390,6 +442,36 @@ public class ServiceCourse {
         return null;
     }
 
+    /**
+     * Zip restructuré d'un TP à télécharger, avec son empreinte (ETag des téléchargements)
+     */
+    public Optional<FileDownload.Source> getTPSubmissionDownloadRestructurated(Long idCourse, int tpNo) {
+        Optional<TPDto> tpDtoOpt = findTPFromCourseByNo(idCourse, tpNo);
+        if (tpDtoOpt.isPresent()) {
+            return serviceTP.getSubmissionDownloadRestructurated(tpDtoOpt.get());
+        }
+        log.error("TP not found for course id={} tp no={}", idCourse, tpNo);
+        return Optional.empty();
+    }
+
+    /**
+     * Archive d'un étudiant d'un TP à télécharger, si les archives par étudiant sont à jour
+     */
+    public Optional<FileDownload.Source> getTPStudentArchiveDownload(Long idCourse, int tpNo, String folder) {
+        return findTPFromCourseByNo(idCourse, tpNo)
+                .flatMap(tpDto -> serviceTP.getStudentArchiveDownload(tpDto, folder));
+    }
+
+
+    /**
+     * Statistiques de déduplication des rendus restructurés d'un cours
+     */
+    public CourseStorageStatsDto getCourseStorageStats(Long idCourse) throws IOException {
+        Course course = repositoryCourse.findById(idCourse)
+                .orElseThrow(() -> new EntityNotFoundException("Course not found with id: " + idCourse));
+        return serviceBlobStore.statsForCourse(course);
+    }
+
 
     /**
      * Méthode permettant de récupérer tous les TPStatus d'un TP d'un cours
@@ -411,27 +493,68 @@ public class ServiceCourse {
     /**
      * Méthode permettant de lancer la mise à jour des statuts des rendus d'un TP d'un cours
      */
-    @Transactional
     public List<TPStatusDto> refreshTPStatusesFromTP(Long courseId, Integer tpNumber) {
-        Optional<Course> courseOpt = repositoryCourse.findById(courseId);
-        if (courseOpt.isEmpty()) {
-            throw new EntityNotFoundException("Course not found with id: " + courseId);
-
+        try (ServiceTPLocks.TPLock ignored = serviceTPLocks.lock(courseId, tpNumber)) {
+            Course course = findCourseWithStudents(courseId);
+            Optional<TP> tpOpt = repositoryCourse.findTPByCourseIdAndNo(courseId, tpNumber);
+            if (tpOpt.isEmpty()) {
+                throw new EntityNotFoundException("TP not found for course id=" + courseId + " and tp no=" + tpNumber);
+            }
+            TP tp = tpOpt.get();
+            log.info("Refreshing TPStatuses for course id={} tp no={}", courseId, tpNumber);
+            serviceTP.addTPStatusListToTP(tp, course.getStudents());
+            return serviceTP.getAllTPStatusByTPId(tp.getId());
         }
-        Optional<TP> tpOpt = repositoryCourse.findTPByCourseIdAndNo(courseId, tpNumber);
-        if (tpOpt.isEmpty()) {
-            throw new EntityNotFoundException("TP not found for course id=" + courseId + " and tp no=" + tpNumber);
+    }
+
+    /**
+     * Supprime les fichiers de travail laissés par des traitements interrompus dans le dossier
+     * de chaque TP sans traitement en attente ou en cours (ceux-ci les reprendront), et dans son
+     * dossier de l'espace de travail local (restructuring.scratch), s'ils n'ont pas été
+     * modifiés depuis restructuring.scratch.cleanup-grace-period.
+     * Chaque TP est nettoyé sous son verrou.
+     *
+     * @return le nombre de fichiers ou dossiers supprimés
+     */
+    public int cleanAbandonedScratch() {
+        int removed = 0;
+        for (Course course : repositoryCourse.findAll()) {
+            for (TP tp : repositoryCourse.findAllTPsByCourseId(course.getId())) {
+                try (ServiceTPLocks.TPLock ignored = serviceTPLocks.lock(course.getId(), tp.getNo())) {
+                    if (repositoryProcessingJob.findFirstByCourseIdAndTpNoAndStatusInOrderByIdDesc(course.getId(),
+                            tp.getNo(), List.of(ProcessingJobStatus.QUEUED, ProcessingJobStatus.RUNNING)).isPresent()) {
+                        continue;
+                    }
+                    removed += serviceSubmission.cleanScratch(serviceTP.getSubmissionPath(tp).getParent());
+                    Optional<Path> scratchDir = serviceScratchSpace.dirFor(course, tp);
+                    if (scratchDir.isPresent()) {
+                        removed += serviceSubmission.cleanScratch(scratchDir.get());
+                    }
+                } catch (IOException e) {
+                    log.warn("Unable to clean work files of TP {} of course {} → {}", tp.getNo(), course.getCode(), e.getMessage());
+                }
+            }
         }
-        TP tp = tpOpt.get();
-        log.info("Refreshing TPStatuses for course id={} tp no={}", courseId, tpNumber);
-        serviceTP.addTPStatusListToTP(tp, courseOpt.get().getStudents());
-        return serviceTP.getAllTPStatusByTPId(tp.getId());
+        return removed;
     }
 
     //==============================
     //       PRIVATE METHODS
     //==============================
 
+    /**
+     * Lecture courte du cours et de ses étudiants : la transaction se termine avant
+     * le traitement des fichiers du TP.
+     */
+    private Course findCourseWithStudents(Long idCourse) {
+        return transactionTemplate.execute(status -> {
+            Course course = repositoryCourse.findById(idCourse)
+                    .orElseThrow(() -> new EntityNotFoundException("Course not found with id: " + idCourse));
+            Hibernate.initialize(course.getStudents());
+            return course;
+        });
+    }
+
     /**
      * Methode permettant de créer un dossier pour stocker les zips
      */
@@ -0,0 +1,139 @@
+package heg.backendspring.service;
+
+import heg.backendspring.config.RestructuringProperties;
+import heg.backendspring.entity.Course;
+import heg.backendspring.utils.IgnoreRules;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fournit les règles d'exclusion à appliquer aux rendus d'un cours.
+ * <p>
+ * Ordre de recherche :
+ * — "{restructuring.ignore-rules-dir}/course-{CODE}.gitignore" : règles propres à un cours
+ * — "{restructuring.ignore-rules-dir}/{COURSE_TYPE}.gitignore" : règles d'un type de cours
+ * — "classpath:ignore-rules/{COURSE_TYPE}.gitignore" : règles par défaut
+ * <p>
+ * Les fichiers du dossier de configuration sont relus dès que leur date de modification ou
+ * leur taille change : une modification est prise en compte au traitement suivant, sans
+ * redémarrage.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ServiceIgnoreRules {
+
+    private static final String CLASSPATH_DIR = "ignore-rules/";
+    private static final String EXTENSION = ".gitignore";
+
+    /**
+     * Règles compilées d'un fichier, valides pour une taille et une date de modification.
+     */
+    private record CompiledFile(long size, long lastModified, IgnoreRules rules) {
+    }
+
+    private final Map<Path, CompiledFile> fileCache = new ConcurrentHashMap<>();
+    private final Map<String, IgnoreRules> classpathCache = new ConcurrentHashMap<>();
+
+    //==============================
+    //       DEPENDANCES
+    //==============================
+    private final RestructuringProperties restructuringProperties;
+
+    /**
+     * Retourne les règles à appliquer aux rendus du cours {@code course}.
+     */
+    public IgnoreRules rulesFor(Course course) {
+        // Comme auparavant, un cours sans type est traité comme un cours Java
+        String courseType = course.getCourseType() != null ? course.getCourseType().name() : "JAVA";
+
+        Optional<Path> configDir = configDirectory();
+        if (configDir.isPresent()) {
+            if (course.getCode() != null) {
+                Optional<IgnoreRules> courseRules = fromFile(configDir.get().resolve("course-" + safeFileName(course.getCode()) + EXTENSION));
+                if (courseRules.isPresent()) {
+                    return courseRules.get();
+                }
+            }
+            Optional<IgnoreRules> typeRules = fromFile(configDir.get().resolve(courseType + EXTENSION));
+            if (typeRules.isPresent()) {
+                return typeRules.get();
+            }
+        }
+        return fromClasspath(courseType);
+    }
+
+    // --------------------------------------------------------------------------
+    // Méthodes privées "utilitaires"
+    // --------------------------------------------------------------------------
+
+    private Optional<Path> configDirectory() {
+        String dir = restructuringProperties.getIgnoreRulesDir();
+        if (dir == null || dir.isBlank()) {
+            return Optional.empty();
+        }
+        Path path = Paths.get(dir).toAbsolutePath().normalize();
+        return Files.isDirectory(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    /**
+     * Lit un fichier de règles, en réutilisant la version compilée tant qu'il n'a pas changé.
+     */
+    private Optional<IgnoreRules> fromFile(Path file) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            fileCache.remove(file);
+            return Optional.empty();
+        }
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+
+        CompiledFile cached = fileCache.get(file);
+        if (cached != null && cached.size() == size && cached.lastModified() == lastModified) {
+            return Optional.of(cached.rules());
+        }
+        try {
+            IgnoreRules rules = IgnoreRules.read(Files.newBufferedReader(file, StandardCharsets.UTF_8));
+            fileCache.put(file, new CompiledFile(size, lastModified, rules));
+            log.info("Loaded {} ignore rule(s) from {}", rules.patterns().size(), file);
+            return Optional.of(rules);
+        } catch (IOException e) {
+            log.error("Unable to read ignore rules {}, falling back to previous rules", file, e);
+            return cached != null ? Optional.of(cached.rules()) : Optional.empty();
+        }
+    }
+
+    private IgnoreRules fromClasspath(String courseType) {
+        return classpathCache.computeIfAbsent(courseType, type -> {
+            ClassPathResource resource = new ClassPathResource(CLASSPATH_DIR + type + EXTENSION);
+            if (!resource.exists()) {
+                return IgnoreRules.NONE;
+            }
+            try {
+                return IgnoreRules.read(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                log.error("Unable to read default ignore rules {}", resource.getPath(), e);
+                return IgnoreRules.NONE;
+            }
+        });
+    }
+
+    private String safeFileName(String value) {
+        return value.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+}
@@ -0,0 +1,904 @@
+package heg.backendspring.service;
+
+import heg.backendspring.config.RestructuringProperties;
+import heg.backendspring.entity.ProcessingJob;
+import heg.backendspring.entity.ProcessingJobJournal;
+import heg.backendspring.enums.ProcessingJobStatus;
+import heg.backendspring.mapping.MapperProcessingJob;
+import heg.backendspring.models.ProcessingJobDto;
+import heg.backendspring.models.ProcessingJobProgressDto;
+import heg.backendspring.models.ProcessingJobWarningDto;
+import heg.backendspring.repository.RepositoryCourse;
+import heg.backendspring.repository.RepositoryProcessingJob;
+import heg.backendspring.repository.RepositoryProcessingJobJournal;
+import heg.backendspring.utils.RestructuringReport;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Traitements des rendus en arrière-plan.
+ * <p>
+ * Le lancement d'un traitement crée un {@link ProcessingJob} (QUEUED) en base : la requête HTTP
+ * rend la main immédiatement avec l'identifiant du traitement. L'état, la progression (étudiants
+ * traités / total) et les erreurs sont consultables pendant et après le traitement ; un traitement
+ * en attente ou en cours peut être annulé.
+ * <p>
+ * La table processing_job est la file d'attente, partagée par toutes les instances qui utilisent
+ * la même base et le même volume zip-storage. Chaque instance lance restructuring.job-workers
+ * workers ("processingJobExecutor") qui réservent le plus ancien traitement en attente avec
+ * {@code SELECT ... FOR UPDATE SKIP LOCKED} : deux workers n'obtiennent jamais le même traitement
+ * et aucun n'attend le verrou d'un autre. Le worker détient un bail (restructuring.queue.lease-duration)
+ * que le thread "jobQueueScheduler" prolonge tant que le traitement tourne, en enregistrant la
+ * progression. Le bail d'une instance arrêtée ou bloquée expire : le traitement est remis en file
+ * et repris par un autre worker (au plus restructuring.queue.max-attempts fois).
+ * <p>
+ * Les traitements exécutés par cette instance sont suivis en mémoire ({@link RunningJob}) :
+ * la progression est lue directement dans leur {@link RestructuringReport}. Chaque transition
+ * (réservation, étape, remise en file, fin) est ajoutée au journal du traitement
+ * ({@link ProcessingJobJournal}), qui garde l'étape atteinte par chaque tentative.
+ * <p>
+ * Un client peut aussi s'abonner aux événements d'un traitement (Server-Sent Events) :
+ * étape en cours, progression (étudiants, octets extraits et écrits) et erreurs par étudiant.
+ * Les threads de restructuration ne font que noter les changements ; le thread
+ * "jobProgressScheduler" les regroupe et les envoie au plus toutes les
+ * restructuring.progress-interval. Pour un traitement exécuté par une autre instance, la
+ * progression envoyée est celle enregistrée en base.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ServiceProcessingJob {
+
+    private static final int MAX_REPORT_LENGTH = 100_000;
+    private static final Duration EVENTS_TIMEOUT = Duration.ofHours(2);
+    private static final Set<ProcessingJobStatus> ACTIVE_STATUSES =
+            EnumSet.of(ProcessingJobStatus.QUEUED, ProcessingJobStatus.RUNNING);
+
+    /**
+     * Traitement réservé et exécuté par un worker de cette instance. L'interruption du worker
+     * (annulation, bail perdu) se fait sous le verrou de l'instance : une fois le traitement
+     * terminé, elle ne peut plus atteindre le traitement suivant du même thread.
+     */
+    private static final class RunningJob {
+
+        private final Long jobId;
+        private final String workerId;
+        private final Thread worker;
+        private final RestructuringReport report = new RestructuringReport();
+        private final JobEvents events;
+        private volatile boolean cancelRequested;
+        private volatile boolean leaseLost;
+        private boolean done;
+
+        private RunningJob(Long jobId, String workerId, Thread worker, Consumer<RestructuringReport.Stage> journal) {
+            this.jobId = jobId;
+            this.workerId = workerId;
+            this.worker = worker;
+            this.events = new JobEvents(jobId, report, journal);
+            report.setListener(events);
+        }
+
+        /**
+         * Interrompt le worker ; faux si le traitement est déjà terminé.
+         */
+        private synchronized boolean interrupt() {
+            if (done) {
+                return false;
+            }
+            worker.interrupt();
+            return true;
+        }
+
+        /**
+         * Appelé par le worker en fin de traitement : efface une interruption arrivée trop tard.
+         */
+        private synchronized void done() {
+            done = true;
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * Abonnés (SSE) d'un traitement et événements en attente d'envoi.
+     * Les méthodes du {@link RestructuringReport.Listener} sont appelées par les threads de
+     * restructuration et ne font que noter le changement ; l'envoi se fait dans {@link #flush()}.
+     * Un changement d'étape est aussi transmis à {@code journal}, qui l'enregistre en base.
+     * Chaque abonné reçoit toutes les erreurs par étudiant, y compris celles d'avant son abonnement.
+     */
+    private static final class JobEvents implements RestructuringReport.Listener {
+
+        private final Long jobId;
+        private final RestructuringReport report;
+        private final Consumer<RestructuringReport.Stage> journal;
+        //Abonné → nombre d'erreurs par étudiant déjà envoyées
+        private final Map<SseEmitter, Integer> emitters = new LinkedHashMap<>();
+        private final Queue<RestructuringReport.Stage> stages = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean progressChanged = new AtomicBoolean();
+        private boolean finished;
+
+        private JobEvents(Long jobId, RestructuringReport report, Consumer<RestructuringReport.Stage> journal) {
+            this.jobId = jobId;
+            this.report = report;
+            this.journal = journal;
+        }
+
+        @Override
+        public void stageChanged(RestructuringReport.Stage stage) {
+            stages.add(stage);
+            journal.accept(stage);
+        }
+
+        @Override
+        public void progressChanged() {
+            progressChanged.set(true);
+        }
+
+        @Override
+        public void studentFailed(RestructuringReport.StudentFailure failure) {
+            progressChanged.set(true);
+        }
+
+        /**
+         * Ajoute un abonné et lui envoie la progression et les erreurs actuelles ;
+         * faux si le traitement est déjà terminé.
+         */
+        private synchronized boolean subscribe(SseEmitter emitter) {
+            if (finished) {
+                return false;
+            }
+            emitters.put(emitter, 0);
+            if (send(emitter, "progress", progress())) {
+                sendWarnings(emitter, report.getFailures());
+            }
+            return true;
+        }
+
+        private synchronized void unsubscribe(SseEmitter emitter) {
+            emitters.remove(emitter);
+        }
+
+        private synchronized void flush() {
+            if (emitters.isEmpty()) {
+                stages.clear();
+                return;
+            }
+            for (RestructuringReport.Stage stage = stages.poll(); stage != null; stage = stages.poll()) {
+                ProcessingJobProgressDto progress = progress();
+                sendAll(emitter -> send(emitter, "stage", progress));
+            }
+            if (progressChanged.getAndSet(false)) {
+                List<RestructuringReport.StudentFailure> failures = report.getFailures();
+                ProcessingJobProgressDto progress = progress();
+                sendAll(emitter -> sendWarnings(emitter, failures) && send(emitter, "progress", progress));
+            }
+        }
+
+        /**
+         * Envoie les derniers événements puis l'état final du traitement, et ferme les flux.
+         */
+        private synchronized void finish(ProcessingJobDto job) {
+            progressChanged.set(true);
+            flush();
+            finished = true;
+            sendAll(emitter -> send(emitter, "finished", job));
+            List<SseEmitter> subscribers = List.copyOf(emitters.keySet());
+            emitters.clear();
+            subscribers.forEach(SseEmitter::complete);
+        }
+
+        /**
+         * Ferme les flux sans état final (le traitement continue sur une autre instance) :
+         * les clients se reconnectent et suivent alors la progression enregistrée en base.
+         */
+        private synchronized void close() {
+            finished = true;
+            List<SseEmitter> subscribers = List.copyOf(emitters.keySet());
+            emitters.clear();
+            subscribers.forEach(SseEmitter::complete);
+        }
+
+        private ProcessingJobProgressDto progress() {
+            RestructuringReport.Stage stage = report.getStage();
+            return new ProcessingJobProgressDto(jobId, stage != null ? stage.name() : null,
+                    report.getStudentsProcessed(), report.getStudentsTotal(), report.getFailures().size(),
+                    report.getBytesExtracted(), report.getBytesWritten());
+        }
+
+        /**
+         * Envoie à {@code emitter} les erreurs qu'il n'a pas encore reçues.
+         */
+        private boolean sendWarnings(SseEmitter emitter, List<RestructuringReport.StudentFailure> failures) {
+            for (int sent = emitters.getOrDefault(emitter, 0); sent < failures.size(); sent++) {
+                RestructuringReport.StudentFailure failure = failures.get(sent);
+                if (!send(emitter, "warning", new ProcessingJobWarningDto(jobId, failure.student(),
+                        failure.message(), failure.limitExceeded())) || !emitters.containsKey(emitter)) {
+                    return false;
+                }
+                emitters.put(emitter, sent + 1);
+            }
+            return true;
+        }
+
+        /**
+         * Applique {@code action} à chaque abonné ; un abonné dont l'envoi échoue est retiré.
+         */
+        private void sendAll(Predicate<SseEmitter> action) {
+            for (SseEmitter emitter : List.copyOf(emitters.keySet())) {
+                if (!action.test(emitter)) {
+                    emitters.remove(emitter);
+                }
+            }
+        }
+
+        private static boolean send(SseEmitter emitter, String name, Object data) {
+            try {
+                emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                // Client déconnecté
+                return false;
+            }
+        }
+    }
+
+    //==============================
+    //       DEPENDANCES
+    //==============================
+    private final RepositoryProcessingJob repositoryProcessingJob;
+    private final RepositoryProcessingJobJournal repositoryProcessingJobJournal;
+    private final RepositoryCourse repositoryCourse;
+    private final ServiceCourse serviceCourse;
+    private final MapperProcessingJob mapperProcessingJob;
+    private final ExecutorService processingJobExecutor;
+    private final ScheduledExecutorService jobProgressScheduler;
+    private final ScheduledExecutorService jobQueueScheduler;
+    private final RestructuringProperties restructuringProperties;
+    private final TransactionTemplate transactionTemplate;
+
+    //Traitements exécutés par les workers de cette instance
+    private final Map<Long, RunningJob> runningJobs = new ConcurrentHashMap<>();
+    //Abonnés aux traitements qui ne sont pas exécutés par cette instance
+    private final Map<Long, Set<SseEmitter>> remoteSubscribers = new ConcurrentHashMap<>();
+    //Réveille un worker inoccupé dès qu'un traitement est mis en file sur cette instance
+    //(au plus un jeton par worker, voir signalWork)
+    private final Semaphore workAvailable = new Semaphore(0);
+    //Nom de cette instance (restructuring.queue.node-id ou nom d'hôte) et identifiant de ce démarrage
+    private String nodeName;
+    private String node;
+
+
+    //==============================
+    //       JOB METHODS
+    //==============================
+
+    /**
+     * Crée le traitement du rendu du TP {@code tpNo} du cours {@code courseId} et le met en file ;
+     * il sera exécuté par le premier worker libre, sur n'importe quelle instance.
+     * Si un traitement de ce TP est déjà en attente ou en cours, c'est lui qui est retourné :
+     * relancer depuis une page rechargée ne refait pas le travail. L'unicité est garantie par la
+     * base (contrainte uk_processing_job_active_tp), y compris entre instances : si un autre
+     * appel a mis le TP en file au même moment, c'est son traitement qui est retourné.
+     */
+    public ProcessingJobDto submit(Long courseId, int tpNo) {
+        repositoryCourse.findById(courseId)
+                .orElseThrow(() -> new EntityNotFoundException("Course not found with id: " + courseId));
+        repositoryCourse.findTPByCourseIdAndNo(courseId, tpNo)
+                .orElseThrow(() -> new EntityNotFoundException(
+                        "TP number " + tpNo + " not found for course id: " + courseId));
+
+        Optional<ProcessingJob> current = findActive(courseId, tpNo);
+        if (current.isPresent()) {
+            log.info("Processing job {} already queued or running for TP {} of course id={}",
+                    current.get().getId(), tpNo, courseId);
+            return toDto(current.get());
+        }
+
+        ProcessingJob job;
+        try {
+            job = repositoryProcessingJob.save(new ProcessingJob(courseId, tpNo));
+        } catch (DataIntegrityViolationException e) {
+            //Mis en file au même moment par une autre requête ou une autre instance
+            ProcessingJob concurrent = findActive(courseId, tpNo).orElseThrow(() -> e);
+            log.info("Processing job {} queued concurrently for TP {} of course id={}",
+                    concurrent.getId(), tpNo, courseId);
+            return toDto(concurrent);
+        }
+        signalWork();
+        log.info("Processing job {} queued for TP {} of course id={}", job.getId(), tpNo, courseId);
+        return toDto(job);
+    }
+
+    /**
+     * État d'un traitement ; pour un traitement en cours, la progression est celle du moment.
+     */
+    public ProcessingJobDto getJob(Long jobId) {
+        return toDto(findJob(jobId));
+    }
+
+    /**
+     * Abonnement aux événements d'un traitement (Server-Sent Events) :
+     * <ul>
+     *     <li>"progress" : étudiants traités / total, erreurs, octets extraits et écrits ({@link ProcessingJobProgressDto}) ;</li>
+     *     <li>"stage" : changement d'étape (UNZIP, STUDENTS, ZIP, CLEANUP), avec la progression ;</li>
+     *     <li>"warning" : rendu d'un étudiant qui n'a pas pu être restructuré ({@link ProcessingJobWarningDto}) ;</li>
+     *     <li>"finished" : état final du traitement ({@link ProcessingJobDto}), puis le flux est fermé.</li>
+     * </ul>
+     * Pour un traitement déjà terminé, seul l'événement "finished" est envoyé. Pour un traitement
+     * en attente ou exécuté par une autre instance, la progression est celle enregistrée en base
+     * (relue toutes les restructuring.queue.poll-interval) et les erreurs par étudiant ne sont
+     * connues qu'avec l'état final.
+     */
+    public SseEmitter subscribe(Long jobId) {
+        ProcessingJob job = findJob(jobId);
+        SseEmitter emitter = new SseEmitter(EVENTS_TIMEOUT.toMillis());
+        RunningJob running = runningJobs.get(jobId);
+        if (running != null) {
+            JobEvents events = running.events;
+            emitter.onCompletion(() -> events.unsubscribe(emitter));
+            emitter.onTimeout(() -> events.unsubscribe(emitter));
+            emitter.onError(e -> events.unsubscribe(emitter));
+            if (events.subscribe(emitter)) {
+                return emitter;
+            }
+            job = findJob(jobId);
+        }
+        if (!job.getStatus().isFinished()) {
+            emitter.onCompletion(() -> unsubscribeRemote(jobId, emitter));
+            emitter.onTimeout(() -> unsubscribeRemote(jobId, emitter));
+            emitter.onError(e -> unsubscribeRemote(jobId, emitter));
+            if (JobEvents.send(emitter, "progress", storedProgress(job))) {
+                remoteSubscribers.compute(jobId, (id, emitters) -> {
+                    Set<SseEmitter> subscribers = emitters != null ? emitters : ConcurrentHashMap.newKeySet();
+                    subscribers.add(emitter);
+                    return subscribers;
+                });
+            }
+            return emitter;
+        }
+        try {
+            emitter.send(SseEmitter.event().name("finished").data(toDto(job), MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    /**
+     * Annule un traitement : en attente, il ne sera pas lancé ; en cours, son worker est
+     * interrompu (directement sur cette instance, à la prochaine prolongation du bail sur une
+     * autre) et le traitement s'arrête au prochain étudiant. Un traitement déjà terminé
+     * est retourné tel quel.
+     */
+    public ProcessingJobDto cancel(Long jobId) {
+        ProcessingJob job = transactionTemplate.execute(tx -> {
+            ProcessingJob locked = repositoryProcessingJob.findWithLockById(jobId)
+                    .orElseThrow(() -> new EntityNotFoundException("Processing job not found with id: " + jobId));
+            if (locked.getStatus() == ProcessingJobStatus.QUEUED) {
+                locked.setStatus(ProcessingJobStatus.CANCELLED);
+                locked.setFinishedAt(LocalDateTime.now());
+                journal(locked, null);
+                log.info("Processing job {} cancelled before start", jobId);
+            } else if (locked.getStatus() == ProcessingJobStatus.RUNNING && !locked.isCancelRequested()) {
+                locked.setCancelRequested(true);
+                log.info("Processing job {} cancellation requested", jobId);
+            }
+            return repositoryProcessingJob.save(locked);
+        });
+        RunningJob running = runningJobs.get(jobId);
+        if (running != null && job.isCancelRequested() && !running.cancelRequested) {
+            running.cancelRequested = true;
+            running.interrupt();
+        }
+        return toDto(job);
+    }
+
+    /**
+     * Démarre l'envoi périodique des événements des traitements en cours.
+     */
+    @PostConstruct
+    public void startEvents() {
+        long interval = Math.max(1, restructuringProperties.getProgressInterval().toMillis());
+        jobProgressScheduler.scheduleWithFixedDelay(
+                () -> runningJobs.values().forEach(running -> running.events.flush()),
+                interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Démarre les workers de cette instance (si restructuring.queue.worker) ainsi que la
+     * prolongation des baux, la reprise des traitements abandonnés et le suivi des traitements
+     * exécutés ailleurs. Les traitements en cours lors d'un arrêt ne sont pas perdus : leur bail
+     * expire et ils sont remis en file ; avec un restructuring.queue.node-id stable, ceux de cette
+     * instance sont remis en file dès le redémarrage ({@link #recoverAfterRestart()}).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startQueue() {
+        nodeName = nodeName();
+        node = nodeName + "/" + UUID.randomUUID().toString().substring(0, 8);
+        RestructuringProperties.Queue queue = restructuringProperties.getQueue();
+        jobQueueScheduler.execute(() -> {
+            try {
+                recoverAfterRestart();
+            } catch (RuntimeException e) {
+                log.error("Recovery of interrupted processing jobs failed", e);
+            }
+        });
+        schedule(this::renewLeases, queue.getHeartbeatInterval());
+        schedule(this::recoverExpiredLeases, queue.getHeartbeatInterval());
+        schedule(this::watchRemoteJobs, queue.getPollInterval());
+        if (!queue.isWorker()) {
+            log.info("Processing queue worker disabled on this node");
+            return;
+        }
+        int workers = Math.max(1, restructuringProperties.getJobWorkers());
+        for (int index = 0; index < workers; index++) {
+            String workerId = node + "-" + index;
+            processingJobExecutor.execute(() -> work(workerId));
+        }
+        log.info("{} processing queue worker(s) started on node {}", workers, node);
+    }
+
+    /**
+     * Reprise après un arrêt ou un plantage de cette instance :
+     * <ol>
+     *     <li>si restructuring.queue.node-id est défini, les traitements encore RUNNING au nom d'un
+     *     démarrage précédent de cette instance sont remis en file sans attendre l'expiration de
+     *     leur bail (le nom doit alors être propre à chaque instance) ;</li>
+     *     <li>les fichiers de travail laissés dans les dossiers des TPs sans traitement en attente
+     *     ou en cours sont supprimés. Ceux d'un TP remis en file sont conservés : la restructuration
+     *     relancée reprend les étudiants déjà terminés.</li>
+     * </ol>
+     */
+    public void recoverAfterRestart() {
+        String configured = restructuringProperties.getQueue().getNodeId();
+        if (configured != null && !configured.isBlank()) {
+            String previousBoots = nodeName + "/";
+            for (ProcessingJob job : repositoryProcessingJob.findAllByStatusAndWorkerIdStartingWith(
+                    ProcessingJobStatus.RUNNING, previousBoots)) {
+                if (!job.getWorkerId().startsWith(node + "-")) {
+                    recover(job.getId(), current -> current.getStatus() == ProcessingJobStatus.RUNNING
+                            && job.getWorkerId().equals(current.getWorkerId()), "was restarted");
+                }
+            }
+            signalWork();
+        }
+        int removed = serviceCourse.cleanAbandonedScratch();
+        if (removed > 0) {
+            log.info("Removed {} leftover work file(s) of interrupted processing jobs", removed);
+        }
+    }
+
+    /**
+     * Remet en file les traitements dont le bail a expiré : l'instance qui les exécutait s'est
+     * arrêtée ou ne répond plus. Au-delà de restructuring.queue.max-attempts réservations, le
+     * traitement échoue ; s'il avait été annulé, il est marqué annulé.
+     */
+    public void recoverExpiredLeases() {
+        LocalDateTime now = LocalDateTime.now();
+        for (Long jobId : repositoryProcessingJob.findIdsByStatusAndLeaseExpired(ProcessingJobStatus.RUNNING, now)) {
+            recover(jobId, job -> job.getStatus() == ProcessingJobStatus.RUNNING
+                    && job.getLeaseUntil() != null && job.getLeaseUntil().isBefore(now), "stopped responding");
+        }
+        signalWork();
+    }
+
+    /**
+     * Journal d'un traitement (réservations, étapes, remises en file, fin), dans l'ordre.
+     */
+    public List<ProcessingJobJournal> getJournal(Long jobId) {
+        findJob(jobId);
+        return repositoryProcessingJobJournal.findAllByJobIdOrderById(jobId);
+    }
+
+    // --------------------------------------------------------------------------
+    // Méthodes privées "utilitaires"
+    // --------------------------------------------------------------------------
+
+    private Optional<ProcessingJob> findActive(Long courseId, int tpNo) {
+        return repositoryProcessingJob.findFirstByCourseIdAndTpNoAndStatusInOrderByIdDesc(courseId, tpNo, ACTIVE_STATUSES);
+    }
+
+    /**
+     * Remet en file le traitement {@code jobId} abandonné par son worker s'il l'est toujours
+     * ({@code abandoned}, vérifié sous le verrou de la ligne) : au-delà de
+     * restructuring.queue.max-attempts réservations, il échoue ; s'il avait été annulé, il est
+     * marqué annulé.
+     */
+    private void recover(Long jobId, Predicate<ProcessingJob> abandoned, String reason) {
+        LocalDateTime now = LocalDateTime.now();
+        int maxAttempts = Math.max(1, restructuringProperties.getQueue().getMaxAttempts());
+        transactionTemplate.executeWithoutResult(tx -> repositoryProcessingJob.findWithLockById(jobId)
+                .filter(abandoned)
+                .ifPresent(job -> {
+                    String workerId = job.getWorkerId();
+                    if (job.isCancelRequested()) {
+                        job.setStatus(ProcessingJobStatus.CANCELLED);
+                        job.setFinishedAt(now);
+                    } else if (job.getAttempts() >= maxAttempts) {
+                        job.setStatus(ProcessingJobStatus.FAILED);
+                        job.setErrorMessage("Worker " + workerId + " " + reason + " ("
+                                + job.getAttempts() + " attempt(s))");
+                        job.setFinishedAt(now);
+                    } else {
+                        release(job);
+                    }
+                    repositoryProcessingJob.save(job);
+                    journal(job, workerId);
+                    log.warn("Processing job {}: worker {} {}, job is now {} (last stage: {})", jobId, workerId,
+                            reason, job.getStatus(), lastStage(jobId, job.getAttempts()));
+                }));
+    }
+
+    /**
+     * Ajoute une ligne au journal du traitement (état actuel de {@code job}).
+     */
+    private void journal(ProcessingJob job, String workerId) {
+        repositoryProcessingJobJournal.save(new ProcessingJobJournal(job.getId(), job.getAttempts(), workerId,
+                job.getStatus(), null));
+    }
+
+    /**
+     * Enregistre une étape atteinte par le worker {@code workerId} (thread "jobQueueScheduler",
+     * dans l'ordre des étapes) : ligne du journal, et étape du traitement tant que le worker en détient le bail.
+     */
+    private void journalStage(Long jobId, int attempt, String workerId, RestructuringReport.Stage stage) {
+        try {
+            transactionTemplate.executeWithoutResult(tx -> {
+                repositoryProcessingJob.findWithLockById(jobId)
+                        .filter(job -> holdsLease(job, workerId))
+                        .ifPresent(job -> {
+                            job.setStage(stage);
+                            repositoryProcessingJob.save(job);
+                        });
+                repositoryProcessingJobJournal.save(new ProcessingJobJournal(jobId, attempt, workerId,
+                        ProcessingJobStatus.RUNNING, stage));
+            });
+        } catch (RuntimeException e) {
+            log.warn("Processing job {}: stage {} could not be journaled → {}", jobId, stage, e.getMessage());
+        }
+    }
+
+    /**
+     * Dernière étape journalisée pour la tentative {@code attempt} du traitement (null si aucune).
+     */
+    private RestructuringReport.Stage lastStage(Long jobId, int attempt) {
+        return repositoryProcessingJobJournal.findFirstByJobIdAndAttemptAndStageNotNullOrderByIdDesc(jobId, attempt)
+                .map(ProcessingJobJournal::getStage)
+                .orElse(null);
+    }
+
+    /**
+     * Réveille un worker inoccupé. Les jetons ne s'accumulent pas au-delà du nombre de workers :
+     * un worker réveillé cherche tous les traitements en attente avant de se rendormir, et les
+     * mises en file répétées (ou les tâches périodiques sur une instance sans worker) ne laissent
+     * pas des milliers de réveils inutiles.
+     */
+    private void signalWork() {
+        if (workAvailable.availablePermits() < Math.max(1, restructuringProperties.getJobWorkers())) {
+            workAvailable.release();
+        }
+    }
+
+    /**
+     * Boucle d'un worker : réserve le plus ancien traitement en attente et l'exécute, ou attend
+     * qu'un traitement soit mis en file. S'arrête quand le thread est interrompu (arrêt de l'application).
+     */
+    private void work(String workerId) {
+        long pollInterval = Math.max(1, restructuringProperties.getQueue().getPollInterval().toMillis());
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Optional<ProcessingJob> job = claimNext(workerId);
+                if (job.isPresent()) {
+                    run(job.get(), workerId);
+                } else {
+                    workAvailable.tryAcquire(pollInterval, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.error("Processing queue worker {} failed", workerId, e);
+                try {
+                    Thread.sleep(pollInterval);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        log.info("Processing queue worker {} stopped", workerId);
+    }
+
+    /**
+     * Réserve le plus ancien traitement en attente pour {@code workerId} (bail de
+     * restructuring.queue.lease-duration).
+     */
+    private Optional<ProcessingJob> claimNext(String workerId) {
+        return transactionTemplate.execute(tx -> repositoryProcessingJob.lockNextQueued().map(job -> {
+            LocalDateTime now = LocalDateTime.now();
+            job.setStatus(ProcessingJobStatus.RUNNING);
+            job.setWorkerId(workerId);
+            job.setLeaseUntil(now.plus(restructuringProperties.getQueue().getLeaseDuration()));
+            job.setAttempts(job.getAttempts() + 1);
+            job.setStartedAt(now);
+            ProcessingJob claimed = repositoryProcessingJob.save(job);
+            journal(claimed, workerId);
+            return claimed;
+        }));
+    }
+
+    private void run(ProcessingJob job, String workerId) {
+        Long jobId = job.getId();
+        int attempt = job.getAttempts();
+        RunningJob running = new RunningJob(jobId, workerId, Thread.currentThread(),
+                stage -> jobQueueScheduler.execute(() -> journalStage(jobId, attempt, workerId, stage)));
+        runningJobs.put(jobId, running);
+        if (attempt > 1) {
+            log.info("Processing job {} resumed by worker {} (attempt {}, previous attempt stopped at stage {})",
+                    jobId, workerId, attempt, lastStage(jobId, attempt - 1));
+        } else {
+            log.info("Processing job {} claimed by worker {} (attempt {})", jobId, workerId, attempt);
+        }
+
+        ProcessingJobStatus status;
+        String errorMessage = null;
+        try {
+            serviceCourse.startZipProcess(job.getCourseId(), job.getTpNo(), running.report);
+            status = ProcessingJobStatus.SUCCEEDED;
+        } catch (Exception e) {
+            if (running.cancelRequested) {
+                status = ProcessingJobStatus.CANCELLED;
+            } else if (running.leaseLost || Thread.currentThread().isInterrupted()) {
+                //Bail perdu ou arrêt de l'application : le traitement sera repris par un autre worker
+                status = null;
+            } else {
+                log.error("Processing job {} failed", jobId, e);
+                status = ProcessingJobStatus.FAILED;
+                errorMessage = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            }
+        }
+        boolean interrupted = Thread.currentThread().isInterrupted();
+        running.done();
+        boolean shutdown = interrupted && !running.cancelRequested && !running.leaseLost;
+
+        Optional<ProcessingJob> finished = Optional.empty();
+        try {
+            finished = complete(running, status, errorMessage, shutdown);
+        } catch (RuntimeException e) {
+            log.error("Processing job {} could not be saved, it will be recovered when its lease expires", jobId, e);
+        } finally {
+            runningJobs.remove(jobId);
+        }
+
+        if (finished.isPresent() && finished.get().getStatus().isFinished()) {
+            ProcessingJob saved = finished.get();
+            finishEvents(running, saved);
+            log.info("Processing job {} finished with status {}: {}/{} student(s) processed, {} failure(s)",
+                    jobId, saved.getStatus(), saved.getStudentsProcessed(), saved.getStudentsTotal(),
+                    saved.getStudentFailures());
+        } else {
+            jobProgressScheduler.execute(running.events::close);
+            log.warn("Processing job {} released by worker {} without result", jobId, workerId);
+        }
+        if (shutdown) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Enregistre la fin du traitement si {@code running} en détient toujours le bail : état final,
+     * ou remise en file si {@code release} (arrêt de l'application). Vide si le bail a été perdu.
+     */
+    private Optional<ProcessingJob> complete(RunningJob running, ProcessingJobStatus status,
+                                             String errorMessage, boolean release) {
+        if (status == null && !release) {
+            return Optional.empty();
+        }
+        return transactionTemplate.execute(tx -> repositoryProcessingJob.findWithLockById(running.jobId)
+                .filter(job -> holdsLease(job, running.workerId))
+                .map(job -> {
+                    if (release) {
+                        release(job);
+                    } else {
+                        applyProgress(job, running.report);
+                        job.setStatus(status);
+                        job.setErrorMessage(errorMessage != null && errorMessage.length() > 2000
+                                ? errorMessage.substring(0, 2000) : errorMessage);
+                        job.setErrorReport(errorReport(running.report));
+                        job.setLeaseUntil(null);
+                        job.setFinishedAt(LocalDateTime.now());
+                    }
+                    ProcessingJob saved = repositoryProcessingJob.save(job);
+                    journal(saved, running.workerId);
+                    return saved;
+                }));
+    }
+
+    /**
+     * Prolonge le bail des traitements exécutés par cette instance et enregistre leur progression.
+     * Un worker qui a perdu son bail (traitement repris ailleurs) ou dont le traitement a été
+     * annulé depuis une autre instance est interrompu.
+     */
+    private void renewLeases() {
+        for (RunningJob running : runningJobs.values()) {
+            Duration lease = restructuringProperties.getQueue().getLeaseDuration();
+            ProcessingJob job = transactionTemplate.execute(tx -> repositoryProcessingJob
+                    .findWithLockById(running.jobId)
+                    .filter(current -> holdsLease(current, running.workerId))
+                    .map(current -> {
+                        current.setLeaseUntil(LocalDateTime.now().plus(lease));
+                        current.setStage(running.report.getStage());
+                        applyProgress(current, running.report);
+                        return repositoryProcessingJob.save(current);
+                    })
+                    .orElse(null));
+            if (job == null) {
+                running.leaseLost = true;
+                if (running.interrupt()) {
+                    log.warn("Processing job {}: worker {} lost its lease, stopping", running.jobId, running.workerId);
+                }
+            } else if (job.isCancelRequested() && !running.cancelRequested) {
+                running.cancelRequested = true;
+                running.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Envoie aux abonnés des traitements exécutés ailleurs la progression enregistrée en base,
+     * puis l'état final une fois le traitement terminé.
+     */
+    private void watchRemoteJobs() {
+        for (Long jobId : List.copyOf(remoteSubscribers.keySet())) {
+            Optional<ProcessingJob> job = repositoryProcessingJob.findById(jobId);
+            if (job.isEmpty() || job.get().getStatus().isFinished()) {
+                Set<SseEmitter> emitters = remoteSubscribers.remove(jobId);
+                ProcessingJobDto dto = job.map(mapperProcessingJob::toDto).orElse(null);
+                if (emitters != null) {
+                    jobProgressScheduler.execute(() -> emitters.forEach(emitter -> {
+                        if (dto != null) {
+                            JobEvents.send(emitter, "finished", dto);
+                        }
+                        emitter.complete();
+                    }));
+                }
+                continue;
+            }
+            ProcessingJobProgressDto progress = storedProgress(job.get());
+            Set<SseEmitter> emitters = remoteSubscribers.getOrDefault(jobId, Set.of());
+            jobProgressScheduler.execute(() -> emitters.forEach(emitter -> {
+                if (!JobEvents.send(emitter, "progress", progress)) {
+                    unsubscribeRemote(jobId, emitter);
+                }
+            }));
+        }
+    }
+
+    private void unsubscribeRemote(Long jobId, SseEmitter emitter) {
+        remoteSubscribers.computeIfPresent(jobId, (id, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+
+    /**
+     * Exécute {@code task} toutes les {@code interval} sur "jobQueueScheduler" ; une erreur
+     * (base indisponible) est journalisée sans arrêter les exécutions suivantes.
+     */
+    private void schedule(Runnable task, Duration interval) {
+        long millis = Math.max(1, interval.toMillis());
+        jobQueueScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log.error("Processing queue maintenance failed", e);
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Nom de cette instance : restructuring.queue.node-id (ou nom d'hôte). Les workers y ajoutent
+     * un suffixe propre à ce démarrage, pour qu'une instance redémarrée ne reprenne pas les baux
+     * de la précédente.
+     */
+    private String nodeName() {
+        String name = restructuringProperties.getQueue().getNodeId();
+        if (name == null || name.isBlank()) {
+            try {
+                name = InetAddress.getLocalHost().getHostName();
+            } catch (UnknownHostException e) {
+                name = "node";
+            }
+        }
+        return name.length() > 80 ? name.substring(0, 80) : name;
+    }
+
+    /**
+     * Les derniers événements et l'état final sont envoyés par le thread des événements.
+     */
+    private void finishEvents(RunningJob running, ProcessingJob job) {
+        ProcessingJobDto dto = mapperProcessingJob.toDto(job);
+        jobProgressScheduler.execute(() -> running.events.finish(dto));
+    }
+
+    private ProcessingJob findJob(Long jobId) {
+        return repositoryProcessingJob.findById(jobId)
+                .orElseThrow(() -> new EntityNotFoundException("Processing job not found with id: " + jobId));
+    }
+
+    private ProcessingJobDto toDto(ProcessingJob job) {
+        RunningJob running = runningJobs.get(job.getId());
+        if (running != null && job.getStatus() == ProcessingJobStatus.RUNNING) {
+            applyProgress(job, running.report);
+        }
+        return mapperProcessingJob.toDto(job);
+    }
+
+    /**
+     * Progression enregistrée en base ; les octets extraits et écrits ne sont connus que de
+     * l'instance qui exécute le traitement.
+     */
+    private static ProcessingJobProgressDto storedProgress(ProcessingJob job) {
+        return new ProcessingJobProgressDto(job.getId(), job.getStage() != null ? job.getStage().name() : null,
+                job.getStudentsProcessed(), job.getStudentsTotal(), job.getStudentFailures(), null, null);
+    }
+
+    private static boolean holdsLease(ProcessingJob job, String workerId) {
+        return job.getStatus() == ProcessingJobStatus.RUNNING && workerId.equals(job.getWorkerId());
+    }
+
+    /**
+     * Remet le traitement en file, sans worker ni progression.
+     */
+    private static void release(ProcessingJob job) {
+        job.setStatus(ProcessingJobStatus.QUEUED);
+        job.setWorkerId(null);
+        job.setLeaseUntil(null);
+        job.setStage(null);
+        job.setStudentsTotal(0);
+        job.setStudentsProcessed(0);
+        job.setStudentFailures(0);
+    }
+
+    private static void applyProgress(ProcessingJob job, RestructuringReport report) {
+        job.setStudentsTotal(report.getStudentsTotal());
+        job.setStudentsProcessed(report.getStudentsProcessed());
+        job.setStudentFailures(report.getFailures().size());
+    }
+
+    private static String errorReport(RestructuringReport report) {
+        if (!report.hasFailures()) {
+            return null;
+        }
+        String lines = report.getFailures().stream()
+                .map(failure -> failure.student() + ": " + failure.message())
+                .collect(Collectors.joining("\n"));
+        return lines.length() > MAX_REPORT_LENGTH ? lines.substring(0, MAX_REPORT_LENGTH) : lines;
+    }
+}
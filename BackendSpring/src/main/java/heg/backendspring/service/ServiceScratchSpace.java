@@ -0,0 +1,154 @@
+package heg.backendspring.service;
+
+import heg.backendspring.config.RestructuringProperties;
+import heg.backendspring.entity.Course;
+import heg.backendspring.entity.TP;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+/**
+ * Espace de travail des restructurations (restructuring.scratch).
+ * <p>
+ * Les fichiers intermédiaires d'un traitement (dossiers d'extraction, zips des étudiants) sont
+ * nombreux et petits : sur un volume réseau (NFS, SMB), chaque écriture paie la latence du
+ * réseau. Avec un dossier de travail local, ils y sont écrits et seuls les zips terminés sont
+ * écrits sur zip-storage, en une écriture séquentielle.
+ * <p>
+ * Chaque traitement réserve l'espace qu'il estime utiliser : si l'estimation dépasse le budget
+ * d'un traitement (restructuring.scratch.max-job-size) ou la place libre restante, compte tenu
+ * des réservations des traitements en cours, la politique restructuring.scratch.spill s'applique.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ServiceScratchSpace {
+
+    /**
+     * Dossier de travail réservé pour un traitement, libéré par {@link #close()}
+     * (try-with-resources).
+     */
+    public final class Allocation implements AutoCloseable {
+
+        private final Path dir;
+        private final long reserved;
+        private boolean closed;
+
+        private Allocation(Path dir, long reserved) {
+            this.dir = dir;
+            this.reserved = reserved;
+        }
+
+        /**
+         * Dossier de travail du TP : dans l'espace de travail local, ou dossier du TP sur zip-storage.
+         */
+        public Path dir() {
+            return dir;
+        }
+
+        /**
+         * Vrai si le dossier de travail est dans l'espace de travail local.
+         */
+        public boolean isLocal() {
+            return reserved > 0;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(reserved);
+            }
+        }
+    }
+
+    private long reservedBytes;
+
+    //==============================
+    //       DEPENDANCES
+    //==============================
+    private final RestructuringProperties restructuringProperties;
+
+    public boolean isEnabled() {
+        return !restructuringProperties.getScratch().getPath().isBlank();
+    }
+
+    /**
+     * Dossier de travail d'un TP dans l'espace de travail local :
+     * "{restructuring.scratch.path}/{CODE_COURS}/TP{no}".
+     *
+     * @return vide si aucun espace de travail local n'est configuré
+     */
+    public Optional<Path> dirFor(Course c, TP tp) {
+        if (!isEnabled()) {
+            return Optional.empty();
+        }
+        return Optional.of(root().resolve(c.getCode()).resolve("TP" + tp.getNo()));
+    }
+
+    /**
+     * Réserve {@code estimatedBytes} pour le traitement du TP {@code tp}. Sans espace de travail
+     * local, ou si la réservation n'est pas possible avec la politique STORAGE, le dossier de
+     * travail est {@code tpRoot} (dossier du TP sur zip-storage).
+     *
+     * @throws IOException si la réservation n'est pas possible avec la politique FAIL
+     */
+    public Allocation allocate(Course c, TP tp, Path tpRoot, long estimatedBytes) throws IOException {
+        if (!isEnabled()) {
+            return new Allocation(tpRoot, 0);
+        }
+        RestructuringProperties.Scratch scratch = restructuringProperties.getScratch();
+        long budget = scratch.getMaxJobSize().toBytes();
+        if (budget > 0 && estimatedBytes > budget) {
+            return spill(c, tp, tpRoot, "estimated " + estimatedBytes + " byte(s), budget is " + budget);
+        }
+
+        Path root = Files.createDirectories(root());
+        long reserved = Math.max(1, estimatedBytes);
+        synchronized (this) {
+            long usable = Files.getFileStore(root).getUsableSpace() - reservedBytes;
+            if (reserved > usable) {
+                return spill(c, tp, tpRoot, "estimated " + estimatedBytes + " byte(s), "
+                        + Math.max(0, usable) + " byte(s) available");
+            }
+            reservedBytes += reserved;
+        }
+        Path dir = dirFor(c, tp).orElseThrow();
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            release(reserved);
+            throw e;
+        }
+        log.debug("Reserved {} byte(s) of scratch space for TP {} of course {}", estimatedBytes, tp.getNo(), c.getCode());
+        return new Allocation(dir, reserved);
+    }
+
+    // --------------------------------------------------------------------------
+    // Méthodes privées "utilitaires"
+    // --------------------------------------------------------------------------
+
+    private Path root() {
+        return Paths.get(restructuringProperties.getScratch().getPath()).toAbsolutePath().normalize();
+    }
+
+    private synchronized void release(long bytes) {
+        reservedBytes -= bytes;
+    }
+
+    private Allocation spill(Course c, TP tp, Path tpRoot, String reason) throws IOException {
+        if (restructuringProperties.getScratch().getSpill() == RestructuringProperties.Spill.FAIL) {
+            throw new IOException("Not enough scratch space for TP " + tp.getNo() + " of course "
+                    + c.getCode() + " (" + reason + ")");
+        }
+        log.info("Not enough scratch space for TP {} of course {} ({}), working in the TP folder",
+                tp.getNo(), c.getCode(), reason);
+        return new Allocation(tpRoot, 0);
+    }
+}
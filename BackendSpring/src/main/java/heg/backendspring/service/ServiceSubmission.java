@@ -1,26 +1,49 @@
 package heg.backendspring.service;
 
+import heg.backendspring.config.RestructuringProperties;
 import heg.backendspring.entity.Course;
 import heg.backendspring.entity.Submission;
 import heg.backendspring.entity.TP;
 import heg.backendspring.mapping.MapperSubmission;
 import heg.backendspring.models.SubmissionDto;
 import heg.backendspring.repository.RepositorySubmission;
+import heg.backendspring.utils.BlobManifest;
+import heg.backendspring.utils.IgnoreRules;
+import heg.backendspring.utils.CompressionStats;
+import heg.backendspring.utils.RestructuringReport;
+import heg.backendspring.utils.StreamingRestructurer;
+import heg.backendspring.utils.StudentArchives;
+import heg.backendspring.utils.StudentFingerprints;
 import heg.backendspring.utils.StudentNameUtils;
+import heg.backendspring.utils.SubmissionIngest;
 import heg.backendspring.utils.ZipUtils;
-import jakarta.transaction.Transactional;
+import heg.backendspring.utils.ZipWriteOptions;
+import heg.backendspring.utils.archive.ArchiveExtractors;
+import heg.backendspring.utils.archive.ArchiveLimitException;
+import heg.backendspring.utils.archive.ArchiveFormat;
+import heg.backendspring.utils.archive.DirectoryWriter;
+import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
-import java.util.Set;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.stream.Stream;
 
 @Slf4j
@@ -28,13 +51,91 @@ import java.util.stream.Stream;
 @RequiredArgsConstructor
 public class ServiceSubmission {
 
-    private String typeCours = "JAVA";
+    /**
+     * Nombre d'octets en fin de zip utilisés pour valider le cache des listes d'étudiants.
+     */
+    private static final int LISTING_CRC_LENGTH = 64 * 1024;
+
+    /**
+     * Dossier de travail d'une restructuration (mode STREAMING), dans l'espace de travail du TP
+     * ({@link ServiceScratchSpace}) : conservé si le traitement est interrompu, pour que le
+     * traitement relancé reprenne les étudiants terminés.
+     */
+    public static final String WORK_DIR = "restructuring-work";
+
+    /**
+     * Liste des dossiers étudiants d'un zip restructuré, valide pour une taille, une date
+     * de modification et un CRC de fin de fichier donnés.
+     */
+    private record StudentListing(long size, long lastModified, long crc, List<String> students) {
+        boolean matches(long size, long lastModified, long crc) {
+            return this.size == size && this.lastModified == lastModified && this.crc == crc;
+        }
+    }
+
+    /**
+     * Nombre de zips restructurés dont la liste des étudiants est gardée en mémoire.
+     */
+    private static final int STUDENT_LISTING_CACHE_SIZE = 8;
+
+    //Les zips les plus récemment listés (ordre d'accès)
+    private final Map<Path, StudentListing> studentListingCache = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Path, StudentListing> eldest) {
+                    return size() > STUDENT_LISTING_CACHE_SIZE;
+                }
+            });
+
+    /**
+     * Nombre de zips restructurés dont l'index des entrées par étudiant est gardé en mémoire.
+     */
+    private static final int STUDENT_INDEX_CACHE_SIZE = 8;
+
+    /**
+     * Entrées d'un zip restructuré par dossier étudiant (avec la position de leurs données),
+     * valides pour une taille et un CRC de fin de fichier donnés.
+     */
+    private record StudentIndex(long size, long crc, Map<String, List<ZipArchiveEntry>> students) {
+    }
+
+    //Les zips les plus récemment consultés (ordre d'accès)
+    private final Map<Path, StudentIndex> studentIndexCache = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Path, StudentIndex> eldest) {
+                    return size() > STUDENT_INDEX_CACHE_SIZE;
+                }
+            });
+
+    /**
+     * Dossiers d'étudiants choisis dans un zip restructuré ({@link #selectStudents}), à copier
+     * avec {@link #writeStudents} puis fermer.
+     *
+     * @param channel  zip restructuré ouvert, dont les entrées correspondent à {@code entries}
+     * @param students dossiers choisis, triés par nom
+     * @param entries  entrées des dossiers choisis
+     */
+    public record StudentSelection(SeekableByteChannel channel, List<String> students,
+                                   List<ZipArchiveEntry> entries) implements AutoCloseable {
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
 
     //==============================
     //       DEPENDANCES
     //==============================
     private final RepositorySubmission repositorySubmission;
     private final MapperSubmission mapperSubmission;
+    private final RestructuringProperties restructuringProperties;
+    private final ServiceIgnoreRules serviceIgnoreRules;
+    private final ServiceBlobStore serviceBlobStore;
+    private final ServiceScratchSpace serviceScratchSpace;
+    private final ArchiveExtractors archiveExtractors;
+    @Qualifier("restructuringExecutor")
+    private final ExecutorService restructuringExecutor;
 
 
     //==============================
@@ -70,18 +171,40 @@ public class ServiceSubmission {
      * que les tests unitaires ou dossiers ressources et pom.xml
      * <p>
      * Une entité TP a les infos de stockage du zip d'origine
+     * <p>
+     * En mode STREAMING (par défaut), le zip d'origine est lu entrée par entrée et le zip
+     * restructuré est écrit directement, sans dossiers intermédiaires (voir {@link StreamingRestructurer}).
+     * Le mode LEGACY conserve l'extraction complète sur disque.
+     * <p>
+     * En mode STREAMING incrémental (restructuring.incremental), un nouveau dépôt du zip ne retraite
+     * que les étudiants nouveaux ou modifiés ; les autres sont recopiés depuis le zip restructuré précédent.
+     * <p>
+     * Dans les deux modes, les étudiants sont traités en parallèle (restructuring.workers) et
+     * une erreur sur un rendu est reportée dans le {@link RestructuringReport} retourné
+     * sans interrompre le traitement des autres étudiants.
+     * <p>
+     * Aucune transaction n'est ouverte pendant la lecture et l'écriture des archives : seul le
+     * chemin du zip restructuré est enregistré à la fin, dans une courte transaction d'écriture.
+     * <p>
+     * Les fichiers intermédiaires sont écrits dans l'espace de travail local s'il est configuré
+     * (restructuring.scratch) ; le zip restructuré est écrit d'un seul tenant dans le dossier du TP.
      */
-    @Transactional
-    public void processZipSubmission(Course c, TP tp) throws IOException {
+    public RestructuringReport processZipSubmission(Course c, TP tp) throws IOException {
+        return processZipSubmission(c, tp, new RestructuringReport());
+    }
+
+    /**
+     * Comme {@link #processZipSubmission(Course, TP)}, en alimentant {@code report} au fil du
+     * traitement : il peut être consulté pendant la restructuration pour en suivre la progression.
+     */
+    public RestructuringReport processZipSubmission(Course c, TP tp, RestructuringReport report) throws IOException {
         Submission submission = tp.getSubmission();
         if (submission == null) {
             log.error("Aucune soumission trouvée pour le TP id {} du cours {}", tp.getId(), c.getName());
-            return;
-        }
-        //gérer le type de cours
-        if (c.getCourseType() != null) {
-            typeCours = String.valueOf(c.getCourseType());
+            return report;
         }
+        //Règles d'exclusion du cours (type de cours ou surcharge propre au cours)
+        IgnoreRules rules = serviceIgnoreRules.rulesFor(c);
 
         log.info("Starting restructuring for TP {} of course {} with submission id {}", tp.getNo(), c.getName(), submission.getId());
 
@@ -91,61 +214,209 @@ public class ServiceSubmission {
         // chemin racine du TP : "DocumentsZips/{CODE_COURS}/TP{no}"
         Path tpRoot = originalZip.getParent();
 
-        // chemin vers le dossier de restructuration
-        Path restructurationDir = tpRoot.resolve("RenduRestructuration");
-        createFolderIfPossible(restructurationDir);
-
-        // dossier temporaire pour extraire le zip initial => tpmExtract
-        Path tpmExtractDir = tpRoot.resolve("tmpExtract");
-        createFolderIfPossible(tpmExtractDir);
+        //Nom du zip global pour le dossier de restructuration
+        String nomZipRestructure = "TP" + tp.getNo() + "_RenduRestructuration.zip";
+        Path zipRestructure = tpRoot.resolve(nomZipRestructure);
 
-        // extraire le zip d'origine dans le dossier temporaire
-        ZipUtils.unzip(originalZip, tpmExtractDir);
+        //Niveau de compression du cours (restructuring.zip.course-levels) ou niveau global
+        ZipWriteOptions zipOptions = restructuringProperties.zipWriteOptions(c.getCode());
+
+        //Archives par étudiant : le manifeste précédent est lu (archives réutilisables) et reste servi
+        //pendant la restructuration ; il n'est remplacé qu'une fois le nouveau zip en place. Les
+        //téléchargements ne l'utilisent que s'il est issu du rendu actuel (contentHash)
+        Path studentArchivesDir = StudentArchives.dirFor(zipRestructure);
+        Optional<StudentArchives> previousArchives = StudentArchives.read(studentArchivesDir);
+
+        //Espace de travail réservé pour la durée de la restructuration
+        try (ServiceScratchSpace.Allocation scratch = serviceScratchSpace.allocate(c, tp, tpRoot,
+                estimateScratchSize(originalZip))) {
+            if (restructuringProperties.getMode() == RestructuringProperties.Mode.STREAMING) {
+                boolean incremental = restructuringProperties.isIncremental();
+                //Le zip précédent, s'il a été rangé dans le magasin de blobs, est reconstruit pour être réutilisé
+                if (incremental && serviceBlobStore.isEnabled() && Files.notExists(zipRestructure)
+                        && serviceBlobStore.findManifest(zipRestructure).isPresent()) {
+                    serviceBlobStore.restore(zipRestructure);
+                }
+                StreamingRestructurer.restructure(originalZip, zipRestructure, rules,
+                        zipOptions, archiveExtractors, restructuringExecutor,
+                        report, incremental, scratch.dir().resolve(WORK_DIR));
+            } else {
+                //Les empreintes d'une restructuration incrémentale ne correspondent plus au zip produit
+                Files.deleteIfExists(StudentFingerprints.pathFor(zipRestructure));
+                processZipSubmissionOnDisk(originalZip, scratch.dir(), zipRestructure, rules, zipOptions, report);
+            }
+        }
 
-        // Parcourir chaque dossier étudiant
-        browseStudentFolders(tpmExtractDir, restructurationDir);
+        if (restructuringProperties.isStudentArchives()) {
+            try {
+                StudentArchives.split(zipRestructure, studentArchivesDir, submission.getContentHash(),
+                        previousArchives, restructuringExecutor);
+            } catch (IOException | RuntimeException e) {
+                //Le manifeste précédent ne correspond plus au zip qui vient d'être mis en place
+                Files.deleteIfExists(studentArchivesDir.resolve(StudentArchives.MANIFEST));
+                throw e;
+            }
+        } else {
+            ZipUtils.deleteFolder(studentArchivesDir);
+        }
 
-        //Créez un zip global pour le dossier de restructuration
-        String nomZipRestructure = "TP" + tp.getNo() + "_RenduRestructuration.zip";
-        Path zipRestructure = tpRoot.resolve(nomZipRestructure);
-        ZipUtils.zipDirectory(restructurationDir, zipRestructure);
+        //Empreinte du zip servi aux téléchargements (ETag). Déduplication : le zip est rangé dans
+        //le magasin de blobs et reconstruit à la demande, identique octet par octet pour un même
+        //manifeste : l'empreinte du manifeste sert d'empreinte au zip
+        String fileHash;
+        if (serviceBlobStore.isEnabled()) {
+            serviceBlobStore.store(zipRestructure, zipOptions);
+            fileHash = serviceBlobStore.manifestHash(zipRestructure);
+        } else {
+            fileHash = SubmissionIngest.sha256Of(List.of(zipRestructure));
+        }
 
-        //Mettre à jour le chemin du zip restructuré
+        //Mettre à jour le chemin du zip restructuré (transaction courte, après les entrées/sorties),
+        //seulement une fois le zip complet en place
         submission.setPathFileStructured(zipRestructure.toString());
+        submission.setStructuredContentHash(submission.getContentHash());
+        submission.setStructuredFileHash(fileHash);
+        repositorySubmission.updatePathFileStructured(submission.getId(), submission.getPathFileStructured(),
+                submission.getStructuredContentHash(), submission.getStructuredFileHash());
         log.info("Submission path with restructurated data updated: {}", submission.getPathFileStructured());
 
-        //Nettoyer les dossiers temporaires et le dossier de restructuration
-        ZipUtils.deleteFolder(tpmExtractDir);
-        ZipUtils.deleteFolder(restructurationDir);
+        log.info("Restructuring of TP {} done: {} student(s) processed ({} unchanged), {} failure(s) ({} over limits), {} byte(s) extracted, {} ignored entr(ies) skipped",
+                tp.getNo(), report.getStudentsProcessed(), report.getStudentsReused(), report.getFailures().size(),
+                report.getLimitViolations(),
+                report.getBytesExtracted(), report.getEntriesSkipped());
+        CompressionStats compression = report.getCompression();
+        log.info("Compression of TP {}: {} entr(ies) deflated ({} → {} byte(s), {} ms CPU), {} entr(ies) stored without compression ({} byte(s))",
+                tp.getNo(), compression.getDeflatedEntries(), compression.getDeflatedBytes(), compression.getCompressedBytes(),
+                compression.getCpuMillis(), compression.getStoredEntries(), compression.getStoredBytes());
+        report.getFailures().forEach(failure ->
+                log.warn("Submission of {} could not be restructured: {}", failure.student(), failure.message()));
+        return report;
     }
 
     /**
      * Méthode permettant de retourner la liste des étudiants ayant rendu leur TP
+     * <p>
+     * Les noms des dossiers étudiants sont lus dans le répertoire central du zip restructuré
+     * (sans extraction) et mis en cache : tant que la taille, la date de modification et le CRC
+     * de fin du zip sont inchangés, la liste est servie depuis le cache.
+     * Si le zip a été rangé dans le magasin de blobs, la liste est lue dans son manifeste.
      */
     public List<String> getStudentsSubmission(Submission submission) {
         //Récupérer le path du zip restructuré
-        Path zipRestructure = Paths.get(submission.getPathFileStructured());
-        List<String> etudiants = new ArrayList<>();
+        Path zipRestructure = Paths.get(submission.getPathFileStructured()).toAbsolutePath().normalize();
         try {
-            //Extraire le zip
-            Path extractDir = Files.createTempDirectory("extracted");
-            ZipUtils.unzip(zipRestructure, extractDir);
+            if (Files.notExists(zipRestructure)) {
+                Optional<BlobManifest> manifest = serviceBlobStore.findManifest(zipRestructure);
+                if (manifest.isPresent()) {
+                    return new ArrayList<>(manifest.get().topLevelFolders());
+                }
+            }
+            BasicFileAttributes attributes = Files.readAttributes(zipRestructure, BasicFileAttributes.class);
+            long size = attributes.size();
+            long lastModified = attributes.lastModifiedTime().toMillis();
+            long crc = ZipUtils.tailChecksum(zipRestructure, LISTING_CRC_LENGTH);
+
+            StudentListing cached = studentListingCache.get(zipRestructure);
+            if (cached != null && cached.matches(size, lastModified, crc)) {
+                return new ArrayList<>(cached.students());
+            }
 
             //Récupérer la liste des dossiers étudiants
-            Files.list(extractDir)
-                    .filter(Files::isDirectory)
-                    .forEach(etudiantDir -> {
-                        String nomEtudiant = etudiantDir.getFileName().toString();
-                        etudiants.add(nomEtudiant);
-                    });
-
-            //Supprimer le dossier temporaire
-            ZipUtils.deleteFolder(extractDir);
+            List<String> etudiants = ZipUtils.listTopLevelFolders(zipRestructure);
+            studentListingCache.put(zipRestructure, new StudentListing(size, lastModified, crc, List.copyOf(etudiants)));
+            return etudiants;
         } catch (IOException e) {
             log.error("Error while retrieving the list of students", e);
         }
 
-        return etudiants;
+        return new ArrayList<>();
+    }
+
+    /**
+     * Choisit les dossiers {@code students} ("NomPrenom") dans le zip restructuré, pour en
+     * télécharger seulement une partie.
+     * <p>
+     * Le répertoire central du zip est lu une seule fois puis gardé en mémoire (index des entrées par
+     * étudiant, tant que la taille et le CRC de fin du zip sont inchangés) : choisir un étudiant ne
+     * dépend pas du nombre d'étudiants du TP. Le zip est ouvert avant la lecture de l'index et
+     * vérifié par rapport à celui-ci : s'il est remplacé entre-temps, le fichier ouvert reste lisible.
+     *
+     * @throws EntityNotFoundException si un des dossiers demandés n'existe pas dans le zip
+     */
+    public StudentSelection selectStudents(Path zipRestructure, Collection<String> students) throws IOException {
+        Path zip = zipRestructure.toAbsolutePath().normalize();
+        SeekableByteChannel channel = Files.newByteChannel(zip);
+        try {
+            StudentIndex index = studentIndex(zip);
+            if (channel.size() != index.size() || ZipUtils.tailChecksum(channel, LISTING_CRC_LENGTH) != index.crc()) {
+                throw new IOException("Restructured zip " + zip + " was replaced while it was being opened");
+            }
+            List<String> selected = new ArrayList<>(new TreeSet<>(students));
+            List<String> missing = selected.stream().filter(s -> !index.students().containsKey(s)).toList();
+            if (selected.isEmpty() || !missing.isEmpty()) {
+                throw new EntityNotFoundException("Student folder(s) not found in " + zip.getFileName() + ": " + missing);
+            }
+            List<ZipArchiveEntry> entries = selected.stream()
+                    .flatMap(student -> index.students().get(student).stream())
+                    .toList();
+            return new StudentSelection(channel, selected, entries);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Écrit dans {@code out} un zip contenant les dossiers de {@code selection}. Les entrées sont
+     * recopiées sans décompression ni recompression depuis le zip restructuré : seules leurs données
+     * sont lues. {@code out} est fermé à la fin du zip.
+     */
+    public void writeStudents(StudentSelection selection, OutputStream out) throws IOException {
+        try (ZipArchiveOutputStream zipOut = new ZipArchiveOutputStream(out)) {
+            ZipUtils.appendRawEntries(selection.channel(), selection.entries(), zipOut);
+        }
+    }
+
+    /**
+     * Supprime les fichiers de travail laissés dans le dossier d'un TP par un traitement
+     * interrompu (arrêt ou plantage de l'application) : dossiers de restructuration, zips
+     * partiellement écrits et dépôts inachevés. Le zip Cyberlearn et le zip restructuré ne sont
+     * jamais touchés : ils ne sont remplacés que par renommage d'un fichier complet.
+     * <p>
+     * Seuls les fichiers (ou dossiers, d'après leur contenu le plus récent) non modifiés depuis
+     * restructuring.scratch.cleanup-grace-period sont supprimés : le dossier du TP est partagé
+     * entre les instances, un dépôt encore en cours sur une autre instance n'est pas touché.
+     * <p>
+     * À n'appeler que sous le verrou du TP, quand aucun traitement n'est en attente ou en cours
+     * pour ce TP.
+     *
+     * @return le nombre de fichiers ou dossiers supprimés
+     */
+    public int cleanScratch(Path tpRoot) throws IOException {
+        if (!Files.isDirectory(tpRoot)) {
+            return 0;
+        }
+        long olderThan = System.currentTimeMillis()
+                - restructuringProperties.getScratch().getCleanupGracePeriod().toMillis();
+        List<Path> scratch = new ArrayList<>();
+        try (Stream<Path> files = Files.list(tpRoot)) {
+            for (Path path : files.filter(this::isScratch).toList()) {
+                if (lastModified(path) < olderThan) {
+                    scratch.add(path);
+                } else {
+                    log.info("Keeping recent work file {}, it may still be in use", path);
+                }
+            }
+        }
+        for (Path path : scratch) {
+            log.info("Removing leftover work file {}", path);
+            if (Files.isDirectory(path)) {
+                ZipUtils.deleteFolder(path);
+            } else {
+                Files.deleteIfExists(path);
+            }
+        }
+        return scratch.size();
     }
 
 
@@ -153,6 +424,73 @@ public class ServiceSubmission {
     // Méthodes privées "utilitaires"
     // --------------------------------------------------------------------------
 
+    /**
+     * Fichier de travail d'un traitement : dossiers "restructuring-*" (et "tmpExtract" /
+     * "RenduRestructuration" des versions précédentes), zips ".part" et dépôts ".upload".
+     */
+    private boolean isScratch(Path path) {
+        String name = path.getFileName().toString();
+        if (Files.isDirectory(path)) {
+            return name.startsWith("restructuring-") || name.equals("tmpExtract") || name.equals("RenduRestructuration");
+        }
+        return name.endsWith(".part") || name.endsWith(".upload");
+    }
+
+    /**
+     * Date de dernière modification d'un fichier, ou de l'élément le plus récent d'un dossier.
+     */
+    private static long lastModified(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return Files.getLastModifiedTime(path).toMillis();
+        }
+        long latest = 0;
+        try (Stream<Path> tree = Files.walk(path)) {
+            for (Path entry : tree.toList()) {
+                latest = Math.max(latest, Files.getLastModifiedTime(entry).toMillis());
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Espace de travail estimé d'une restructuration : en mode STREAMING, les zips des étudiants
+     * sont de l'ordre de la taille du zip Cyberlearn ; en mode LEGACY, le contenu du zip est
+     * extrait (tmpExtract), les projets décompressés (extractedProject) puis recopiés
+     * (RenduRestructuration).
+     */
+    private long estimateScratchSize(Path originalZip) throws IOException {
+        if (restructuringProperties.getMode() == RestructuringProperties.Mode.STREAMING) {
+            return Files.size(originalZip);
+        }
+        return 3 * Math.max(Files.size(originalZip), ZipUtils.uncompressedSize(originalZip));
+    }
+
+    /**
+     * Index des entrées du zip restructuré par dossier étudiant, relu seulement si le zip a changé.
+     */
+    private StudentIndex studentIndex(Path zip) throws IOException {
+        long size = Files.size(zip);
+        long crc = ZipUtils.tailChecksum(zip, LISTING_CRC_LENGTH);
+        StudentIndex cached = studentIndexCache.get(zip);
+        if (cached != null && cached.size() == size && cached.crc() == crc) {
+            return cached;
+        }
+
+        Map<String, List<ZipArchiveEntry>> students = new HashMap<>();
+        try (ZipFile zipFile = ZipFile.builder().setPath(zip).get()) {
+            for (ZipArchiveEntry entry : Collections.list(zipFile.getEntriesInPhysicalOrder())) {
+                int slash = entry.getName().indexOf('/');
+                if (slash > 0) {
+                    students.computeIfAbsent(entry.getName().substring(0, slash), k -> new ArrayList<>()).add(entry);
+                }
+            }
+        }
+        students.replaceAll((student, entries) -> List.copyOf(entries));
+        StudentIndex index = new StudentIndex(size, crc, Map.copyOf(students));
+        studentIndexCache.put(zip, index);
+        return index;
+    }
+
     /**
      * Crée un répertoire s'il n'existe pas déjà.
      */
@@ -164,19 +502,104 @@ public class ServiceSubmission {
         }
     }
 
+    /**
+     * Restructuration "historique" : extraction complète du zip d'origine sur le disque,
+     * copie filtrée de chaque projet dans "RenduRestructuration", puis re-zip.
+     * <p>
+     * Les dossiers de travail sont propres à chaque traitement ("restructuring-xxxx" dans
+     * {@code scratchDir}) et supprimés à la fin, même en cas d'échec : un traitement interrompu ne
+     * laisse pas de fichiers qui seraient repris par le suivant. Le zip restructuré est écrit à côté
+     * de {@code zipRestructure} puis renommé.
+     */
+    private void processZipSubmissionOnDisk(Path originalZip, Path scratchDir, Path zipRestructure,
+                                            IgnoreRules rules, ZipWriteOptions zipOptions,
+                                            RestructuringReport report) throws IOException {
+        Path workDir = Files.createTempDirectory(scratchDir, "restructuring-");
+        try {
+            // chemin vers le dossier de restructuration
+            Path restructurationDir = workDir.resolve("RenduRestructuration");
+            createFolderIfPossible(restructurationDir);
+
+            // dossier temporaire pour extraire le zip initial => tpmExtract
+            Path tpmExtractDir = workDir.resolve("tmpExtract");
+            createFolderIfPossible(tpmExtractDir);
+
+            // extraire le zip d'origine dans le dossier temporaire
+            report.stage(RestructuringReport.Stage.UNZIP);
+            ZipUtils.unzip(originalZip, tpmExtractDir);
+
+            // Parcourir chaque dossier étudiant
+            report.stage(RestructuringReport.Stage.STUDENTS);
+            browseStudentFolders(tpmExtractDir, restructurationDir, rules, report);
+
+            //Créez un zip global pour le dossier de restructuration
+            report.stage(RestructuringReport.Stage.ZIP);
+            //Écrit à côté puis renommé (même volume) : le zip restructuré n'est jamais incomplet
+            Path partialZip = StreamingRestructurer.partialPathFor(zipRestructure);
+            try {
+                ZipUtils.zipDirectory(restructurationDir, partialZip, zipOptions, report.getCompression(),
+                        restructuringExecutor);
+                Files.move(partialZip, zipRestructure, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(partialZip);
+            }
+            report.setBytesWritten(Files.size(zipRestructure));
+        } finally {
+            //Nettoyer les dossiers temporaires et le dossier de restructuration
+            report.stage(RestructuringReport.Stage.CLEANUP);
+            ZipUtils.deleteFolder(workDir);
+        }
+    }
+
     /**
      * Parcourt les dossiers étudiants dans le répertoire temporaire.
+     * <p>
+     * Les étudiants sont traités en parallèle sur le pool borné "restructuringExecutor".
+     * Les dossiers qui se normalisent vers le même nom "NomPrenom" sont traités par la même
+     * tâche, dans l'ordre alphabétique, pour que le résultat reste déterministe.
      */
-    private void browseStudentFolders(Path tpmExtractDir, Path restructurationDir) throws IOException {
-        Files.list(tpmExtractDir)
-                .filter(Files::isDirectory)
-                .forEach(dossierEtudiant -> {
+    private void browseStudentFolders(Path tpmExtractDir, Path restructurationDir, IgnoreRules rules,
+                                      RestructuringReport report) throws IOException {
+        Map<String, List<Path>> studentsByFolder = new TreeMap<>();
+        try (Stream<Path> dossiers = Files.list(tpmExtractDir)) {
+            dossiers.filter(Files::isDirectory)
+                    .sorted()
+                    .forEach(dossierEtudiant -> studentsByFolder
+                            .computeIfAbsent(StudentNameUtils.toFolderNameFromZipDir(dossierEtudiant.getFileName().toString()),
+                                    k -> new ArrayList<>())
+                            .add(dossierEtudiant));
+        }
+        report.setStudentsTotal(studentsByFolder.values().stream().mapToInt(List::size).sum());
+
+        Map<String, Future<List<RestructuringReport.StudentFailure>>> tasks = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Path>> group : studentsByFolder.entrySet()) {
+            tasks.put(group.getKey(), restructuringExecutor.submit(() -> {
+                List<RestructuringReport.StudentFailure> failures = new ArrayList<>();
+                for (Path dossierEtudiant : group.getValue()) {
                     try {
-                        manageStudentSubmission(dossierEtudiant, restructurationDir);
+                        manageStudentSubmission(dossierEtudiant, restructurationDir, rules, report);
+                        report.studentProcessed();
                     } catch (IOException e) {
-                        throw new RuntimeException(e);
+                        failures.add(new RestructuringReport.StudentFailure(dossierEtudiant.getFileName().toString(),
+                                e.getMessage(), e instanceof ArchiveLimitException));
                     }
-                });
+                }
+                return failures;
+            }));
+        }
+
+        for (Map.Entry<String, Future<List<RestructuringReport.StudentFailure>>> task : tasks.entrySet()) {
+            try {
+                task.getValue().get().forEach(report::addFailure);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                report.addFailure(task.getKey(), cause);
+            } catch (InterruptedException e) {
+                tasks.values().forEach(f -> f.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Restructuring interrupted");
+            }
+        }
     }
 
     /**
@@ -186,7 +609,8 @@ public class ServiceSubmission {
      * @param etudiantDir
      * @param restructurationDir
      */
-    private void manageStudentSubmission(Path etudiantDir, Path restructurationDir) throws IOException {
+    private void manageStudentSubmission(Path etudiantDir, Path restructurationDir, IgnoreRules rules,
+                                         RestructuringReport report) throws IOException {
         //Nom du dossier : Nom Prenom_xxxxxxxx (ne pas prendre après le _)
         String studentName = etudiantDir.getFileName().toString();
 
@@ -198,7 +622,7 @@ public class ServiceSubmission {
         createFolderIfPossible(studentDirRestructured);
 
         //Gérer le contenu du dossier étudiant pour le restructurer
-        sendStudentContent(etudiantDir, studentDirRestructured);
+        sendStudentContent(etudiantDir, studentDirRestructured, rules, report);
     }
 
     /**
@@ -207,64 +631,87 @@ public class ServiceSubmission {
      * @param etudiantDir
      * @param etudiantDirRestructured
      */
-    private void sendStudentContent(Path etudiantDir, Path etudiantDirRestructured) throws IOException {
+    private void sendStudentContent(Path etudiantDir, Path etudiantDirRestructured, IgnoreRules rules,
+                                    RestructuringReport report) throws IOException {
         //Normalement : le rendu est un zip, mais dans le cas contraire, on récupère
         // juste ce qu'il y a dedans pour le stocker dans le dossier de restructuration.
-        Optional<Path> zipEtudiant = findSubFolderZip(etudiantDir);
+        Optional<ArchiveExtractors.DetectedArchive> zipEtudiant = findSubFolderZip(etudiantDir);
         if (zipEtudiant.isPresent()) {
-            Path zipEtudiantPath = zipEtudiant.get();
-
             //Extraire le contenu dans le dossier temporaire local
             Path projetExtract = etudiantDir.resolve("extractedProject");
             createFolderIfPossible(projetExtract);
-            //Gestion des différents types de zip avec une méthode de Quarkus
-            //OLD VERSION : unzip(zipEtudiantPath, projetExtract);
-            manageExtractionZip(zipEtudiantPath, projetExtract, etudiantDir);
-
-
-            log.debug("Manage extraction for student project and typeCours");
-            //Gérer le contenu du projet à copier selon le type de cours
-            if (typeCours.equals("JAVA")) {
-                ZipUtils.copyJavaProject(projetExtract, etudiantDirRestructured);
-            } else if (typeCours.equals("PYTHON")) {
-                ZipUtils.copyPythonProject(projetExtract, etudiantDirRestructured);
-            } else if (typeCours.equals("JAVA_JEE")) {
-                ZipUtils.copyJavaJEEProject(projetExtract, etudiantDirRestructured);
-            } else {
-                //les deux sets à ignorer sont vides
-                ZipUtils.copyAll(projetExtract, etudiantDirRestructured, Set.of(), Set.of());
+            //Le format (zip, 7z, rar, tar) a été détecté à partir du contenu du fichier, et les
+            //entrées ignorées par le type de cours ne sont pas décompressées
+            try (ArchiveExtractors.DetectedArchive archive = zipEtudiant.get()) {
+                manageExtractionZip(archive, projetExtract, rules, report);
             }
+
+            //Copier le projet en appliquant les règles du cours (dossiers exclus élagués)
+            ZipUtils.copyAll(projetExtract, etudiantDirRestructured, rules);
         } else {
-            ZipUtils.copyAll(etudiantDir, etudiantDirRestructured, Set.of(), Set.of());
+            ZipUtils.copyAll(etudiantDir, etudiantDirRestructured, IgnoreRules.NONE);
         }
     }
 
     /**
-     * Trouve un sous-zip (.zip, .7zip ou .rar) dans le dossier d'étudiant, s'il existe
+     * Trouve une archive (zip, 7z, rar, tar...) dans le dossier d'étudiant, s'il en existe une.
+     * <p>
+     * Seuls les fichiers qui peuvent être une archive ({@link ArchiveFormat#isCandidate}) sont
+     * examinés, ceux portant une extension d'archive en premier, puis par ordre alphabétique : le
+     * premier dont les premiers octets correspondent à un format supporté est retenu. Un .docx ou
+     * un .jar n'est jamais pris pour le projet : sans archive, tout le dossier est recopié.
+     * <p>
+     * L'archive retenue est retournée ouverte, avec son format : elle est extraite sans être
+     * rouverte.
      */
-    private Optional<Path> findSubFolderZip(Path dossierEtudiant) {
+    private Optional<ArchiveExtractors.DetectedArchive> findSubFolderZip(Path dossierEtudiant) {
+        List<Path> candidates;
         try (Stream<Path> files = Files.list(dossierEtudiant)) {
-            return files.filter(p -> {
-                String fileName = p.toString().toLowerCase();
-                return fileName.endsWith(".zip") || fileName.endsWith(".7z") || fileName.endsWith(".rar");
-            }).findFirst();
+            candidates = files.filter(Files::isRegularFile)
+                    .filter(p -> ArchiveFormat.isCandidate(p.getFileName().toString()))
+                    .sorted(Comparator.comparing((Path p) -> !ArchiveFormat.hasArchiveExtension(p.getFileName().toString()))
+                            .thenComparing(p -> p.getFileName().toString()))
+                    .toList();
         } catch (IOException e) {
             log.error("Error while searching for sub-zip in {}", dossierEtudiant, e);
+            return Optional.empty();
+        }
+
+        for (Path candidate : candidates) {
+            try {
+                Optional<ArchiveExtractors.DetectedArchive> archive = archiveExtractors.open(candidate);
+                if (archive.isPresent()) {
+                    return archive;
+                }
+            } catch (IOException e) {
+                log.warn("Unable to read {} → {}", candidate, e.getMessage());
+            }
+            if (ArchiveFormat.hasArchiveExtension(candidate.getFileName().toString())) {
+                log.warn("{} has an archive extension but is not a supported archive", candidate);
+            }
         }
         return Optional.empty();
     }
 
     /**
-     * Gère la façon d'extraire le zip selon le type de zip
+     * Extrait l'archive de l'étudiant, quel que soit son format (détecté à l'ouverture), sur le
+     * canal ouvert par {@link #findSubFolderZip(Path)}.
+     * L'extraction s'arrête dès qu'une des limites (restructuring.limits) est dépassée.
+     * Les règles du cours sont évaluées sur le nom de chaque entrée avant décompression :
+     * les dossiers "target", ".git", "venv"... ne sont jamais écrits sur le disque.
      */
-    private void manageExtractionZip(Path zipEtudiantPath, Path projetExtract, Path etudiantDir) throws IOException {
-        String zipEtudiantPathString = zipEtudiantPath.toString();
-        if (zipEtudiantPathString.endsWith(".zip")) {
-            ZipUtils.unzip(zipEtudiantPath, projetExtract);
-        } else if (zipEtudiantPathString.endsWith(".7z")) {
-            //Gestion des fichiers 7z
-            ZipUtils.extract7z(zipEtudiantPath, projetExtract);
+    private void manageExtractionZip(ArchiveExtractors.DetectedArchive archive, Path projetExtract, IgnoreRules rules,
+                                     RestructuringReport report) throws IOException {
+        Files.createDirectories(projetExtract);
+        DirectoryWriter writer = new DirectoryWriter(projetExtract, archiveExtractors.getBufferPool(), rules::isIgnored);
+        try {
+            archiveExtractors.extract(archive, writer);
+        } catch (ArchiveLimitException e) {
+            //Extraction interrompue : on ne garde rien d'un rendu incomplet
+            ZipUtils.deleteFolder(projetExtract);
+            throw e;
         }
+        report.recordExtraction(writer.getBytesWritten(), writer.getEntriesSkipped());
     }
 
 
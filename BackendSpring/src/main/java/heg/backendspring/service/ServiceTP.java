@@ -1,6 +1,7 @@
 package heg.backendspring.service;
 
 import static heg.backendspring.utils.StudentNameUtils.*;
+import heg.backendspring.config.UploadProperties;
 import heg.backendspring.entity.*;
 import heg.backendspring.enums.StudentSubmissionType;
 import heg.backendspring.mapping.MapperTP;
@@ -9,12 +10,16 @@ import heg.backendspring.models.TPDto;
 import heg.backendspring.models.TPStatusDto;
 import heg.backendspring.repository.RepositoryTP;
 import heg.backendspring.repository.RepositoryTPStatus;
+import heg.backendspring.utils.FileDownload;
+import heg.backendspring.utils.StudentArchives;
+import heg.backendspring.utils.SubmissionIngest;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.FileSystemUtils;
 
 import java.io.File;
@@ -23,7 +28,6 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
@@ -47,6 +51,9 @@ public class ServiceTP {
     private final RepositoryTPStatus repositoryTPStatus;
     //private final ServiceCourse serviceCourse;
     private final ServiceTPStatus serviceTPStatus;
+    private final ServiceBlobStore serviceBlobStore;
+    private final UploadProperties uploadProperties;
+    private final TransactionTemplate transactionTemplate;
 
 
     private final MapperTP mapperTP;
@@ -71,39 +78,110 @@ public class ServiceTP {
      * <p>
      * De plus, la couche service ne dois pas connaitre le protocole HTTP ou le format
      * multipart, c'est pourquoi on utilise un InputStream
+     * <p>
+     * Si le zip déposé est identique au rendu actuel (même empreinte SHA-256), le rendu,
+     * son zip restructuré et les statuts du TP sont conservés tels quels.
+     * <p>
+     * Pas de transaction pendant la copie : le TP est lu, le zip écrit, puis le rendu enregistré.
      */
-    @Transactional
     public TPDto addSubmissionToTP(Long idTP, InputStream zipFile) {
         Optional<TP> tpOpt = repositoryTP.findById(idTP);
         if (tpOpt.isPresent()) {
             TP tp = tpOpt.get();
-            //nom du fichier
-            String nomFichier = "TP" + tp.getNo() + "_RenduCyberlearn.zip";
-            String codeCours = tp.getCourse().getCode();
-            //chemin vers le fichier
-            Path tpFolder = Paths.get(zipStoragePath, codeCours, "TP" + tp.getNo());
-
             //Chemin complet vers le fichier
-            Path cheminVersZip = tpFolder.resolve(nomFichier);
+            Path cheminVersZip = getSubmissionPath(tp);
             //Copier le stream
+            String contentHash = null;
             try {
                 if (zipFile == null) {
                     log.info("Zip file is null");
                 }
-                Files.copy(zipFile, cheminVersZip, StandardCopyOption.REPLACE_EXISTING);
+                SubmissionIngest.Result result = SubmissionIngest.copy(zipFile, cheminVersZip, currentContentHash(tp));
+                if (result.unchanged()) {
+                    return unchangedSubmission(tp);
+                }
+                contentHash = result.sha256();
             } catch (IOException e) {
                 log.error("Unable to copy zip file", e);
             }
 
-            //Creer le rendu
-            tp.setSubmission(new Submission(nomFichier, cheminVersZip.toString()
-                    , null));
-            repositoryTP.save(tp);
-            return mapperTP.toDto(tp);
+            String storedHash = contentHash;
+            return transactionTemplate.execute(status -> attachSubmission(tp, storedHash));
         }
         return null;
     }
 
+    /**
+     * Ajoute un rendu au TP en lisant directement le corps de la requête (sans multipart) :
+     * le zip est écrit une seule fois, à côté de son emplacement définitif, pendant que son
+     * empreinte SHA-256 est calculée et sa structure vérifiée (voir {@link SubmissionIngest}).
+     * Un contenu qui n'est pas un zip valide est refusé et l'ancien rendu reste en place ;
+     * un contenu identique au rendu actuel ne le remplace pas.
+     * <p>
+     * Comme pour {@link #addSubmissionToTP}, aucune transaction n'est ouverte pendant la lecture du corps.
+     */
+    public TPDto addSubmissionStreamToTP(Long idTP, InputStream zipFile) throws IOException {
+        TP tp = repositoryTP.findById(idTP)
+                .orElseThrow(() -> new EntityNotFoundException("TP not found with id: " + idTP));
+        Path cheminVersZip = getSubmissionPath(tp);
+        SubmissionIngest.Result result = SubmissionIngest.ingest(zipFile, cheminVersZip,
+                uploadProperties.getMaxFileSize().toBytes(), currentContentHash(tp));
+        if (result.unchanged()) {
+            return unchangedSubmission(tp);
+        }
+        log.info("Submission of TP {} stored in {}: {} byte(s), {} entr(ies), sha256={}",
+                tp.getNo(), cheminVersZip, result.size(), result.entries(), result.sha256());
+        return transactionTemplate.execute(status -> attachSubmission(tp, result.sha256()));
+    }
+
+    /**
+     * Empreinte du rendu actuel du TP, null s'il n'y en a pas (ou s'il a été déposé avant
+     * que les empreintes soient enregistrées).
+     */
+    public String currentContentHash(TP tp) {
+        Submission submission = tp.getSubmission();
+        return submission != null ? submission.getContentHash() : null;
+    }
+
+    /**
+     * Dépôt identique au rendu actuel : rien n'est modifié.
+     */
+    public TPDto unchangedSubmission(TP tp) {
+        log.info("Submission of TP {} unchanged (sha256={}), keeping current submission",
+                tp.getNo(), tp.getSubmission().getContentHash());
+        return mapperTP.toDto(tp);
+    }
+
+    /**
+     * Chemin du zip Cyberlearn d'un TP : "{zip-storage.path}/{CODE_COURS}/TP{no}/TP{no}_RenduCyberlearn.zip"
+     */
+    public Path getSubmissionPath(TP tp) {
+        //nom du fichier
+        String nomFichier = "TP" + tp.getNo() + "_RenduCyberlearn.zip";
+        String codeCours = tp.getCourse().getCode();
+        //chemin vers le fichier
+        Path tpFolder = Paths.get(zipStoragePath, codeCours, "TP" + tp.getNo());
+        return tpFolder.resolve(nomFichier);
+    }
+
+    /**
+     * Crée le rendu du TP à partir du zip déjà déposé à l'emplacement {@link #getSubmissionPath(TP)}.
+     * Les appels depuis ce service passent par {@code transactionTemplate} (pas de proxy en
+     * auto-invocation).
+     *
+     * @param contentHash empreinte SHA-256 du zip déposé (null si inconnue)
+     */
+    @Transactional
+    public TPDto attachSubmission(TP tp, String contentHash) {
+        Path cheminVersZip = getSubmissionPath(tp);
+        //Creer le rendu
+        Submission submission = new Submission(cheminVersZip.getFileName().toString(), cheminVersZip.toString()
+                , null);
+        submission.setContentHash(contentHash);
+        tp.setSubmission(submission);
+        return mapperTP.toDto(repositoryTP.save(tp));
+    }
+
     /**
      * Méthode permettant de récupérer tous les TPStatus d'un TP
      */
@@ -120,11 +198,20 @@ public class ServiceTP {
 
     /**
      * Méthode permettant de créer la liste des status des TP pour chaque étudiant
+     * <p>
+     * Les dossiers étudiants sont lus dans le zip restructuré hors transaction ; seule la
+     * création des statuts se fait dans une transaction courte.
      */
-    @Transactional
     public TPDto addTPStatusListToTP(TP tp, Set<Student> students) {
-
         List<String> studentsSubmission = serviceSubmission.getStudentsSubmission(tp.getSubmission());
+        return transactionTemplate.execute(status -> addTPStatusListToTP(tp, students, studentsSubmission));
+    }
+
+    /**
+     * Crée les statuts manquants du TP d'après la liste des étudiants ayant rendu leur TP.
+     */
+    @Transactional
+    public TPDto addTPStatusListToTP(TP tp, Set<Student> students, List<String> studentsSubmission) {
         for (Student student : students) {
             //Créer le TPStatus pour chaque étudiant
             log.info("Infos TPStatus : TP {} - Étudiant : {}", tp.getNo(), student.getEmail());
@@ -147,8 +234,7 @@ public class ServiceTP {
             //Associer le TPStatus au TP
             tp.getStatusStudents().add(tpStatus);
         }
-        repositoryTP.save(tp);
-        return mapperTP.toDto(tp);
+        return mapperTP.toDto(repositoryTP.save(tp));
     }
 
     /**
@@ -178,18 +264,62 @@ public class ServiceTP {
 
     /**
      * Méthode permettant de récupérer le fichier zip restructuré pour un TP donné
+     * <p>
+     * Null si le rendu n'a pas (encore) de zip restructuré, ou si celui-ci a été produit à partir
+     * d'un autre zip Cyberlearn que le rendu actuel.
      */
     public File getSubmissionFileRestructurated(TPDto tpDto) {
+        return getSubmissionDownloadRestructurated(tpDto).map(source -> source.file().toFile()).orElse(null);
+    }
+
+    /**
+     * Zip restructuré d'un TP à télécharger, avec l'empreinte du zip (ETag) ; vide dans les mêmes
+     * cas que {@link #getSubmissionFileRestructurated(TPDto)}.
+     */
+    public Optional<FileDownload.Source> getSubmissionDownloadRestructurated(TPDto tpDto) {
         //Récupérer le TP
         TP tp = repositoryTP.findById(tpDto.id()).orElseThrow();
         //Récupérer le rendu
         Submission submission = tp.getSubmission();
-        if (submission != null) {
+        if (submission != null && submission.getPathFileStructured() != null) {
+            if (submission.getStructuredContentHash() != null
+                    && !submission.getStructuredContentHash().equals(submission.getContentHash())) {
+                log.warn("Restructured zip of TP {} was built from another submission, it must be regenerated", tp.getNo());
+                return Optional.empty();
+            }
             log.info("Path to restructurated file is not null : {}", submission.getPathFileStructured());
             Path pathFile = Paths.get(submission.getPathFileStructured());
-            return pathFile.toFile();
+            //Reconstruire le zip depuis le magasin de blobs s'il a été dédupliqué
+            Path download = pathFile;
+            try {
+                download = serviceBlobStore.materialize(pathFile);
+            } catch (IOException e) {
+                log.error("Unable to materialize {} from blob store", pathFile, e);
+            }
+            return Optional.of(new FileDownload.Source(download, pathFile.getFileName().toString(),
+                    "application/zip", submission.getStructuredFileHash()));
         }
-        return null;
+        return Optional.empty();
+    }
+
+    /**
+     * Archive d'un étudiant ({@code folder} : dossier "NomPrenom") à télécharger, avec son
+     * empreinte (ETag), si les archives par étudiant ont été générées pour le rendu actuel
+     * (restructuring.student-archives).
+     */
+    public Optional<FileDownload.Source> getStudentArchiveDownload(TPDto tpDto, String folder) {
+        TP tp = repositoryTP.findById(tpDto.id()).orElseThrow();
+        Submission submission = tp.getSubmission();
+        if (submission == null || submission.getPathFileStructured() == null || submission.getContentHash() == null) {
+            return Optional.empty();
+        }
+        Path dir = StudentArchives.dirFor(Paths.get(submission.getPathFileStructured()));
+        return StudentArchives.read(dir)
+                .filter(archives -> submission.getContentHash().equals(archives.contentHash()))
+                .flatMap(archives -> archives.find(folder))
+                .filter(student -> Files.isRegularFile(dir.resolve(student.file())))
+                .map(student -> new FileDownload.Source(dir.resolve(student.file()),
+                        "TP" + tp.getNo() + "_" + student.file(), "application/zip", student.sha256()));
     }
 
     /**
@@ -213,6 +343,8 @@ public class ServiceTP {
         }
         // Supprimer le TP lui-même
         repositoryTP.delete(tp);
+        // Blobs du rendu qui ne sont plus référencés (dédoublonnage)
+        serviceBlobStore.collectGarbageAfterCommit();
 
         log.info("Deleted TP {} (id={}) from course {}",
                 tp.getNo(),
@@ -0,0 +1,227 @@
+package heg.backendspring.service;
+
+import heg.backendspring.config.RestructuringProperties;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Verrous par TP (cours + numéro de TP).
+ * <p>
+ * Les opérations qui écrivent dans le dossier d'un TP (dépôt du zip Cyberlearn, restructuration,
+ * mise à jour des statuts, suppression) prennent le verrou du TP : elles sont sérialisées pour
+ * un même TP, alors que des TPs différents sont traités en parallèle.
+ * <p>
+ * Les verrous locaux sont répartis ("striped") sur un tableau fixe de {@link ReentrantLock}
+ * (restructuring.locks.stripes) : la mémoire reste bornée quel que soit le nombre de TPs, deux
+ * TPs ne s'attendent que s'ils tombent sur le même verrou. Avec le backend ADVISORY, un verrou
+ * consultatif PostgreSQL ({@code pg_try_advisory_lock(courseId, tpNo)}) est pris en plus pour
+ * sérialiser le TP entre toutes les instances : la connexion qui le détient est gardée jusqu'à
+ * la libération, dans un pool dédié (tpLockDataSource, restructuring.locks.advisory-pool-size)
+ * et non dans le pool principal. Une attente n'occupe aucune connexion (le verrou est retenté à
+ * intervalle régulier, restructuring.locks.advisory-retry-interval).
+ * <p>
+ * Un thread qui détient déjà le verrou d'un TP peut le reprendre (appels imbriqués).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ServiceTPLocks {
+
+    /**
+     * Verrou détenu, libéré par {@link #close()} (try-with-resources).
+     */
+    public interface TPLock extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+    private record Key(Long courseId, int tpNo) {
+    }
+
+    /**
+     * Verrou d'un TP détenu par le thread courant : nombre de prises imbriquées, verrou local
+     * et connexion du verrou consultatif (null avec le backend LOCAL).
+     */
+    private static final class Holder {
+
+        private final ReentrantLock stripe;
+        private final Connection advisory;
+        private int count = 1;
+
+        private Holder(ReentrantLock stripe, Connection advisory) {
+            this.stripe = stripe;
+            this.advisory = advisory;
+        }
+    }
+
+    private final ThreadLocal<Map<Key, Holder>> held = ThreadLocal.withInitial(HashMap::new);
+    private ReentrantLock[] stripes;
+
+    //==============================
+    //       DEPENDANCES
+    //==============================
+    private final RestructuringProperties restructuringProperties;
+    @Qualifier("tpLockDataSource")
+    private final DataSource dataSource;
+
+    @PostConstruct
+    public void init() {
+        stripes = new ReentrantLock[Math.max(1, restructuringProperties.getLocks().getStripes())];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Prend le verrou du TP {@code tpNo} du cours {@code courseId}, en attendant qu'il soit libre.
+     *
+     * @throws IllegalStateException si le thread est interrompu pendant l'attente
+     *                               ou si le verrou consultatif ne peut pas être pris
+     */
+    public TPLock lock(Long courseId, int tpNo) {
+        Key key = new Key(courseId, tpNo);
+        Map<Key, Holder> locks = held.get();
+        Holder holder = locks.get(key);
+        if (holder != null) {
+            holder.count++;
+            return handle(key);
+        }
+
+        ReentrantLock stripe = stripes[Math.floorMod(31 * Long.hashCode(courseId) + tpNo, stripes.length)];
+        try {
+            stripe.lockInterruptibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the lock of TP " + tpNo
+                    + " of course id=" + courseId, e);
+        }
+        try {
+            locks.put(key, new Holder(stripe, advisoryLock(key)));
+        } catch (RuntimeException e) {
+            stripe.unlock();
+            throw e;
+        }
+        return handle(key);
+    }
+
+    // --------------------------------------------------------------------------
+    // Méthodes privées "utilitaires"
+    // --------------------------------------------------------------------------
+
+    private TPLock handle(Key key) {
+        return new TPLock() {
+            private boolean closed;
+
+            @Override
+            public void close() {
+                if (!closed) {
+                    closed = true;
+                    release(key);
+                }
+            }
+        };
+    }
+
+    private void release(Key key) {
+        Map<Key, Holder> locks = held.get();
+        Holder holder = locks.get(key);
+        if (holder == null || --holder.count > 0) {
+            return;
+        }
+        locks.remove(key);
+        try {
+            if (holder.advisory != null) {
+                advisoryUnlock(key, holder.advisory);
+            }
+        } finally {
+            holder.stripe.unlock();
+        }
+    }
+
+    /**
+     * Verrou consultatif PostgreSQL du TP, sur une connexion gardée jusqu'à la libération
+     * (verrou de session) ; null avec le backend LOCAL. Tant que le verrou est détenu ailleurs,
+     * ou que toutes les connexions du pool des verrous sont prises, la connexion est rendue
+     * au pool et la prise retentée après restructuring.locks.advisory-retry-interval.
+     */
+    private Connection advisoryLock(Key key) {
+        RestructuringProperties.Locks locks = restructuringProperties.getLocks();
+        if (locks.getBackend() != RestructuringProperties.LockBackend.ADVISORY) {
+            return null;
+        }
+        long retryMillis = Math.max(1, locks.getAdvisoryRetryInterval().toMillis());
+        while (true) {
+            Connection connection = null;
+            try {
+                connection = dataSource.getConnection();
+                if (tryAdvisoryLock(key, connection)) {
+                    return connection;
+                }
+            } catch (SQLTransientConnectionException e) {
+                // Pool des verrous épuisé : d'autres TPs sont verrouillés par cette instance
+                log.debug("No lock connection available for TP {} of course id={}, retrying", key.tpNo(), key.courseId());
+            } catch (SQLException e) {
+                closeQuietly(connection);
+                throw new IllegalStateException("Could not acquire the advisory lock of TP " + key.tpNo()
+                        + " of course id=" + key.courseId(), e);
+            }
+            closeQuietly(connection);
+            try {
+                Thread.sleep(retryMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the advisory lock of TP " + key.tpNo()
+                        + " of course id=" + key.courseId(), e);
+            }
+        }
+    }
+
+    private static boolean tryAdvisoryLock(Key key, Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_try_advisory_lock(?, ?)")) {
+            statement.setInt(1, Long.hashCode(key.courseId()));
+            statement.setInt(2, key.tpNo());
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() && result.getBoolean(1);
+            }
+        }
+    }
+
+    private void advisoryUnlock(Key key, Connection connection) {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_advisory_unlock(?, ?)")) {
+            statement.setInt(1, Long.hashCode(key.courseId()));
+            statement.setInt(2, key.tpNo());
+            statement.execute();
+        } catch (SQLException e) {
+            // Connexion perdue : la session, et donc le verrou, n'existent plus côté serveur
+            log.warn("Could not release the advisory lock of TP {} of course id={} → {}",
+                    key.tpNo(), key.courseId(), e.getMessage());
+        } finally {
+            closeQuietly(connection);
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.warn("Could not close lock connection → {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package heg.backendspring.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import heg.backendspring.config.UploadProperties;
+import heg.backendspring.entity.TP;
+import heg.backendspring.models.SubmissionDto;
+import heg.backendspring.models.UploadInitDto;
+import heg.backendspring.models.UploadStatusDto;
+import heg.backendspring.repository.RepositoryCourse;
+import heg.backendspring.utils.SubmissionIngest;
+import heg.backendspring.utils.ZipUtils;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Dépôt d'un zip Cyberlearn en plusieurs morceaux, pour les gros exports.
+ * <p>
+ * Protocole : ouverture du dépôt (taille du fichier et des morceaux), envoi des morceaux par
+ * offset dans n'importe quel ordre et en parallèle, consultation de l'état (morceaux manquants)
+ * pour reprendre après une coupure, puis finalisation. Chaque morceau est un fichier du dossier
+ * du dépôt ; un morceau renvoyé remplace le précédent. À la finalisation, les morceaux sont
+ * assemblés dans le dossier du TP avec {@link FileChannel#transferTo} puis le rendu est créé,
+ * comme pour un dépôt en une fois.
+ * <p>
+ * L'état d'un dépôt est entièrement sur le disque (upload.dir) : il survit à un redémarrage.
+ * Un dépôt abandonné (aucun morceau reçu depuis upload.session-ttl) est supprimé.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ServiceUpload {
+
+    private static final Pattern UPLOAD_ID = Pattern.compile("[0-9a-f]{32}");
+    private static final String SESSION_FILE = "upload.json";
+
+    /**
+     * Paramètres d'un dépôt, écrits à l'ouverture dans le dossier du dépôt.
+     */
+    private record UploadSession(Long courseId, Integer tpNo, long fileSize, int chunkSize) {
+
+        long chunkCount() {
+            return (fileSize + chunkSize - 1) / chunkSize;
+        }
+
+        long chunkLength(int index) {
+            return Math.min(chunkSize, fileSize - (long) index * chunkSize);
+        }
+    }
+
+    //==============================
+    //       DEPENDANCES
+    //==============================
+    private final RepositoryCourse repositoryCourse;
+    private final ServiceTP serviceTP;
+    private final ServiceTPLocks serviceTPLocks;
+    private final UploadProperties uploadProperties;
+    private final ObjectMapper objectMapper;
+    private final ScheduledExecutorService jobQueueScheduler;
+
+
+    //==============================
+    //       UPLOAD METHODS
+    //==============================
+
+    /**
+     * Ouvre un dépôt pour le TP {@code tpNo} du cours {@code courseId}.
+     */
+    public UploadStatusDto initUpload(Long courseId, int tpNo, UploadInitDto init) throws IOException {
+        findTP(courseId, tpNo);
+        if (init == null || init.fileSize() == null || init.fileSize() <= 0) {
+            throw new IllegalArgumentException("File size must be positive");
+        }
+        if (init.fileSize() > uploadProperties.getMaxFileSize().toBytes()) {
+            throw new IllegalArgumentException("File size exceeds " + uploadProperties.getMaxFileSize());
+        }
+        // Taille minimale des morceaux : le nombre de morceaux (fichiers du dossier du dépôt,
+        // entrées de missingChunks) reste borné par upload.max-chunks
+        long maxChunkSize = uploadProperties.getMaxChunkSize().toBytes();
+        long minChunkSize = (init.fileSize() + uploadProperties.getMaxChunks() - 1) / uploadProperties.getMaxChunks();
+        long chunkSize = init.chunkSize() != null
+                ? init.chunkSize()
+                : Math.max(Math.min(uploadProperties.getChunkSize().toBytes(), maxChunkSize), minChunkSize);
+        if (chunkSize < minChunkSize || chunkSize > maxChunkSize) {
+            throw new IllegalArgumentException("Chunk size must be between " + minChunkSize + " and "
+                    + maxChunkSize + " bytes for a file of " + init.fileSize() + " bytes");
+        }
+
+        String uploadId = UUID.randomUUID().toString().replace("-", "");
+        UploadSession session = new UploadSession(courseId, tpNo, init.fileSize(), Math.toIntExact(chunkSize));
+        Path dir = Files.createDirectories(uploadDir(uploadId));
+        objectMapper.writeValue(dir.resolve(SESSION_FILE).toFile(), session);
+
+        log.info("Upload {} opened for TP {} of course id={}: {} byte(s) in {} chunk(s)",
+                uploadId, tpNo, courseId, session.fileSize(), session.chunkCount());
+        return toStatus(uploadId, session);
+    }
+
+    /**
+     * État d'un dépôt : octets reçus et morceaux encore manquants.
+     */
+    public UploadStatusDto getUploadStatus(String uploadId) throws IOException {
+        return toStatus(uploadId, readSession(uploadId));
+    }
+
+    /**
+     * Reçoit le morceau commençant à {@code offset}. L'offset doit être un multiple de la taille
+     * des morceaux et le morceau complet (seul le dernier peut être plus court).
+     * Le morceau est écrit dans un fichier temporaire puis renommé : un envoi interrompu
+     * n'est jamais compté comme reçu.
+     */
+    public UploadStatusDto putChunk(String uploadId, long offset, InputStream data) throws IOException {
+        UploadSession session = readSession(uploadId);
+        if (offset < 0 || offset >= session.fileSize() || offset % session.chunkSize() != 0) {
+            throw new IllegalArgumentException("Invalid chunk offset " + offset + " for upload " + uploadId);
+        }
+        int index = Math.toIntExact(offset / session.chunkSize());
+        long expected = session.chunkLength(index);
+
+        Path dir = uploadDir(uploadId);
+        Path part = Files.createTempFile(dir, chunkName(index), ".part");
+        try {
+            long received;
+            try (OutputStream out = Files.newOutputStream(part)) {
+                received = data.transferTo(new ChunkLimitOutputStream(out, expected));
+            }
+            if (received != expected) {
+                throw new IllegalArgumentException("Chunk at offset " + offset + " must be " + expected
+                        + " bytes, received " + received);
+            }
+            Files.move(part, dir.resolve(chunkName(index)),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(part);
+        }
+        return toStatus(uploadId, session);
+    }
+
+    /**
+     * Finalise le dépôt : les morceaux sont assemblés dans le zip Cyberlearn du TP (fichier
+     * temporaire puis renommage) et le rendu du TP est créé. Le dossier du dépôt est ensuite supprimé.
+     * Si les morceaux reproduisent exactement le rendu actuel (même empreinte SHA-256), rien n'est
+     * réécrit et le rendu existant est conservé.
+     * <p>
+     * L'assemblage se fait sous le verrou du TP : il attend la fin d'une restructuration en cours.
+     * Aucune transaction n'est ouverte pendant la copie des morceaux, seul le rendu est enregistré
+     * ensuite ({@link ServiceTP#attachSubmission}).
+     */
+    public SubmissionDto completeUpload(String uploadId) throws IOException {
+        UploadSession session = readSession(uploadId);
+        List<Integer> missing = missingChunks(uploadId, session);
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("Upload " + uploadId + " is incomplete, missing chunks " + missing);
+        }
+        try (ServiceTPLocks.TPLock ignored = serviceTPLocks.lock(session.courseId(), session.tpNo())) {
+            return assemble(uploadId, session);
+        }
+    }
+
+    /**
+     * Supprime les dépôts abandonnés au démarrage puis toutes les upload.cleanup-interval.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startSessionExpiry() {
+        long millis = Math.max(1, uploadProperties.getCleanupInterval().toMillis());
+        jobQueueScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                int removed = expireSessions();
+                if (removed > 0) {
+                    log.info("Removed {} abandoned upload(s)", removed);
+                }
+            } catch (RuntimeException e) {
+                log.error("Upload cleanup failed", e);
+            }
+        }, 0, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Supprime les dépôts dont le dossier n'a pas été modifié (ouverture ou dernier morceau reçu)
+     * depuis upload.session-ttl.
+     *
+     * @return le nombre de dépôts supprimés
+     */
+    public int expireSessions() {
+        Path root = Paths.get(uploadProperties.getDir());
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        FileTime expiry = FileTime.from(Instant.now().minus(uploadProperties.getSessionTtl()));
+        int removed = 0;
+        try (DirectoryStream<Path> sessions = Files.newDirectoryStream(root)) {
+            for (Path dir : sessions) {
+                if (!Files.isDirectory(dir) || !UPLOAD_ID.matcher(dir.getFileName().toString()).matches()) {
+                    continue;
+                }
+                try {
+                    if (lastModified(dir).compareTo(expiry) < 0) {
+                        ZipUtils.deleteFolder(dir);
+                        log.info("Upload {} expired", dir.getFileName());
+                        removed++;
+                    }
+                } catch (IOException e) {
+                    log.warn("Unable to expire upload {} → {}", dir.getFileName(), e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Unable to list uploads in {} → {}", root, e.getMessage());
+        }
+        return removed;
+    }
+
+    // --------------------------------------------------------------------------
+    // Méthodes privées "utilitaires"
+    // --------------------------------------------------------------------------
+
+    /**
+     * Assemble les morceaux du dépôt dans le zip Cyberlearn du TP (verrou du TP détenu).
+     */
+    private SubmissionDto assemble(String uploadId, UploadSession session) throws IOException {
+        TP tp = findTP(session.courseId(), session.tpNo());
+
+        Path target = serviceTP.getSubmissionPath(tp);
+        Path dir = uploadDir(uploadId);
+        List<Path> chunks = new ArrayList<>();
+        for (int index = 0; index < session.chunkCount(); index++) {
+            chunks.add(dir.resolve(chunkName(index)));
+        }
+        String contentHash = SubmissionIngest.sha256Of(chunks);
+        if (contentHash.equals(serviceTP.currentContentHash(tp)) && Files.exists(target)) {
+            SubmissionDto submission = serviceTP.unchangedSubmission(tp).submission();
+            ZipUtils.deleteFolder(dir);
+            return submission;
+        }
+
+        Files.createDirectories(target.getParent());
+        Path tmp = target.resolveSibling(target.getFileName() + ".upload");
+        try {
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (Path chunk : chunks) {
+                    try (FileChannel in = FileChannel.open(chunk, StandardOpenOption.READ)) {
+                        long size = in.size();
+                        for (long position = 0; position < size; ) {
+                            position += in.transferTo(position, size - position, out);
+                        }
+                    }
+                }
+                if (out.size() != session.fileSize()) {
+                    throw new IOException("Assembled file has " + out.size() + " bytes, expected " + session.fileSize());
+                }
+                out.force(true);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+
+        SubmissionDto submission = serviceTP.attachSubmission(tp, contentHash).submission();
+        ZipUtils.deleteFolder(dir);
+        log.info("Upload {} completed into {}", uploadId, target);
+        return submission;
+    }
+
+    private TP findTP(Long courseId, int tpNo) {
+        repositoryCourse.findById(courseId)
+                .orElseThrow(() -> new EntityNotFoundException("Course not found with id: " + courseId));
+        return repositoryCourse.findTPByCourseIdAndNo(courseId, tpNo)
+                .orElseThrow(() -> new EntityNotFoundException(
+                        "TP number " + tpNo + " not found for course id: " + courseId));
+    }
+
+    private Path uploadDir(String uploadId) {
+        if (uploadId == null || !UPLOAD_ID.matcher(uploadId).matches()) {
+            throw new IllegalArgumentException("Invalid upload id: " + uploadId);
+        }
+        return Paths.get(uploadProperties.getDir(), uploadId);
+    }
+
+    private UploadSession readSession(String uploadId) throws IOException {
+        Path file = uploadDir(uploadId).resolve(SESSION_FILE);
+        if (Files.notExists(file)) {
+            throw new EntityNotFoundException("Upload not found with id: " + uploadId);
+        }
+        return objectMapper.readValue(file.toFile(), UploadSession.class);
+    }
+
+    /**
+     * Date de dernière activité d'un dépôt : la plus récente du dossier et de ses fichiers.
+     */
+    private static FileTime lastModified(Path dir) throws IOException {
+        FileTime latest = Files.getLastModifiedTime(dir);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                FileTime time = Files.getLastModifiedTime(file);
+                if (time.compareTo(latest) > 0) {
+                    latest = time;
+                }
+            }
+        }
+        return latest;
+    }
+
+    private static String chunkName(int index) {
+        return String.format("chunk-%06d", index);
+    }
+
+    private List<Integer> missingChunks(String uploadId, UploadSession session) {
+        Path dir = uploadDir(uploadId);
+        List<Integer> missing = new ArrayList<>();
+        for (int index = 0; index < session.chunkCount(); index++) {
+            if (Files.notExists(dir.resolve(chunkName(index)))) {
+                missing.add(index);
+            }
+        }
+        return missing;
+    }
+
+    private UploadStatusDto toStatus(String uploadId, UploadSession session) {
+        List<Integer> missing = missingChunks(uploadId, session);
+        long received = session.fileSize();
+        for (int index : missing) {
+            received -= session.chunkLength(index);
+        }
+        return new UploadStatusDto(uploadId, session.courseId(), session.tpNo(), session.fileSize(),
+                session.chunkSize(), Math.toIntExact(session.chunkCount()), received, missing);
+    }
+
+    /**
+     * Flux qui refuse d'écrire au-delà de {@code limit} octets : un client qui envoie un
+     * morceau trop long est arrêté sans remplir le disque.
+     */
+    private static final class ChunkLimitOutputStream extends OutputStream {
+
+        private final OutputStream out;
+        private final long limit;
+        private long written;
+
+        private ChunkLimitOutputStream(OutputStream out, long limit) {
+            this.out = out;
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (written + len > limit) {
+                throw new IllegalArgumentException("Chunk is larger than " + limit + " bytes");
+            }
+            out.write(b, off, len);
+            written += len;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package heg.backendspring.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.Deflater;
+
+/**
+ * Manifeste d'un zip restructuré stocké dans le {@link BlobStore} : liste ordonnée des
+ * entrées, avec pour chaque fichier l'empreinte SHA-256 de son contenu. Le manifeste fixe tout
+ * ce qui détermine les octets du zip reconstruit (ordre, dates, méthode de chaque entrée, niveau
+ * de compression) : deux reconstructions d'un même manifeste sont identiques octet par octet, et
+ * l'empreinte du manifeste sert d'empreinte au zip.
+ *
+ * @param level niveau de compression des entrées compressées ; null pour un manifeste écrit
+ *              avant l'enregistrement du niveau (niveau par défaut)
+ */
+public record BlobManifest(Integer level, List<Entry> entries) {
+
+    /**
+     * Entrée du zip ; {@code sha256} est null pour un dossier (nom terminé par "/").
+     * {@code method} (STORED ou DEFLATED) est null pour un manifeste écrit avant son enregistrement
+     * (entrée compressée).
+     */
+    public record Entry(String name, String sha256, long size, long time, Integer method) {
+
+        public boolean directory() {
+            return sha256 == null;
+        }
+
+        public int methodOrDefault() {
+            return method != null ? method : ZipArchiveEntry.DEFLATED;
+        }
+    }
+
+    public int levelOrDefault() {
+        return level != null ? level : Deflater.DEFAULT_COMPRESSION;
+    }
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    /**
+     * Nom du manifeste associé à un zip : "TP1_RenduRestructuration.zip" →
+     * "TP1_RenduRestructuration.manifest.json", dans le même dossier.
+     */
+    public static Path pathFor(Path zip) {
+        String name = zip.getFileName().toString();
+        String base = name.toLowerCase().endsWith(".zip") ? name.substring(0, name.length() - 4) : name;
+        return zip.resolveSibling(base + ".manifest.json");
+    }
+
+    public static BlobManifest read(Path file) throws IOException {
+        return MAPPER.readValue(file.toFile(), BlobManifest.class);
+    }
+
+    /**
+     * Écrit le manifeste (fichier temporaire puis renommage, pour ne jamais laisser
+     * un manifeste tronqué).
+     */
+    public void write(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        MAPPER.writeValue(tmp.toFile(), this);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Dossiers de premier niveau (un par étudiant), triés.
+     */
+    public List<String> topLevelFolders() {
+        Set<String> folders = new TreeSet<>();
+        for (Entry entry : entries) {
+            int slash = entry.name().indexOf('/');
+            if (slash > 0) {
+                folders.add(entry.name().substring(0, slash));
+            }
+        }
+        return List.copyOf(folders);
+    }
+}
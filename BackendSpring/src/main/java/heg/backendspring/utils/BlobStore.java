@@ -0,0 +1,166 @@
+package heg.backendspring.utils;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Stockage de fichiers adressé par contenu : chaque fichier est rangé sous le SHA-256 de
+ * son contenu ("ab/cd/abcd..."), un contenu identique n'est donc stocké qu'une seule fois.
+ * <p>
+ * Les écritures passent par un fichier temporaire puis un renommage atomique : plusieurs
+ * threads peuvent stocker le même contenu en même temps sans corrompre le blob.
+ * <p>
+ * Les blobs qui ne sont plus référencés par aucun manifeste sont supprimés par
+ * {@link #sweep(Set, Instant)} ; la date de modification d'un blob est mise à jour à chaque
+ * stockage, même s'il existait déjà, pour qu'un blob réutilisé par une restructuration en
+ * cours ne soit pas supprimé avant l'écriture de son manifeste.
+ */
+@Slf4j
+public class BlobStore {
+
+    /**
+     * Résultat d'un stockage : empreinte, taille, et si le contenu était nouveau.
+     */
+    public record Stored(String hash, long size, boolean added) {
+    }
+
+    /**
+     * Résultat d'un nettoyage : nombre de blobs supprimés et volume libéré.
+     */
+    public record Swept(int blobs, long bytes) {
+    }
+
+    @Getter
+    private final Path root;
+    private final Path tmpDir;
+
+    public BlobStore(Path root) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.tmpDir = this.root.resolve("tmp");
+        Files.createDirectories(tmpDir);
+    }
+
+    /**
+     * Stocke le contenu de {@code data} (lu jusqu'à la fin, non fermé).
+     */
+    public Stored put(InputStream data) throws IOException {
+        //Recréé si le magasin a été vidé depuis l'ouverture
+        Path tmp = Files.createTempFile(Files.createDirectories(tmpDir), "blob", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            long size;
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(tmp), digest)) {
+                size = data.transferTo(out);
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+
+            Path target = pathOf(hash);
+            if (reuse(target)) {
+                return new Stored(hash, size, false);
+            }
+            Files.createDirectories(target.getParent());
+            try {
+                // Un renommage concurrent du même contenu remplace au pire un fichier identique
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                reuse(target);
+                return new Stored(hash, size, false);
+            }
+            return new Stored(hash, size, true);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public boolean contains(String hash) {
+        return Files.isRegularFile(pathOf(hash));
+    }
+
+    public InputStream open(String hash) throws IOException {
+        return Files.newInputStream(pathOf(hash));
+    }
+
+    /**
+     * Supprime les blobs absents de {@code live} et non modifiés depuis {@code olderThan}.
+     * Les fichiers qui ne sont pas des blobs (fichiers temporaires, autres dossiers) sont ignorés.
+     */
+    public Swept sweep(Set<String> live, Instant olderThan) throws IOException {
+        int blobs = 0;
+        long bytes = 0;
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(root, 3)) {
+            files = paths.filter(path -> root.relativize(path).getNameCount() == 3).toList();
+        }
+        for (Path file : files) {
+            String hash = file.getFileName().toString();
+            if (!isBlob(file, hash) || live.contains(hash)) {
+                continue;
+            }
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                if (!attributes.isRegularFile() || !attributes.lastModifiedTime().toInstant().isBefore(olderThan)) {
+                    continue;
+                }
+                Files.delete(file);
+                blobs++;
+                bytes += attributes.size();
+            } catch (NoSuchFileException e) {
+                // Supprimé entre-temps
+            }
+        }
+        return new Swept(blobs, bytes);
+    }
+
+    public Path pathOf(String hash) {
+        if (hash == null || hash.length() != 64 || !hash.chars().allMatch(c -> Character.digit(c, 16) >= 0)) {
+            throw new IllegalArgumentException("Invalid blob hash: " + hash);
+        }
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    /**
+     * Rafraîchit la date de modification d'un blob existant (voir {@link #sweep(Set, Instant)}).
+     *
+     * @return false si le blob n'existe pas
+     */
+    private static boolean reuse(Path blob) throws IOException {
+        try {
+            Files.setLastModifiedTime(blob, FileTime.from(Instant.now()));
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private boolean isBlob(Path file, String hash) {
+        return hash.length() == 64 && hash.chars().allMatch(c -> Character.digit(c, 16) >= 0)
+                && file.equals(pathOf(hash));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package heg.backendspring.utils;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Choix, entrée par entrée, entre compression deflate et stockage sans compression (STORED).
+ * <p>
+ * Les fichiers déjà compressés (archives, images, vidéos, PDF, documents Office) ne gagnent rien
+ * à être recompressés : ils sont stockés tels quels, sans passer par deflate. Pour une extension
+ * inconnue, l'entropie des premiers octets ({@link #SAMPLE_SIZE}) peut être mesurée : un contenu
+ * proche du hasard (données compressées ou chiffrées) est stocké. Les extensions de
+ * {@code deflatedExtensions} (sources, texte) sont toujours compressées, sans échantillon.
+ *
+ * @param storedExtensions   extensions stockées sans compression (minuscules, sans ".")
+ * @param deflatedExtensions extensions toujours compressées
+ * @param sampleUnknown      mesure l'entropie des fichiers dont l'extension n'est dans aucune liste
+ * @param maxEntropy         entropie (bits par octet, 0-8) à partir de laquelle un fichier est stocké
+ */
+public record CompressionPolicy(Set<String> storedExtensions, Set<String> deflatedExtensions,
+                                boolean sampleUnknown, double maxEntropy) {
+
+    /**
+     * Nombre d'octets lus au début d'un fichier pour en mesurer l'entropie.
+     */
+    public static final int SAMPLE_SIZE = 4096;
+
+    /**
+     * En dessous de cette taille, l'échantillon n'est pas significatif et deflate ne coûte presque
+     * rien : le fichier est compressé.
+     */
+    public static final int MIN_SAMPLE_SIZE = 512;
+
+    public static final double DEFAULT_MAX_ENTROPY = 7.5;
+
+    public static final Set<String> DEFAULT_STORED_EXTENSIONS = Set.of(
+            "zip", "jar", "war", "ear", "apk", "7z", "rar", "gz", "tgz", "bz2", "xz", "zst", "lz4",
+            "png", "jpg", "jpeg", "gif", "webp", "heic", "avif",
+            "mp3", "ogg", "flac", "aac", "m4a", "mp4", "m4v", "mov", "avi", "mkv", "webm",
+            "pdf", "docx", "xlsx", "pptx", "odt", "ods", "odp", "epub", "woff", "woff2");
+
+    public static final Set<String> DEFAULT_DEFLATED_EXTENSIONS = Set.of(
+            "java", "class", "kt", "py", "ipynb", "c", "h", "cpp", "hpp", "cs", "js", "ts", "jsx", "tsx",
+            "html", "htm", "css", "scss", "xml", "json", "yml", "yaml", "properties", "sql", "md", "txt",
+            "csv", "tsv", "log", "sh", "bat", "gradle", "iml", "r", "php", "rb", "go", "rs", "swift",
+            "svg", "bmp", "tif", "tiff", "wav", "doc", "xls", "ppt");
+
+    /**
+     * Fichiers déjà compressés stockés, entropie mesurée pour les extensions inconnues.
+     */
+    public static final CompressionPolicy DEFAULT = new CompressionPolicy(
+            DEFAULT_STORED_EXTENSIONS, DEFAULT_DEFLATED_EXTENSIONS, true, DEFAULT_MAX_ENTROPY);
+
+    /**
+     * Toutes les entrées sont compressées.
+     */
+    public static final CompressionPolicy DEFLATE_ALL = new CompressionPolicy(Set.of(), Set.of(), false, 8);
+
+    public CompressionPolicy {
+        storedExtensions = normalize(storedExtensions);
+        deflatedExtensions = normalize(deflatedExtensions);
+        if (maxEntropy < 0 || maxEntropy > 8) {
+            throw new IllegalArgumentException("Invalid entropy threshold: " + maxEntropy);
+        }
+    }
+
+    /**
+     * Vrai si la décision pour {@code name} dépend de son contenu : il faut alors passer un
+     * échantillon à {@link #stores(String, byte[], int)}.
+     */
+    public boolean needsSample(String name) {
+        if (!sampleUnknown) {
+            return false;
+        }
+        String extension = extension(name);
+        return !storedExtensions.contains(extension) && !deflatedExtensions.contains(extension);
+    }
+
+    /**
+     * Vrai si l'entrée {@code name} doit être stockée sans compression.
+     *
+     * @param sample premiers octets du fichier (ignorés si {@link #needsSample} est faux, peut être null)
+     * @param length nombre d'octets valides dans {@code sample}
+     */
+    public boolean stores(String name, byte[] sample, int length) {
+        if (storedExtensions.contains(extension(name))) {
+            return true;
+        }
+        return needsSample(name) && sample != null && length >= MIN_SAMPLE_SIZE
+                && entropy(sample, length) >= maxEntropy;
+    }
+
+    /**
+     * Représentation stable des paramètres (empreinte des paramètres de restructuration).
+     */
+    public String settingsKey() {
+        return "stored=" + new TreeSet<>(storedExtensions) + ";deflated=" + new TreeSet<>(deflatedExtensions)
+                + ";sample=" + sampleUnknown + ";entropy=" + maxEntropy;
+    }
+
+    /**
+     * Entropie de Shannon des {@code length} premiers octets de {@code data}, en bits par octet
+     * (0 : octets tous identiques, 8 : octets aléatoires).
+     */
+    public static double entropy(byte[] data, int length) {
+        if (length <= 0) {
+            return 0;
+        }
+        int[] counts = new int[256];
+        for (int i = 0; i < length; i++) {
+            counts[data[i] & 0xFF]++;
+        }
+        double entropy = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                double p = (double) count / length;
+                entropy -= p * Math.log(p);
+            }
+        }
+        return entropy / Math.log(2);
+    }
+
+    // =============================
+    //         PRIVATE HELPERS
+    // =============================
+
+    private static Set<String> normalize(Set<String> extensions) {
+        Set<String> normalized = new TreeSet<>();
+        if (extensions != null) {
+            for (String extension : extensions) {
+                String e = extension.trim().toLowerCase(Locale.ROOT);
+                normalized.add(e.startsWith(".") ? e.substring(1) : e);
+            }
+        }
+        return Set.copyOf(normalized);
+    }
+
+    private static String extension(String name) {
+        int slash = name.lastIndexOf('/');
+        int dot = name.lastIndexOf('.');
+        return dot > slash + 1 ? name.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+}
@@ -0,0 +1,89 @@
+package heg.backendspring.utils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bilan de la compression des entrées écrites dans un zip ({@link CompressionPolicy}) :
+ * entrées compressées (volume avant / après, temps CPU de deflate) et entrées stockées sans
+ * compression. Les compteurs sont partagés par les threads qui écrivent les entrées.
+ * <p>
+ * Les entrées recopiées sans recompression depuis un autre zip ne sont pas comptées.
+ */
+public class CompressionStats {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final AtomicLong deflatedEntries = new AtomicLong();
+    private final AtomicLong deflatedBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+    private final AtomicLong cpuNanos = new AtomicLong();
+    private final AtomicLong storedEntries = new AtomicLong();
+    private final AtomicLong storedBytes = new AtomicLong();
+
+    /**
+     * Temps CPU du thread courant en nanosecondes, -1 si la JVM ne le mesure pas (ex : thread virtuel).
+     */
+    public static long threadCpuNanos() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+    }
+
+    /**
+     * Entrée compressée : {@code size} octets ramenés à {@code compressedSize}.
+     */
+    public void recordDeflated(long size, long compressedSize) {
+        deflatedEntries.incrementAndGet();
+        deflatedBytes.addAndGet(Math.max(size, 0));
+        compressedBytes.addAndGet(Math.max(compressedSize, 0));
+    }
+
+    /**
+     * Temps CPU passé à écrire des entrées compressées (lecture des données comprise), mesuré
+     * avec {@link #threadCpuNanos()} avant et après ; ignoré s'il est négatif (mesure indisponible).
+     */
+    public void recordCpu(long nanos) {
+        if (nanos > 0) {
+            cpuNanos.addAndGet(nanos);
+        }
+    }
+
+    /**
+     * Entrée stockée sans compression (deflate évité).
+     */
+    public void recordStored(long size) {
+        storedEntries.incrementAndGet();
+        storedBytes.addAndGet(Math.max(size, 0));
+    }
+
+    public long getDeflatedEntries() {
+        return deflatedEntries.get();
+    }
+
+    public long getDeflatedBytes() {
+        return deflatedBytes.get();
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes.get();
+    }
+
+    /**
+     * Octets gagnés par la compression des entrées compressées.
+     */
+    public long getBytesSaved() {
+        return deflatedBytes.get() - compressedBytes.get();
+    }
+
+    public long getCpuMillis() {
+        return cpuNanos.get() / 1_000_000;
+    }
+
+    public long getStoredEntries() {
+        return storedEntries.get();
+    }
+
+    public long getStoredBytes() {
+        return storedBytes.get();
+    }
+}
@@ -0,0 +1,231 @@
+package heg.backendspring.utils;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Envoi d'un fichier en téléchargement, avec requêtes conditionnelles et reprise.
+ * <p>
+ * — ETag (empreinte du contenu) et Last-Modified : un client qui a déjà le fichier reçoit
+ * un 304 sans contenu (If-None-Match, If-Modified-Since).
+ * — Range (une seule plage) et If-Range : un téléchargement interrompu reprend là où il s'est
+ * arrêté (206), sauf si le fichier a changé depuis, auquel cas il est renvoyé en entier.
+ * — Le fichier est ouvert avant l'écriture des en-têtes et copié avec {@link FileChannel#transferTo} :
+ * un remplacement (renommage atomique) ou une suppression (éviction du cache) pendant l'envoi
+ * ne change pas le contenu envoyé. Le sendfile du conteneur (Tomcat NIO), qui ouvre le fichier
+ * par son chemin une fois les en-têtes envoyés, n'est utilisé que pour les fichiers immuables.
+ */
+@Slf4j
+@UtilityClass
+public class FileDownload {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * Fichier à télécharger.
+     *
+     * @param file        fichier sur le disque
+     * @param fileName    nom proposé au client (Content-Disposition)
+     * @param contentType type du contenu
+     * @param hash        empreinte du contenu (ETag fort), null si inconnue : seul Last-Modified
+     *                    sert alors aux requêtes conditionnelles
+     * @param immutable   le fichier n'est ni remplacé ni supprimé avant la fin de l'envoi : il peut
+     *                    être envoyé par sendfile
+     */
+    public record Source(Path file, String fileName, String contentType, String hash, boolean immutable) {
+
+        public Source(Path file, String fileName, String contentType, String hash) {
+            this(file, fileName, contentType, hash, false);
+        }
+    }
+
+    /**
+     * Plage d'octets demandée, bornes incluses.
+     */
+    private record Range(long start, long end) {
+        long length() {
+            return end - start + 1;
+        }
+    }
+
+    /**
+     * Écrit la réponse au téléchargement de {@code source} : 200 (fichier entier), 206 (plage),
+     * 304 (non modifié) ou 416 (plage hors du fichier).
+     */
+    public void send(HttpServletRequest request, HttpServletResponse response, Source source) throws IOException {
+        try (FileChannel channel = FileChannel.open(source.file(), StandardOpenOption.READ)) {
+            send(request, response, source, channel);
+        }
+    }
+
+    // =============================
+    //         PRIVATE HELPERS
+    // =============================
+
+    /**
+     * Envoi depuis {@code channel}, ouvert sur le fichier avant toute écriture de la réponse.
+     */
+    private void send(HttpServletRequest request, HttpServletResponse response, Source source,
+                      FileChannel channel) throws IOException {
+        Path file = source.file();
+        long length = channel.size();
+        // Les dates HTTP sont à la seconde
+        long lastModified = Files.getLastModifiedTime(file).toMillis() / 1000 * 1000;
+        String etag = source.hash() != null ? "\"" + source.hash() + "\"" : null;
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        // Conservé par le navigateur, mais revalidé à chaque téléchargement
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        if (etag != null) {
+            response.setHeader(HttpHeaders.ETAG, etag);
+        }
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+
+        if (notModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        Range range = new Range(0, length - 1);
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && rangeStillValid(request, etag, lastModified)) {
+            Range requested = parseRange(rangeHeader, length);
+            if (requested != null && requested.start() >= length) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return;
+            }
+            if (requested != null) {
+                range = requested;
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + range.start() + "-" + range.end() + "/" + length);
+            }
+        }
+
+        response.setContentType(source.contentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(source.fileName()).build().toString());
+        response.setContentLengthLong(range.length());
+        if ("HEAD".equals(request.getMethod()) || range.length() <= 0) {
+            return;
+        }
+
+        if (source.immutable() && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Envoyé par le conteneur une fois la méthode terminée (fichier rouvert par son chemin)
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, range.start());
+            request.setAttribute(SENDFILE_END, range.end() + 1);
+            return;
+        }
+        WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+        long position = range.start();
+        long remaining = range.length();
+        while (remaining > 0) {
+            long sent = channel.transferTo(position, remaining, out);
+            if (sent <= 0 && position >= channel.size()) {
+                throw new EOFException("File " + file + " was truncated during download");
+            }
+            position += sent;
+            remaining -= sent;
+        }
+    }
+
+    /**
+     * If-None-Match (prioritaire) ou If-Modified-Since : le client a déjà la version actuelle.
+     */
+    private boolean notModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            return etag != null && matches(ifNoneMatch, etag);
+        }
+        long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0 && lastModified <= ifModifiedSince;
+    }
+
+    /**
+     * If-Range : la plage n'est servie que si le fichier du client est toujours le fichier actuel
+     * (même ETag fort, ou même date de modification).
+     */
+    private boolean rangeStillValid(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(etag);
+        }
+        return dateHeader(request, HttpHeaders.IF_RANGE) == lastModified;
+    }
+
+    /**
+     * Liste d'ETags d'un en-tête If-None-Match (comparaison faible : le préfixe W/ est ignoré).
+     */
+    private boolean matches(String header, String etag) {
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Plage "bytes=debut-fin", "bytes=debut-" ou "bytes=-longueurFinale". Null si l'en-tête est
+     * invalide ou demande plusieurs plages : le fichier est alors envoyé en entier. Une plage qui
+     * commence après la fin du fichier est retournée telle quelle (416).
+     */
+    private Range parseRange(String header, long length) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return new Range(length, length);
+                }
+                return new Range(Math.max(0, length - suffix), length - 1);
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+            if (start < 0 || (!last.isEmpty() && Long.parseLong(last) < start)) {
+                return null;
+            }
+            return new Range(start, end);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package heg.backendspring.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Règles de filtrage appliquées lors de la copie d'un projet étudiant, écrites dans la
+ * syntaxe des fichiers .gitignore (un motif par ligne) :
+ * <p>
+ * — "#" en début de ligne : commentaire ; lignes vides ignorées
+ * — "target/" : le "/" final limite le motif aux dossiers
+ * — "*.iml", "Thumbs.db" : sans "/", le motif s'applique au nom, à n'importe quelle profondeur
+ * — "/docs", "src/generated/**" : avec un "/", le motif est relatif à la racine du projet
+ * — "*", "?", "[a-z]" restent dans un segment ; "**" traverse les dossiers
+ * — "!motif" : ré-inclut ce qu'un motif précédent excluait (la dernière règle qui correspond
+ *   l'emporte) ; comme avec git, un fichier dont un dossier parent est exclu reste exclu
+ * <p>
+ * Les motifs sont compilés une fois : les noms littéraux sont cherchés dans des ensembles,
+ * les autres motifs sont compilés en expressions régulières.
+ */
+public final class IgnoreRules {
+
+    public static final IgnoreRules NONE = compile(List.of());
+
+    private record Rule(String pattern, boolean negated, boolean directoryOnly, boolean anchored,
+                        String literal, String suffix, Pattern regex) {
+
+        boolean matches(String path, String name, boolean directory) {
+            if (directoryOnly && !directory) {
+                return false;
+            }
+            String subject = anchored ? path : name;
+            if (literal != null) {
+                return literal.equals(subject);
+            }
+            if (suffix != null) {
+                return subject.endsWith(suffix);
+            }
+            return regex.matcher(subject).matches();
+        }
+    }
+
+    private final List<Rule> rules;
+    private final boolean hasNegation;
+
+    // Index des règles simples, utilisés lorsqu'aucune règle n'est négative
+    private final Set<String> names = new HashSet<>();
+    private final Set<String> directoryNames = new HashSet<>();
+    private final List<Rule> otherRules = new ArrayList<>();
+
+    private IgnoreRules(List<Rule> rules) {
+        this.rules = List.copyOf(rules);
+        this.hasNegation = rules.stream().anyMatch(Rule::negated);
+        for (Rule rule : rules) {
+            if (rule.literal() != null && !rule.anchored()) {
+                (rule.directoryOnly() ? directoryNames : names).add(rule.literal());
+            } else {
+                otherRules.add(rule);
+            }
+        }
+    }
+
+    /**
+     * Compile une liste de motifs (lignes d'un fichier .gitignore).
+     */
+    public static IgnoreRules compile(List<String> lines) {
+        List<Rule> rules = new ArrayList<>();
+        for (String line : lines) {
+            Rule rule = parse(line);
+            if (rule != null) {
+                rules.add(rule);
+            }
+        }
+        return new IgnoreRules(rules);
+    }
+
+    /**
+     * Lit et compile un fichier de règles.
+     */
+    public static IgnoreRules read(Reader reader) throws IOException {
+        try (BufferedReader buffered = new BufferedReader(reader)) {
+            return compile(buffered.lines().toList());
+        }
+    }
+
+    /**
+     * Motifs compilés, dans l'ordre du fichier.
+     */
+    public List<String> patterns() {
+        return rules.stream().map(Rule::pattern).toList();
+    }
+
+    /**
+     * Vérifie si ce chemin précis est exclu, sans examiner ses dossiers parents (qui sont
+     * supposés déjà acceptés, par exemple lors d'un parcours qui élague les dossiers exclus).
+     *
+     * @param path chemin relatif à la racine du projet, séparateur "/"
+     */
+    public boolean matches(String path, boolean directory) {
+        String normalized = trimSlashes(path);
+        if (normalized.isEmpty()) {
+            return false;
+        }
+        String name = normalized.substring(normalized.lastIndexOf('/') + 1);
+
+        if (!hasNegation) {
+            if (names.contains(name) || (directory && directoryNames.contains(name))) {
+                return true;
+            }
+            for (Rule rule : otherRules) {
+                if (rule.matches(normalized, name, directory)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean ignored = false;
+        for (Rule rule : rules) {
+            if (ignored == rule.negated() && rule.matches(normalized, name, directory)) {
+                ignored = !rule.negated();
+            }
+        }
+        return ignored;
+    }
+
+    /**
+     * Vérifie si un chemin (tel qu'il apparaît dans une archive) est exclu, lui-même ou
+     * à travers l'un de ses dossiers parents.
+     */
+    public boolean isIgnored(String path, boolean directory) {
+        String normalized = trimSlashes(path);
+        for (int slash = normalized.indexOf('/'); slash > 0; slash = normalized.indexOf('/', slash + 1)) {
+            if (matches(normalized.substring(0, slash), true)) {
+                return true;
+            }
+        }
+        return matches(normalized, directory);
+    }
+
+    /**
+     * Comme {@link #isIgnored(String, boolean)}, un "/" final désignant un dossier.
+     */
+    public boolean isIgnored(String path) {
+        return isIgnored(path, path.endsWith("/"));
+    }
+
+    // =============================
+    //         COMPILATION
+    // =============================
+
+    private static Rule parse(String line) {
+        String pattern = line.strip();
+        if (pattern.isEmpty() || pattern.startsWith("#")) {
+            return null;
+        }
+        String original = pattern;
+
+        boolean negated = pattern.startsWith("!");
+        if (negated) {
+            pattern = pattern.substring(1);
+        }
+        boolean directoryOnly = pattern.endsWith("/");
+        pattern = trimSlashes(pattern);
+        if (pattern.isEmpty()) {
+            return null;
+        }
+        // Comme git : un "/" au début ou au milieu ancre le motif à la racine
+        boolean anchored = original.substring(negated ? 1 : 0).startsWith("/") || pattern.contains("/");
+        if (pattern.startsWith("**/")) {
+            // "**/x" équivaut à "x" à n'importe quelle profondeur
+            String rest = pattern.substring(3);
+            if (!rest.contains("/")) {
+                anchored = false;
+                pattern = rest;
+            }
+        }
+
+        if (!hasWildcard(pattern)) {
+            return new Rule(original, negated, directoryOnly, anchored, pattern, null, null);
+        }
+        if (!anchored && pattern.startsWith("*") && !hasWildcard(pattern.substring(1))) {
+            return new Rule(original, negated, directoryOnly, false, null, pattern.substring(1), null);
+        }
+        return new Rule(original, negated, directoryOnly, anchored, null, null, Pattern.compile(toRegex(pattern)));
+    }
+
+    private static boolean hasWildcard(String pattern) {
+        return pattern.indexOf('*') >= 0 || pattern.indexOf('?') >= 0 || pattern.indexOf('[') >= 0;
+    }
+
+    private static String toRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        int i = 0;
+        while (i < glob.length()) {
+            char c = glob.charAt(i);
+            if (c == '*' && glob.startsWith("**", i)) {
+                boolean followedBySlash = glob.startsWith("**/", i);
+                regex.append(followedBySlash ? "(?:.*/)?" : ".*");
+                i += followedBySlash ? 3 : 2;
+                continue;
+            }
+            if (c == '*') {
+                regex.append("[^/]*");
+            } else if (c == '?') {
+                regex.append("[^/]");
+            } else if (c == '[') {
+                int end = glob.indexOf(']', i + 1);
+                if (end < 0) {
+                    regex.append("\\[");
+                } else {
+                    String content = glob.substring(i + 1, end);
+                    if (content.startsWith("!")) {
+                        content = "^" + content.substring(1);
+                    }
+                    regex.append('[').append(content.replace("\\", "\\\\")).append(']');
+                    i = end;
+                }
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+            i++;
+        }
+        return regex.toString();
+    }
+
+    private static String trimSlashes(String path) {
+        int start = 0;
+        int end = path.length();
+        while (start < end && path.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return path.substring(start, end);
+    }
+}
@@ -0,0 +1,183 @@
+package heg.backendspring.utils;
+
+import heg.backendspring.utils.archive.ArchiveLimitException;
+import heg.backendspring.utils.archive.ArchiveLimits;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rapport d'une restructuration : nombre d'étudiants traités, volume extrait des archives,
+ * bilan de la compression et erreurs rencontrées.
+ * <p>
+ * Une erreur sur le rendu d'un étudiant n'interrompt plus la restructuration du TP :
+ * elle est collectée ici et le traitement continue avec les autres étudiants.
+ */
+public class RestructuringReport {
+
+    /**
+     * @param limitExceeded vrai si l'archive de l'étudiant a dépassé une des {@link ArchiveLimits}
+     */
+    public record StudentFailure(String student, String message, boolean limitExceeded) {
+
+        public StudentFailure(String student, String message) {
+            this(student, message, false);
+        }
+    }
+
+    /**
+     * Étape en cours de la restructuration.
+     */
+    public enum Stage {
+        UNZIP, STUDENTS, ZIP, CLEANUP
+    }
+
+    /**
+     * Suivi de la restructuration pendant qu'elle s'exécute. Les méthodes sont appelées par les
+     * threads de traitement : elles doivent rendre la main immédiatement.
+     */
+    public interface Listener {
+
+        default void stageChanged(Stage stage) {
+        }
+
+        /**
+         * Un compteur (étudiants traités, octets extraits ou écrits) a changé.
+         */
+        default void progressChanged() {
+        }
+
+        default void studentFailed(StudentFailure failure) {
+        }
+    }
+
+    private static final Listener NO_LISTENER = new Listener() {
+    };
+
+    private final List<StudentFailure> failures = new ArrayList<>();
+    private final AtomicInteger studentsTotal = new AtomicInteger();
+    private final AtomicInteger studentsProcessed = new AtomicInteger();
+    private final AtomicInteger studentsReused = new AtomicInteger();
+    private final AtomicLong bytesExtracted = new AtomicLong();
+    private final AtomicInteger entriesSkipped = new AtomicInteger();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final CompressionStats compression = new CompressionStats();
+    private volatile Stage stage;
+    private volatile Listener listener = NO_LISTENER;
+
+    public void setListener(Listener listener) {
+        this.listener = listener != null ? listener : NO_LISTENER;
+    }
+
+    public void stage(Stage stage) {
+        this.stage = stage;
+        listener.stageChanged(stage);
+    }
+
+    public Stage getStage() {
+        return stage;
+    }
+
+    public void addFailure(String student, String message) {
+        addFailure(new StudentFailure(student, message));
+    }
+
+    public void addFailure(StudentFailure failure) {
+        synchronized (this) {
+            failures.add(failure);
+        }
+        listener.studentFailed(failure);
+    }
+
+    /**
+     * Ajoute l'erreur {@code cause} d'un étudiant, en signalant les dépassements de limites
+     * (archive piégée ou pathologique) dont l'extraction a été interrompue.
+     */
+    public void addFailure(String student, Throwable cause) {
+        addFailure(new StudentFailure(student, cause.getMessage(), cause instanceof ArchiveLimitException));
+    }
+
+    /**
+     * Nombre d'étudiants à traiter, connu dès que le zip Cyberlearn a été parcouru
+     * (sert à suivre la progression).
+     */
+    public void setStudentsTotal(int total) {
+        studentsTotal.set(total);
+        listener.progressChanged();
+    }
+
+    public int getStudentsTotal() {
+        return studentsTotal.get();
+    }
+
+    public void studentProcessed() {
+        studentsProcessed.incrementAndGet();
+        listener.progressChanged();
+    }
+
+    public int getStudentsProcessed() {
+        return studentsProcessed.get();
+    }
+
+    /**
+     * Étudiant inchangé depuis la restructuration précédente, recopié sans être retraité
+     * (compté aussi dans les étudiants traités).
+     */
+    public void studentReused() {
+        studentsReused.incrementAndGet();
+    }
+
+    public int getStudentsReused() {
+        return studentsReused.get();
+    }
+
+    /**
+     * Ajoute le volume extrait d'une archive : octets conservés et entrées ignorées
+     * (filtrées avant décompression).
+     */
+    public void recordExtraction(long bytes, int skipped) {
+        bytesExtracted.addAndGet(bytes);
+        entriesSkipped.addAndGet(skipped);
+        listener.progressChanged();
+    }
+
+    public long getBytesExtracted() {
+        return bytesExtracted.get();
+    }
+
+    public int getEntriesSkipped() {
+        return entriesSkipped.get();
+    }
+
+    /**
+     * Taille du zip restructuré écrit jusqu'ici, en octets.
+     */
+    public void setBytesWritten(long bytes) {
+        bytesWritten.set(bytes);
+        listener.progressChanged();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * Bilan de la compression des entrées écrites (temps CPU, octets gagnés, entrées stockées).
+     */
+    public CompressionStats getCompression() {
+        return compression;
+    }
+
+    public synchronized List<StudentFailure> getFailures() {
+        return List.copyOf(failures);
+    }
+
+    public synchronized long getLimitViolations() {
+        return failures.stream().filter(StudentFailure::limitExceeded).count();
+    }
+
+    public synchronized boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+}
@@ -0,0 +1,547 @@
+package heg.backendspring.utils;
+
+import heg.backendspring.utils.archive.ArchiveEntryVisitor;
+import heg.backendspring.utils.archive.ArchiveExtractors;
+import heg.backendspring.utils.archive.ArchiveFormat;
+import heg.backendspring.utils.archive.BufferPool;
+import heg.backendspring.utils.archive.FileRegionChannel;
+import heg.backendspring.utils.archive.ZipArchiveExtractor;
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Restructuration "en un seul passage" d'un zip Cyberlearn.
+ * <p>
+ * Le zip d'origine est lu entrée par entrée, les archives des étudiants (zip, 7z, rar, tar,
+ * détectées par {@link ArchiveExtractors}) sont décodées à la volée, filtrées avec les {@link IgnoreRules} du cours, puis écrites
+ * directement dans le zip restructuré : aucun dossier intermédiaire n'est créé sur le disque.
+ * Les entrées des zips des étudiants sont recopiées sans recompression (données compressées,
+ * CRC et tailles d'origine) ; seules celles des autres formats sont recompressées.
+ */
+@Slf4j
+@UtilityClass
+public class StreamingRestructurer {
+
+    /**
+     * Restructure le zip Cyberlearn {@code originalZip} dans {@code targetZip}.
+     * Chaque dossier étudiant "Nom Prenom_xxx" devient un dossier "NomPrenom" contenant
+     * le projet extrait de son archive.
+     * <p>
+     * Les étudiants sont traités en parallèle sur {@code executor} : chacun produit un petit zip
+     * temporaire, recopié ensuite sans recompression dans le zip final, dans l'ordre alphabétique
+     * des dossiers (le résultat est identique octet par octet pour une même entrée).
+     * Les erreurs par étudiant sont collectées dans {@code report}.
+     * Le niveau de compression de {@code options} s'applique aux entrées recompressées.
+     */
+    public void restructure(Path originalZip, Path targetZip, IgnoreRules rules, ZipWriteOptions options,
+                            ArchiveExtractors extractors, ExecutorService executor,
+                            RestructuringReport report) throws IOException {
+        restructure(originalZip, targetZip, rules, options, extractors, executor, report, false);
+    }
+
+    /**
+     * Comme {@link #restructure(Path, Path, IgnoreRules, ZipWriteOptions, ArchiveExtractors, ExecutorService, RestructuringReport)} ;
+     * si {@code incremental} est vrai, les empreintes des dossiers étudiants sont conservées à côté
+     * de {@code targetZip} ({@link StudentFingerprints}). Lors d'un nouveau dépôt du zip Cyberlearn,
+     * seuls les étudiants nouveaux ou modifiés sont retraités : les autres sont recopiés sans
+     * recompression depuis le zip restructuré précédent. Le résultat est identique à une
+     * restructuration complète.
+     */
+    public void restructure(Path originalZip, Path targetZip, IgnoreRules rules, ZipWriteOptions options,
+                            ArchiveExtractors extractors, ExecutorService executor,
+                            RestructuringReport report, boolean incremental) throws IOException {
+        restructure(originalZip, targetZip, rules, options, extractors, executor, report, incremental, null);
+    }
+
+    /**
+     * Comme {@link #restructure(Path, Path, IgnoreRules, ZipWriteOptions, ArchiveExtractors, ExecutorService, RestructuringReport, boolean)},
+     * avec un dossier de travail {@code workDir} conservé si le traitement est interrompu (arrêt de
+     * l'application, plantage) : chaque zip d'étudiant terminé y est renommé à sa place définitive,
+     * et une restructuration relancée reprend ceux qui correspondent encore au zip d'origine et aux
+     * paramètres au lieu de les refaire. Le dossier est supprimé une fois la restructuration réussie.
+     * Sans {@code workDir}, un dossier temporaire est utilisé puis toujours supprimé.
+     * <p>
+     * Le zip restructuré est écrit à côté de {@code targetZip} ({@link #partialPathFor(Path)}) puis
+     * renommé : {@code targetZip} est toujours soit l'ancien zip complet, soit le nouveau.
+     */
+    public void restructure(Path originalZip, Path targetZip, IgnoreRules rules, ZipWriteOptions options,
+                            ArchiveExtractors extractors, ExecutorService executor,
+                            RestructuringReport report, boolean incremental, Path workDir) throws IOException {
+        if (Files.notExists(originalZip)) {
+            throw new NoSuchFileException("Zip file does not exist: " + originalZip);
+        }
+        if (targetZip.getParent() != null) {
+            Files.createDirectories(targetZip.getParent());
+        }
+        Path fingerprintsFile = StudentFingerprints.pathFor(targetZip);
+        String settings = StudentFingerprints.settingsOf(rules, options);
+        Optional<StudentFingerprints> previous = incremental && Files.exists(targetZip)
+                ? StudentFingerprints.read(fingerprintsFile).filter(f -> f.settings().equals(settings))
+                : Optional.empty();
+
+        report.stage(RestructuringReport.Stage.UNZIP);
+        boolean resumable = workDir != null;
+        Path work = resumable ? Files.createDirectories(workDir) : Files.createTempDirectory("restructuring");
+        Path partialZip = partialPathFor(targetZip);
+        boolean completed = false;
+        try {
+            // Le zip précédent reste en place jusqu'au renommage : ses entrées servent aux étudiants inchangés
+            try (ZipFile outer = ZipFile.builder().setPath(originalZip).get();
+                 ZipFile old = previous.isPresent() ? ZipFile.builder().setPath(targetZip).get() : null) {
+
+                Map<String, List<ZipArchiveEntry>> students = groupByStudentFolder(outer);
+                report.setStudentsTotal(students.size());
+                Map<String, List<ZipArchiveEntry>> previousFolders = old != null ? groupByTopLevelFolder(old) : Map.of();
+                Map<String, Long> folderOwners = students.keySet().stream()
+                        .collect(Collectors.groupingBy(StudentNameUtils::toFolderNameFromZipDir, Collectors.counting()));
+
+                // Lancer le traitement de chaque étudiant nouveau ou modifié
+                report.stage(RestructuringReport.Stage.STUDENTS);
+                Map<String, String> fingerprints = new TreeMap<>();
+                Map<String, Future<Path>> parts = new LinkedHashMap<>();
+                Map<String, List<ZipArchiveEntry>> reused = new HashMap<>();
+                int resumed = 0;
+                for (Map.Entry<String, List<ZipArchiveEntry>> student : students.entrySet()) {
+                    String studentDir = student.getKey();
+                    String folderName = StudentNameUtils.toFolderNameFromZipDir(studentDir);
+                    String fingerprint = StudentFingerprints.of(student.getValue());
+                    fingerprints.put(studentDir, fingerprint);
+
+                    // Un dossier de sortie partagé par plusieurs étudiants est toujours retraité
+                    if (previous.isPresent() && previous.get().unchanged(settings, studentDir, fingerprint)
+                            && previousFolders.containsKey(folderName) && folderOwners.get(folderName) == 1) {
+                        reused.put(studentDir, previousFolders.get(folderName));
+                        parts.put(studentDir, null);
+                        continue;
+                    }
+                    Path part = work.resolve(StudentFingerprints.partKey(settings, studentDir, fingerprint) + ".zip");
+                    if (resumable && Files.isRegularFile(part)) {
+                        parts.put(studentDir, CompletableFuture.completedFuture(part));
+                        report.studentReused();
+                        resumed++;
+                        continue;
+                    }
+                    parts.put(studentDir, executor.submit(() -> {
+                        Path tmp = part.resolveSibling(part.getFileName() + ".tmp");
+                        writeStudentArchive(originalZip, outer, studentDir, student.getValue(), rules, options,
+                                extractors, report, tmp);
+                        return Files.move(tmp, part, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    }));
+                }
+                if (previous.isPresent()) {
+                    log.info("Incremental restructuring: {} unchanged student(s) reused, {} to process",
+                            reused.size(), parts.size() - reused.size());
+                }
+                if (resumed > 0) {
+                    log.info("Resuming restructuring: {} student archive(s) already written by a previous run", resumed);
+                }
+
+                // Assembler les zips des étudiants dans l'ordre, au fur et à mesure qu'ils sont prêts
+                try (ZipArchiveOutputStream out = ZipUtils.sequentialOutput(partialZip)) {
+                    Set<String> written = new HashSet<>();
+                    for (Map.Entry<String, Future<Path>> part : parts.entrySet()) {
+                        try {
+                            if (part.getValue() == null) {
+                                ZipUtils.appendRawEntries(old, reused.get(part.getKey()), out, written);
+                                report.studentReused();
+                            } else {
+                                ZipUtils.appendRawEntries(part.getValue().get(), out, written);
+                            }
+                            report.setBytesWritten(out.getBytesWritten());
+                            report.studentProcessed();
+                        } catch (ExecutionException e) {
+                            Throwable cause = e.getCause() != null ? e.getCause() : e;
+                            log.warn("Unable to restructure submission of {} → {}", part.getKey(), cause.getMessage());
+                            report.addFailure(part.getKey(), cause);
+                            // Pas d'empreinte : l'étudiant sera retraité au prochain dépôt
+                            fingerprints.remove(part.getKey());
+                        } catch (InterruptedException e) {
+                            parts.values().stream().filter(Objects::nonNull).forEach(f -> f.cancel(true));
+                            Thread.currentThread().interrupt();
+                            throw new InterruptedIOException("Restructuring interrupted");
+                        }
+                    }
+                    report.stage(RestructuringReport.Stage.ZIP);
+                }
+
+                // Les empreintes sont retirées avant de remplacer le zip : un arrêt entre les deux
+                // provoque au pire une restructuration complète, jamais la réutilisation d'un mauvais dossier
+                Files.deleteIfExists(fingerprintsFile);
+                if (old != null) {
+                    // Fermé avant d'être remplacé (un fichier ouvert ne peut pas être remplacé sous Windows)
+                    old.close();
+                }
+                Files.move(partialZip, targetZip, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                report.setBytesWritten(Files.size(targetZip));
+
+                if (incremental) {
+                    new StudentFingerprints(settings, fingerprints).write(fingerprintsFile);
+                }
+                completed = true;
+            }
+        } finally {
+            report.stage(RestructuringReport.Stage.CLEANUP);
+            Files.deleteIfExists(partialZip);
+            if (completed || !resumable) {
+                ZipUtils.deleteFolder(work);
+            }
+        }
+    }
+
+    /**
+     * Fichier dans lequel le zip restructuré est écrit avant d'être renommé en {@code targetZip}.
+     */
+    public Path partialPathFor(Path targetZip) {
+        return targetZip.resolveSibling(targetZip.getFileName() + ".part");
+    }
+
+    // =============================
+    //         PRIVATE HELPERS
+    // =============================
+
+    /**
+     * Regroupe les entrées du zip d'origine par dossier étudiant (premier segment du chemin),
+     * triés par nom pour obtenir un résultat stable.
+     */
+    private Map<String, List<ZipArchiveEntry>> groupByStudentFolder(ZipFile outer) {
+        Map<String, List<ZipArchiveEntry>> students = new TreeMap<>();
+        for (ZipArchiveEntry entry : Collections.list(outer.getEntriesInPhysicalOrder())) {
+            String name = ArchiveExtractors.sanitize(entry.getName());
+            if (name == null) {
+                continue;
+            }
+            if (entry.isDirectory()) {
+                name += "/";
+            }
+            int slash = name.indexOf('/');
+            // Les fichiers à la racine ne sont pas des rendus d'étudiants
+            if (slash <= 0) {
+                continue;
+            }
+            String studentDir = name.substring(0, slash);
+            if (studentDir.equals("__MACOSX")) {
+                continue;
+            }
+            students.computeIfAbsent(studentDir, k -> new ArrayList<>()).add(entry);
+        }
+        return students;
+    }
+
+    /**
+     * Regroupe les entrées d'un zip restructuré par dossier de premier niveau (un par étudiant),
+     * dans l'ordre physique du zip.
+     */
+    private Map<String, List<ZipArchiveEntry>> groupByTopLevelFolder(ZipFile zip) {
+        Map<String, List<ZipArchiveEntry>> folders = new HashMap<>();
+        for (ZipArchiveEntry entry : Collections.list(zip.getEntriesInPhysicalOrder())) {
+            int slash = entry.getName().indexOf('/');
+            if (slash > 0) {
+                folders.computeIfAbsent(entry.getName().substring(0, slash), k -> new ArrayList<>()).add(entry);
+            }
+        }
+        return folders;
+    }
+
+    /**
+     * Écrit le rendu d'un étudiant dans son propre zip {@code part}.
+     */
+    private void writeStudentArchive(Path originalZip, ZipFile outer, String studentDir, List<ZipArchiveEntry> entries,
+                                     IgnoreRules rules, ZipWriteOptions options, ArchiveExtractors extractors,
+                                     RestructuringReport report, Path part) throws IOException {
+        try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(part)) {
+            out.setLevel(options.compressionLevel());
+            String folderName = StudentNameUtils.toFolderNameFromZipDir(studentDir);
+            writeStudent(originalZip, outer, studentDir, entries, folderName, rules, extractors, report,
+                    new EntryWriter(out, extractors.getBufferPool(), options, report.getCompression()), part);
+        }
+    }
+
+    /**
+     * Écrit le rendu d'un étudiant : si son dossier contient une archive, on en extrait le
+     * contenu filtré, sinon on recopie simplement tout le dossier.
+     * <p>
+     * Les fichiers à la racine du dossier qui peuvent être une archive ({@link ArchiveFormat#isCandidate})
+     * sont examinés dans l'ordre (extensions d'archive d'abord, puis par nom) : le premier dont les
+     * premiers octets correspondent à un format reconnu est extrait. Un .docx ou un .jar n'est
+     * jamais pris pour le projet, même s'il commence comme un zip.
+     * <p>
+     * Les fichiers recopiés tels quels (entrées d'un zip, fichiers du dossier) gardent leurs données
+     * compressées, leur CRC et leurs tailles : ils ne sont ni décompressés ni recompressés.
+     */
+    private void writeStudent(Path originalZip, ZipFile outer, String studentDir, List<ZipArchiveEntry> entries,
+                              String folderName, IgnoreRules rules, ArchiveExtractors extractors,
+                              RestructuringReport report, EntryWriter writer, Path part) throws IOException {
+        String prefix = folderName + "/";
+        //Date fixe (ZipUtils.UNKNOWN_TIME) : le dossier ne dépend que du contenu de l'étudiant,
+        //il est identique qu'il soit réécrit ou réutilisé par un traitement incrémental
+        writer.directory(prefix, -1);
+
+        List<ZipArchiveEntry> candidates = entries.stream()
+                .filter(e -> !e.isDirectory())
+                .filter(e -> isDirectChild(ArchiveExtractors.sanitize(e.getName()), studentDir))
+                .filter(e -> ArchiveFormat.isCandidate(e.getName()))
+                .sorted(Comparator.comparing((ZipArchiveEntry e) -> !ArchiveFormat.hasArchiveExtension(e.getName()))
+                        .thenComparing(ZipArchiveEntry::getName))
+                .toList();
+
+        // Les règles sont évaluées avant décompression : une entrée ignorée n'est jamais lue
+        NestedArchiveWriter nested = new NestedArchiveWriter(prefix, rules, writer);
+
+        for (ZipArchiveEntry candidate : candidates) {
+            Optional<ArchiveFormat> format = extractCandidate(originalZip, outer, candidate, extractors, nested, part);
+            if (format.isPresent()) {
+                log.debug("Extracted {} as {}", candidate.getName(), format.get());
+                report.recordExtraction(nested.bytesWritten, nested.entriesSkipped);
+                return;
+            }
+            if (ArchiveFormat.hasArchiveExtension(candidate.getName())) {
+                log.warn("{} has an archive extension but is not a supported archive", candidate.getName());
+            }
+        }
+
+        // Pas d'archive : on recopie tout le dossier de l'étudiant, sans filtre
+        for (ZipArchiveEntry entry : entries) {
+            String name = ArchiveExtractors.sanitize(entry.getName());
+            if (name == null || name.length() <= studentDir.length() + 1) {
+                continue;
+            }
+            String rel = name.substring(studentDir.length() + 1);
+            if (entry.isDirectory()) {
+                writer.directory(prefix + rel, entry.getTime());
+            } else if (ZipArchiveExtractor.isRawCopyable(entry)) {
+                try (InputStream raw = outer.getRawInputStream(entry)) {
+                    writer.rawFile(prefix + rel, entry, raw);
+                }
+            } else {
+                try (InputStream in = outer.getInputStream(entry)) {
+                    writer.file(prefix + rel, in, entry.getTime());
+                }
+            }
+        }
+    }
+
+    /**
+     * Extrait l'archive {@code candidate} du zip d'origine vers {@code visitor}.
+     * <p>
+     * Un zip est lu par son répertoire central pour que ses entrées soient recopiées sans
+     * recompression : directement dans le zip d'origine s'il y est stocké sans compression, sinon
+     * depuis une copie décompressée à côté de {@code part}, supprimée ensuite. Un 7z, qui exige lui
+     * aussi un accès aléatoire, est copié de la même façon plutôt que gardé en mémoire. Les autres
+     * formats sont décodés à la volée.
+     *
+     * @return le format détecté, ou vide si l'entrée n'est pas une archive reconnue
+     */
+    private Optional<ArchiveFormat> extractCandidate(Path originalZip, ZipFile outer, ZipArchiveEntry candidate,
+                                                     ArchiveExtractors extractors, ArchiveEntryVisitor visitor,
+                                                     Path part) throws IOException {
+        if (candidate.getMethod() == ZipArchiveEntry.STORED && candidate.getDataOffset() >= 0
+                && !candidate.getGeneralPurposeBit().usesEncryption()) {
+            try (SeekableByteChannel channel = FileRegionChannel.open(originalZip, candidate.getDataOffset(),
+                    candidate.getCompressedSize())) {
+                return extractors.extract(channel, visitor);
+            }
+        }
+        try (BufferedInputStream in = new BufferedInputStream(outer.getInputStream(candidate), ArchiveFormat.HEADER_LENGTH)) {
+            in.mark(ArchiveFormat.HEADER_LENGTH);
+            byte[] header = in.readNBytes(ArchiveFormat.HEADER_LENGTH);
+            in.reset();
+            long maxBytes = extractors.getLimits().maxTotalBytes();
+            boolean randomAccess = ArchiveFormat.detect(header, header.length)
+                    .filter(f -> f == ArchiveFormat.ZIP || f == ArchiveFormat.SEVEN_Z).isPresent();
+            // Pas de copie au-delà de la limite de décompression : l'extraction à la volée s'y arrêtera
+            if (!randomAccess || (maxBytes > 0 && candidate.getSize() > maxBytes)) {
+                return extractors.extract(in, candidate.getSize(), visitor);
+            }
+            Path copy = part.resolveSibling(part.getFileName() + ".nested");
+            try {
+                Files.copy(in, copy, StandardCopyOption.REPLACE_EXISTING);
+                return extractors.extract(copy, visitor);
+            } finally {
+                Files.deleteIfExists(copy);
+            }
+        }
+    }
+
+    private boolean isDirectChild(String name, String studentDir) {
+        return name != null && name.indexOf('/', studentDir.length() + 1) < 0;
+    }
+
+    /**
+     * Écrit le contenu filtré de l'archive d'un étudiant sous {@code prefix}, en comptant
+     * les octets écrits et les entrées ignorées.
+     */
+    private static final class NestedArchiveWriter implements ArchiveEntryVisitor {
+
+        private final String prefix;
+        private final IgnoreRules rules;
+        private final EntryWriter writer;
+        private long bytesWritten;
+        private int entriesSkipped;
+
+        private NestedArchiveWriter(String prefix, IgnoreRules rules, EntryWriter writer) {
+            this.prefix = prefix;
+            this.rules = rules;
+            this.writer = writer;
+        }
+
+        @Override
+        public boolean accept(String name, boolean directory) {
+            if (rules.isIgnored(name, directory)) {
+                entriesSkipped++;
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void directory(String name, long time) throws IOException {
+            writer.directory(prefix + name, time);
+        }
+
+        @Override
+        public void file(String name, long size, long time, InputStream data) throws IOException {
+            bytesWritten += writer.file(prefix + name, data, time);
+        }
+
+        @Override
+        public boolean rawFile(String name, ZipArchiveEntry entry, InputStream raw) throws IOException {
+            bytesWritten += writer.rawFile(prefix + name, entry, raw);
+            return true;
+        }
+    }
+
+    /**
+     * Écrit les entrées dans le zip d'un étudiant en créant les dossiers parents manquants
+     * et en ignorant les doublons. Les fichiers déjà compressés sont stockés sans compression
+     * ({@link ZipWriteOptions#compression()}).
+     */
+    private static final class EntryWriter {
+
+        private final ZipArchiveOutputStream out;
+        private final BufferPool bufferPool;
+        private final ZipWriteOptions options;
+        private final CompressionStats stats;
+        private final Set<String> written = new HashSet<>();
+
+        private EntryWriter(ZipArchiveOutputStream out, BufferPool bufferPool, ZipWriteOptions options,
+                            CompressionStats stats) {
+            this.out = out;
+            this.bufferPool = bufferPool;
+            this.options = options;
+            this.stats = stats;
+        }
+
+        void directory(String name, long time) throws IOException {
+            String dirName = name.endsWith("/") ? name : name + "/";
+            writeParents(dirName, time);
+            if (written.add(dirName)) {
+                putEmptyEntry(dirName, time);
+            }
+        }
+
+        /**
+         * @return le nombre d'octets écrits (0 pour un doublon)
+         */
+        long file(String name, InputStream data, long time) throws IOException {
+            if (written.contains(name)) {
+                log.debug("Entry {} already written, skipping duplicate", name);
+                return 0;
+            }
+            writeParents(name, time);
+            written.add(name);
+
+            // Échantillon lu puis rendu au flux : les données ne sont lues qu'une fois
+            InputStream in = data;
+            byte[] sample = null;
+            if (options.needsSample(name)) {
+                BufferedInputStream buffered = new BufferedInputStream(data, CompressionPolicy.SAMPLE_SIZE);
+                buffered.mark(CompressionPolicy.SAMPLE_SIZE);
+                sample = buffered.readNBytes(CompressionPolicy.SAMPLE_SIZE);
+                buffered.reset();
+                in = buffered;
+            }
+            boolean stored = options.stores(name, sample, sample != null ? sample.length : 0);
+
+            ZipArchiveEntry entry = new ZipArchiveEntry(name);
+            entry.setMethod(stored ? ZipArchiveEntry.STORED : ZipArchiveEntry.DEFLATED);
+            entry.setTime(ZipUtils.entryTime(time));
+            long cpu = stored ? -1 : CompressionStats.threadCpuNanos();
+            long copied;
+            out.putArchiveEntry(entry);
+            try {
+                copied = bufferPool.copy(in, out);
+            } finally {
+                out.closeArchiveEntry();
+            }
+            if (stored) {
+                stats.recordStored(copied);
+            } else {
+                stats.recordDeflated(copied, entry.getCompressedSize());
+                if (cpu >= 0) {
+                    stats.recordCpu(CompressionStats.threadCpuNanos() - cpu);
+                }
+            }
+            return copied;
+        }
+
+        /**
+         * Recopie l'entrée {@code source} d'un autre zip sous le nom {@code name}, sans
+         * recompression : {@code raw} contient ses données compressées, la méthode, le CRC et les
+         * tailles sont ceux de {@code source}.
+         *
+         * @return le nombre d'octets décompressés de l'entrée (0 pour un doublon)
+         */
+        long rawFile(String name, ZipArchiveEntry source, InputStream raw) throws IOException {
+            if (written.contains(name)) {
+                log.debug("Entry {} already written, skipping duplicate", name);
+                return 0;
+            }
+            writeParents(name, source.getTime());
+            written.add(name);
+
+            ZipArchiveEntry entry = new ZipArchiveEntry(name);
+            entry.setMethod(source.getMethod());
+            entry.setCrc(source.getCrc());
+            entry.setSize(source.getSize());
+            entry.setCompressedSize(source.getCompressedSize());
+            entry.setTime(ZipUtils.entryTime(source.getTime()));
+            out.addRawArchiveEntry(entry, raw);
+            return source.getSize();
+        }
+
+        private void writeParents(String name, long time) throws IOException {
+            for (int i = name.indexOf('/'); i >= 0 && i < name.length() - 1; i = name.indexOf('/', i + 1)) {
+                String parent = name.substring(0, i + 1);
+                if (written.add(parent)) {
+                    putEmptyEntry(parent, time);
+                }
+            }
+        }
+
+        private void putEmptyEntry(String dirName, long time) throws IOException {
+            ZipArchiveEntry entry = new ZipArchiveEntry(dirName);
+            entry.setTime(ZipUtils.entryTime(time));
+            out.putArchiveEntry(entry);
+            out.closeArchiveEntry();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package heg.backendspring.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Archives par étudiant d'un zip restructuré, avec leur manifeste : disposition de sortie
+ * optionnelle (restructuring.student-archives) à côté du zip du TP.
+ * <p>
+ * Chaque dossier de premier niveau du zip ("NomPrenom", {@link StudentNameUtils#toFolderNameFromZipDir})
+ * est recopié sans recompression dans sa propre archive "NomPrenom.zip", dans le dossier
+ * {@link #dirFor(Path)}. Le manifeste ({@link #MANIFEST}) donne pour chaque étudiant le nombre de
+ * fichiers, leur volume et l'empreinte SHA-256 de son archive : télécharger un étudiant revient à
+ * servir un fichier, sans parcourir le zip du TP.
+ * <p>
+ * Une archive dont le contenu n'a pas changé depuis le découpage précédent (même empreinte des
+ * entrées, {@link StudentFingerprints#of}) est conservée telle quelle.
+ *
+ * @param contentHash empreinte du zip Cyberlearn dont le zip restructuré est issu
+ * @param files       nombre total de fichiers
+ * @param size        volume décompressé total, en octets
+ * @param students    archives par dossier étudiant, triées par nom
+ */
+@Slf4j
+public record StudentArchives(String contentHash, int files, long size, List<Student> students) {
+
+    /**
+     * Nom du manifeste dans le dossier des archives.
+     */
+    public static final String MANIFEST = "students.json";
+
+    /**
+     * Archive d'un étudiant.
+     *
+     * @param folder      dossier "NomPrenom" dans le zip restructuré
+     * @param file        nom de l'archive dans le dossier des archives
+     * @param files       nombre de fichiers
+     * @param size        volume décompressé, en octets
+     * @param archiveSize taille de l'archive, en octets
+     * @param sha256      empreinte de l'archive
+     * @param fingerprint empreinte des entrées (nom, taille, CRC) du dossier dans le zip restructuré
+     */
+    public record Student(String folder, String file, int files, long size, long archiveSize,
+                          String sha256, String fingerprint) {
+    }
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    /**
+     * Dossier des archives associé à un zip : "TP1_RenduRestructuration.zip" →
+     * "TP1_RenduRestructuration.students", dans le même dossier.
+     */
+    public static Path dirFor(Path zip) {
+        String name = zip.getFileName().toString();
+        String base = name.toLowerCase().endsWith(".zip") ? name.substring(0, name.length() - 4) : name;
+        return zip.resolveSibling(base + ".students");
+    }
+
+    /**
+     * Lit le manifeste du dossier {@code dir} ; absent ou illisible, aucune archive n'est servie
+     * ni réutilisée.
+     */
+    public static Optional<StudentArchives> read(Path dir) {
+        Path file = dir.resolve(MANIFEST);
+        if (Files.notExists(file)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(MAPPER.readValue(file.toFile(), StudentArchives.class));
+        } catch (IOException e) {
+            log.warn("Unable to read student archives manifest {} → {}", file, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Écrit le manifeste (fichier temporaire puis renommage).
+     */
+    public void write(Path dir) throws IOException {
+        Path file = dir.resolve(MANIFEST);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        MAPPER.writeValue(tmp.toFile(), this);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public Optional<Student> find(String folder) {
+        return students.stream().filter(s -> s.folder().equals(folder)).findFirst();
+    }
+
+    /**
+     * Découpe {@code zip} en une archive par dossier de premier niveau dans {@code dir}, puis écrit
+     * le manifeste. Les archives sont écrites en parallèle sur {@code executor} ; celles de
+     * {@code previous} dont les entrées n'ont pas changé sont conservées, celles des dossiers qui
+     * n'existent plus sont supprimées.
+     * <p>
+     * Un étudiant dont l'archive n'a pas pu être écrite est absent du manifeste (son dossier reste
+     * disponible dans le zip du TP).
+     */
+    public static StudentArchives split(Path zip, Path dir, String contentHash, Optional<StudentArchives> previous,
+                                        ExecutorService executor) throws IOException {
+        Files.createDirectories(dir);
+        List<Student> students = new ArrayList<>();
+        int reused = 0;
+        try (ZipFile source = ZipFile.builder().setPath(zip).get()) {
+            Map<String, List<ZipArchiveEntry>> folders = new TreeMap<>();
+            for (ZipArchiveEntry entry : Collections.list(source.getEntriesInPhysicalOrder())) {
+                int slash = entry.getName().indexOf('/');
+                if (slash > 0) {
+                    folders.computeIfAbsent(entry.getName().substring(0, slash), k -> new ArrayList<>()).add(entry);
+                }
+            }
+
+            Map<String, Future<Student>> tasks = new LinkedHashMap<>();
+            for (Map.Entry<String, List<ZipArchiveEntry>> folder : folders.entrySet()) {
+                String fingerprint = StudentFingerprints.of(folder.getValue());
+                Optional<Student> unchanged = previous.flatMap(p -> p.find(folder.getKey()))
+                        .filter(s -> s.fingerprint().equals(fingerprint))
+                        .filter(s -> isFile(dir, s.file(), s.archiveSize()));
+                if (unchanged.isPresent()) {
+                    tasks.put(folder.getKey(), CompletableFuture.completedFuture(unchanged.get()));
+                    reused++;
+                } else {
+                    tasks.put(folder.getKey(), executor.submit(
+                            () -> writeStudent(source, folder.getKey(), folder.getValue(), fingerprint, dir)));
+                }
+            }
+
+            for (Map.Entry<String, Future<Student>> task : tasks.entrySet()) {
+                try {
+                    students.add(task.getValue().get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    log.warn("Unable to write the archive of {} → {}", task.getKey(), cause.getMessage());
+                } catch (InterruptedException e) {
+                    tasks.values().forEach(f -> f.cancel(true));
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Student archives interrupted");
+                }
+            }
+        }
+
+        // Archives des dossiers disparus et fichiers temporaires d'un découpage interrompu
+        Set<String> kept = new HashSet<>();
+        students.forEach(s -> kept.add(s.file()));
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.filter(f -> !f.getFileName().toString().equals(MANIFEST)).toList()) {
+                if (!kept.contains(file.getFileName().toString())) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+
+        StudentArchives archives = new StudentArchives(contentHash,
+                students.stream().mapToInt(Student::files).sum(),
+                students.stream().mapToLong(Student::size).sum(),
+                List.copyOf(students));
+        archives.write(dir);
+        log.info("Student archives of {}: {} written, {} unchanged", zip.getFileName(), students.size() - reused, reused);
+        return archives;
+    }
+
+    // =============================
+    //         PRIVATE HELPERS
+    // =============================
+
+    /**
+     * Écrit l'archive d'un étudiant (fichier temporaire puis renommage), entrées recopiées sans
+     * recompression, en calculant son empreinte au fil de l'écriture.
+     */
+    private static Student writeStudent(ZipFile source, String folder, List<ZipArchiveEntry> entries,
+                                        String fingerprint, Path dir) throws IOException {
+        String fileName = folder + ".zip";
+        Path file;
+        try {
+            file = dir.resolve(fileName);
+        } catch (InvalidPathException e) {
+            throw new IOException("Invalid archive name " + fileName, e);
+        }
+        Path tmp = file.resolveSibling(fileName + ".tmp");
+        MessageDigest digest = sha256();
+        try {
+            try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(new DigestOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp), ZipUtils.SEQUENTIAL_BUFFER_SIZE), digest))) {
+                ZipUtils.appendRawEntries(source, entries, out, new HashSet<>());
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        int files = 0;
+        long size = 0;
+        for (ZipArchiveEntry entry : entries) {
+            if (!entry.isDirectory()) {
+                files++;
+                size += Math.max(0, entry.getSize());
+            }
+        }
+        return new Student(folder, fileName, files, size, Files.size(file),
+                HexFormat.of().formatHex(digest.digest()), fingerprint);
+    }
+
+    private static boolean isFile(Path dir, String fileName, long size) {
+        try {
+            Path file = dir.resolve(fileName);
+            return Files.isRegularFile(file) && Files.size(file) == size;
+        } catch (IOException | InvalidPathException e) {
+            return false;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
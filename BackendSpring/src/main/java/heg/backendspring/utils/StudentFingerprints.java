@@ -0,0 +1,123 @@
+package heg.backendspring.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Empreintes des dossiers étudiants d'un zip Cyberlearn, conservées à côté du zip restructuré
+ * pour permettre une restructuration incrémentale : un étudiant dont l'empreinte n'a pas changé
+ * est recopié tel quel depuis le zip restructuré précédent.
+ * <p>
+ * L'empreinte d'un dossier est calculée à partir du répertoire central (nom, taille et CRC de
+ * chaque entrée), sans décompression. {@code settings} résume les paramètres qui influencent le
+ * résultat (règles d'exclusion, niveau de compression) : s'ils changent, rien n'est réutilisé.
+ *
+ * @param settings empreinte des paramètres de la restructuration
+ * @param students empreinte par dossier étudiant du zip d'origine ("Nom Prenom_xxx")
+ */
+@Slf4j
+public record StudentFingerprints(String settings, Map<String, String> students) {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    /**
+     * Nom du fichier d'empreintes associé à un zip : "TP1_RenduRestructuration.zip" →
+     * "TP1_RenduRestructuration.fingerprints.json", dans le même dossier.
+     */
+    public static Path pathFor(Path zip) {
+        String name = zip.getFileName().toString();
+        String base = name.toLowerCase().endsWith(".zip") ? name.substring(0, name.length() - 4) : name;
+        return zip.resolveSibling(base + ".fingerprints.json");
+    }
+
+    /**
+     * Lit le fichier d'empreintes ; absent ou illisible, la restructuration repart de zéro.
+     */
+    public static Optional<StudentFingerprints> read(Path file) {
+        if (Files.notExists(file)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(MAPPER.readValue(file.toFile(), StudentFingerprints.class));
+        } catch (IOException e) {
+            log.warn("Unable to read fingerprints {} → {}", file, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Écrit les empreintes (fichier temporaire puis renommage).
+     */
+    public void write(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        MAPPER.writeValue(tmp.toFile(), this);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Empreinte d'un dossier étudiant : SHA-256 des lignes "nom|taille|crc" de ses entrées,
+     * triées par nom.
+     */
+    public static String of(List<ZipArchiveEntry> entries) {
+        MessageDigest digest = sha256();
+        entries.stream()
+                .sorted(Comparator.comparing(ZipArchiveEntry::getName))
+                .forEach(e -> digest.update((e.getName() + "|" + e.getSize() + "|" + e.getCrc() + "\n")
+                        .getBytes(StandardCharsets.UTF_8)));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Empreinte des paramètres de restructuration.
+     */
+    public static String settingsOf(IgnoreRules rules, ZipWriteOptions options) {
+        MessageDigest digest = sha256();
+        digest.update(("level=" + options.compressionLevel() + "\n").getBytes(StandardCharsets.UTF_8));
+        digest.update((options.compression().settingsKey() + "\n").getBytes(StandardCharsets.UTF_8));
+        for (String pattern : rules.patterns()) {
+            digest.update((pattern + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Clé du zip d'un étudiant dans le dossier de travail d'une restructuration : SHA-256 des
+     * paramètres, du dossier étudiant et de son empreinte. Un zip d'étudiant laissé par un
+     * traitement interrompu n'est repris que si cette clé est identique.
+     */
+    public static String partKey(String settings, String studentDir, String fingerprint) {
+        MessageDigest digest = sha256();
+        digest.update((settings + "\n" + studentDir + "\n" + fingerprint).getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * L'étudiant {@code studentDir} a-t-il la même empreinte, avec les mêmes paramètres ?
+     */
+    public boolean unchanged(String settings, String studentDir, String fingerprint) {
+        return this.settings.equals(settings) && fingerprint.equals(students.get(studentDir));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package heg.backendspring.utils;
+
+import lombok.experimental.UtilityClass;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Réception d'un zip Cyberlearn en un seul passage : les octets lus sont écrits directement
+ * à côté du fichier final, l'empreinte SHA-256 est calculée et la structure du zip est
+ * vérifiée au fil de la lecture (en-têtes locaux de chaque entrée). Le fichier n'est renommé
+ * à sa place définitive que si le zip est complet et valide, et seulement si son contenu a changé.
+ */
+@UtilityClass
+public class SubmissionIngest {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * @param size      taille du fichier reçu, en octets
+     * @param sha256    empreinte SHA-256 (hexadécimal) du fichier reçu
+     * @param entries   nombre d'entrées du zip (0 si le zip n'a pas été vérifié)
+     * @param unchanged vrai si le contenu est identique au fichier déjà en place, qui n'a pas été touché
+     */
+    public record Result(long size, String sha256, int entries, boolean unchanged) {
+    }
+
+    /**
+     * Écrit {@code in} dans {@code target} (fichier temporaire du même dossier puis renommage
+     * atomique), en calculant son empreinte et en vérifiant que c'est un zip lisible.
+     * Si l'empreinte est égale à {@code knownSha256} et que {@code target} existe, le fichier
+     * en place est conservé tel quel.
+     *
+     * @param maxBytes    taille maximale acceptée (&lt;= 0 : illimitée)
+     * @param knownSha256 empreinte du fichier déjà en place (null si inconnue)
+     * @throws IllegalArgumentException si le contenu n'est pas un zip valide ou dépasse {@code maxBytes}
+     */
+    public Result ingest(InputStream in, Path target, long maxBytes, String knownSha256) throws IOException {
+        return write(in, target, maxBytes, knownSha256, true);
+    }
+
+    /**
+     * Comme {@link #ingest}, sans vérifier la structure du zip ni limiter la taille.
+     */
+    public Result copy(InputStream in, Path target, String knownSha256) throws IOException {
+        return write(in, target, 0, knownSha256, false);
+    }
+
+    /**
+     * Empreinte SHA-256 (hexadécimal) de la concaténation des fichiers {@code parts}.
+     */
+    public String sha256Of(List<Path> parts) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (Path part : parts) {
+            try (InputStream in = Files.newInputStream(part)) {
+                for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private Result write(InputStream in, Path target, long maxBytes, String knownSha256,
+                         boolean validate) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path tmp = target.resolveSibling(target.getFileName() + ".upload");
+        MessageDigest digest = sha256();
+        try {
+            long size;
+            int entries = 0;
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp), BUFFER_SIZE);
+                 TeeInputStream tee = new TeeInputStream(in, out, digest, maxBytes)) {
+                if (validate) {
+                    entries = countEntries(tee);
+                }
+                // Reste du flux (répertoire central du zip) : recopié tel quel
+                tee.transferTo(OutputStream.nullOutputStream());
+                size = tee.count;
+            }
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+            boolean unchanged = sha256.equals(knownSha256) && Files.exists(target);
+            if (!unchanged) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return new Result(size, sha256, entries, unchanged);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private int countEntries(InputStream in) {
+        int entries = 0;
+        ZipArchiveInputStream zip = new ZipArchiveInputStream(in, StandardCharsets.UTF_8.name(), true, true);
+        try {
+            for (ZipArchiveEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries++;
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid zip archive: " + e.getMessage(), e);
+        }
+        if (entries == 0) {
+            throw new IllegalArgumentException("Invalid zip archive: no entries found");
+        }
+        return entries;
+    }
+
+    private MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Recopie chaque octet lu vers {@code out} et l'empreinte, en limitant la taille totale.
+     * Fermer ce flux ne ferme pas la source (corps de la requête).
+     */
+    private static final class TeeInputStream extends FilterInputStream {
+
+        private final OutputStream out;
+        private final MessageDigest digest;
+        private final long maxBytes;
+        private long count;
+
+        private TeeInputStream(InputStream in, OutputStream out, MessageDigest digest, long maxBytes) {
+            super(in);
+            this.out = out;
+            this.digest = digest;
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+                if (maxBytes > 0 && count > maxBytes) {
+                    throw new IllegalArgumentException("Upload exceeds " + maxBytes + " bytes");
+                }
+                out.write(b, off, read);
+                digest.update(b, off, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Les octets sautés par le lecteur zip doivent aussi être écrits
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            int read = read(buffer, 0, buffer.length);
+            return Math.max(read, 0);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            // la source appartient à l'appelant
+        }
+    }
+}
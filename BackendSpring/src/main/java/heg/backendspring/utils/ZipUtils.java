@@ -1,64 +1,71 @@
 package heg.backendspring.utils;
 
+import heg.backendspring.utils.archive.ArchiveExtractors;
 import lombok.experimental.UtilityClass;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.compress.archivers.sevenz.SevenZArchiveEntry;
-import org.apache.commons.compress.archivers.sevenz.SevenZFile;
-
+import org.apache.commons.compress.archivers.zip.ParallelScatterZipCreator;
+import org.apache.commons.compress.archivers.zip.ScatterZipOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntryRequest;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.parallel.FileBasedScatterGatherBackingStore;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
+import org.apache.commons.compress.utils.BoundedSeekableByteChannelInputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.net.URI;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
+import java.util.zip.CRC32;
 
 @Slf4j
 @UtilityClass
 public class ZipUtils {
 
+    /**
+     * Taille du tampon d'écriture des zips assemblés par copie brute ({@link #sequentialOutput(Path)}).
+     */
+    public static final int SEQUENTIAL_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Date des entrées générées sans date connue : 01.01.1980, début des dates zip. Sans date,
+     * {@link ZipArchiveOutputStream} prendrait l'heure d'écriture et deux zips du même contenu
+     * ne seraient pas identiques.
+     */
+    public static final long UNKNOWN_TIME = LocalDateTime.of(1980, 1, 1, 0, 0)
+            .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
     // =============================
     //            UNZIP
     // =============================
+    /**
+     * Extrait {@code zipFile} dans {@code targetDir}. Le format est détecté à partir des
+     * premiers octets (un zip mal nommé est donc aussi extrait) ; un fichier qui n'est pas
+     * une archive reconnue est ignoré. Les métadonnées macOS ("__MACOSX") ne sont pas extraites.
+     */
     public void unzip(Path zipFile, Path targetDir) throws IOException {
-        if (Files.notExists(targetDir)) {
-            Files.createDirectories(targetDir);
-        }
-
-        FileSystem zipFs = newZipFileSystem(zipFile);
-        if (zipFs == null) {
-            // Fichier non valide ou impossible à ouvrir → on log déjà côté helper, on sort.
-            return;
-        }
-
-        try (zipFs) {
-            for (Path root : zipFs.getRootDirectories()) {
-                Files.walkFileTree(root, new SimpleFileVisitor<>() {
-
-                    @Override
-                    public FileVisitResult preVisitDirectory(
-                            Path dir, BasicFileAttributes attrs
-                    ) throws IOException {
-                        Path rel = root.relativize(dir);
-                        Path destDir = targetDir.resolve(rel.toString());
-                        Files.createDirectories(destDir);
-                        return FileVisitResult.CONTINUE;
-                    }
-
-                    @Override
-                    public FileVisitResult visitFile(
-                            Path file, BasicFileAttributes attrs
-                    ) throws IOException {
-                        Path rel = root.relativize(file);
-                        Path destFile = targetDir.resolve(rel.toString());
-                        Files.createDirectories(destFile.getParent());
-                        Files.copy(file, destFile, StandardCopyOption.REPLACE_EXISTING);
-                        return FileVisitResult.CONTINUE;
-                    }
-                });
-            }
+        if (ArchiveExtractors.defaults().extractTo(zipFile, targetDir,
+                (name, directory) -> name.equals("__MACOSX") || name.startsWith("__MACOSX/")).isEmpty()) {
+            log.warn("File {} is not a valid archive. Skipping.", zipFile);
         }
     }
 
@@ -67,6 +74,46 @@ public class ZipUtils {
     //              ZIP
     // =============================
     public void zipDirectory(Path sourceDir, Path zipFile) throws IOException {
+        zipDirectory(sourceDir, zipFile, ZipWriteOptions.DEFAULT);
+    }
+
+    /**
+     * Zippe {@code sourceDir} dans {@code zipFile} en compressant les fichiers sur plusieurs cœurs
+     * (pool propre à l'appel de {@link ZipWriteOptions#parallelism()} threads).
+     *
+     * @see #zipDirectory(Path, Path, ZipWriteOptions, CompressionStats, ExecutorService)
+     */
+    public void zipDirectory(Path sourceDir, Path zipFile, ZipWriteOptions options) throws IOException {
+        zipDirectory(sourceDir, zipFile, options, new CompressionStats());
+    }
+
+    /**
+     * Comme {@link #zipDirectory(Path, Path, ZipWriteOptions)}, en ajoutant à {@code stats} le bilan
+     * de la compression des entrées.
+     */
+    public void zipDirectory(Path sourceDir, Path zipFile, ZipWriteOptions options,
+                             CompressionStats stats) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(options.parallelism());
+        try {
+            zipDirectory(sourceDir, zipFile, options, stats, executor);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Zippe {@code sourceDir} dans {@code zipFile} en compressant les fichiers sur {@code executor}
+     * (pool partagé, qui n'est pas arrêté) avec un {@link ParallelScatterZipCreator}.
+     * <p>
+     * Les entrées sont triées par chemin et soumises dans cet ordre ; chaque thread compresse ses
+     * entrées dans un {@link ScatterZipOutputStream}, et elles sont recopiées (sans recompression)
+     * dans l'ordre de soumission. L'ordre des entrées est donc stable et le résultat ne dépend pas
+     * du nombre de threads.
+     * <p>
+     * Les fichiers déjà compressés sont stockés sans compression ({@link ZipWriteOptions#compression()}).
+     */
+    public void zipDirectory(Path sourceDir, Path zipFile, ZipWriteOptions options,
+                             CompressionStats stats, ExecutorService executor) throws IOException {
 
         if (Files.notExists(sourceDir) || !Files.isDirectory(sourceDir)) {
             throw new IllegalArgumentException("Source directory not valid: " + sourceDir);
@@ -75,183 +122,256 @@ public class ZipUtils {
         if (zipFile.getParent() != null && Files.notExists(zipFile.getParent())) {
             Files.createDirectories(zipFile.getParent());
         }
+        Files.deleteIfExists(zipFile);
+
+        // Lister les entrées dans un ordre stable (un dossier précède toujours son contenu)
+        Path excluded = zipFile.toAbsolutePath().normalize();
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(sourceDir)) {
+            paths = walk.filter(path -> !path.equals(sourceDir))
+                    .filter(path -> !path.toAbsolutePath().normalize().equals(excluded))
+                    .sorted(Comparator.comparing(path -> entryName(sourceDir, path)))
+                    .toList();
+        }
 
-        URI uri = URI.create("jar:" + zipFile.toUri());
-        Map<String, String> env = new HashMap<>();
-        env.put("create", String.valueOf(Files.notExists(zipFile)));
-
-        try (FileSystem zipFs = FileSystems.newFileSystem(uri, env)) {
-
-            Files.walkFileTree(sourceDir, new SimpleFileVisitor<>() {
-
-                @Override
-                public FileVisitResult preVisitDirectory(
-                        Path dir, BasicFileAttributes attrs
-                ) throws IOException {
-                    Path rel = sourceDir.relativize(dir);
-                    if (!rel.toString().isEmpty()) {
-                        Files.createDirectories(zipFs.getPath(rel.toString()));
-                    }
-                    return FileVisitResult.CONTINUE;
+        SharedExecutor shared = new SharedExecutor(executor);
+        // Un fichier temporaire par thread ; tous supprimés à la fin, même après un échec
+        Queue<ScatterGatherBackingStore> stores = new ConcurrentLinkedQueue<>();
+        ParallelScatterZipCreator creator = new ParallelScatterZipCreator(shared, () -> {
+            ScatterGatherBackingStore store = new FileBasedScatterGatherBackingStore(
+                    Files.createTempFile("zip-batch", ".tmp"));
+            stores.add(store);
+            return store;
+        }, options.compressionLevel());
+        List<ZipArchiveEntry> files = new ArrayList<>();
+        try (ZipArchiveOutputStream out = sequentialOutput(zipFile)) {
+            for (Path path : paths) {
+                ZipArchiveEntry entry = new ZipArchiveEntry(entryName(sourceDir, path));
+                entry.setTime(Files.getLastModifiedTime(path).toMillis());
+                if (entry.isDirectory()) {
+                    entry.setMethod(ZipArchiveEntry.STORED);
+                    creator.addArchiveEntry(entry, InputStream::nullInputStream);
+                } else {
+                    files.add(entry);
+                    creator.addArchiveEntry(() -> compressionRequest(path, entry, options, stats));
                 }
+            }
+            creator.writeTo(out);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof UncheckedIOException unchecked) {
+                cause = unchecked.getCause();
+            }
+            throw cause instanceof IOException io ? io : new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Zip creation interrupted");
+        } finally {
+            // Tâches restantes après un échec : annulées
+            shared.shutdownNow();
+            for (ScatterGatherBackingStore store : stores) {
+                store.close();
+            }
+        }
 
-                @Override
-                public FileVisitResult visitFile(
-                        Path file, BasicFileAttributes attrs
-                ) throws IOException {
-                    Path rel = sourceDir.relativize(file);
-                    Path dest = zipFs.getPath(rel.toString());
-                    if (dest.getParent() != null) {
-                        Files.createDirectories(dest.getParent());
-                    }
-                    Files.copy(file, dest, StandardCopyOption.REPLACE_EXISTING);
-                    return FileVisitResult.CONTINUE;
-                }
-            });
+        // Les tailles des entrées sont renseignées par writeTo
+        for (ZipArchiveEntry entry : files) {
+            if (entry.getMethod() == ZipArchiveEntry.STORED) {
+                stats.recordStored(entry.getSize());
+            } else {
+                stats.recordDeflated(entry.getSize(), entry.getCompressedSize());
+            }
         }
     }
 
+    /**
+     * Ouvre {@code zipFile} en écriture derrière un tampon de {@link #SEQUENTIAL_BUFFER_SIZE} octets :
+     * le fichier est écrit par gros blocs, du début à la fin, sans revenir sur les en-têtes (volume
+     * réseau). Réservé aux entrées copiées sans recompression ({@code addRawArchiveEntry}), dont le
+     * CRC et les tailles sont connus à l'avance.
+     */
+    public ZipArchiveOutputStream sequentialOutput(Path zipFile) throws IOException {
+        return new ZipArchiveOutputStream(new BufferedOutputStream(Files.newOutputStream(zipFile), SEQUENTIAL_BUFFER_SIZE));
+    }
+
+    /**
+     * {@code time} s'il est connu (positif), sinon {@link #UNKNOWN_TIME}.
+     */
+    public long entryTime(long time) {
+        return time >= 0 ? time : UNKNOWN_TIME;
+    }
+
     // =============================
-    //           7-ZIP EXTRACTION
+    //     CENTRAL DIRECTORY LISTING
     // =============================
-    public void extract7z(Path sevenZipFile, Path outputDir) {
-        if (sevenZipFile == null || !Files.isRegularFile(sevenZipFile)) {
-            return;
-        }
-
-        try (
-                SeekableByteChannel channel = Files.newByteChannel(sevenZipFile);
-                SevenZFile sevenZFile = SevenZFile.builder()
-                        .setSeekableByteChannel(channel)
-                        .get()
-        ) {
 
-            if (Files.notExists(outputDir)) {
-                Files.createDirectories(outputDir);
+    /**
+     * Liste les dossiers de premier niveau d'un zip (triés par nom) en lisant uniquement
+     * le répertoire central : aucune donnée d'entrée n'est décompressée ni écrite sur le disque.
+     */
+    public List<String> listTopLevelFolders(Path zipFile) throws IOException {
+        Set<String> folders = new TreeSet<>();
+        try (ZipFile zip = ZipFile.builder().setPath(zipFile).get()) {
+            Enumeration<ZipArchiveEntry> entries = zip.getEntries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName().replace('\\', '/');
+                int slash = name.indexOf('/');
+                if (slash > 0) {
+                    folders.add(name.substring(0, slash));
+                }
             }
+        }
+        return new ArrayList<>(folders);
+    }
 
-            SevenZArchiveEntry entry;
-            byte[] buffer = new byte[8192];
+    /**
+     * Volume décompressé d'un zip, d'après les tailles enregistrées dans le répertoire central.
+     */
+    public long uncompressedSize(Path zipFile) throws IOException {
+        long total = 0;
+        try (ZipFile zip = ZipFile.builder().setPath(zipFile).get()) {
+            for (ZipArchiveEntry entry : Collections.list(zip.getEntries())) {
+                total += Math.max(0, entry.getSize());
+            }
+        }
+        return total;
+    }
 
-            while ((entry = sevenZFile.getNextEntry()) != null) {
+    /**
+     * CRC32 des {@code length} derniers octets d'un fichier. Pour un zip, cette zone contient
+     * la fin du répertoire central : la valeur change dès que l'archive est réécrite.
+     */
+    public long tailChecksum(Path file, int length) throws IOException {
+        try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+            return tailChecksum(channel, length);
+        }
+    }
 
-                if (entry.isDirectory()) {
-                    continue;
-                }
+    /**
+     * Comme {@link #tailChecksum(Path, int)}, sur un fichier déjà ouvert.
+     */
+    public long tailChecksum(SeekableByteChannel channel, int length) throws IOException {
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, length));
+        channel.position(size - buffer.capacity());
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            // lecture jusqu'à remplir le buffer
+        }
+        buffer.flip();
+        CRC32 crc = new CRC32();
+        crc.update(buffer);
+        return crc.getValue();
+    }
 
-                Path outputFile = outputDir.resolve(entry.getName()).normalize();
+    // =============================
+    //        RAW ENTRY COPY
+    // =============================
 
-                // Anti path traversal
-                if (!outputFile.startsWith(outputDir.normalize())) {
-                    continue;
-                }
+    /**
+     * Ajoute toutes les entrées de {@code sourceZip} à {@code out} sans les décompresser
+     * (copie des octets compressés, CRC et tailles conservés).
+     * Les noms déjà présents dans {@code written} sont ignorés ; les noms copiés y sont ajoutés.
+     */
+    public void appendRawEntries(Path sourceZip, ZipArchiveOutputStream out, Set<String> written) throws IOException {
+        try (ZipFile source = ZipFile.builder().setPath(sourceZip).get()) {
+            appendRawEntries(source, Collections.list(source.getEntriesInPhysicalOrder()), out, written);
+        }
+    }
 
-                Files.createDirectories(outputFile.getParent());
-
-                try (java.io.OutputStream out = Files.newOutputStream(
-                        outputFile,
-                        StandardOpenOption.CREATE,
-                        StandardOpenOption.TRUNCATE_EXISTING
-                )) {
-
-                    long remaining = entry.getSize();
-
-                    if (remaining < 0) {
-                        // Taille inconnue => lire jusqu'à EOF
-                        int read;
-                        while ((read = sevenZFile.read(buffer)) > 0) {
-                            out.write(buffer, 0, read);
-                        }
-                    } else {
-                        long toRead = remaining;
-                        while (toRead > 0) {
-                            int read = sevenZFile.read(buffer, 0, (int) Math.min(buffer.length, toRead));
-                            if (read < 0) break;
-                            out.write(buffer, 0, read);
-                            toRead -= read;
-                        }
-                    }
+    /**
+     * Ajoute les entrées {@code entries} de {@code source} à {@code out} sans les décompresser,
+     * avec la même gestion des doublons que {@link #appendRawEntries(Path, ZipArchiveOutputStream, Set)}.
+     */
+    public void appendRawEntries(ZipFile source, List<ZipArchiveEntry> entries, ZipArchiveOutputStream out,
+                                 Set<String> written) throws IOException {
+        for (ZipArchiveEntry entry : entries) {
+            if (!written.add(entry.getName())) {
+                if (!entry.isDirectory()) {
+                    log.debug("Entry {} already written, skipping duplicate", entry.getName());
                 }
+                continue;
+            }
+            try (InputStream raw = source.getRawInputStream(entry)) {
+                out.addRawArchiveEntry(entry, raw);
             }
+        }
+    }
 
-        } catch (IOException e) {
-            log.debug("7z extraction skipped for {} ({})", sevenZipFile, e.getMessage());
+    /**
+     * Ajoute les entrées {@code entries} du zip ouvert {@code source} à {@code out} sans les
+     * décompresser, en lisant directement leurs données à la position enregistrée dans chaque
+     * entrée ({@link ZipArchiveEntry#getDataOffset()}) : seules les entrées copiées sont lues.
+     * Les entrées ne sont pas modifiées (une copie est ajoutée à {@code out}), elles peuvent donc
+     * provenir d'un index partagé.
+     */
+    public void appendRawEntries(SeekableByteChannel source, List<ZipArchiveEntry> entries,
+                                 ZipArchiveOutputStream out) throws IOException {
+        for (ZipArchiveEntry entry : entries) {
+            if (entry.getDataOffset() < 0) {
+                throw new IOException("Unknown data offset for entry " + entry.getName());
+            }
+            try (InputStream raw = new BoundedSeekableByteChannelInputStream(entry.getDataOffset(),
+                    entry.getCompressedSize(), source)) {
+                out.addRawArchiveEntry(new ZipArchiveEntry(entry), raw);
+            }
         }
     }
 
+    // =============================
+    //           7-ZIP EXTRACTION
+    // =============================
+    public void extract7z(Path sevenZipFile, Path outputDir) {
+        if (sevenZipFile == null || !Files.isRegularFile(sevenZipFile)) {
+            return;
+        }
 
-    public void copyJavaProject(Path sourceDir, Path targetDir) {
-        Set<String> ignoreDirs = Set.of(".git", ".idea", "target", "build", "out", "__MACOSX");
-        Set<String> ignoreFiles = Set.of(".DS_Store", "Thumbs.db", "desktop.ini",
-                ".iml", ".pdf", ".docx", ".txt", ".gitignore");
-        copyAll(sourceDir, targetDir, ignoreDirs, ignoreFiles);
+        try {
+            ArchiveExtractors.defaults().extractTo(sevenZipFile, outputDir);
+        } catch (IOException e) {
+            log.debug("7z extraction skipped for {} ({})", sevenZipFile, e.getMessage());
+        }
     }
 
-    public void copyPythonProject(Path sourceDir, Path targetDir) {
-        Set<String> ignoreDirs = Set.of(".git", ".idea", "venv", "__pycache__");
-        Set<String> ignoreFiles = Set.of(".DS_Store", "Thumbs.db", "desktop.ini",
-                ".iml", ".pdf", ".docx", ".txt");
-        copyAll(sourceDir, targetDir, ignoreDirs, ignoreFiles);
-    }
 
     /**
-     * Copie un projet Java JEE/Maven (multi-modules) en filtrant les outputs.
+     * Copie récursivement les fichiers d'un projet en appliquant les règles {@code rules}.
+     * Les dossiers exclus ne sont pas parcourus (leur sous-arbre est élagué).
      */
-    public void copyJavaJEEProject(Path sourceDir, Path targetDir) {
-        Set<String> ignoreDirs = Set.of(
-                ".git", ".idea", "target", "build", "out",
-                "logs", ".settings", ".mvn", "node_modules"
-        );
-        Set<String> ignoreFiles = Set.of(
-                ".DS_Store", "Thumbs.db", "desktop.ini",
-                ".iml", ".log"
-        );
-        copyAll(sourceDir, targetDir, ignoreDirs, ignoreFiles);
-    }
+    public void copyAll(Path sourceDir, Path targetDir, IgnoreRules rules) {
+        try {
+            Files.walkFileTree(sourceDir, new SimpleFileVisitor<>() {
 
-    /**
-     * Copie récursivement les fichiers d'un projet tout en filtrant certains fichiers/dossiers.
-     */
-    public void copyAll(Path sourceDir, Path targetDir,
-                        Set<String> ignoreDirs,
-                        Set<String> ignoreFiles) {
-        try (Stream<Path> stream = Files.walk(sourceDir)) {
-            stream
-                    .filter(path -> !path.equals(sourceDir))
-                    .filter(path -> {
-
-                        // Ne rien copier qui se trouve DANS un répertoire ignoré
-                        Path current = path;
-                        while (current != null && !current.equals(sourceDir)) {
-                            String dirName = current.getFileName().toString();
-                            if (ignoreDirs.contains(dirName)) {
-                                return false; // on skip tout ce sous-arbre
-                            }
-                            current = current.getParent();
-                        }
-
-                        //Gestion des fichiers à ignorer
-                        String filename = path.getFileName().toString();
-
-                        if (Files.isDirectory(path) && ignoreDirs.contains(filename)) {
-                            return false;
-                        }
-
-                        return ignoreFiles.stream().noneMatch(filename::endsWith);
-                    })
-                    .forEach(path -> {
-                        Path destPath = targetDir.resolve(sourceDir.relativize(path));
-                        try {
-                            if (Files.isDirectory(path)) {
-                                Files.createDirectories(destPath);
-                            } else {
-                                Files.createDirectories(destPath.getParent());
-                                Files.copy(path, destPath, StandardCopyOption.REPLACE_EXISTING);
-                            }
-                        } catch (IOException e) {
-                            log.error("Error while copying {} to {}", path, destPath, e);
-                        }
-                    });
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    String rel = relativeName(sourceDir, dir);
+                    if (!rel.isEmpty() && rules.matches(rel, true)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    Files.createDirectories(targetDir.resolve(rel));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    String rel = relativeName(sourceDir, file);
+                    if (rules.matches(rel, false)) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    Path destPath = targetDir.resolve(rel);
+                    try {
+                        Files.copy(file, destPath, StandardCopyOption.REPLACE_EXISTING);
+                    } catch (IOException e) {
+                        log.error("Error while copying {} to {}", file, destPath, e);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    log.error("Error while traversing {}", file, exc);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
         } catch (IOException e) {
             log.error("Error while traversing {}", sourceDir, e);
         }
@@ -288,46 +408,127 @@ public class ZipUtils {
     // =============================
     //         PRIVATE HELPERS
     // =============================
-    private FileSystem newZipFileSystem(Path zipFile) throws IOException {
-        if (Files.notExists(zipFile)) {
-            throw new NoSuchFileException("Zip file does not exist: " + zipFile);
-        }
-        if (!isValidZip(zipFile)) {
-            log.warn("File {} is not a valid ZIP archive. Skipping.", zipFile);
-            return null; // on signalera à unzip() de ne rien faire
-        }
 
-        URI uri = URI.create("jar:" + zipFile.toUri());
-        Map<String, String> env = Map.of("create", "false");
+    /**
+     * Nom d'entrée zip d'un chemin : relatif au dossier source, séparateur "/",
+     * suffixe "/" pour les dossiers.
+     */
+    private String relativeName(Path sourceDir, Path path) {
+        return sourceDir.relativize(path).toString().replace('\\', '/');
+    }
+
+    private String entryName(Path sourceDir, Path path) {
+        String name = relativeName(sourceDir, path);
+        return Files.isDirectory(path) ? name + "/" : name;
+    }
 
+    /**
+     * Requête de compression d'un fichier, préparée par le thread qui le compresse : le fichier est
+     * compressé ou stocké selon {@code options} (ses premiers octets sont lus si nécessaire), et le
+     * temps CPU de la compression est ajouté à {@code stats}.
+     */
+    private ZipArchiveEntryRequest compressionRequest(Path path, ZipArchiveEntry entry, ZipWriteOptions options,
+                                                      CompressionStats stats) {
         try {
-            return FileSystems.newFileSystem(uri, env);
+            if (stores(path, entry.getName(), options)) {
+                entry.setMethod(ZipArchiveEntry.STORED);
+                return ZipArchiveEntryRequest.createZipArchiveEntryRequest(entry, () -> openUnchecked(path));
+            }
         } catch (IOException e) {
-            log.warn("Unable to open ZIP filesystem for {} → {}. Skipping this archive.",
-                    zipFile, e.getMessage());
-            return null;
+            throw new UncheckedIOException(e);
         }
+        entry.setMethod(ZipArchiveEntry.DEFLATED);
+        return ZipArchiveEntryRequest.createZipArchiveEntryRequest(entry, () -> {
+            // Le fichier est lu et compressé par ce thread jusqu'à sa fermeture
+            long cpu = CompressionStats.threadCpuNanos();
+            return new FilterInputStream(openUnchecked(path)) {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    if (cpu >= 0) {
+                        stats.recordCpu(CompressionStats.threadCpuNanos() - cpu);
+                    }
+                }
+            };
+        });
     }
 
-    private boolean isValidZip(Path path) {
-        if (!Files.isRegularFile(path)) {
-            return false;
+    /**
+     * Le fichier {@code path} doit-il être stocké sans compression ? Ses premiers octets ne sont
+     * lus que si son extension ne suffit pas à décider.
+     */
+    private boolean stores(Path path, String name, ZipWriteOptions options) throws IOException {
+        if (!options.needsSample(name)) {
+            return options.stores(name, null, 0);
         }
+        byte[] sample = new byte[CompressionPolicy.SAMPLE_SIZE];
+        int length;
+        try (InputStream in = Files.newInputStream(path)) {
+            length = in.readNBytes(sample, 0, sample.length);
+        }
+        return options.stores(name, sample, length);
+    }
 
-        // Vérifie la "magic signature" d'un ZIP : PK\003\004
-        try (var in = Files.newInputStream(path)) {
-            byte[] signature = new byte[4];
-            int read = in.read(signature);
-            if (read < 4) {
-                return false;
-            }
-            return signature[0] == 'P'
-                    && signature[1] == 'K'
-                    && signature[2] == 3
-                    && signature[3] == 4;
+    private InputStream openUnchecked(Path path) {
+        try {
+            return Files.newInputStream(path);
         } catch (IOException e) {
-            return false;
+            throw new UncheckedIOException(e);
         }
     }
 
+    /**
+     * Vue d'un pool partagé pour {@link ParallelScatterZipCreator}, qui arrête le pool qu'on lui
+     * donne à la fin de {@code writeTo} : arrêter la vue n'arrête pas le pool. {@link #shutdownNow()}
+     * annule les tâches soumises par la vue qui ne sont pas terminées.
+     */
+    private static final class SharedExecutor extends AbstractExecutorService {
+
+        private final ExecutorService pool;
+        private final Queue<Future<?>> tasks = new ConcurrentLinkedQueue<>();
+        private volatile boolean shutdown;
+
+        private SharedExecutor(ExecutorService pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (shutdown) {
+                throw new RejectedExecutionException("Zip creation is over");
+            }
+            if (command instanceof Future<?> task) {
+                tasks.add(task);
+            }
+            pool.execute(command);
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            tasks.forEach(task -> task.cancel(true));
+            return List.of();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown && tasks.stream().allMatch(Future::isDone);
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            // writeTo n'attend la fin qu'une fois toutes les tâches terminées
+            return isTerminated();
+        }
+    }
 }
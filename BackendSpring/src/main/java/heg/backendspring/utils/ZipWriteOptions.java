@@ -0,0 +1,47 @@
+package heg.backendspring.utils;
+
+import java.util.zip.Deflater;
+
+/**
+ * Options d'écriture des zips générés par l'application.
+ *
+ * @param compressionLevel niveau de compression deflate (0-9, -1 = niveau par défaut) ; au niveau 0,
+ *                         toutes les entrées sont stockées sans compression
+ * @param parallelism      nombre de threads utilisés pour compresser les entrées
+ * @param compression      choix de la compression entrée par entrée
+ */
+public record ZipWriteOptions(int compressionLevel, int parallelism, CompressionPolicy compression) {
+
+    public static final ZipWriteOptions DEFAULT = new ZipWriteOptions(
+            Deflater.DEFAULT_COMPRESSION, Runtime.getRuntime().availableProcessors());
+
+    public ZipWriteOptions {
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+        }
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        if (compression == null) {
+            compression = CompressionPolicy.DEFAULT;
+        }
+    }
+
+    public ZipWriteOptions(int compressionLevel, int parallelism) {
+        this(compressionLevel, parallelism, CompressionPolicy.DEFAULT);
+    }
+
+    /**
+     * Vrai s'il faut lire les premiers octets de l'entrée {@code name} pour choisir sa compression.
+     */
+    public boolean needsSample(String name) {
+        return compressionLevel != Deflater.NO_COMPRESSION && compression.needsSample(name);
+    }
+
+    /**
+     * Vrai si l'entrée {@code name} doit être stockée sans compression (voir {@link CompressionPolicy}).
+     */
+    public boolean stores(String name, byte[] sample, int length) {
+        return compressionLevel == Deflater.NO_COMPRESSION || compression.stores(name, sample, length);
+    }
+}
@@ -0,0 +1,39 @@
+package heg.backendspring.utils.archive;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reçoit les entrées d'une archive au fur et à mesure de leur décodage.
+ * <p>
+ * Les noms sont déjà normalisés (séparateur "/", sans "/" initial ni final, sans "..").
+ * Les dates sont en millisecondes, -1 si l'archive ne les fournit pas.
+ */
+public interface ArchiveEntryVisitor {
+
+    /**
+     * Appelé avant toute décompression : retourner false ignore l'entrée sans lire ses données.
+     */
+    default boolean accept(String name, boolean directory) {
+        return true;
+    }
+
+    void directory(String name, long time) throws IOException;
+
+    /**
+     * Le flux {@code data} n'est valable que pendant l'appel et ne doit pas être fermé.
+     */
+    void file(String name, long size, long time, InputStream data) throws IOException;
+
+    /**
+     * Zip lu par son répertoire central uniquement : propose l'entrée {@code entry} sous forme de
+     * données compressées brutes ({@code raw}), à recopier telles quelles avec la méthode, le CRC
+     * et les tailles de {@code entry}. Retourner false, sans lire {@code raw}, pour recevoir les
+     * données décompressées via {@link #file}.
+     */
+    default boolean rawFile(String name, ZipArchiveEntry entry, InputStream raw) throws IOException {
+        return false;
+    }
+}
@@ -0,0 +1,36 @@
+package heg.backendspring.utils.archive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Set;
+
+/**
+ * Extracteur d'un ou plusieurs formats d'archives.
+ * <p>
+ * Les implémentations intégrées sont enregistrées par {@link ArchiveExtractors} ; d'autres
+ * peuvent être ajoutées via {@link java.util.ServiceLoader}
+ * (META-INF/services/heg.backendspring.utils.archive.ArchiveExtractor).
+ * Chaque entrée doit passer par {@link ExtractionContext#acceptEntry} puis
+ * {@link ExtractionContext#guard} pour partager la normalisation des noms et les limites.
+ */
+public interface ArchiveExtractor {
+
+    Set<ArchiveFormat> formats();
+
+    /**
+     * Extrait une archive lue séquentiellement (ex : une entrée d'un autre zip).
+     */
+    void extract(InputStream in, ArchiveFormat format, ExtractionContext context,
+                 ArchiveEntryVisitor visitor) throws IOException;
+
+    /**
+     * Extrait une archive à accès aléatoire (fichier déjà ouvert). Par défaut, le canal est lu
+     * comme un flux ; les formats qui en tirent parti (zip, 7z) redéfinissent cette méthode.
+     */
+    default void extract(SeekableByteChannel channel, ArchiveFormat format, ExtractionContext context,
+                         ArchiveEntryVisitor visitor) throws IOException {
+        extract(Channels.newInputStream(channel), format, context, visitor);
+    }
+}
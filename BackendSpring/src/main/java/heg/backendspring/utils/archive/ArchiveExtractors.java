@@ -0,0 +1,251 @@
+package heg.backendspring.utils.archive;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.BiPredicate;
+
+/**
+ * Registre des {@link ArchiveExtractor} : détecte le format d'une archive à partir de ses
+ * premiers octets puis délègue à l'extracteur correspondant.
+ * <p>
+ * La détection et l'extraction d'un fichier se font sur le même canal ouvert une seule fois.
+ * Tous les extracteurs partagent la même {@link BufferPool} et les mêmes {@link ArchiveLimits}.
+ */
+@Slf4j
+public class ArchiveExtractors {
+
+    private static final ArchiveExtractors DEFAULTS = new ArchiveExtractors(
+            new BufferPool(BufferPool.DEFAULT_BUFFER_SIZE, 64), ArchiveLimits.UNLIMITED, builtInAndDiscovered());
+
+    /**
+     * Archive ouverte dont le format a été détecté, à extraire avec
+     * {@link #extract(DetectedArchive, ArchiveEntryVisitor)} sur le même canal, puis à fermer.
+     */
+    public record DetectedArchive(SeekableByteChannel channel, ArchiveFormat format) implements AutoCloseable {
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private final Map<ArchiveFormat, ArchiveExtractor> extractors = new EnumMap<>(ArchiveFormat.class);
+    @Getter
+    private final BufferPool bufferPool;
+    @Getter
+    private final ArchiveLimits limits;
+
+    /**
+     * En cas de doublon, le dernier extracteur déclaré pour un format l'emporte.
+     */
+    public ArchiveExtractors(BufferPool bufferPool, ArchiveLimits limits, Collection<ArchiveExtractor> extractors) {
+        this.bufferPool = bufferPool;
+        this.limits = limits;
+        for (ArchiveExtractor extractor : extractors) {
+            extractor.formats().forEach(format -> this.extractors.put(format, extractor));
+        }
+    }
+
+    /**
+     * Registre par défaut : extracteurs intégrés (zip, 7z, rar, tar) et ceux déclarés via
+     * {@link ServiceLoader}, sans limites.
+     */
+    public static ArchiveExtractors defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Même registre, avec d'autres limites (la réserve de tampons reste partagée).
+     */
+    public ArchiveExtractors withLimits(ArchiveLimits newLimits) {
+        return new ArchiveExtractors(bufferPool, newLimits, new LinkedHashSet<>(extractors.values()));
+    }
+
+    public ExtractionContext newContext() {
+        return new ExtractionContext(bufferPool, limits);
+    }
+
+    public boolean supports(ArchiveFormat format) {
+        return extractors.containsKey(format);
+    }
+
+    /**
+     * Détecte le format d'un fichier (lecture de l'en-tête uniquement).
+     */
+    public Optional<ArchiveFormat> detect(Path file) throws IOException {
+        try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+            return detect(channel);
+        }
+    }
+
+    /**
+     * Ouvre {@code file} et détecte son format. Le canal reste ouvert pour l'extraction s'il
+     * s'agit d'une archive supportée ; sinon il est fermé.
+     *
+     * @return l'archive ouverte, ou vide si le fichier n'est pas une archive supportée
+     */
+    public Optional<DetectedArchive> open(Path file) throws IOException {
+        SeekableByteChannel channel = Files.newByteChannel(file);
+        try {
+            Optional<ArchiveFormat> format = detect(channel).filter(this::supports);
+            if (format.isPresent()) {
+                return Optional.of(new DetectedArchive(channel, format.get()));
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        channel.close();
+        return Optional.empty();
+    }
+
+    /**
+     * Extrait une archive ouverte par {@link #open(Path)} vers {@code visitor}, sans relire son en-tête.
+     */
+    public void extract(DetectedArchive archive, ArchiveEntryVisitor visitor) throws IOException {
+        extract(archive.channel(), archive.format(), visitor);
+    }
+
+    /**
+     * Extrait le fichier {@code archive} vers {@code visitor}.
+     *
+     * @return le format détecté, ou vide si le fichier n'est pas une archive reconnue
+     * (rien n'est alors extrait)
+     */
+    public Optional<ArchiveFormat> extract(Path archive, ArchiveEntryVisitor visitor) throws IOException {
+        if (Files.notExists(archive)) {
+            throw new NoSuchFileException("Archive does not exist: " + archive);
+        }
+        try (SeekableByteChannel channel = Files.newByteChannel(archive)) {
+            return extract(channel, visitor);
+        }
+    }
+
+    /**
+     * Extrait l'archive à accès aléatoire {@code channel} (lue depuis le début) vers {@code visitor}.
+     *
+     * @return le format détecté, ou vide si le canal ne contient pas une archive reconnue
+     */
+    public Optional<ArchiveFormat> extract(SeekableByteChannel channel, ArchiveEntryVisitor visitor) throws IOException {
+        channel.position(0);
+        Optional<ArchiveFormat> format = detect(channel).filter(this::supports);
+        if (format.isPresent()) {
+            extract(channel, format.get(), visitor);
+        }
+        return format;
+    }
+
+    /**
+     * Extrait une archive lue séquentiellement vers {@code visitor}. Seuls les premiers octets
+     * sont lus si le flux n'est pas une archive reconnue.
+     *
+     * @return le format détecté, ou vide si le flux n'est pas une archive reconnue
+     */
+    public Optional<ArchiveFormat> extract(InputStream in, ArchiveEntryVisitor visitor) throws IOException {
+        return extract(in, -1, visitor);
+    }
+
+    /**
+     * Comme {@link #extract(InputStream, ArchiveEntryVisitor)}, pour une archive dont la taille
+     * {@code size} est connue d'avance (-1 sinon) : un format qui exige un accès aléatoire n'est
+     * gardé en mémoire que s'il est petit.
+     *
+     * @return le format détecté, ou vide si le flux n'est pas une archive reconnue
+     */
+    public Optional<ArchiveFormat> extract(InputStream in, long size, ArchiveEntryVisitor visitor) throws IOException {
+        ExtractionContext context = newContext();
+        context.setStreamSize(size);
+        BufferedInputStream buffered = new BufferedInputStream(context.countArchive(in), ArchiveFormat.HEADER_LENGTH);
+        buffered.mark(ArchiveFormat.HEADER_LENGTH);
+        byte[] header = buffered.readNBytes(ArchiveFormat.HEADER_LENGTH);
+        buffered.reset();
+
+        Optional<ArchiveFormat> format = ArchiveFormat.detect(header, header.length).filter(this::supports);
+        if (format.isPresent()) {
+            extractors.get(format.get()).extract(buffered, format.get(), context, visitor);
+        }
+        return format;
+    }
+
+    /**
+     * Extrait le fichier {@code archive} dans {@code targetDir}.
+     *
+     * @return le format détecté, ou vide si le fichier n'est pas une archive reconnue
+     */
+    public Optional<ArchiveFormat> extractTo(Path archive, Path targetDir) throws IOException {
+        return extractTo(archive, targetDir, (name, directory) -> false);
+    }
+
+    /**
+     * Extrait le fichier {@code archive} dans {@code targetDir}, sans décompresser les entrées
+     * refusées par {@code excluded} (appliqué au nom normalisé de chaque entrée et à son type).
+     *
+     * @return le format détecté, ou vide si le fichier n'est pas une archive reconnue
+     */
+    public Optional<ArchiveFormat> extractTo(Path archive, Path targetDir,
+                                             BiPredicate<String, Boolean> excluded) throws IOException {
+        Files.createDirectories(targetDir);
+        return extract(archive, new DirectoryWriter(targetDir, bufferPool, excluded));
+    }
+
+    /**
+     * Normalise un nom d'entrée (séparateurs "/", pas de "/" ou "./" initial, pas de "/" final).
+     * Retourne null si le chemin tente de sortir du dossier (anti path traversal).
+     */
+    public static String sanitize(String entryName) {
+        if (entryName == null) {
+            return null;
+        }
+        String name = entryName.replace('\\', '/');
+        while (name.startsWith("/") || name.startsWith("./")) {
+            name = name.substring(name.startsWith("/") ? 1 : 2);
+        }
+        while (name.endsWith("/")) {
+            name = name.substring(0, name.length() - 1);
+        }
+        for (String segment : name.split("/")) {
+            if (segment.equals("..")) {
+                return null;
+            }
+        }
+        return name;
+    }
+
+    private void extract(SeekableByteChannel channel, ArchiveFormat format, ArchiveEntryVisitor visitor) throws IOException {
+        channel.position(0);
+        ExtractionContext context = newContext();
+        context.setArchiveBytes(channel.size());
+        extractors.get(format).extract(channel, format, context, visitor);
+    }
+
+    private Optional<ArchiveFormat> detect(SeekableByteChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(ArchiveFormat.HEADER_LENGTH);
+        while (header.hasRemaining() && channel.read(header) > 0) {
+            // lecture de l'en-tête
+        }
+        return ArchiveFormat.detect(header.array(), header.position());
+    }
+
+    private static List<ArchiveExtractor> builtInAndDiscovered() {
+        List<ArchiveExtractor> all = new ArrayList<>(List.of(
+                new ZipArchiveExtractor(),
+                new SevenZArchiveExtractor(),
+                new RarArchiveExtractor(),
+                new TarArchiveExtractor()
+        ));
+        for (ArchiveExtractor extractor : ServiceLoader.load(ArchiveExtractor.class)) {
+            log.info("Registering archive extractor {} for {}", extractor.getClass().getName(), extractor.formats());
+            all.add(extractor);
+        }
+        return all;
+    }
+}
@@ -0,0 +1,98 @@
+package heg.backendspring.utils.archive;
+
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Formats d'archives reconnus, détectés à partir des premiers octets du fichier
+ * ("magic bytes") et non de l'extension, qui peut être trompeuse.
+ */
+public enum ArchiveFormat {
+    ZIP,
+    SEVEN_Z,
+    RAR,
+    TAR,
+    TAR_GZ,
+    TAR_XZ;
+
+    /**
+     * Nombre d'octets à lire pour la détection (l'en-tête "ustar" d'un tar est à l'offset 257).
+     */
+    public static final int HEADER_LENGTH = 512;
+
+    private static final byte[] ZIP_LOCAL = {'P', 'K', 3, 4};
+    private static final byte[] ZIP_EMPTY = {'P', 'K', 5, 6};
+    private static final byte[] ZIP_SPANNED = {'P', 'K', 7, 8};
+    private static final byte[] SEVEN_Z_MAGIC = {'7', 'z', (byte) 0xBC, (byte) 0xAF, 0x27, 0x1C};
+    private static final byte[] RAR_MAGIC = {'R', 'a', 'r', '!', 0x1A, 0x07};
+    private static final byte[] GZIP_MAGIC = {0x1F, (byte) 0x8B};
+    private static final byte[] XZ_MAGIC = {(byte) 0xFD, '7', 'z', 'X', 'Z', 0x00};
+    private static final byte[] TAR_MAGIC = {'u', 's', 't', 'a', 'r'};
+    private static final int TAR_MAGIC_OFFSET = 257;
+
+    /**
+     * Détecte le format à partir des {@code length} premiers octets de {@code header}.
+     * Un flux gzip ou xz est considéré comme un tar compressé.
+     */
+    public static Optional<ArchiveFormat> detect(byte[] header, int length) {
+        if (startsWith(header, length, ZIP_LOCAL) || startsWith(header, length, ZIP_EMPTY)
+                || startsWith(header, length, ZIP_SPANNED)) {
+            return Optional.of(ZIP);
+        }
+        if (startsWith(header, length, SEVEN_Z_MAGIC)) {
+            return Optional.of(SEVEN_Z);
+        }
+        if (startsWith(header, length, RAR_MAGIC)) {
+            return Optional.of(RAR);
+        }
+        if (startsWith(header, length, GZIP_MAGIC)) {
+            return Optional.of(TAR_GZ);
+        }
+        if (startsWith(header, length, XZ_MAGIC)) {
+            return Optional.of(TAR_XZ);
+        }
+        if (matches(header, length, TAR_MAGIC_OFFSET, TAR_MAGIC)) {
+            return Optional.of(TAR);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Indique si le nom de fichier porte une extension d'archive connue. Sert uniquement à
+     * choisir quels fichiers d'un rendu examiner et dans quel ordre : le format réel est
+     * toujours déterminé par {@link #detect(byte[], int)}.
+     */
+    public static boolean hasArchiveExtension(String fileName) {
+        String lower = fileName.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".zip") || lower.endsWith(".7z") || lower.endsWith(".rar")
+                || lower.endsWith(".tar") || lower.endsWith(".tgz") || lower.endsWith(".tar.gz")
+                || lower.endsWith(".txz") || lower.endsWith(".tar.xz");
+    }
+
+    /**
+     * Indique si un fichier à la racine d'un rendu peut être l'archive du projet : extension
+     * d'archive connue, ou aucune extension (nom trompeur, "projet" au lieu de "projet.zip").
+     * Les documents qui sont des zips (.docx, .xlsx, .odt, .jar...) portent une autre extension
+     * et ne sont donc jamais pris pour le projet.
+     */
+    public static boolean isCandidate(String fileName) {
+        String name = fileName.substring(fileName.lastIndexOf('/') + 1);
+        return hasArchiveExtension(name) || name.indexOf('.') < 0;
+    }
+
+    private static boolean startsWith(byte[] header, int length, byte[] magic) {
+        return matches(header, length, 0, magic);
+    }
+
+    private static boolean matches(byte[] header, int length, int offset, byte[] magic) {
+        if (length < offset + magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (header[offset + i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,13 @@
+package heg.backendspring.utils.archive;
+
+import java.io.IOException;
+
+/**
+ * Levée lorsqu'une archive dépasse une des {@link ArchiveLimits}.
+ */
+public class ArchiveLimitException extends IOException {
+
+    public ArchiveLimitException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,31 @@
+package heg.backendspring.utils.archive;
+
+/**
+ * Limites appliquées à l'extraction d'une archive, identiques pour tous les formats.
+ * Une valeur &lt;= 0 désactive la limite correspondante.
+ * <p>
+ * Les limites sont vérifiées pendant la lecture : l'extraction s'arrête dès qu'une limite est
+ * dépassée ({@link ArchiveLimitException}), sans décompresser le reste de l'archive.
+ *
+ * @param maxEntries          nombre maximal d'entrées acceptées
+ * @param maxTotalBytes       nombre maximal d'octets décompressés
+ * @param maxCompressionRatio rapport maximal entre octets décompressés et taille de l'archive
+ *                            (vérifié au-delà de {@link #RATIO_THRESHOLD} octets décompressés)
+ * @param maxDepth            nombre maximal de niveaux dans le chemin d'une entrée
+ * @param maxPathLength       longueur maximale (en caractères) du chemin d'une entrée
+ */
+public record ArchiveLimits(int maxEntries, long maxTotalBytes, int maxCompressionRatio,
+                            int maxDepth, int maxPathLength) {
+
+    /**
+     * En dessous de ce volume décompressé, le taux de compression n'est pas vérifié : une petite
+     * archive de fichiers texte peut légitimement avoir un taux élevé.
+     */
+    public static final long RATIO_THRESHOLD = 1024 * 1024;
+
+    public static final ArchiveLimits UNLIMITED = new ArchiveLimits(0, 0, 0, 0, 0);
+
+    public ArchiveLimits(int maxEntries, long maxTotalBytes) {
+        this(maxEntries, maxTotalBytes, 0, 0, 0);
+    }
+}
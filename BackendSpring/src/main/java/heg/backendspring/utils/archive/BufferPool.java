@@ -0,0 +1,56 @@
+package heg.backendspring.utils.archive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Réserve de tampons de copie partagée par les extracteurs, pour éviter d'allouer un
+ * nouveau tableau pour chaque entrée de chaque archive.
+ */
+public final class BufferPool {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final int bufferSize;
+    private final BlockingQueue<byte[]> free;
+
+    public BufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.free = new ArrayBlockingQueue<>(Math.max(1, maxPooled));
+    }
+
+    public byte[] acquire() {
+        byte[] buffer = free.poll();
+        return buffer != null ? buffer : new byte[bufferSize];
+    }
+
+    public void release(byte[] buffer) {
+        if (buffer != null && buffer.length == bufferSize) {
+            // si la réserve est pleine, le tampon est simplement abandonné au GC
+            free.offer(buffer);
+        }
+    }
+
+    /**
+     * Copie {@code in} dans {@code out} avec un tampon de la réserve.
+     *
+     * @return le nombre d'octets copiés
+     */
+    public long copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = acquire();
+        try {
+            long total = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                total += read;
+            }
+            return total;
+        } finally {
+            release(buffer);
+        }
+    }
+}
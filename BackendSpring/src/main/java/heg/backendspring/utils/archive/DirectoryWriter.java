@@ -0,0 +1,84 @@
+package heg.backendspring.utils.archive;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.function.BiPredicate;
+
+/**
+ * Visiteur qui écrit les entrées d'une archive dans un dossier.
+ * <p>
+ * Les entrées refusées par {@code excluded} sont ignorées avant décompression : rien n'est
+ * écrit pour elles. Le visiteur compte les octets écrits et les entrées ignorées.
+ */
+public class DirectoryWriter implements ArchiveEntryVisitor {
+
+    private final Path targetDir;
+    private final BufferPool bufferPool;
+    private final BiPredicate<String, Boolean> excluded;
+
+    @Getter
+    private long bytesWritten;
+    @Getter
+    private int entriesSkipped;
+
+    public DirectoryWriter(Path targetDir, BufferPool bufferPool) {
+        this(targetDir, bufferPool, (name, directory) -> false);
+    }
+
+    /**
+     * @param excluded reçoit le nom normalisé de l'entrée et indique s'il s'agit d'un dossier
+     */
+    public DirectoryWriter(Path targetDir, BufferPool bufferPool, BiPredicate<String, Boolean> excluded) {
+        this.targetDir = targetDir.toAbsolutePath().normalize();
+        this.bufferPool = bufferPool;
+        this.excluded = excluded;
+    }
+
+    @Override
+    public boolean accept(String name, boolean directory) {
+        if (excluded.test(name, directory)) {
+            entriesSkipped++;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void directory(String name, long time) throws IOException {
+        Path dir = resolve(name);
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+    }
+
+    @Override
+    public void file(String name, long size, long time, InputStream data) throws IOException {
+        Path file = resolve(name);
+        if (file == null) {
+            return;
+        }
+        Files.createDirectories(file.getParent());
+        try (OutputStream out = Files.newOutputStream(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            bytesWritten += bufferPool.copy(data, out);
+        }
+        if (time >= 0) {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(time));
+        }
+    }
+
+    /**
+     * Résout le chemin cible, ou null s'il sortirait du dossier (anti path traversal).
+     */
+    private Path resolve(String name) {
+        Path path = targetDir.resolve(name).normalize();
+        return path.startsWith(targetDir) ? path : null;
+    }
+}
@@ -0,0 +1,166 @@
+package heg.backendspring.utils.archive;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * État d'une extraction : tampons partagés, limites et compteurs de l'archive en cours.
+ * <p>
+ * Le taux de compression est calculé à partir de la taille de l'archive ({@link #setArchiveBytes})
+ * ou, pour une archive lue séquentiellement, des octets déjà lus ({@link #countArchive}).
+ * Un contexte est créé par archive via {@link ArchiveExtractors#newContext()} et n'est pas
+ * partagé entre threads.
+ */
+public class ExtractionContext {
+
+    @Getter
+    private final BufferPool bufferPool;
+    @Getter
+    private final ArchiveLimits limits;
+
+    @Getter
+    private int entries;
+    @Getter
+    private long totalBytes;
+    @Getter
+    @Setter
+    private long archiveBytes;
+    /**
+     * Taille de l'archive lue séquentiellement, si elle est connue d'avance (taille déclarée de
+     * l'entrée qui la contient), -1 sinon.
+     */
+    @Getter
+    @Setter
+    private long streamSize = -1;
+
+    public ExtractionContext(BufferPool bufferPool, ArchiveLimits limits) {
+        this.bufferPool = bufferPool;
+        this.limits = limits;
+    }
+
+    /**
+     * Normalise le nom d'une entrée et demande au visiteur s'il la veut.
+     *
+     * @return le nom normalisé, ou null si l'entrée doit être ignorée (nom dangereux ou refusé)
+     */
+    public String acceptEntry(ArchiveEntryVisitor visitor, String rawName, boolean directory) throws IOException {
+        String name = ArchiveExtractors.sanitize(rawName);
+        if (name == null || name.isEmpty() || !visitor.accept(name, directory)) {
+            return null;
+        }
+        entries++;
+        if (limits.maxEntries() > 0 && entries > limits.maxEntries()) {
+            throw new ArchiveLimitException("Archive has more than " + limits.maxEntries() + " entries");
+        }
+        if (limits.maxPathLength() > 0 && name.length() > limits.maxPathLength()) {
+            throw new ArchiveLimitException("Entry path longer than " + limits.maxPathLength() + " characters");
+        }
+        if (limits.maxDepth() > 0 && depth(name) > limits.maxDepth()) {
+            throw new ArchiveLimitException("Entry nested deeper than " + limits.maxDepth() + " levels");
+        }
+        return name;
+    }
+
+    /**
+     * Enveloppe les données d'une entrée pour compter les octets décompressés et appliquer
+     * la limite de taille totale. Fermer le flux retourné ne ferme pas {@code data}.
+     */
+    public InputStream guard(InputStream data) {
+        return new FilterInputStream(data) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    count(1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = super.read(b, off, len);
+                if (read > 0) {
+                    count(read);
+                }
+                return read;
+            }
+
+            @Override
+            public void close() {
+                // le flux sous-jacent appartient à l'extracteur
+            }
+        };
+    }
+
+    /**
+     * Compte la taille d'une entrée recopiée sans décompression, avant sa copie : les limites
+     * s'appliquent à sa taille décompressée déclarée, puisque ses données ne passent pas par
+     * {@link #guard} (la copie vérifie ensuite que l'entrée ne la dépasse pas).
+     */
+    public void countUncompressed(long size) throws ArchiveLimitException {
+        count(Math.max(size, 0));
+    }
+
+    /**
+     * Annule {@link #countUncompressed} pour une entrée finalement décompressée via {@link #guard}.
+     */
+    void uncountUncompressed(long size) {
+        totalBytes -= Math.max(size, 0);
+    }
+
+    /**
+     * Enveloppe le flux de l'archive elle-même pour compter les octets lus (dénominateur du taux
+     * de compression quand la taille de l'archive n'est pas connue d'avance).
+     */
+    public InputStream countArchive(InputStream archive) {
+        return new FilterInputStream(archive) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    archiveBytes++;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = super.read(b, off, len);
+                if (read > 0) {
+                    archiveBytes += read;
+                }
+                return read;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = super.skip(n);
+                archiveBytes += skipped;
+                return skipped;
+            }
+        };
+    }
+
+    private void count(long read) throws ArchiveLimitException {
+        totalBytes += read;
+        if (limits.maxTotalBytes() > 0 && totalBytes > limits.maxTotalBytes()) {
+            throw new ArchiveLimitException("Archive expands to more than " + limits.maxTotalBytes() + " bytes");
+        }
+        if (limits.maxCompressionRatio() > 0 && totalBytes > ArchiveLimits.RATIO_THRESHOLD
+                && totalBytes > (long) limits.maxCompressionRatio() * Math.max(archiveBytes, 1)) {
+            throw new ArchiveLimitException("Archive compression ratio exceeds " + limits.maxCompressionRatio() + ":1");
+        }
+    }
+
+    private static int depth(String name) {
+        int depth = 1;
+        for (int i = name.indexOf('/'); i >= 0; i = name.indexOf('/', i + 1)) {
+            depth++;
+        }
+        return depth;
+    }
+}
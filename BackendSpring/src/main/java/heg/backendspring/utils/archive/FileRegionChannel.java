@@ -0,0 +1,96 @@
+package heg.backendspring.utils.archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Canal en lecture seule sur une portion d'un fichier (ex : une archive stockée sans compression
+ * dans un zip), vue comme un fichier à part entière : la position 0 est le début de la portion.
+ * <p>
+ * Les lectures sont positionnelles : plusieurs canaux peuvent lire le même fichier en parallèle.
+ */
+public final class FileRegionChannel implements SeekableByteChannel {
+
+    private final FileChannel file;
+    private final long offset;
+    private final long size;
+    private long position;
+
+    private FileRegionChannel(FileChannel file, long offset, long size) {
+        this.file = file;
+        this.offset = offset;
+        this.size = size;
+    }
+
+    /**
+     * Ouvre les {@code size} octets de {@code path} qui commencent à {@code offset}.
+     */
+    public static FileRegionChannel open(Path path, long offset, long size) throws IOException {
+        return new FileRegionChannel(FileChannel.open(path, StandardOpenOption.READ), offset, size);
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if (!file.isOpen()) {
+            throw new ClosedChannelException();
+        }
+        long remaining = size - position;
+        if (remaining <= 0) {
+            return -1;
+        }
+        ByteBuffer target = dst.remaining() > remaining ? dst.slice().limit((int) remaining) : dst;
+        int read = file.read(target, offset + position);
+        if (target != dst && read > 0) {
+            dst.position(dst.position() + read);
+        }
+        if (read > 0) {
+            position += read;
+        }
+        return read;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) {
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Negative position: " + newPosition);
+        }
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long newSize) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return file.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,52 @@
+package heg.backendspring.utils.archive;
+
+import com.github.junrar.Archive;
+import com.github.junrar.exception.RarException;
+import com.github.junrar.exception.UnsupportedRarV5Exception;
+import com.github.junrar.rarfile.FileHeader;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+
+/**
+ * Extraction des .rar (format RAR 4, via junrar). Les archives RAR 5 et les entrées
+ * chiffrées ne sont pas supportées et sont signalées par une erreur ou un avertissement.
+ */
+@Slf4j
+public class RarArchiveExtractor implements ArchiveExtractor {
+
+    @Override
+    public Set<ArchiveFormat> formats() {
+        return Set.of(ArchiveFormat.RAR);
+    }
+
+    @Override
+    public void extract(InputStream in, ArchiveFormat format, ExtractionContext context,
+                        ArchiveEntryVisitor visitor) throws IOException {
+        try (Archive archive = new Archive(in)) {
+            FileHeader header;
+            while ((header = archive.nextFileHeader()) != null) {
+                String name = context.acceptEntry(visitor, header.getFileName(), header.isDirectory());
+                if (name == null) {
+                    continue;
+                }
+                long time = header.getMTime() != null ? header.getMTime().getTime() : -1;
+                if (header.isDirectory()) {
+                    visitor.directory(name, time);
+                } else if (header.isEncrypted()) {
+                    log.warn("Skipping encrypted RAR entry {}", header.getFileName());
+                } else {
+                    try (InputStream data = archive.getInputStream(header)) {
+                        visitor.file(name, header.getFullUnpackSize(), time, context.guard(data));
+                    }
+                }
+            }
+        } catch (UnsupportedRarV5Exception e) {
+            throw new IOException("RAR 5 archives are not supported", e);
+        } catch (RarException e) {
+            throw new IOException("Invalid RAR archive: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package heg.backendspring.utils.archive;
+
+import org.apache.commons.compress.archivers.sevenz.SevenZArchiveEntry;
+import org.apache.commons.compress.archivers.sevenz.SevenZFile;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * Extraction des .7z. Le format exige un accès aléatoire : lu depuis un flux, l'archive est
+ * gardée en mémoire si sa taille est connue et petite, sinon copiée dans un unique fichier
+ * temporaire. Au plus {@link #IN_MEMORY_LIMIT} octets sont gardés sur le tas par extraction.
+ * <p>
+ * Les entrées refusées ne sont jamais lues : {@link SevenZFile} ne décompresse un bloc
+ * "solid" que jusqu'à la dernière entrée réellement lue, et abandonne le reste du bloc dès
+ * que l'on passe au bloc suivant.
+ */
+public class SevenZArchiveExtractor implements ArchiveExtractor {
+
+    /**
+     * Au-delà de cette taille, ou si sa taille n'est pas connue, un .7z lu depuis un flux est
+     * copié dans un fichier temporaire.
+     */
+    private static final int IN_MEMORY_LIMIT = 1024 * 1024;
+
+    @Override
+    public Set<ArchiveFormat> formats() {
+        return Set.of(ArchiveFormat.SEVEN_Z);
+    }
+
+    @Override
+    public void extract(InputStream in, ArchiveFormat format, ExtractionContext context,
+                        ArchiveEntryVisitor visitor) throws IOException {
+        byte[] head = new byte[0];
+        long size = context.getStreamSize();
+        if (size >= 0 && size <= IN_MEMORY_LIMIT) {
+            // Taille déclarée : on ne lit pas au-delà de la limite si elle est fausse
+            head = in.readNBytes(IN_MEMORY_LIMIT + 1);
+            if (head.length <= IN_MEMORY_LIMIT) {
+                extract(new SeekableInMemoryByteChannel(head), format, context, visitor);
+                return;
+            }
+        }
+
+        Path spillFile = Files.createTempFile("nested", ".7z");
+        try {
+            try (OutputStream out = Files.newOutputStream(spillFile)) {
+                out.write(head);
+                context.getBufferPool().copy(in, out);
+            }
+            try (SeekableByteChannel channel = Files.newByteChannel(spillFile)) {
+                extract(channel, format, context, visitor);
+            }
+        } finally {
+            Files.deleteIfExists(spillFile);
+        }
+    }
+
+    @Override
+    public void extract(SeekableByteChannel channel, ArchiveFormat format, ExtractionContext context,
+                        ArchiveEntryVisitor visitor) throws IOException {
+        try (SevenZFile sevenZFile = SevenZFile.builder().setSeekableByteChannel(channel).get()) {
+
+            InputStream currentEntry = new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    return sevenZFile.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    return sevenZFile.read(b, off, len);
+                }
+            };
+
+            SevenZArchiveEntry entry;
+            while ((entry = sevenZFile.getNextEntry()) != null) {
+                String name = context.acceptEntry(visitor, entry.getName(), entry.isDirectory());
+                if (name == null) {
+                    continue;
+                }
+                long time = entry.getHasLastModifiedDate() ? entry.getLastModifiedTime().toMillis() : -1;
+                if (entry.isDirectory()) {
+                    visitor.directory(name, time);
+                } else {
+                    visitor.file(name, entry.getSize(), time, context.guard(currentEntry));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package heg.backendspring.utils.archive;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+
+/**
+ * Extraction des tar, éventuellement compressés en gzip ou xz. Seuls les dossiers et les
+ * fichiers ordinaires sont extraits (liens et fichiers spéciaux ignorés).
+ */
+public class TarArchiveExtractor implements ArchiveExtractor {
+
+    @Override
+    public Set<ArchiveFormat> formats() {
+        return Set.of(ArchiveFormat.TAR, ArchiveFormat.TAR_GZ, ArchiveFormat.TAR_XZ);
+    }
+
+    @Override
+    public void extract(InputStream in, ArchiveFormat format, ExtractionContext context,
+                        ArchiveEntryVisitor visitor) throws IOException {
+        InputStream decompressed = switch (format) {
+            case TAR_GZ -> GzipCompressorInputStream.builder().setInputStream(in).setDecompressConcatenated(true).get();
+            case TAR_XZ -> new XZCompressorInputStream(in, true);
+            default -> in;
+        };
+
+        TarArchiveInputStream tin = new TarArchiveInputStream(decompressed);
+        TarArchiveEntry entry;
+        while ((entry = tin.getNextEntry()) != null) {
+            if (!entry.isDirectory() && !entry.isFile()) {
+                continue;
+            }
+            String name = context.acceptEntry(visitor, entry.getName(), entry.isDirectory());
+            if (name == null) {
+                continue;
+            }
+            long time = entry.getModTime() != null ? entry.getModTime().getTime() : -1;
+            if (entry.isDirectory()) {
+                visitor.directory(name, time);
+            } else {
+                visitor.file(name, entry.getSize(), time, context.guard(tin));
+            }
+        }
+    }
+}
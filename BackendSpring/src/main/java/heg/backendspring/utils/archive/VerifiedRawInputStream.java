@@ -0,0 +1,130 @@
+package heg.backendspring.utils.archive;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Données brutes d'une entrée de zip recopiée sans recompression, vérifiées au fil de la copie.
+ * <p>
+ * Les octets lus sont décompressés à côté (sans être écrits nulle part) : une entrée qui se
+ * décompresse au-delà de sa taille déclarée — taille falsifiée pour échapper aux
+ * {@link ArchiveLimits} — interrompt la copie dès le dépassement ({@link ArchiveLimitException}),
+ * et une entrée dont la taille réelle ou le CRC ne correspond pas à ceux déclarés est refusée à la
+ * fin de ses données. La décompression seule coûte bien moins qu'une recompression.
+ */
+final class VerifiedRawInputStream extends FilterInputStream {
+
+    private final ZipArchiveEntry entry;
+    private final BufferPool bufferPool;
+    private final Inflater inflater;
+    private final CRC32 crc = new CRC32();
+    private byte[] inflated;
+    private long size;
+    private boolean verified;
+
+    VerifiedRawInputStream(InputStream raw, ZipArchiveEntry entry, BufferPool bufferPool) {
+        super(raw);
+        this.entry = entry;
+        this.bufferPool = bufferPool;
+        this.inflater = entry.getMethod() == ZipArchiveEntry.DEFLATED ? new Inflater(true) : null;
+        this.inflated = inflater != null ? bufferPool.acquire() : null;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        int read = read(one, 0, 1);
+        return read < 0 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read > 0) {
+            update(b, off, read);
+        } else if (read < 0) {
+            verify();
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // Les octets sautés doivent aussi être vérifiés
+        byte[] buffer = new byte[(int) Math.min(Math.max(n, 0), 8192)];
+        int read = buffer.length > 0 ? read(buffer, 0, buffer.length) : 0;
+        return Math.max(read, 0);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (inflater != null) {
+            inflater.end();
+            bufferPool.release(inflated);
+            inflated = null;
+        }
+        super.close();
+    }
+
+    // =============================
+    //         PRIVATE HELPERS
+    // =============================
+
+    private void update(byte[] b, int off, int len) throws IOException {
+        if (inflater == null) {
+            crc.update(b, off, len);
+            count(len);
+            return;
+        }
+        inflater.setInput(b, off, len);
+        try {
+            while (!inflater.finished()) {
+                int count = inflater.inflate(inflated);
+                if (count == 0) {
+                    if (inflater.needsDictionary()) {
+                        throw new ZipException("Entry " + entry.getName() + " requires a preset dictionary");
+                    }
+                    break;
+                }
+                crc.update(inflated, 0, count);
+                count(count);
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException("Entry " + entry.getName() + " has corrupt compressed data: " + e.getMessage());
+        }
+    }
+
+    private void count(long bytes) throws ArchiveLimitException {
+        size += bytes;
+        if (size > entry.getSize()) {
+            throw new ArchiveLimitException("Entry " + entry.getName() + " expands beyond its declared size of "
+                    + entry.getSize() + " bytes");
+        }
+    }
+
+    private void verify() throws ZipException {
+        if (verified) {
+            return;
+        }
+        verified = true;
+        if ((inflater != null && !inflater.finished()) || size != entry.getSize()) {
+            throw new ZipException("Entry " + entry.getName() + " is truncated (" + size + " of "
+                    + entry.getSize() + " bytes)");
+        }
+        if (crc.getValue() != entry.getCrc()) {
+            throw new ZipException("Entry " + entry.getName() + " has a CRC mismatch");
+        }
+    }
+}
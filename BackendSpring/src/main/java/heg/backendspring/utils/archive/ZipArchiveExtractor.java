@@ -0,0 +1,109 @@
+package heg.backendspring.utils.archive;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Extraction des zip : lecture séquentielle pour un flux, répertoire central pour un fichier.
+ */
+@Slf4j
+public class ZipArchiveExtractor implements ArchiveExtractor {
+
+    @Override
+    public Set<ArchiveFormat> formats() {
+        return Set.of(ArchiveFormat.ZIP);
+    }
+
+    @Override
+    public void extract(InputStream in, ArchiveFormat format, ExtractionContext context,
+                        ArchiveEntryVisitor visitor) throws IOException {
+        ZipArchiveInputStream zin = new ZipArchiveInputStream(in, StandardCharsets.UTF_8.name(), true, true);
+        ZipArchiveEntry entry;
+        while ((entry = zin.getNextEntry()) != null) {
+            String name = context.acceptEntry(visitor, entry.getName(), entry.isDirectory());
+            if (name == null) {
+                continue;
+            }
+            if (entry.isDirectory()) {
+                visitor.directory(name, entry.getTime());
+            } else if (!zin.canReadEntryData(entry)) {
+                log.warn("Skipping unreadable entry {} (unsupported zip feature)", entry.getName());
+            } else {
+                visitor.file(name, entry.getSize(), entry.getTime(), context.guard(zin));
+            }
+        }
+    }
+
+    @Override
+    public void extract(SeekableByteChannel channel, ArchiveFormat format, ExtractionContext context,
+                        ArchiveEntryVisitor visitor) throws IOException {
+        try (ZipFile zipFile = ZipFile.builder().setSeekableByteChannel(channel).get()) {
+            for (ZipArchiveEntry entry : Collections.list(zipFile.getEntriesInPhysicalOrder())) {
+                String name = context.acceptEntry(visitor, entry.getName(), entry.isDirectory());
+                if (name == null) {
+                    continue;
+                }
+                if (entry.isDirectory()) {
+                    visitor.directory(name, entry.getTime());
+                } else if (!zipFile.canReadEntryData(entry)) {
+                    log.warn("Skipping unreadable entry {} (unsupported zip feature)", entry.getName());
+                } else if (!copyRaw(zipFile, entry, name, context, visitor)) {
+                    try (InputStream data = zipFile.getInputStream(entry)) {
+                        visitor.file(name, entry.getSize(), entry.getTime(), context.guard(data));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Vrai si l'entrée peut être recopiée sans décompression dans un autre zip : méthode lisible
+     * par tous les lecteurs de zip (STORED, DEFLATED), données non chiffrées.
+     */
+    public static boolean isRawCopyable(ZipArchiveEntry entry) {
+        return (entry.getMethod() == ZipArchiveEntry.STORED || entry.getMethod() == ZipArchiveEntry.DEFLATED)
+                && !entry.getGeneralPurposeBit().usesEncryption()
+                && entry.getSize() >= 0 && entry.getCompressedSize() >= 0;
+    }
+
+    /**
+     * Propose l'entrée brute au visiteur. Sa taille déclarée est comptée dans les limites avant la
+     * copie, et les données sont vérifiées pendant la copie ({@link VerifiedRawInputStream}) : une
+     * taille ou un CRC falsifiés interrompent l'extraction. Une entrée dont le taux de compression
+     * déclaré dépasse la limite n'est pas recopiée mais décompressée.
+     *
+     * @return false si l'entrée doit être décompressée (non recopiable, ou refusée par le visiteur)
+     */
+    private boolean copyRaw(ZipFile zipFile, ZipArchiveEntry entry, String name, ExtractionContext context,
+                            ArchiveEntryVisitor visitor) throws IOException {
+        if (!isRawCopyable(entry) || exceedsRatio(entry, context.getLimits())) {
+            return false;
+        }
+        context.countUncompressed(entry.getSize());
+        try (InputStream raw = zipFile.getRawInputStream(entry)) {
+            if (raw != null) {
+                try (InputStream verified = new VerifiedRawInputStream(raw, entry, context.getBufferPool())) {
+                    if (visitor.rawFile(name, entry, verified)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        context.uncountUncompressed(entry.getSize());
+        return false;
+    }
+
+    private static boolean exceedsRatio(ZipArchiveEntry entry, ArchiveLimits limits) {
+        return limits.maxCompressionRatio() > 0 && entry.getSize() > ArchiveLimits.RATIO_THRESHOLD
+                && entry.getSize() > (long) limits.maxCompressionRatio() * Math.max(entry.getCompressedSize(), 1);
+    }
+}
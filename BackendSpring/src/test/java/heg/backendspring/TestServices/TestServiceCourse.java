@@ -17,6 +17,7 @@ import heg.backendspring.service.ServiceCourse;
 import heg.backendspring.service.ServiceStudent;
 import heg.backendspring.service.ServiceSubmission;
 import heg.backendspring.service.ServiceTP;
+import heg.backendspring.utils.RestructuringReport;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
@@ -24,6 +25,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.io.File;
 import java.io.IOException;
@@ -33,6 +35,7 @@ import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @SpringBootTest
@@ -499,10 +502,37 @@ public class TestServiceCourse {
 
         verify(repositoryCourse).findById(courseId);
         verify(repositoryCourse).findTPByCourseIdAndNo(courseId, tpNo);
-        verify(serviceSubmission).processZipSubmission(course, tp);
+        verify(serviceSubmission).processZipSubmission(eq(course), eq(tp), any(RestructuringReport.class));
         verifyNoMoreInteractions(serviceSubmission);
     }
 
+    @Test
+    @DisplayName("startZipProcess - aucune transaction n'est active pendant le traitement des archives")
+    void testStartZipProcess_noTransactionDuringProcessing() throws IOException {
+        Long courseId = 11L;
+        int tpNo = 2;
+
+        Course course = new Course();
+        course.setId(courseId);
+        course.setCode("62-22");
+
+        TP tp = new TP();
+        tp.setId(6L);
+        tp.setNo(tpNo);
+        tp.setCourse(course);
+
+        when(repositoryCourse.findById(courseId)).thenReturn(Optional.of(course));
+        when(repositoryCourse.findTPByCourseIdAndNo(courseId, tpNo)).thenReturn(Optional.of(tp));
+        when(serviceSubmission.processZipSubmission(eq(course), eq(tp), any(RestructuringReport.class)))
+                .thenAnswer(invocation -> {
+                    assertFalse(TransactionSynchronizationManager.isActualTransactionActive());
+                    return invocation.getArgument(2);
+                });
+
+        assertNotNull(serviceCourse.startZipProcess(courseId, tpNo, new RestructuringReport()));
+        verify(serviceSubmission).processZipSubmission(eq(course), eq(tp), any(RestructuringReport.class));
+    }
+
     @Test
     @DisplayName("manageSubmissionsTP - calls serviceTP with correct args")
     void testManageSubmissionsTP_callsServiceTP() {
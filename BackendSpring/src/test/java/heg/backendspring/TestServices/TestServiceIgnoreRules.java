@@ -0,0 +1,71 @@
+package heg.backendspring.TestServices;
+
+import heg.backendspring.config.RestructuringProperties;
+import heg.backendspring.entity.Course;
+import heg.backendspring.enums.CourseType;
+import heg.backendspring.service.ServiceIgnoreRules;
+import heg.backendspring.utils.IgnoreRules;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestServiceIgnoreRules {
+
+    @TempDir
+    Path rulesDir;
+
+    private RestructuringProperties properties;
+    private ServiceIgnoreRules serviceIgnoreRules;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RestructuringProperties();
+        properties.setIgnoreRulesDir(rulesDir.toString());
+        serviceIgnoreRules = new ServiceIgnoreRules(properties);
+    }
+
+    private Course course(String code, CourseType type) {
+        Course course = new Course();
+        course.setCode(code);
+        course.setCourseType(type);
+        return course;
+    }
+
+    @Test
+    @DisplayName("rulesFor - règles par défaut du classpath selon le type de cours")
+    void testRulesFor_classpathDefaults() {
+        IgnoreRules java = serviceIgnoreRules.rulesFor(course("62-21", CourseType.JAVA));
+        IgnoreRules python = serviceIgnoreRules.rulesFor(course("62-31", CourseType.PYTHON));
+
+        assertTrue(java.isIgnored("projet/target/Main.class", false));
+        assertTrue(python.isIgnored("projet/venv/bin/python", false));
+        assertFalse(python.isIgnored("projet/target/Main.class", false));
+        assertSame(IgnoreRules.NONE, serviceIgnoreRules.rulesFor(course("62-41", CourseType.BDD)));
+    }
+
+    @Test
+    @DisplayName("rulesFor - surcharge par cours prioritaire sur le type, rechargée à chaud")
+    void testRulesFor_courseOverrideHotReload() throws IOException {
+        Files.writeString(rulesDir.resolve("JAVA.gitignore"), "bin/\n");
+        Path courseFile = rulesDir.resolve("course-62-21.gitignore");
+        Files.writeString(courseFile, "*.class\n");
+
+        assertTrue(serviceIgnoreRules.rulesFor(course("62-21", CourseType.JAVA)).isIgnored("A.class", false));
+        assertTrue(serviceIgnoreRules.rulesFor(course("62-22", CourseType.JAVA)).isIgnored("bin/A.class", false));
+
+        Files.writeString(courseFile, "*.jar\n");
+        Files.setLastModifiedTime(courseFile, FileTime.fromMillis(System.currentTimeMillis() + 5_000));
+
+        IgnoreRules reloaded = serviceIgnoreRules.rulesFor(course("62-21", CourseType.JAVA));
+        assertFalse(reloaded.isIgnored("A.class", false));
+        assertTrue(reloaded.isIgnored("lib/A.jar", false));
+    }
+}
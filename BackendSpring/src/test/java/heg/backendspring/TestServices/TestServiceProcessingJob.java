@@ -0,0 +1,375 @@
+package heg.backendspring.TestServices;
+
+import heg.backendspring.entity.Course;
+import heg.backendspring.entity.ProcessingJob;
+import heg.backendspring.entity.ProcessingJobJournal;
+import heg.backendspring.entity.TP;
+import heg.backendspring.enums.ProcessingJobStatus;
+import heg.backendspring.models.ProcessingJobDto;
+import heg.backendspring.repository.RepositoryCourse;
+import heg.backendspring.repository.RepositoryProcessingJob;
+import heg.backendspring.repository.RepositoryProcessingJobJournal;
+import heg.backendspring.rest.ControllerCourse;
+import heg.backendspring.service.ServiceCourse;
+import heg.backendspring.service.ServiceProcessingJob;
+import heg.backendspring.utils.RestructuringReport;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.InterruptedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+// Trois workers dans le même contexte : ils se disputent la file comme des instances distinctes
+@SpringBootTest(properties = {
+        "restructuring.queue.worker=true",
+        "restructuring.job-workers=3",
+        "restructuring.queue.poll-interval=50ms",
+        "restructuring.queue.node-id=test-node"
+})
+@ActiveProfiles("test")
+class TestServiceProcessingJob {
+
+    @Autowired
+    private ServiceProcessingJob serviceProcessingJob;
+
+    @Autowired
+    private ControllerCourse controllerCourse;
+
+    @Autowired
+    private RepositoryProcessingJob repositoryProcessingJob;
+
+    @Autowired
+    private RepositoryProcessingJobJournal repositoryProcessingJobJournal;
+
+    @MockitoBean
+    private ServiceCourse serviceCourse;
+
+    @MockitoBean
+    private RepositoryCourse repositoryCourse;
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Course course = new Course();
+        course.setId(80L);
+        course.setCode("88-88");
+
+        TP tp = new TP();
+        tp.setId(40L);
+        tp.setNo(3);
+        tp.setCourse(course);
+
+        when(repositoryCourse.findById(80L)).thenReturn(Optional.of(course));
+        when(repositoryCourse.findTPByCourseIdAndNo(80L, 3)).thenReturn(Optional.of(tp));
+
+        // Restructuration simulée : un étudiant traité, un en échec, puis attente jusqu'à libération
+        when(serviceCourse.startZipProcess(eq(80L), eq(3), any(RestructuringReport.class))).thenAnswer(invocation -> {
+            RestructuringReport report = invocation.getArgument(2);
+            report.stage(RestructuringReport.Stage.STUDENTS);
+            report.setStudentsTotal(3);
+            report.studentProcessed();
+            report.addFailure("Dupont Jean_123", "Archive exceeds 20000 entries");
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Restructuring interrupted");
+            }
+            report.studentProcessed();
+            report.recordExtraction(2048, 0);
+            report.stage(RestructuringReport.Stage.ZIP);
+            report.setBytesWritten(1024);
+            return report;
+        });
+    }
+
+    private ProcessingJobDto awaitFinished(Long jobId) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        ProcessingJobDto job = serviceProcessingJob.getJob(jobId);
+        while (!job.status().isFinished() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+            job = serviceProcessingJob.getJob(jobId);
+        }
+        return job;
+    }
+
+    @Test
+    @DisplayName("submit - le traitement est lancé en arrière-plan, sa progression et ses erreurs sont consultables")
+    void testSubmit_runsInBackgroundWithProgress() throws Exception {
+        ProcessingJobDto submitted = serviceProcessingJob.submit(80L, 3);
+
+        // L'appel rend la main alors que la restructuration n'est pas terminée
+        assertNotNull(submitted.id());
+        assertFalse(submitted.status().isFinished());
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        ProcessingJobDto running = serviceProcessingJob.getJob(submitted.id());
+        assertEquals(ProcessingJobStatus.RUNNING, running.status());
+        assertEquals(3, running.studentsTotal());
+        assertEquals(1, running.studentsProcessed());
+        assertNotNull(running.startedAt());
+
+        // Relancer le même TP pendant le traitement ne crée pas de second traitement
+        assertEquals(submitted.id(), serviceProcessingJob.submit(80L, 3).id());
+
+        release.countDown();
+        ProcessingJobDto finished = awaitFinished(submitted.id());
+
+        assertEquals(ProcessingJobStatus.SUCCEEDED, finished.status());
+        assertEquals(2, finished.studentsProcessed());
+        assertEquals(1, finished.studentFailures());
+        assertEquals("Dupont Jean_123: Archive exceeds 20000 entries", finished.errorReport());
+        assertNotNull(finished.finishedAt());
+    }
+
+    @Test
+    @DisplayName("submit - appels simultanés pour le même TP : un seul traitement actif, garanti par la base")
+    void testSubmit_concurrentCallsCreateOneJob() throws Exception {
+        int callers = 8;
+        CyclicBarrier barrier = new CyclicBarrier(callers);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<Long>> calls = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                calls.add(executor.submit(() -> {
+                    barrier.await();
+                    return serviceProcessingJob.submit(80L, 3).id();
+                }));
+            }
+            Set<Long> jobIds = ConcurrentHashMap.newKeySet();
+            for (Future<Long> call : calls) {
+                jobIds.add(call.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(1, jobIds.size());
+            release.countDown();
+            assertEquals(ProcessingJobStatus.SUCCEEDED, awaitFinished(jobIds.iterator().next()).status());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Deux traitements actifs du même TP sont refusés par la base, même sans passer par submit
+        ProcessingJob first = runningElsewhere(new ProcessingJob(80L, 7));
+        first = repositoryProcessingJob.save(first);
+        assertThrows(DataIntegrityViolationException.class,
+                () -> repositoryProcessingJob.save(runningElsewhere(new ProcessingJob(80L, 7))));
+
+        // Une fois le premier terminé, le TP peut être relancé
+        first.setStatus(ProcessingJobStatus.FAILED);
+        first = repositoryProcessingJob.save(first);
+        ProcessingJob second = repositoryProcessingJob.save(runningElsewhere(new ProcessingJob(80L, 7)));
+        repositoryProcessingJob.deleteAllById(List.of(first.getId(), second.getId()));
+    }
+
+    private ProcessingJob runningElsewhere(ProcessingJob job) {
+        job.setStatus(ProcessingJobStatus.RUNNING);
+        job.setWorkerId("other-node/00000000-0");
+        job.setLeaseUntil(LocalDateTime.now().plusMinutes(10));
+        job.setAttempts(1);
+        return job;
+    }
+
+    @Test
+    @DisplayName("events - les étapes, la progression et les erreurs sont envoyées en SSE jusqu'à la fin du traitement")
+    void testEvents_streamedUntilFinished() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controllerCourse).build();
+        ProcessingJobDto submitted = serviceProcessingJob.submit(80L, 3);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        // Abonnement après la première erreur : elle est tout de même reçue
+        MvcResult result = mockMvc.perform(get("/jobs/{jobId}/events", submitted.id()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        release.countDown();
+        assertEquals(ProcessingJobStatus.SUCCEEDED, awaitFinished(submitted.id()).status());
+        result.getAsyncResult(10_000);
+
+        String events = result.getResponse().getContentAsString();
+        assertTrue(events.contains("event:progress"));
+        assertTrue(events.contains("event:warning"));
+        assertTrue(events.contains("\"student\":\"Dupont Jean_123\""));
+        assertTrue(events.contains("event:stage"));
+        assertTrue(events.contains("\"stage\":\"ZIP\""));
+        assertTrue(events.contains("\"bytesWritten\":1024"));
+        assertTrue(events.indexOf("event:finished") > events.lastIndexOf("event:progress"));
+        assertEquals(1, events.split("event:warning", -1).length - 1);
+
+        // Traitement terminé : seul l'état final est envoyé
+        MvcResult done = mockMvc.perform(get("/jobs/{jobId}/events", submitted.id())).andReturn();
+        assertTrue(done.getResponse().getContentAsString().startsWith("event:finished"));
+    }
+
+    @Test
+    @DisplayName("file - chaque traitement est réservé par un seul worker, les workers travaillent en parallèle")
+    void testQueue_eachJobClaimedOnce() throws Exception {
+        Course course = new Course();
+        course.setId(82L);
+        course.setCode("88-89");
+        TP tp = new TP();
+        tp.setCourse(course);
+        when(repositoryCourse.findById(82L)).thenReturn(Optional.of(course));
+        when(repositoryCourse.findTPByCourseIdAndNo(eq(82L), anyInt())).thenReturn(Optional.of(tp));
+
+        Map<Integer, AtomicInteger> runs = new ConcurrentHashMap<>();
+        Set<String> workers = ConcurrentHashMap.newKeySet();
+        when(serviceCourse.startZipProcess(eq(82L), anyInt(), any(RestructuringReport.class))).thenAnswer(invocation -> {
+            runs.computeIfAbsent(invocation.getArgument(1), no -> new AtomicInteger()).incrementAndGet();
+            workers.add(Thread.currentThread().getName());
+            Thread.sleep(100);
+            return invocation.getArgument(2);
+        });
+
+        List<Long> jobIds = new ArrayList<>();
+        for (int tpNo = 1; tpNo <= 6; tpNo++) {
+            jobIds.add(serviceProcessingJob.submit(82L, tpNo).id());
+        }
+        for (Long jobId : jobIds) {
+            ProcessingJobDto job = awaitFinished(jobId);
+            assertEquals(ProcessingJobStatus.SUCCEEDED, job.status());
+            assertEquals(1, job.attempts());
+            assertNotNull(job.workerId());
+        }
+
+        assertEquals(6, runs.size());
+        runs.values().forEach(count -> assertEquals(1, count.get()));
+        assertTrue(workers.size() > 1);
+    }
+
+    @Test
+    @DisplayName("file - un traitement dont le bail a expiré est remis en file puis repris, ou échoue après trop de tentatives")
+    void testRecoverExpiredLeases_requeuedOrFailed() throws Exception {
+        release.countDown();
+        ProcessingJob abandoned = new ProcessingJob(80L, 3);
+        abandoned.setStatus(ProcessingJobStatus.RUNNING);
+        abandoned.setWorkerId("dead-node/00000000-0");
+        abandoned.setLeaseUntil(LocalDateTime.now().minusMinutes(1));
+        abandoned.setAttempts(1);
+        abandoned = repositoryProcessingJob.save(abandoned);
+
+        ProcessingJob exhausted = new ProcessingJob(80L, 4);
+        exhausted.setStatus(ProcessingJobStatus.RUNNING);
+        exhausted.setWorkerId("dead-node/00000000-1");
+        exhausted.setLeaseUntil(LocalDateTime.now().minusMinutes(1));
+        exhausted.setAttempts(3);
+        exhausted = repositoryProcessingJob.save(exhausted);
+
+        // Bail encore valide : le traitement n'est pas touché
+        ProcessingJob alive = new ProcessingJob(80L, 5);
+        alive.setStatus(ProcessingJobStatus.RUNNING);
+        alive.setWorkerId("other-node/00000000-0");
+        alive.setLeaseUntil(LocalDateTime.now().plusMinutes(1));
+        alive.setAttempts(1);
+        alive = repositoryProcessingJob.save(alive);
+
+        serviceProcessingJob.recoverExpiredLeases();
+
+        ProcessingJobDto retried = awaitFinished(abandoned.getId());
+        assertEquals(ProcessingJobStatus.SUCCEEDED, retried.status());
+        assertEquals(2, retried.attempts());
+        assertNotEquals("dead-node/00000000-0", retried.workerId());
+
+        ProcessingJobDto failed = serviceProcessingJob.getJob(exhausted.getId());
+        assertEquals(ProcessingJobStatus.FAILED, failed.status());
+        assertTrue(failed.errorMessage().contains("stopped responding"));
+
+        assertEquals(ProcessingJobStatus.RUNNING, serviceProcessingJob.getJob(alive.getId()).status());
+        repositoryProcessingJob.deleteById(alive.getId());
+    }
+
+    @Test
+    @DisplayName("redémarrage - les traitements de l'instance sont remis en file sans attendre leur bail, le journal garde leurs étapes")
+    void testRecoverAfterRestart_ownJobsRequeuedAndJournaled() throws Exception {
+        release.countDown();
+        ProcessingJob interrupted = new ProcessingJob(80L, 3);
+        interrupted.setStatus(ProcessingJobStatus.RUNNING);
+        interrupted.setWorkerId("test-node/0badb007-0");
+        interrupted.setLeaseUntil(LocalDateTime.now().plusMinutes(10));
+        interrupted.setAttempts(1);
+        interrupted.setStage(RestructuringReport.Stage.STUDENTS);
+        interrupted = repositoryProcessingJob.save(interrupted);
+        repositoryProcessingJobJournal.save(new ProcessingJobJournal(interrupted.getId(), 1, "test-node/0badb007-0",
+                ProcessingJobStatus.RUNNING, RestructuringReport.Stage.STUDENTS));
+
+        // Traitement d'une autre instance : son bail est respecté
+        ProcessingJob otherNode = new ProcessingJob(80L, 6);
+        otherNode.setStatus(ProcessingJobStatus.RUNNING);
+        otherNode.setWorkerId("other-node/0badb007-0");
+        otherNode.setLeaseUntil(LocalDateTime.now().plusMinutes(10));
+        otherNode.setAttempts(1);
+        otherNode = repositoryProcessingJob.save(otherNode);
+
+        serviceProcessingJob.recoverAfterRestart();
+
+        Long jobId = interrupted.getId();
+        ProcessingJobDto resumed = awaitFinished(jobId);
+        assertEquals(ProcessingJobStatus.SUCCEEDED, resumed.status());
+        assertEquals(2, resumed.attempts());
+        assertEquals(ProcessingJobStatus.RUNNING, serviceProcessingJob.getJob(otherNode.getId()).status());
+        repositoryProcessingJob.deleteById(otherNode.getId());
+
+        // Les étapes sont journalisées par le thread de la file, peu après leur passage
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        List<ProcessingJobJournal> journal = serviceProcessingJob.getJournal(jobId);
+        while (journal.stream().noneMatch(line -> line.getAttempt() == 2 && line.getStage() == RestructuringReport.Stage.ZIP)
+                && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+            journal = serviceProcessingJob.getJournal(jobId);
+        }
+        assertEquals(RestructuringReport.Stage.STUDENTS, journal.get(0).getStage());
+        assertEquals(ProcessingJobStatus.QUEUED, journal.get(1).getStatus());
+        assertTrue(journal.stream().anyMatch(line -> line.getAttempt() == 2
+                && line.getStage() == RestructuringReport.Stage.ZIP));
+        assertTrue(journal.stream().anyMatch(line -> line.getStatus() == ProcessingJobStatus.SUCCEEDED));
+    }
+
+    @Test
+    @DisplayName("cancel - un traitement en cours est interrompu et marqué annulé")
+    void testCancel_runningJobInterrupted() throws Exception {
+        ProcessingJobDto submitted = serviceProcessingJob.submit(80L, 3);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        serviceProcessingJob.cancel(submitted.id());
+        ProcessingJobDto finished = awaitFinished(submitted.id());
+
+        assertEquals(ProcessingJobStatus.CANCELLED, finished.status());
+        assertNull(finished.errorMessage());
+        // Annuler un traitement terminé ne change rien
+        assertEquals(ProcessingJobStatus.CANCELLED, serviceProcessingJob.cancel(submitted.id()).status());
+
+        assertThrows(EntityNotFoundException.class, () -> serviceProcessingJob.getJob(-1L));
+        assertThrows(EntityNotFoundException.class, () -> serviceProcessingJob.submit(81L, 3));
+    }
+}
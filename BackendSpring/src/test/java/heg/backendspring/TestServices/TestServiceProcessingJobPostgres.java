@@ -0,0 +1,16 @@
+package heg.backendspring.TestServices;
+
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Tests de la file de traitements sur PostgreSQL : FOR UPDATE SKIP LOCKED et la contrainte
+ * d'unicité du traitement actif ne sont pas vérifiés de la même façon par H2.
+ * Lancés seulement avec une base locale :
+ * {@code mvn test -Dtest=TestServiceProcessingJobPostgres -Dtest.postgres.url=jdbc:postgresql://localhost:5432/assistantio_test}
+ * (identifiants : test.postgres.username / test.postgres.password, postgres par défaut).
+ */
+@EnabledIfSystemProperty(named = "test.postgres.url", matches = ".+")
+@ActiveProfiles("test-postgres")
+class TestServiceProcessingJobPostgres extends TestServiceProcessingJob {
+}
@@ -1,17 +1,28 @@
 package heg.backendspring.TestServices;
 
+import heg.backendspring.config.RestructuringProperties;
 import heg.backendspring.entity.Course;
 import heg.backendspring.entity.Submission;
 import heg.backendspring.entity.TP;
 import heg.backendspring.enums.CourseType;
 import heg.backendspring.mapping.MapperCourse;
 import heg.backendspring.mapping.MapperTP;
+import heg.backendspring.models.CourseStorageStatsDto;
 import heg.backendspring.models.SubmissionDto;
+import heg.backendspring.models.TPDto;
 import heg.backendspring.repository.*;
+import heg.backendspring.service.ServiceBlobStore;
 import heg.backendspring.service.ServiceCourse;
 import heg.backendspring.service.ServiceSubmission;
 import heg.backendspring.service.ServiceTP;
+import heg.backendspring.utils.BlobManifest;
+import heg.backendspring.utils.RestructuringReport;
+import heg.backendspring.utils.StudentArchives;
+import heg.backendspring.utils.StudentNameUtils;
+import heg.backendspring.utils.StreamingRestructurer;
+import heg.backendspring.utils.SubmissionIngest;
 import heg.backendspring.utils.ZipUtils;
+import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -20,14 +31,30 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -53,6 +80,12 @@ class TestServiceSubmission {
     @Autowired
     private MapperTP mapperTP;
 
+    @Autowired
+    private RestructuringProperties restructuringProperties;
+
+    @Autowired
+    private ServiceBlobStore serviceBlobStore;
+
     @MockitoBean
     private RepositoryCourse repositoryCourse;
 
@@ -141,6 +174,33 @@ class TestServiceSubmission {
     }
 
 
+    @Test
+    @DisplayName("getStudentsSubmission - la liste est recalculée quand le zip change")
+    void testGetStudentsSubmission_cacheInvalidatedWhenZipChanges() throws IOException {
+
+        Path tempRoot = Files.createTempDirectory("studentsZipCacheTest");
+        Path source = tempRoot.resolve("source");
+        Files.createDirectories(source.resolve("georgedylan"));
+        Files.createFile(source.resolve("georgedylan").resolve("file1.txt"));
+
+        Path zipPath = tempRoot.resolve("structured.zip");
+        ZipUtils.zipDirectory(source, zipPath);
+
+        Submission submission = new Submission();
+        submission.setPathFileStructured(zipPath.toString());
+
+        assertEquals(List.of("georgedylan"), serviceSubmission.getStudentsSubmission(submission));
+        // Deuxième appel servi par le cache
+        assertEquals(List.of("georgedylan"), serviceSubmission.getStudentsSubmission(submission));
+
+        // Nouveau rendu : le zip est réécrit avec un étudiant supplémentaire
+        Files.createDirectories(source.resolve("scoutmark"));
+        Files.createFile(source.resolve("scoutmark").resolve("file2.txt"));
+        ZipUtils.zipDirectory(source, zipPath);
+
+        assertEquals(List.of("georgedylan", "scoutmark"), serviceSubmission.getStudentsSubmission(submission));
+    }
+
     @Test
     @DisplayName("startZipProcess - ZIP is processed + paths are correct")
     void testProcessZipSubmission_setPathsAndSave() throws Exception {
@@ -334,9 +394,811 @@ class TestServiceSubmission {
         assertTrue(Files.exists(structuredZip), "Le zip restructuré doit exister sur le disque");
     }
 
+    @Test
+    @DisplayName("processZipSubmission - le mode streaming produit les mêmes entrées que le mode legacy")
+    void testProcessZipSubmission_streamingMatchesLegacy() throws IOException {
 
-}
+        Course course = new Course();
+        course.setId(60L);
+        course.setName("Cours streaming");
+        course.setCode("88-88");
+        course.setCourseType(CourseType.JAVA);
+
+        TP tp = new TP();
+        tp.setId(16L);
+        tp.setNo(1);
+        tp.setCourse(course);
+
+        Submission submission = new Submission();
+        submission.setPathStorage(testZipInput.toString());
+        tp.setSubmission(submission);
+
+        RestructuringProperties.Mode initialMode = restructuringProperties.getMode();
+        try {
+            restructuringProperties.setMode(RestructuringProperties.Mode.LEGACY);
+            serviceSubmission.processZipSubmission(course, tp);
+            Set<String> legacyEntries = zipEntryNames(Path.of(submission.getPathFileStructured()));
+            Files.delete(Path.of(submission.getPathFileStructured()));
+
+            restructuringProperties.setMode(RestructuringProperties.Mode.STREAMING);
+            serviceSubmission.processZipSubmission(course, tp);
+            Set<String> streamingEntries = zipEntryNames(Path.of(submission.getPathFileStructured()));
+
+            assertFalse(streamingEntries.isEmpty());
+            assertEquals(legacyEntries, streamingEntries);
+        } finally {
+            restructuringProperties.setMode(initialMode);
+        }
+    }
+
+    @Test
+    @DisplayName("processZipSubmission - deux traitements du même zip produisent un résultat identique")
+    void testProcessZipSubmission_isDeterministic() throws Exception {
+
+        Course course = new Course();
+        course.setId(61L);
+        course.setName("Cours déterministe");
+        course.setCode("88-89");
+        course.setCourseType(CourseType.JAVA);
+
+        TP tp = new TP();
+        tp.setId(17L);
+        tp.setNo(1);
+        tp.setCourse(course);
+
+        Submission submission = new Submission();
+        submission.setPathStorage(testZipInput.toString());
+        tp.setSubmission(submission);
+
+        // Sans réutilisation incrémentale : le second traitement réécrit toutes les entrées
+        boolean initialIncremental = restructuringProperties.isIncremental();
+        restructuringProperties.setIncremental(false);
+        try {
+            RestructuringReport firstReport = serviceSubmission.processZipSubmission(course, tp);
+            byte[] first = Files.readAllBytes(Path.of(submission.getPathFileStructured()));
+
+            // Plus que la résolution des dates zip (2 s) : une entrée datée à l'écriture changerait
+            Thread.sleep(2_100);
+            RestructuringReport secondReport = serviceSubmission.processZipSubmission(course, tp);
+            byte[] second = Files.readAllBytes(Path.of(submission.getPathFileStructured()));
+
+            assertArrayEquals(first, second);
+            assertEquals(3, firstReport.getStudentsProcessed());
+            assertFalse(firstReport.hasFailures());
+            assertEquals(firstReport.getStudentsProcessed(), secondReport.getStudentsProcessed());
+            assertEquals(0, secondReport.getStudentsReused());
+        } finally {
+            restructuringProperties.setIncremental(initialIncremental);
+        }
+    }
+
+    @Test
+    @DisplayName("processZipSubmission - dédoublonnage : le zip est remplacé par un manifeste puis reconstruit à l'identique")
+    void testProcessZipSubmission_dedupStoreAndMaterialize() throws IOException {
+
+        Course course = new Course();
+        course.setId(62L);
+        course.setName("Cours dédoublonnage");
+        course.setCode("88-90");
+        course.setCourseType(CourseType.JAVA);
+
+        TP tp = new TP();
+        tp.setId(18L);
+        tp.setNo(1);
+        tp.setCourse(course);
+
+        // Le zip Cyberlearn est placé dans le dossier du cours pour que les statistiques le retrouvent
+        Path tpDir = outputDir.resolve("88-90/TP1");
+        Files.createDirectories(tpDir);
+        Path input = Files.copy(testZipInput, tpDir.resolve("TP1_RenduCyberlearn.zip"));
+
+        Submission submission = new Submission();
+        submission.setPathStorage(input.toString());
+        tp.setSubmission(submission);
+
+        // Référence sans dédoublonnage
+        serviceSubmission.processZipSubmission(course, tp);
+        Path structured = Path.of(submission.getPathFileStructured());
+        Set<String> reference = zipEntryNames(structured);
+        List<String> students = serviceSubmission.getStudentsSubmission(submission);
+        // Empreinte du zip servi en téléchargement (ETag)
+        assertEquals(SubmissionIngest.sha256Of(List.of(structured)), submission.getStructuredFileHash());
+
+        RestructuringProperties.Dedup dedup = restructuringProperties.getDedup();
+        String initialStorePath = dedup.getStorePath();
+        try {
+            dedup.setEnabled(true);
+            dedup.setStorePath(outputDir.resolve(".blobstore").toString());
+            serviceSubmission.processZipSubmission(course, tp);
+
+            assertFalse(Files.exists(structured), "Le zip restructuré doit être remplacé par son manifeste");
+            assertTrue(Files.exists(BlobManifest.pathFor(structured)));
+            // Empreinte du zip reconstruit : celle de son manifeste
+            assertEquals(serviceBlobStore.manifestHash(structured), submission.getStructuredFileHash());
+            assertEquals(students, serviceSubmission.getStudentsSubmission(submission));
+
+            Path materialized = serviceBlobStore.materialize(structured);
+            assertEquals(reference, zipEntryNames(materialized));
+            // Reconstruit dans le cache du magasin, le zip d'origine n'est pas recréé
+            assertFalse(Files.exists(structured));
+            assertEquals(materialized, serviceBlobStore.materialize(structured));
+            // Une nouvelle reconstruction est identique octet par octet (même ETag)
+            byte[] firstBuild = Files.readAllBytes(materialized);
+            Files.delete(materialized);
+            assertArrayEquals(firstBuild, Files.readAllBytes(serviceBlobStore.materialize(structured)));
+
+            CourseStorageStatsDto stats = serviceBlobStore.statsForCourse(course);
+            assertEquals(1, stats.archives());
+            assertTrue(stats.files() > 0);
+            assertTrue(stats.storedBytes() <= stats.logicalBytes());
+        } finally {
+            dedup.setEnabled(false);
+            dedup.setStorePath(initialStorePath);
+        }
+    }
+
+    @Test
+    @DisplayName("ServiceBlobStore - cache des zips reconstruits borné et blobs non référencés supprimés")
+    void testBlobStore_cacheEvictionAndGarbageCollection() throws IOException {
 
+        Course course = new Course();
+        course.setId(71L);
+        course.setName("Cours magasin de blobs");
+        course.setCode("88-87");
+        course.setCourseType(CourseType.JAVA);
+
+        RestructuringProperties.Dedup dedup = restructuringProperties.getDedup();
+        String initialStorePath = dedup.getStorePath();
+        DataSize initialCacheSize = dedup.getCacheSize();
+        Duration initialGrace = dedup.getGcGracePeriod();
+        try {
+            dedup.setEnabled(true);
+            Path store = outputDir.resolve(".blobstore");
+            dedup.setStorePath(store.toString());
+
+            // Deux TPs dédoublonnés, le second avec un rendu de plus
+            List<Path> structured = new ArrayList<>();
+            for (int no = 1; no <= 2; no++) {
+                TP tp = new TP();
+                tp.setId(26L + no);
+                tp.setNo(no);
+                tp.setCourse(course);
+                Path tpDir = outputDir.resolve("88-87/TP" + no);
+                Files.createDirectories(tpDir);
+                Path input = tpDir.resolve("TP" + no + "_RenduCyberlearn.zip");
+                try (ZipFile original = new ZipFile(testZipInput.toFile());
+                     ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(input))) {
+                    for (ZipEntry entry : Collections.list(original.entries())) {
+                        out.putNextEntry(new ZipEntry(entry.getName()));
+                        original.getInputStream(entry).transferTo(out);
+                        out.closeEntry();
+                    }
+                    if (no == 2) {
+                        out.putNextEntry(new ZipEntry("late student_999test/notes.txt"));
+                        out.write("rendu en retard".getBytes(StandardCharsets.UTF_8));
+                        out.closeEntry();
+                    }
+                }
+                Submission submission = new Submission();
+                submission.setPathStorage(input.toString());
+                tp.setSubmission(submission);
+                serviceSubmission.processZipSubmission(course, tp);
+                structured.add(Path.of(submission.getPathFileStructured()));
+            }
+
+            // Cache limité à un octet : seul le dernier zip demandé est gardé
+            dedup.setCacheSize(DataSize.ofBytes(1));
+            Path first = serviceBlobStore.materialize(structured.get(0));
+            Path second = serviceBlobStore.materialize(structured.get(1));
+            assertNotEquals(first, second);
+            assertTrue(second.startsWith(store.toAbsolutePath().normalize()));
+            assertFalse(Files.exists(first), "Le zip le moins récemment demandé doit être évincé");
+            assertTrue(Files.exists(second));
+
+            // Le second TP est supprimé : seuls les blobs du premier restent
+            dedup.setGcGracePeriod(Duration.ZERO);
+            when(repositorySubmission.findAllPathFileStructured()).thenReturn(List.of(structured.get(0).toString()));
+            assertTrue(serviceBlobStore.collectGarbage() > 0);
+            assertFalse(Files.exists(second), "Le zip reconstruit d'un rendu supprimé doit être supprimé");
+            assertFalse(zipEntryNames(serviceBlobStore.materialize(structured.get(0))).isEmpty());
+
+            // Plus aucun rendu : tous les blobs sont supprimés
+            when(repositorySubmission.findAllPathFileStructured()).thenReturn(List.of());
+            serviceBlobStore.collectGarbage();
+            try (Stream<Path> files = Files.walk(store)) {
+                assertEquals(0, files.filter(Files::isRegularFile)
+                        .filter(file -> file.getFileName().toString().length() == 64).count());
+            }
+        } finally {
+            dedup.setEnabled(false);
+            dedup.setStorePath(initialStorePath);
+            dedup.setCacheSize(initialCacheSize);
+            dedup.setGcGracePeriod(initialGrace);
+        }
+    }
+
+    @Test
+    @DisplayName("processZipSubmission - nouveau dépôt : seuls les étudiants nouveaux ou modifiés sont retraités")
+    void testProcessZipSubmission_incrementalReprocessesChangedStudentsOnly() throws IOException {
+
+        Course course = new Course();
+        course.setId(63L);
+        course.setName("Cours incrémental");
+        course.setCode("88-91");
+        course.setCourseType(CourseType.JAVA);
+
+        TP tp = new TP();
+        tp.setId(19L);
+        tp.setNo(1);
+        tp.setCourse(course);
+
+        Path tpDir = outputDir.resolve("88-91/TP1");
+        Files.createDirectories(tpDir);
+        Path input = Files.copy(testZipInput, tpDir.resolve("TP1_RenduCyberlearn.zip"));
+
+        Submission submission = new Submission();
+        submission.setPathStorage(input.toString());
+        tp.setSubmission(submission);
+
+        RestructuringReport first = serviceSubmission.processZipSubmission(course, tp);
+        assertEquals(0, first.getStudentsReused());
+
+        // Nouvel export Cyberlearn : un rendu modifié et un rendu en retard
+        try (ZipFile original = new ZipFile(testZipInput.toFile());
+             ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(input))) {
+            for (ZipEntry entry : Collections.list(original.entries())) {
+                if (entry.getName().startsWith("george dylan_ 213123test/") && !entry.isDirectory()) {
+                    continue;
+                }
+                out.putNextEntry(new ZipEntry(entry.getName()));
+                original.getInputStream(entry).transferTo(out);
+                out.closeEntry();
+            }
+            out.putNextEntry(new ZipEntry("george dylan_ 213123test/README.txt"));
+            out.write("rendu corrigé".getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("late student_999test/notes.txt"));
+            out.write("rendu en retard".getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+
+        RestructuringReport second = serviceSubmission.processZipSubmission(course, tp);
+        Path structured = Path.of(submission.getPathFileStructured());
+        byte[] incremental = Files.readAllBytes(structured);
+
+        assertEquals(4, second.getStudentsProcessed());
+        assertEquals(2, second.getStudentsReused());
+        assertTrue(zipEntryNames(structured).contains("georgedylan/README.txt"));
+        assertTrue(zipEntryNames(structured).contains("latestudent/notes.txt"));
+
+        // Le zip patché est identique à une restructuration complète
+        restructuringProperties.setIncremental(false);
+        try {
+            serviceSubmission.processZipSubmission(course, tp);
+            assertArrayEquals(Files.readAllBytes(structured), incremental);
+        } finally {
+            restructuringProperties.setIncremental(true);
+        }
+    }
+
+    @Test
+    @DisplayName("processZipSubmission - après une interruption, le zip restructuré reste intact et la reprise réutilise les étudiants terminés")
+    void testProcessZipSubmission_interruptedRunResumed() throws IOException {
 
+        Course course = new Course();
+        course.setId(64L);
+        course.setName("Cours reprise");
+        course.setCode("88-92");
+        course.setCourseType(CourseType.JAVA);
 
+        TP tp = new TP();
+        tp.setId(20L);
+        tp.setNo(1);
+        tp.setCourse(course);
+
+        Path tpDir = outputDir.resolve("88-92/TP1");
+        Files.createDirectories(tpDir);
+        Path input = Files.copy(testZipInput, tpDir.resolve("TP1_RenduCyberlearn.zip"));
+
+        Submission submission = new Submission();
+        submission.setPathStorage(input.toString());
+        tp.setSubmission(submission);
+
+        restructuringProperties.setIncremental(false);
+        try {
+            serviceSubmission.processZipSubmission(course, tp);
+            Path structured = Path.of(submission.getPathFileStructured());
+            byte[] complete = Files.readAllBytes(structured);
+
+            // Arrêt pendant l'écriture du zip final : les zips des étudiants sont déjà terminés
+            RestructuringReport interrupted = new RestructuringReport();
+            interrupted.setListener(new RestructuringReport.Listener() {
+                @Override
+                public void stageChanged(RestructuringReport.Stage stage) {
+                    if (stage == RestructuringReport.Stage.ZIP) {
+                        throw new IllegalStateException("Application stopped");
+                    }
+                }
+            });
+            assertThrows(IllegalStateException.class,
+                    () -> serviceSubmission.processZipSubmission(course, tp, interrupted));
+
+            // Le zip précédent est toujours complet, aucun zip partiel ne reste
+            assertArrayEquals(complete, Files.readAllBytes(structured));
+            assertFalse(Files.exists(StreamingRestructurer.partialPathFor(structured)));
+            Path workDir = tpDir.resolve(ServiceSubmission.WORK_DIR);
+            assertTrue(Files.isDirectory(workDir));
+
+            RestructuringReport resumed = serviceSubmission.processZipSubmission(course, tp);
+            assertTrue(resumed.getStudentsProcessed() > 0);
+            assertEquals(resumed.getStudentsProcessed(), resumed.getStudentsReused());
+            assertArrayEquals(complete, Files.readAllBytes(structured));
+            assertFalse(Files.exists(workDir));
+        } finally {
+            restructuringProperties.setIncremental(true);
+        }
+    }
+
+    @Test
+    @DisplayName("processZipSubmission - avec un espace de travail local, seul le zip restructuré est écrit dans le dossier du TP")
+    void testProcessZipSubmission_scratchSpaceOutsideTPFolder() throws IOException {
+
+        Course course = new Course();
+        course.setId(65L);
+        course.setName("Cours espace local");
+        course.setCode("88-94");
+        course.setCourseType(CourseType.JAVA);
+
+        TP tp = new TP();
+        tp.setId(21L);
+        tp.setNo(1);
+        tp.setCourse(course);
+
+        Path tpDir = outputDir.resolve("88-94/TP1");
+        Files.createDirectories(tpDir);
+        Path input = Files.copy(testZipInput, tpDir.resolve("TP1_RenduCyberlearn.zip"));
+
+        Submission submission = new Submission();
+        submission.setPathStorage(input.toString());
+        tp.setSubmission(submission);
+
+        Path scratchRoot = Path.of("target/test-scratch");
+        FileSystemUtils.deleteRecursively(scratchRoot);
+        restructuringProperties.setIncremental(false);
+        try {
+            serviceSubmission.processZipSubmission(course, tp);
+            Path structured = Path.of(submission.getPathFileStructured());
+            Set<String> onStorage = zipEntryNames(structured);
+
+            restructuringProperties.getScratch().setPath(scratchRoot.toString());
+            Path scratchWorkDir = scratchRoot.toAbsolutePath().resolve("88-94/TP1").resolve(ServiceSubmission.WORK_DIR);
+            List<Boolean> workDirs = new ArrayList<>();
+            RestructuringReport report = new RestructuringReport();
+            report.setListener(new RestructuringReport.Listener() {
+                @Override
+                public void stageChanged(RestructuringReport.Stage stage) {
+                    if (stage == RestructuringReport.Stage.ZIP) {
+                        workDirs.add(Files.isDirectory(scratchWorkDir));
+                        workDirs.add(Files.exists(tpDir.resolve(ServiceSubmission.WORK_DIR)));
+                    }
+                }
+            });
+            serviceSubmission.processZipSubmission(course, tp, report);
+
+            assertEquals(List.of(true, false), workDirs);
+            assertEquals(onStorage, zipEntryNames(structured));
+            assertFalse(Files.exists(scratchWorkDir));
+        } finally {
+            restructuringProperties.getScratch().setPath("");
+            restructuringProperties.setIncremental(true);
+        }
+    }
+
+    @Test
+    @DisplayName("processZipSubmission - budget de l'espace de travail dépassé : repli sur le dossier du TP ou échec selon la politique")
+    void testProcessZipSubmission_scratchBudgetExceeded() throws IOException {
 
+        Course course = new Course();
+        course.setId(66L);
+        course.setName("Cours budget");
+        course.setCode("88-95");
+        course.setCourseType(CourseType.JAVA);
+
+        TP tp = new TP();
+        tp.setId(22L);
+        tp.setNo(1);
+        tp.setCourse(course);
+
+        Path tpDir = outputDir.resolve("88-95/TP1");
+        Files.createDirectories(tpDir);
+        Path input = Files.copy(testZipInput, tpDir.resolve("TP1_RenduCyberlearn.zip"));
+
+        Submission submission = new Submission();
+        submission.setPathStorage(input.toString());
+        tp.setSubmission(submission);
+
+        Path scratchRoot = Path.of("target/test-scratch");
+        RestructuringProperties.Scratch scratch = restructuringProperties.getScratch();
+        scratch.setPath(scratchRoot.toString());
+        scratch.setMaxJobSize(DataSize.ofBytes(1));
+        try {
+            // STORAGE : le traitement travaille dans le dossier du TP
+            serviceSubmission.processZipSubmission(course, tp);
+            assertTrue(Files.exists(Path.of(submission.getPathFileStructured())));
+            assertFalse(Files.exists(scratchRoot.resolve("88-95")));
+
+            // FAIL : le traitement échoue sans toucher au zip restructuré
+            scratch.setSpill(RestructuringProperties.Spill.FAIL);
+            byte[] previous = Files.readAllBytes(Path.of(submission.getPathFileStructured()));
+            assertThrows(IOException.class, () -> serviceSubmission.processZipSubmission(course, tp));
+            assertArrayEquals(previous, Files.readAllBytes(Path.of(submission.getPathFileStructured())));
+        } finally {
+            scratch.setPath("");
+            scratch.setMaxJobSize(DataSize.ofGigabytes(4));
+            scratch.setSpill(RestructuringProperties.Spill.STORAGE);
+        }
+    }
+
+    @Test
+    @DisplayName("selectStudents / writeStudents - zip d'un seul étudiant, entrées recopiées sans recompression")
+    void testWriteStudents_singleStudentRawCopy() throws IOException {
+
+        Course course = new Course();
+        course.setId(67L);
+        course.setName("Cours téléchargement");
+        course.setCode("88-96");
+        course.setCourseType(CourseType.JAVA);
+
+        TP tp = new TP();
+        tp.setId(23L);
+        tp.setNo(1);
+        tp.setCourse(course);
+
+        Path tpDir = outputDir.resolve("88-96/TP1");
+        Files.createDirectories(tpDir);
+        Path input = Files.copy(testZipInput, tpDir.resolve("TP1_RenduCyberlearn.zip"));
+
+        Submission submission = new Submission();
+        submission.setPathStorage(input.toString());
+        tp.setSubmission(submission);
+
+        serviceSubmission.processZipSubmission(course, tp);
+        Path structured = Path.of(submission.getPathFileStructured());
+        String student = serviceSubmission.getStudentsSubmission(submission).get(0);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ServiceSubmission.StudentSelection selection = serviceSubmission.selectStudents(structured, List.of(student))) {
+            assertEquals(List.of(student), selection.students());
+            serviceSubmission.writeStudents(selection, out);
+        }
+        Path single = Files.write(outputDir.resolve("single.zip"), out.toByteArray());
+
+        try (ZipFile full = new ZipFile(structured.toFile()); ZipFile part = new ZipFile(single.toFile())) {
+            List<? extends ZipEntry> expected = full.stream().filter(e -> e.getName().startsWith(student + "/")).toList();
+            assertFalse(expected.isEmpty());
+            assertEquals(expected.size(), part.size());
+            for (ZipEntry entry : expected) {
+                ZipEntry copied = part.getEntry(entry.getName());
+                assertNotNull(copied, entry.getName());
+                assertEquals(entry.getCrc(), copied.getCrc());
+                assertEquals(entry.getCompressedSize(), copied.getCompressedSize());
+                assertArrayEquals(full.getInputStream(entry).readAllBytes(), part.getInputStream(copied).readAllBytes());
+            }
+        }
+
+        assertThrows(EntityNotFoundException.class,
+                () -> serviceSubmission.selectStudents(structured, List.of(student, "inconnu")));
+    }
+
+    @Test
+    @DisplayName("processZipSubmission - archives par étudiant et manifeste, archives inchangées conservées")
+    void testProcessZipSubmission_studentArchives() throws IOException {
+
+        Course course = new Course();
+        course.setId(69L);
+        course.setName("Cours archives par étudiant");
+        course.setCode("88-98");
+        course.setCourseType(CourseType.JAVA);
+
+        TP tp = new TP();
+        tp.setId(25L);
+        tp.setNo(1);
+        tp.setCourse(course);
+
+        Path tpDir = outputDir.resolve("88-98/TP1");
+        Files.createDirectories(tpDir);
+        Path input = Files.copy(testZipInput, tpDir.resolve("TP1_RenduCyberlearn.zip"));
+
+        Submission submission = new Submission();
+        submission.setPathStorage(input.toString());
+        submission.setContentHash(SubmissionIngest.sha256Of(List.of(input)));
+        tp.setSubmission(submission);
+
+        restructuringProperties.setStudentArchives(true);
+        try {
+            serviceSubmission.processZipSubmission(course, tp);
+            Path structured = Path.of(submission.getPathFileStructured());
+            Path dir = StudentArchives.dirFor(structured);
+            StudentArchives archives = StudentArchives.read(dir).orElseThrow();
+
+            assertEquals(submission.getContentHash(), archives.contentHash());
+            assertEquals(serviceSubmission.getStudentsSubmission(submission),
+                    archives.students().stream().map(StudentArchives.Student::folder).toList());
+
+            try (ZipFile full = new ZipFile(structured.toFile())) {
+                for (StudentArchives.Student student : archives.students()) {
+                    Path archive = dir.resolve(student.file());
+                    assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                            .digest(Files.readAllBytes(archive))), student.sha256());
+                    try (ZipFile part = new ZipFile(archive.toFile())) {
+                        List<? extends ZipEntry> expected = full.stream()
+                                .filter(e -> e.getName().startsWith(student.folder() + "/")).toList();
+                        assertEquals(expected.size(), part.size());
+                        assertEquals(expected.stream().filter(e -> !e.isDirectory()).count(), student.files());
+                        for (ZipEntry entry : expected) {
+                            ZipEntry copied = part.getEntry(entry.getName());
+                            assertNotNull(copied, entry.getName());
+                            assertEquals(entry.getCrc(), copied.getCrc());
+                            assertEquals(entry.getCompressedSize(), copied.getCompressedSize());
+                        }
+                    }
+                }
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+
+            // Nouveau traitement : les archives dont le contenu n'a pas changé ne sont pas réécrites
+            StudentArchives.Student first = archives.students().get(0);
+            Path firstArchive = dir.resolve(first.file());
+            Files.setLastModifiedTime(firstArchive, FileTime.fromMillis(0));
+            serviceSubmission.processZipSubmission(course, tp);
+            assertEquals(0, Files.getLastModifiedTime(firstArchive).toMillis());
+            assertEquals(archives, StudentArchives.read(dir).orElseThrow());
+
+            when(repositoryTP.findById(25L)).thenReturn(Optional.of(tp));
+            TPDto tpDto = mapperTP.toDto(tp);
+            assertEquals(firstArchive, serviceTP.getStudentArchiveDownload(tpDto, first.folder()).orElseThrow().file());
+            assertTrue(serviceTP.getStudentArchiveDownload(tpDto, "inconnu").isEmpty());
+
+            // Restructuration en échec : le zip et le manifeste précédents restent servis
+            Files.write(input, "pas un zip".getBytes(StandardCharsets.UTF_8));
+            assertThrows(IOException.class, () -> serviceSubmission.processZipSubmission(course, tp));
+            assertEquals(archives, StudentArchives.read(dir).orElseThrow());
+            assertEquals(firstArchive, serviceTP.getStudentArchiveDownload(tpDto, first.folder()).orElseThrow().file());
+        } finally {
+            restructuringProperties.setStudentArchives(false);
+        }
+    }
+
+    @Test
+    @DisplayName("processZipSubmission - les entrées des zips des étudiants sont recopiées sans recompression")
+    void testProcessZipSubmission_nestedZipEntriesCopiedRaw() throws IOException {
+
+        Course course = new Course();
+        course.setId(68L);
+        course.setName("Cours copie brute");
+        course.setCode("88-97");
+        course.setCourseType(CourseType.JAVA);
+
+        TP tp = new TP();
+        tp.setId(24L);
+        tp.setNo(1);
+        tp.setCourse(course);
+
+        // Zip d'un projet : une entrée stockée, une entrée compressée au niveau le plus rapide
+        byte[] main = "class Main {}\n".repeat(200).getBytes(StandardCharsets.UTF_8);
+        byte[] helper = "class Helper { int value = 42; }\n".repeat(300).getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream project = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(project)) {
+            out.setLevel(Deflater.BEST_SPEED);
+            out.putNextEntry(storedEntry("src/Main.java", main));
+            out.write(main);
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("src/util/Helper.java"));
+            out.write(helper);
+            out.closeEntry();
+        }
+        byte[] projectZip = project.toByteArray();
+
+        // Zip Cyberlearn : ce projet stocké tel quel, compressé, et un fichier seul
+        Path tpDir = outputDir.resolve("88-97/TP1");
+        Files.createDirectories(tpDir);
+        Path input = tpDir.resolve("TP1_RenduCyberlearn.zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(input))) {
+            out.putNextEntry(storedEntry("alice martin_111test/projet.zip", projectZip));
+            out.write(projectZip);
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("bob durand_222test/projet.zip"));
+            out.write(projectZip);
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("carla dupont_333test/Main.java"));
+            out.write(main);
+            out.closeEntry();
+        }
+
+        Submission submission = new Submission();
+        submission.setPathStorage(input.toString());
+        tp.setSubmission(submission);
+
+        RestructuringReport report = serviceSubmission.processZipSubmission(course, tp);
+        assertEquals(3, report.getStudentsProcessed());
+        assertFalse(report.hasFailures());
+
+        Path structured = Path.of(submission.getPathFileStructured());
+        Path projectPath = Files.write(outputDir.resolve("projet.zip"), projectZip);
+        try (ZipFile projectFile = new ZipFile(projectPath.toFile()); ZipFile result = new ZipFile(structured.toFile())) {
+            for (String student : List.of("alice martin_111test", "bob durand_222test")) {
+                String folder = StudentNameUtils.toFolderNameFromZipDir(student);
+                for (ZipEntry expected : Collections.list(projectFile.entries())) {
+                    ZipEntry copied = result.getEntry(folder + "/" + expected.getName());
+                    assertNotNull(copied, folder + "/" + expected.getName());
+                    assertEquals(expected.getMethod(), copied.getMethod());
+                    assertEquals(expected.getCrc(), copied.getCrc());
+                    assertEquals(expected.getCompressedSize(), copied.getCompressedSize());
+                    assertArrayEquals(projectFile.getInputStream(expected).readAllBytes(),
+                            result.getInputStream(copied).readAllBytes());
+                }
+            }
+            ZipEntry single = result.getEntry(StudentNameUtils.toFolderNameFromZipDir("carla dupont_333test") + "/Main.java");
+            assertNotNull(single);
+            assertArrayEquals(main, result.getInputStream(single).readAllBytes());
+        }
+        try (var remaining = Files.list(tpDir)) {
+            assertTrue(remaining.noneMatch(path -> path.getFileName().toString().endsWith(".nested")));
+        }
+    }
+
+    @Test
+    @DisplayName("cleanScratch - supprime les fichiers de travail abandonnés d'un traitement interrompu, pas les zips du TP ni un dépôt en cours")
+    void testCleanScratch_removesOnlyWorkFiles() throws IOException {
+        Path tpDir = outputDir.resolve("88-93/TP1");
+        Files.createDirectories(tpDir.resolve(ServiceSubmission.WORK_DIR));
+        Files.createDirectories(tpDir.resolve("restructuring-12345/tmpExtract"));
+        Files.createDirectories(tpDir.resolve("RenduRestructuration"));
+        Files.writeString(tpDir.resolve("TP1_RenduRestructuration.zip.part"), "partiel");
+        Files.writeString(tpDir.resolve("TP1_RenduCyberlearn.zip.upload"), "partiel");
+        Path original = Files.copy(testZipInput, tpDir.resolve("TP1_RenduCyberlearn.zip"));
+        Path structured = Files.copy(testZipInput, tpDir.resolve("TP1_RenduRestructuration.zip"));
+        // Fichiers de travail abandonnés depuis deux heures
+        FileTime abandoned = FileTime.fromMillis(System.currentTimeMillis() - Duration.ofHours(2).toMillis());
+        try (Stream<Path> tree = Files.walk(tpDir)) {
+            for (Path path : tree.toList()) {
+                Files.setLastModifiedTime(path, abandoned);
+            }
+        }
+        // Dépôt en cours (par exemple sur une autre instance) : conservé
+        Path inFlight = Files.writeString(tpDir.resolve("TP1_RenduCyberlearn.zip.2.upload"), "en cours");
+
+        assertEquals(5, serviceSubmission.cleanScratch(tpDir));
+
+        try (var remaining = Files.list(tpDir)) {
+            assertEquals(Set.of(original, structured, inFlight), remaining.collect(Collectors.toSet()));
+        }
+        assertEquals(0, serviceSubmission.cleanScratch(outputDir.resolve("88-93/TP2")));
+    }
+
+    @Test
+    @DisplayName("processZipSubmission - une archive piégée est interrompue et signalée sans bloquer les autres étudiants")
+    void testProcessZipSubmission_zipBombReportedPerStudent() throws IOException {
+
+        Course course = new Course();
+        course.setId(64L);
+        course.setName("Cours limites");
+        course.setCode("88-92");
+        course.setCourseType(CourseType.JAVA);
+
+        TP tp = new TP();
+        tp.setId(20L);
+        tp.setNo(1);
+        tp.setCourse(course);
+
+        // Zip Cyberlearn : les rendus du zip de test et une archive au taux de compression anormal
+        Path tpDir = outputDir.resolve("88-92/TP1");
+        Files.createDirectories(tpDir);
+        Path input = tpDir.resolve("TP1_RenduCyberlearn.zip");
+        try (ZipFile original = new ZipFile(testZipInput.toFile());
+             ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(input))) {
+            for (ZipEntry entry : Collections.list(original.entries())) {
+                out.putNextEntry(new ZipEntry(entry.getName()));
+                original.getInputStream(entry).transferTo(out);
+                out.closeEntry();
+            }
+            out.putNextEntry(new ZipEntry("bomb student_666test/projet.zip"));
+            out.write(zipOfZeros(64 * 1024 * 1024));
+            out.closeEntry();
+        }
+
+        Submission submission = new Submission();
+        submission.setPathStorage(input.toString());
+        tp.setSubmission(submission);
+
+        RestructuringReport report = serviceSubmission.processZipSubmission(course, tp);
+
+        assertEquals(3, report.getStudentsProcessed());
+        assertEquals(1, report.getLimitViolations());
+        assertEquals("bomb student_666test", report.getFailures().get(0).student());
+        assertTrue(report.getFailures().get(0).limitExceeded());
+        assertFalse(zipEntryNames(Path.of(submission.getPathFileStructured())).stream()
+                .anyMatch(name -> name.startsWith("bombstudent")));
+    }
+
+    @Test
+    @DisplayName("processZipSubmission - un .docx n'est pas pris pour le projet : le dossier est recopié en entier")
+    void testProcessZipSubmission_documentNotTakenForProject() throws IOException {
+
+        Course course = new Course();
+        course.setId(70L);
+        course.setName("Cours documents");
+        course.setCode("88-99");
+        course.setCourseType(CourseType.JAVA);
+
+        TP tp = new TP();
+        tp.setId(26L);
+        tp.setNo(1);
+        tp.setCourse(course);
+
+        // Rendu sans archive : un rapport Word (un zip) à côté des sources
+        ByteArrayOutputStream docx = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(docx)) {
+            out.putNextEntry(new ZipEntry("word/document.xml"));
+            out.write("<w:document/>".getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+        Path tpDir = outputDir.resolve("88-99/TP1");
+        Files.createDirectories(tpDir);
+        Path input = tpDir.resolve("TP1_RenduCyberlearn.zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(input))) {
+            out.putNextEntry(new ZipEntry("docx student_777test/Rapport.docx"));
+            out.write(docx.toByteArray());
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("docx student_777test/Main.java"));
+            out.write("class Main {}".getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+
+        Submission submission = new Submission();
+        submission.setPathStorage(input.toString());
+        tp.setSubmission(submission);
+
+        Set<String> expected = Set.of("docxstudent/", "docxstudent/Rapport.docx", "docxstudent/Main.java");
+        RestructuringProperties.Mode initialMode = restructuringProperties.getMode();
+        try {
+            for (RestructuringProperties.Mode mode : RestructuringProperties.Mode.values()) {
+                restructuringProperties.setMode(mode);
+                serviceSubmission.processZipSubmission(course, tp);
+                assertEquals(expected, zipEntryNames(Path.of(submission.getPathFileStructured())), mode.name());
+            }
+        } finally {
+            restructuringProperties.setMode(initialMode);
+        }
+    }
+
+    private ZipEntry storedEntry(String name, byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(content.length);
+        entry.setCompressedSize(content.length);
+        entry.setCrc(crc.getValue());
+        return entry;
+    }
+
+    private byte[] zipOfZeros(int size) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            out.putNextEntry(new ZipEntry("zeros.bin"));
+            out.write(new byte[size]);
+            out.closeEntry();
+        }
+        return bytes.toByteArray();
+    }
+
+    private Set<String> zipEntryNames(Path zip) throws IOException {
+        try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+            return zipFile.stream().map(ZipEntry::getName).collect(Collectors.toSet());
+        }
+    }
+
+
+}
@@ -139,6 +139,105 @@ class TestServiceTP {
         verify(repositoryTP).save(any(TP.class));
     }
 
+    @Test
+    @DisplayName("addSubmissionStreamToTP - zip écrit directement à sa place et TP mis à jour")
+    void testAddSubmissionStreamToTP() throws Exception {
+
+        Course course = new Course();
+        course.setId(10L);
+        course.setCode("63-11");
+
+        TP tpEntity = new TP();
+        tpEntity.setId(1L);
+        tpEntity.setNo(1);
+        tpEntity.setCourse(course);
+
+        when(repositoryTP.findById(1L)).thenReturn(Optional.of(tpEntity));
+        when(repositoryTP.save(any(TP.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        byte[] zip = Files.readAllBytes(Path.of("src/test/resources/mockinginputstreams/test_zip.zip"));
+
+        TPDto result = serviceTP.addSubmissionStreamToTP(1L, new ByteArrayInputStream(zip));
+
+        Path expectedZip = outputDir.resolve("63-11").resolve("TP1").resolve("TP1_RenduCyberlearn.zip");
+        assertEquals(expectedZip.toString(), result.submission().pathStorage());
+        assertArrayEquals(zip, Files.readAllBytes(expectedZip));
+        assertFalse(Files.exists(expectedZip.resolveSibling("TP1_RenduCyberlearn.zip.upload")));
+        verify(repositoryTP).save(any(TP.class));
+    }
+
+    @Test
+    @DisplayName("addSubmissionStreamToTP - un contenu qui n'est pas un zip est refusé et l'ancien rendu conservé")
+    void testAddSubmissionStreamToTP_invalidZip() throws Exception {
+
+        Course course = new Course();
+        course.setId(10L);
+        course.setCode("63-11");
+
+        TP tpEntity = new TP();
+        tpEntity.setId(1L);
+        tpEntity.setNo(1);
+        tpEntity.setCourse(course);
+
+        when(repositoryTP.findById(1L)).thenReturn(Optional.of(tpEntity));
+
+        Path tpFolder = outputDir.resolve("63-11").resolve("TP1");
+        Files.createDirectories(tpFolder);
+        Path existing = tpFolder.resolve("TP1_RenduCyberlearn.zip");
+        Files.writeString(existing, "ancien rendu");
+
+        assertThrows(IllegalArgumentException.class, () ->
+                serviceTP.addSubmissionStreamToTP(1L, new ByteArrayInputStream("fake zip content".getBytes())));
+
+        assertEquals("ancien rendu", Files.readString(existing));
+        verify(repositoryTP, never()).save(any(TP.class));
+    }
+
+    @Test
+    @DisplayName("addSubmissionToTP - un dépôt identique conserve le rendu restructuré et les statuts")
+    void testAddSubmissionToTP_sameContentKeepsSubmission() throws Exception {
+
+        Course course = new Course();
+        course.setId(10L);
+        course.setCode("63-11");
+
+        TP tpEntity = new TP();
+        tpEntity.setId(1L);
+        tpEntity.setNo(1);
+        tpEntity.setCourse(course);
+        tpEntity.setStatusStudents(new HashSet<>());
+
+        when(repositoryTP.findById(1L)).thenReturn(Optional.of(tpEntity));
+        when(repositoryTP.save(any(TP.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        byte[] zip = Files.readAllBytes(Path.of("src/test/resources/mockinginputstreams/test_zip.zip"));
+
+        TPDto first = serviceTP.addSubmissionToTP(1L, new ByteArrayInputStream(zip));
+        assertEquals(64, first.submission().contentHash().length());
+
+        // Le rendu a été restructuré et les statuts créés depuis le premier dépôt
+        Submission submission = tpEntity.getSubmission();
+        submission.setPathFileStructured("structured.zip");
+        TPStatus status = new TPStatus();
+        tpEntity.getStatusStudents().add(status);
+
+        TPDto second = serviceTP.addSubmissionToTP(1L, new ByteArrayInputStream(zip));
+
+        assertSame(submission, tpEntity.getSubmission());
+        assertEquals("structured.zip", second.submission().pathFileStructured());
+        assertEquals(first.submission().contentHash(), second.submission().contentHash());
+        assertTrue(tpEntity.getStatusStudents().contains(status));
+        verify(repositoryTP, times(1)).save(any(TP.class));
+
+        // Un contenu différent remplace le rendu
+        TPDto third = serviceTP.addSubmissionToTP(1L, new ByteArrayInputStream("nouveau rendu".getBytes()));
+
+        assertNotSame(submission, tpEntity.getSubmission());
+        assertNull(third.submission().pathFileStructured());
+        assertNotEquals(first.submission().contentHash(), third.submission().contentHash());
+        verify(repositoryTP, times(2)).save(any(TP.class));
+    }
+
     @Test
     @DisplayName("addTPStatusListToTP - crée les statuts et marque correctement les rendus")
     void testAddTPStatusListToTP() {
@@ -0,0 +1,137 @@
+package heg.backendspring.TestServices;
+
+import heg.backendspring.config.RestructuringProperties;
+import heg.backendspring.service.ServiceTPLocks;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TestServiceTPLocks {
+
+    private ServiceTPLocks serviceTPLocks;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        serviceTPLocks = new ServiceTPLocks(new RestructuringProperties(), null);
+        serviceTPLocks.init();
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Prend le verrou du TP dans un autre thread ; la tâche se termine une fois le verrou obtenu.
+     */
+    private Future<?> lockInOtherThread(Long courseId, int tpNo, CountDownLatch acquired) {
+        return executor.submit(() -> {
+            try (ServiceTPLocks.TPLock ignored = serviceTPLocks.lock(courseId, tpNo)) {
+                acquired.countDown();
+            }
+        });
+    }
+
+    @Test
+    @DisplayName("lock - un même TP est sérialisé, le second attend la libération du premier")
+    void testLock_sameTPSerialised() throws Exception {
+        CountDownLatch acquired = new CountDownLatch(1);
+        Future<?> other;
+        try (ServiceTPLocks.TPLock ignored = serviceTPLocks.lock(1L, 1)) {
+            other = lockInOtherThread(1L, 1, acquired);
+            assertFalse(acquired.await(200, TimeUnit.MILLISECONDS));
+        }
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        other.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    @DisplayName("lock - des TPs différents (même cours ou non) sont verrouillés en parallèle")
+    void testLock_differentTPsInParallel() throws Exception {
+        try (ServiceTPLocks.TPLock ignored = serviceTPLocks.lock(1L, 1)) {
+            CountDownLatch sameCourse = new CountDownLatch(1);
+            CountDownLatch otherCourse = new CountDownLatch(1);
+            lockInOtherThread(1L, 2, sameCourse);
+            lockInOtherThread(2L, 1, otherCourse);
+            assertTrue(sameCourse.await(5, TimeUnit.SECONDS));
+            assertTrue(otherCourse.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    @DisplayName("lock - réentrant pour un même thread, libéré à la dernière fermeture")
+    void testLock_reentrant() throws Exception {
+        CountDownLatch acquired = new CountDownLatch(1);
+        ServiceTPLocks.TPLock outer = serviceTPLocks.lock(3L, 1);
+        try (ServiceTPLocks.TPLock inner = serviceTPLocks.lock(3L, 1)) {
+            assertNotNull(inner);
+        }
+        lockInOtherThread(3L, 1, acquired);
+        assertFalse(acquired.await(200, TimeUnit.MILLISECONDS));
+
+        outer.close();
+        // Fermer deux fois ne libère pas un verrou repris depuis
+        outer.close();
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("lock - verrou consultatif détenu ailleurs : retenté sans garder de connexion pendant l'attente")
+    void testLock_advisoryRetriesWithoutHoldingConnection() throws Exception {
+        RestructuringProperties properties = new RestructuringProperties();
+        properties.getLocks().setBackend(RestructuringProperties.LockBackend.ADVISORY);
+        properties.getLocks().setAdvisoryRetryInterval(Duration.ofMillis(1));
+
+        // Verrou libre à la troisième tentative
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicInteger open = new AtomicInteger();
+        AtomicInteger poolExhausted = new AtomicInteger();
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenAnswer(invocation -> {
+            // Pool des verrous épuisé à la première demande : retenté comme un verrou occupé
+            if (poolExhausted.getAndIncrement() == 0) {
+                throw new SQLTransientConnectionException("tp-locks - Connection is not available");
+            }
+            open.incrementAndGet();
+            Connection connection = mock(Connection.class);
+            PreparedStatement statement = mock(PreparedStatement.class);
+            ResultSet result = mock(ResultSet.class);
+            when(connection.prepareStatement(anyString())).thenReturn(statement);
+            when(statement.executeQuery()).thenReturn(result);
+            when(result.next()).thenReturn(true);
+            when(result.getBoolean(1)).thenAnswer(call -> attempts.incrementAndGet() >= 3);
+            doAnswer(call -> open.decrementAndGet()).when(connection).close();
+            return connection;
+        });
+
+        ServiceTPLocks advisoryLocks = new ServiceTPLocks(properties, dataSource);
+        advisoryLocks.init();
+        try (ServiceTPLocks.TPLock ignored = advisoryLocks.lock(4L, 1)) {
+            assertEquals(3, attempts.get());
+            assertEquals(1, open.get(), "Seule la connexion qui détient le verrou reste ouverte");
+        }
+        assertEquals(0, open.get());
+    }
+}
@@ -0,0 +1,189 @@
+package heg.backendspring.TestServices;
+
+import heg.backendspring.entity.Course;
+import heg.backendspring.entity.TP;
+import heg.backendspring.enums.CourseType;
+import heg.backendspring.models.SubmissionDto;
+import heg.backendspring.models.UploadInitDto;
+import heg.backendspring.models.UploadStatusDto;
+import heg.backendspring.repository.RepositoryCourse;
+import heg.backendspring.repository.RepositoryTP;
+import heg.backendspring.repository.RepositoryTPStatus;
+import heg.backendspring.service.ServiceUpload;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class TestServiceUpload {
+
+    private static final int CHUNK_SIZE = 4096;
+
+    @Autowired
+    private ServiceUpload serviceUpload;
+
+    @MockitoBean
+    private RepositoryCourse repositoryCourse;
+
+    @MockitoBean
+    private RepositoryTP repositoryTP;
+
+    @MockitoBean
+    private RepositoryTPStatus repositoryTPStatus;
+
+    private byte[] zipBytes;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path outputDir = Path.of("target/test-zips");
+        if (Files.exists(outputDir)) {
+            FileSystemUtils.deleteRecursively(outputDir);
+        }
+        Files.createDirectories(outputDir);
+
+        zipBytes = Files.readAllBytes(Path.of("src/test/resources/mockinginputstreams/test_zip.zip"));
+
+        Course course = new Course();
+        course.setId(70L);
+        course.setName("Cours dépôt");
+        course.setCode("77-77");
+        course.setCourseType(CourseType.JAVA);
+
+        TP tp = new TP();
+        tp.setId(30L);
+        tp.setNo(2);
+        tp.setCourse(course);
+
+        when(repositoryCourse.findById(70L)).thenReturn(Optional.of(course));
+        when(repositoryCourse.findTPByCourseIdAndNo(70L, 2)).thenReturn(Optional.of(tp));
+        when(repositoryTP.save(any(TP.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    private byte[] chunk(int index) {
+        int from = index * CHUNK_SIZE;
+        return Arrays.copyOfRange(zipBytes, from, Math.min(zipBytes.length, from + CHUNK_SIZE));
+    }
+
+    @Test
+    @DisplayName("upload - morceaux envoyés en parallèle et dans le désordre puis assemblés dans le dossier du TP")
+    void testUpload_parallelChunksAssembled() throws Exception {
+        UploadStatusDto init = serviceUpload.initUpload(70L, 2, new UploadInitDto((long) zipBytes.length, CHUNK_SIZE));
+        int chunkCount = init.chunkCount();
+        assertTrue(chunkCount > 2);
+        assertEquals(chunkCount, init.missingChunks().size());
+
+        // Le premier morceau est envoyé une première fois, puis la connexion "tombe"
+        serviceUpload.putChunk(init.uploadId(), 0, new ByteArrayInputStream(chunk(0)));
+        UploadStatusDto resumed = serviceUpload.getUploadStatus(init.uploadId());
+        assertEquals(CHUNK_SIZE, resumed.receivedBytes());
+        assertFalse(resumed.missingChunks().contains(0));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<UploadStatusDto>> uploads = new ArrayList<>();
+            for (int index = chunkCount - 1; index >= 0; index--) {
+                int chunkIndex = index;
+                uploads.add(executor.submit(() -> serviceUpload.putChunk(init.uploadId(),
+                        (long) chunkIndex * CHUNK_SIZE, new ByteArrayInputStream(chunk(chunkIndex)))));
+            }
+            for (Future<UploadStatusDto> upload : uploads) {
+                upload.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        UploadStatusDto status = serviceUpload.getUploadStatus(init.uploadId());
+        assertTrue(status.missingChunks().isEmpty());
+        assertEquals(zipBytes.length, status.receivedBytes());
+
+        SubmissionDto submission = serviceUpload.completeUpload(init.uploadId());
+
+        Path stored = Path.of(submission.pathStorage());
+        assertEquals(Path.of("target/test-zips/77-77/TP2/TP2_RenduCyberlearn.zip"), stored);
+        assertArrayEquals(zipBytes, Files.readAllBytes(stored));
+        verify(repositoryTP).save(any(TP.class));
+    }
+
+    @Test
+    @DisplayName("upload - offset invalide, morceau de mauvaise taille ou dépôt incomplet sont refusés")
+    void testUpload_invalidChunksRejected() throws IOException {
+        UploadStatusDto init = serviceUpload.initUpload(70L, 2, new UploadInitDto((long) zipBytes.length, CHUNK_SIZE));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> serviceUpload.putChunk(init.uploadId(), 10, new ByteArrayInputStream(chunk(0))));
+        assertThrows(IllegalArgumentException.class,
+                () -> serviceUpload.putChunk(init.uploadId(), 0, new ByteArrayInputStream(new byte[CHUNK_SIZE - 1])));
+        assertThrows(IllegalArgumentException.class,
+                () -> serviceUpload.putChunk(init.uploadId(), 0, new ByteArrayInputStream(new byte[CHUNK_SIZE + 1])));
+        assertEquals(init.chunkCount(), serviceUpload.getUploadStatus(init.uploadId()).missingChunks().size());
+
+        assertThrows(IllegalArgumentException.class, () -> serviceUpload.completeUpload(init.uploadId()));
+        assertThrows(IllegalArgumentException.class, () -> serviceUpload.getUploadStatus("../../etc"));
+    }
+
+    @Test
+    @DisplayName("upload - la taille des morceaux borne leur nombre, même pour un très gros fichier")
+    void testUpload_chunkCountBounded() throws IOException {
+        long fileSize = 19L * 1024 * 1024 * 1024;
+
+        assertThrows(IllegalArgumentException.class,
+                () -> serviceUpload.initUpload(70L, 2, new UploadInitDto(fileSize, 1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> serviceUpload.initUpload(70L, 2, new UploadInitDto(fileSize, 1024 * 1024)));
+
+        UploadStatusDto init = serviceUpload.initUpload(70L, 2, new UploadInitDto(fileSize, null));
+        assertTrue(init.chunkCount() <= 10_000);
+        assertEquals(init.chunkCount(), init.missingChunks().size());
+        assertEquals(0, init.receivedBytes());
+    }
+
+    @Test
+    @DisplayName("upload - un dépôt sans morceau reçu depuis upload.session-ttl est supprimé, pas un dépôt récent")
+    void testUpload_abandonedSessionsExpire() throws IOException {
+        UploadStatusDto abandoned = serviceUpload.initUpload(70L, 2, new UploadInitDto((long) zipBytes.length, CHUNK_SIZE));
+        serviceUpload.putChunk(abandoned.uploadId(), 0, new ByteArrayInputStream(chunk(0)));
+        UploadStatusDto recent = serviceUpload.initUpload(70L, 2, new UploadInitDto((long) zipBytes.length, CHUNK_SIZE));
+
+        Path abandonedDir = Path.of("target/test-zips/.uploads", abandoned.uploadId());
+        FileTime old = FileTime.from(Instant.now().minus(Duration.ofDays(2)));
+        try (var files = Files.list(abandonedDir)) {
+            for (Path file : files.toList()) {
+                Files.setLastModifiedTime(file, old);
+            }
+        }
+        Files.setLastModifiedTime(abandonedDir, old);
+
+        assertEquals(1, serviceUpload.expireSessions());
+        assertFalse(Files.exists(abandonedDir));
+        assertThrows(EntityNotFoundException.class, () -> serviceUpload.getUploadStatus(abandoned.uploadId()));
+        assertEquals(0, serviceUpload.getUploadStatus(recent.uploadId()).receivedBytes());
+    }
+}
@@ -0,0 +1,314 @@
+package heg.backendspring.TestUtils;
+
+import heg.backendspring.utils.archive.ArchiveEntryVisitor;
+import heg.backendspring.utils.archive.ArchiveExtractors;
+import heg.backendspring.utils.IgnoreRules;
+import heg.backendspring.utils.archive.ArchiveFormat;
+import heg.backendspring.utils.archive.ArchiveLimitException;
+import heg.backendspring.utils.archive.ArchiveLimits;
+import heg.backendspring.utils.archive.DirectoryWriter;
+import org.apache.commons.compress.archivers.sevenz.SevenZArchiveEntry;
+import org.apache.commons.compress.archivers.sevenz.SevenZOutputFile;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.compress.compressors.xz.XZCompressorOutputStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestArchiveExtractors {
+
+    private static final Map<String, String> PROJECT = Map.of(
+            "src/Main.java", "class Main {}",
+            "src/util/Helper.java", "class Helper {}"
+    );
+
+    @TempDir
+    Path tempDir;
+
+    private final ArchiveExtractors extractors = ArchiveExtractors.defaults();
+
+    private Path writeZip(String fileName) throws IOException {
+        Path zip = tempDir.resolve(fileName);
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            for (Map.Entry<String, String> file : PROJECT.entrySet()) {
+                out.putNextEntry(new ZipEntry(file.getKey()));
+                out.write(file.getValue().getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+        return zip;
+    }
+
+    private Path write7z(String fileName) throws IOException {
+        Path archive = tempDir.resolve(fileName);
+        try (SevenZOutputFile out = new SevenZOutputFile(archive.toFile())) {
+            for (Map.Entry<String, String> file : PROJECT.entrySet()) {
+                SevenZArchiveEntry entry = new SevenZArchiveEntry();
+                entry.setName(file.getKey());
+                out.putArchiveEntry(entry);
+                out.write(file.getValue().getBytes(StandardCharsets.UTF_8));
+                out.closeArchiveEntry();
+            }
+        }
+        return archive;
+    }
+
+    private Path writeTar(String fileName, boolean xz) throws IOException {
+        Path archive = tempDir.resolve(fileName);
+        try (OutputStream file = Files.newOutputStream(archive);
+             OutputStream compressed = xz ? new XZCompressorOutputStream(file) : new GzipCompressorOutputStream(file);
+             TarArchiveOutputStream out = new TarArchiveOutputStream(compressed)) {
+            for (Map.Entry<String, String> entry : PROJECT.entrySet()) {
+                byte[] content = entry.getValue().getBytes(StandardCharsets.UTF_8);
+                TarArchiveEntry tarEntry = new TarArchiveEntry(entry.getKey());
+                tarEntry.setSize(content.length);
+                out.putArchiveEntry(tarEntry);
+                out.write(content);
+                out.closeArchiveEntry();
+            }
+        }
+        return archive;
+    }
+
+    private void assertProjectExtracted(Path dir) throws IOException {
+        for (Map.Entry<String, String> file : PROJECT.entrySet()) {
+            assertEquals(file.getValue(), Files.readString(dir.resolve(file.getKey())));
+        }
+    }
+
+    @Test
+    @DisplayName("detect - le format est déterminé par le contenu, pas par l'extension")
+    void testDetect_magicBytes() throws IOException {
+        assertEquals(Optional.of(ArchiveFormat.ZIP), extractors.detect(writeZip("rendu.7z")));
+        assertEquals(Optional.of(ArchiveFormat.SEVEN_Z), extractors.detect(write7z("rendu.zip")));
+        assertEquals(Optional.of(ArchiveFormat.TAR_GZ), extractors.detect(writeTar("rendu.tgz", false)));
+        assertEquals(Optional.of(ArchiveFormat.TAR_XZ), extractors.detect(writeTar("rendu.tar.xz", true)));
+
+        Path rar = tempDir.resolve("rendu.rar");
+        Files.write(rar, new byte[]{'R', 'a', 'r', '!', 0x1A, 0x07, 0x00});
+        assertEquals(Optional.of(ArchiveFormat.RAR), extractors.detect(rar));
+
+        Path text = tempDir.resolve("notes.zip");
+        Files.writeString(text, "pas une archive");
+        assertEquals(Optional.empty(), extractors.detect(text));
+    }
+
+    @Test
+    @DisplayName("extractTo - zip, 7z, tar.gz et tar.xz sont extraits, même mal nommés")
+    void testExtractTo_allFormats() throws IOException {
+        Path[] archives = {
+                writeZip("projet.rar"),
+                write7z("projet.zip"),
+                writeTar("projet.tar.gz", false),
+                writeTar("projet.txz", true)
+        };
+        for (int i = 0; i < archives.length; i++) {
+            Path target = tempDir.resolve("out" + i);
+            assertTrue(extractors.extractTo(archives[i], target).isPresent());
+            assertProjectExtracted(target);
+        }
+    }
+
+    @Test
+    @DisplayName("open / extract - l'archive détectée est extraite sur le canal déjà ouvert")
+    void testOpen_extractFromDetectedChannel() throws IOException {
+        Path target = tempDir.resolve("out");
+        try (ArchiveExtractors.DetectedArchive archive = extractors.open(write7z("projet")).orElseThrow()) {
+            assertEquals(ArchiveFormat.SEVEN_Z, archive.format());
+            extractors.extract(archive, new DirectoryWriter(target, extractors.getBufferPool(), (name, directory) -> false));
+        }
+        assertProjectExtracted(target);
+
+        Path text = tempDir.resolve("notes");
+        Files.writeString(text, "pas une archive");
+        assertTrue(extractors.open(text).isEmpty());
+    }
+
+    @Test
+    @DisplayName("extract - un 7z lu depuis un flux est extrait, taille connue (en mémoire) ou non (fichier temporaire)")
+    void testExtract_sevenZStream() throws IOException {
+        Path archive = write7z("projet.7z");
+        long[] sizes = {Files.size(archive), -1};
+        for (int i = 0; i < sizes.length; i++) {
+            Path target = tempDir.resolve("out" + i);
+            try (InputStream in = Files.newInputStream(archive)) {
+                assertEquals(Optional.of(ArchiveFormat.SEVEN_Z), extractors.extract(in, sizes[i],
+                        new DirectoryWriter(target, extractors.getBufferPool(), (name, directory) -> false)));
+            }
+            assertProjectExtracted(target);
+        }
+    }
+
+    @Test
+    @DisplayName("extract - un flux qui n'est pas une archive n'est pas extrait")
+    void testExtract_unknownStream() throws IOException {
+        Path text = tempDir.resolve("readme.txt");
+        Files.writeString(text, "pas une archive");
+        Path target = tempDir.resolve("out");
+
+        assertTrue(extractors.extractTo(text, target).isEmpty());
+        try (var files = Files.list(target)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    @DisplayName("extract - les entrées ignorées par le type de cours ne sont pas écrites")
+    void testExtract_ignoredEntriesNotWritten() throws IOException {
+        Path zip = tempDir.resolve("maven.zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            for (String name : List.of("projet/src/Main.java", "projet/target/classes/Main.class",
+                    "projet/.git/objects/ab/cdef", "projet/projet.iml")) {
+                out.putNextEntry(new ZipEntry(name));
+                out.write(new byte[1024]);
+                out.closeEntry();
+            }
+        }
+        Path target = tempDir.resolve("out");
+        IgnoreRules rules = IgnoreRules.compile(List.of("target/", ".git/", "*.iml"));
+        DirectoryWriter writer = new DirectoryWriter(target, extractors.getBufferPool(), rules::isIgnored);
+
+        extractors.extract(zip, writer);
+
+        assertTrue(Files.exists(target.resolve("projet/src/Main.java")));
+        assertFalse(Files.exists(target.resolve("projet/target")));
+        assertFalse(Files.exists(target.resolve("projet/.git")));
+        assertFalse(Files.exists(target.resolve("projet/projet.iml")));
+        assertEquals(1024, writer.getBytesWritten());
+        assertEquals(3, writer.getEntriesSkipped());
+    }
+
+    @Test
+    @DisplayName("extract - une archive au taux de compression anormal est interrompue, fichier ou flux")
+    void testExtract_compressionRatioLimit() throws IOException {
+        Path bomb = tempDir.resolve("bomb.zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(bomb))) {
+            out.putNextEntry(new ZipEntry("zeros.bin"));
+            out.write(new byte[8 * 1024 * 1024]);
+            out.closeEntry();
+        }
+        ArchiveExtractors limited = extractors.withLimits(new ArchiveLimits(0, 0, 100, 0, 0));
+        DirectoryWriter writer = new DirectoryWriter(tempDir.resolve("out"), limited.getBufferPool(), (n, d) -> false);
+
+        assertThrows(ArchiveLimitException.class, () -> limited.extract(bomb, writer));
+        try (InputStream in = Files.newInputStream(bomb)) {
+            assertThrows(ArchiveLimitException.class, () -> limited.extract(in, writer));
+        }
+        assertTrue(writer.getBytesWritten() < 8 * 1024 * 1024);
+
+        // Un gros fichier réellement compressible reste accepté sans limite de taux
+        assertDoesNotThrow(() -> extractors.extract(bomb, writer));
+    }
+
+    @Test
+    @DisplayName("extract - entrées recopiées sans décompression : taille comptée avant la copie, taille et CRC falsifiés refusés")
+    void testExtract_rawCopyVerified() throws IOException {
+        byte[] zeros = new byte[8 * 1024 * 1024];
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(deflated, deflater)) {
+            out.write(zeros);
+        }
+        deflater.end();
+        CRC32 crc = new CRC32();
+        crc.update(zeros);
+
+        // Taille déclarée falsifiée : 1 Ko au lieu de 8 Mo
+        Path forged = writeRawZip("forged.zip", deflated.toByteArray(), 1024, crc.getValue());
+        assertThrows(ArchiveLimitException.class, () -> extractors.extract(forged, new RawCopyVisitor()));
+
+        // CRC falsifié
+        Path corrupt = writeRawZip("corrupt.zip", deflated.toByteArray(), zeros.length, crc.getValue() + 1);
+        IOException error = assertThrows(IOException.class, () -> extractors.extract(corrupt, new RawCopyVisitor()));
+        assertFalse(error instanceof ArchiveLimitException);
+
+        // Taille déclarée au-delà de la limite : rien n'est recopié
+        Path valid = writeRawZip("valid.zip", deflated.toByteArray(), zeros.length, crc.getValue());
+        RawCopyVisitor refused = new RawCopyVisitor();
+        assertThrows(ArchiveLimitException.class,
+                () -> extractors.withLimits(new ArchiveLimits(0, 1024 * 1024)).extract(valid, refused));
+        assertEquals(0, refused.copied);
+
+        RawCopyVisitor copied = new RawCopyVisitor();
+        assertTrue(extractors.extract(valid, copied).isPresent());
+        assertEquals(deflated.size(), copied.copied);
+    }
+
+    private Path writeRawZip(String fileName, byte[] deflated, long size, long crc) throws IOException {
+        Path zip = tempDir.resolve(fileName);
+        try (ZipArchiveOutputStream out = new ZipArchiveOutputStream(zip)) {
+            ZipArchiveEntry entry = new ZipArchiveEntry("zeros.bin");
+            entry.setMethod(ZipArchiveEntry.DEFLATED);
+            entry.setSize(size);
+            entry.setCompressedSize(deflated.length);
+            entry.setCrc(crc);
+            out.addRawArchiveEntry(entry, new ByteArrayInputStream(deflated));
+        }
+        return zip;
+    }
+
+    /**
+     * Visiteur qui recopie les entrées brutes (comme le zip restructuré) sans les écrire.
+     */
+    private static final class RawCopyVisitor implements ArchiveEntryVisitor {
+
+        private long copied;
+
+        @Override
+        public void directory(String name, long time) {
+        }
+
+        @Override
+        public void file(String name, long size, long time, InputStream data) throws IOException {
+            data.transferTo(OutputStream.nullOutputStream());
+        }
+
+        @Override
+        public boolean rawFile(String name, ZipArchiveEntry entry, InputStream raw) throws IOException {
+            copied += raw.transferTo(OutputStream.nullOutputStream());
+            return true;
+        }
+    }
+
+    @Test
+    @DisplayName("extract - les chemins trop profonds ou trop longs sont refusés")
+    void testExtract_depthAndPathLengthLimits() throws IOException {
+        Path deep = tempDir.resolve("deep.zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(deep))) {
+            out.putNextEntry(new ZipEntry("a/b/c/d/e/f/Main.java"));
+            out.write("class Main {}".getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+        Path target = tempDir.resolve("out");
+
+        ArchiveLimitException depth = assertThrows(ArchiveLimitException.class,
+                () -> extractors.withLimits(new ArchiveLimits(0, 0, 0, 4, 0)).extractTo(deep, target));
+        assertTrue(depth.getMessage().contains("4 levels"));
+        assertThrows(ArchiveLimitException.class,
+                () -> extractors.withLimits(new ArchiveLimits(0, 0, 0, 0, 10)).extractTo(deep, target));
+        assertTrue(extractors.withLimits(new ArchiveLimits(0, 0, 0, 7, 64)).extractTo(deep, target).isPresent());
+    }
+}
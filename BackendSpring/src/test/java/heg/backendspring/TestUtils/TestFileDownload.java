@@ -0,0 +1,147 @@
+package heg.backendspring.TestUtils;
+
+import heg.backendspring.utils.FileDownload;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestFileDownload {
+
+    @TempDir
+    Path tempDir;
+
+    private byte[] content;
+    private FileDownload.Source source;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        content = "0123456789abcdefghijklmnopqrstuvwxyz".repeat(100).getBytes(StandardCharsets.US_ASCII);
+        Path file = Files.write(tempDir.resolve("TP1_RenduRestructuration.zip"), content);
+        source = new FileDownload.Source(file, file.getFileName().toString(), "application/zip", "abc123");
+    }
+
+    private MockHttpServletResponse download(MockHttpServletRequest request) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FileDownload.send(request, response, source);
+        return response;
+    }
+
+    @Test
+    @DisplayName("send - fichier entier avec ETag, Last-Modified et Accept-Ranges")
+    void testSend_fullFile() throws IOException {
+        MockHttpServletResponse response = download(new MockHttpServletRequest("GET", "/download"));
+
+        assertEquals(200, response.getStatus());
+        assertEquals("\"abc123\"", response.getHeader(HttpHeaders.ETAG));
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertNotNull(response.getHeader(HttpHeaders.LAST_MODIFIED));
+        assertEquals(content.length, response.getContentLengthLong());
+        assertTrue(response.getHeader(HttpHeaders.CONTENT_DISPOSITION).contains("TP1_RenduRestructuration.zip"));
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    @DisplayName("send - If-None-Match avec l'ETag actuel : 304 sans contenu")
+    void testSend_notModified() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"other\", W/\"abc123\"");
+
+        MockHttpServletResponse response = download(request);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+
+        MockHttpServletRequest changed = new MockHttpServletRequest("GET", "/download");
+        changed.addHeader(HttpHeaders.IF_NONE_MATCH, "\"other\"");
+        assertEquals(200, download(changed).getStatus());
+    }
+
+    @Test
+    @DisplayName("send - reprise avec Range : 206 et seulement la fin du fichier")
+    void testSend_range() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.addHeader(HttpHeaders.RANGE, "bytes=1000-");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"abc123\"");
+
+        MockHttpServletResponse response = download(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 1000-" + (content.length - 1) + "/" + content.length,
+                response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(Arrays.copyOfRange(content, 1000, content.length), response.getContentAsByteArray());
+
+        MockHttpServletRequest suffix = new MockHttpServletRequest("GET", "/download");
+        suffix.addHeader(HttpHeaders.RANGE, "bytes=-10");
+        assertArrayEquals(Arrays.copyOfRange(content, content.length - 10, content.length),
+                download(suffix).getContentAsByteArray());
+    }
+
+    @Test
+    @DisplayName("send - If-Range d'une autre version : le fichier est renvoyé en entier")
+    void testSend_rangeOnChangedFile() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.addHeader(HttpHeaders.RANGE, "bytes=1000-");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"old\"");
+
+        MockHttpServletResponse response = download(request);
+
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(content, response.getContentAsByteArray());
+    }
+
+    @Test
+    @DisplayName("send - plage au-delà de la fin du fichier : 416")
+    void testSend_unsatisfiableRange() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.addHeader(HttpHeaders.RANGE, "bytes=" + content.length + "-");
+
+        MockHttpServletResponse response = download(request);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */" + content.length, response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    @DisplayName("send - fichier immuable et conteneur avec sendfile : la plage est confiée au conteneur, rien n'est copié")
+    void testSend_sendfile() throws IOException {
+        source = new FileDownload.Source(source.file(), source.fileName(), source.contentType(), source.hash(), true);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader(HttpHeaders.RANGE, "bytes=10-19");
+
+        MockHttpServletResponse response = download(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals(10, response.getContentLengthLong());
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(source.file().toAbsolutePath().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(10L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(20L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+    }
+
+    @Test
+    @DisplayName("send - fichier remplaçable : copié depuis le fichier ouvert même si le conteneur propose sendfile")
+    void testSend_mutableFileNotSentByContainer() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/download");
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader(HttpHeaders.RANGE, "bytes=10-19");
+
+        MockHttpServletResponse response = download(request);
+
+        assertEquals(206, response.getStatus());
+        assertArrayEquals(Arrays.copyOfRange(content, 10, 20), response.getContentAsByteArray());
+        assertNull(request.getAttribute("org.apache.tomcat.sendfile.filename"));
+    }
+}
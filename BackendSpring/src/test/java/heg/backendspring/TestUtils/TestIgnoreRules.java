@@ -0,0 +1,50 @@
+package heg.backendspring.TestUtils;
+
+import heg.backendspring.utils.IgnoreRules;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestIgnoreRules {
+
+    @Test
+    @DisplayName("isIgnored - noms, suffixes et dossiers à n'importe quelle profondeur")
+    void testIsIgnored_basenamePatterns() {
+        IgnoreRules rules = IgnoreRules.compile(List.of("# commentaire", "", "target/", ".DS_Store", "*.iml"));
+
+        assertTrue(rules.isIgnored("projet/target/classes/Main.class", false));
+        assertTrue(rules.isIgnored("projet/target", true));
+        assertFalse(rules.isIgnored("projet/src/target", false), "target/ ne concerne que les dossiers");
+        assertTrue(rules.isIgnored("projet/.DS_Store", false));
+        assertTrue(rules.isIgnored("projet/projet.iml", false));
+        assertFalse(rules.isIgnored("projet/src/Main.java", false));
+        assertEquals(List.of("target/", ".DS_Store", "*.iml"), rules.patterns());
+    }
+
+    @Test
+    @DisplayName("isIgnored - motifs ancrés, ** et classes de caractères")
+    void testIsIgnored_globs() {
+        IgnoreRules rules = IgnoreRules.compile(List.of("/docs", "src/generated/**", "**/node_modules/", "log[0-9].txt"));
+
+        assertTrue(rules.isIgnored("docs/rapport.pdf", false));
+        assertFalse(rules.isIgnored("projet/docs/rapport.pdf", false), "/docs est ancré à la racine");
+        assertTrue(rules.isIgnored("src/generated/a/B.java", false));
+        assertFalse(rules.isIgnored("src/main/B.java", false));
+        assertTrue(rules.isIgnored("front/app/node_modules/lib/index.js", false));
+        assertTrue(rules.isIgnored("log1.txt", false));
+        assertFalse(rules.isIgnored("logs.txt", false));
+    }
+
+    @Test
+    @DisplayName("isIgnored - une négation ré-inclut un fichier, sauf si son dossier est exclu")
+    void testIsIgnored_negation() {
+        IgnoreRules rules = IgnoreRules.compile(List.of("*.txt", "!README.txt", "build/", "!build/keep.txt"));
+
+        assertTrue(rules.isIgnored("notes.txt", false));
+        assertFalse(rules.isIgnored("projet/README.txt", false));
+        assertTrue(rules.isIgnored("build/keep.txt", false));
+    }
+}
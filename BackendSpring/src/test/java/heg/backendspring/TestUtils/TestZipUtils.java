@@ -0,0 +1,168 @@
+package heg.backendspring.TestUtils;
+
+import heg.backendspring.config.RestructuringProperties;
+import heg.backendspring.utils.CompressionPolicy;
+import heg.backendspring.utils.CompressionStats;
+import heg.backendspring.utils.IgnoreRules;
+import heg.backendspring.utils.ZipUtils;
+import heg.backendspring.utils.ZipWriteOptions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestZipUtils {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Crée un petit projet avec plusieurs dossiers et fichiers.
+     */
+    private Path createProject() throws IOException {
+        Path project = tempDir.resolve("project");
+        for (int i = 0; i < 20; i++) {
+            Path dir = project.resolve("student" + i).resolve("src");
+            Files.createDirectories(dir);
+            Files.writeString(dir.resolve("Main.java"), "class Main { int value = " + i + "; }\n".repeat(50));
+        }
+        return project;
+    }
+
+    @Test
+    @DisplayName("zipDirectory - l'ordre des entrées est stable et les dossiers précèdent leur contenu")
+    void testZipDirectory_stableOrder() throws IOException {
+        Path project = createProject();
+        Path zip = tempDir.resolve("out.zip");
+
+        ZipUtils.zipDirectory(project, zip, new ZipWriteOptions(6, 4));
+
+        try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+            List<String> names = zipFile.stream().map(ZipEntry::getName).toList();
+            assertEquals(names.stream().sorted().toList(), names);
+            assertEquals("student0/", names.get(0));
+            assertTrue(names.contains("student19/src/Main.java"));
+        }
+    }
+
+    @Test
+    @DisplayName("zipDirectory - le résultat ne dépend pas du nombre de threads")
+    void testZipDirectory_sameBytesWhateverParallelism() throws IOException {
+        Path project = createProject();
+        Path singleThread = tempDir.resolve("single.zip");
+        Path multiThread = tempDir.resolve("multi.zip");
+
+        ZipUtils.zipDirectory(project, singleThread, new ZipWriteOptions(6, 1));
+        ZipUtils.zipDirectory(project, multiThread, new ZipWriteOptions(6, 8));
+
+        assertArrayEquals(Files.readAllBytes(singleThread), Files.readAllBytes(multiThread));
+    }
+
+    @Test
+    @DisplayName("zipDirectory - sur un pool partagé : même résultat, et le pool reste utilisable")
+    void testZipDirectory_sharedExecutor() throws Exception {
+        Path project = createProject();
+        Path reference = tempDir.resolve("reference.zip");
+        Path shared = tempDir.resolve("shared.zip");
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            ZipUtils.zipDirectory(project, reference, new ZipWriteOptions(6, 1));
+            ZipUtils.zipDirectory(project, shared, new ZipWriteOptions(6, 1), new CompressionStats(), executor);
+
+            assertArrayEquals(Files.readAllBytes(reference), Files.readAllBytes(shared));
+            assertFalse(executor.isShutdown());
+            assertEquals(42, executor.submit(() -> 42).get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("zipDirectory - le niveau de compression est appliqué")
+    void testZipDirectory_compressionLevel() throws IOException {
+        Path project = createProject();
+        Path stored = tempDir.resolve("stored.zip");
+        Path best = tempDir.resolve("best.zip");
+
+        ZipUtils.zipDirectory(project, stored, new ZipWriteOptions(0, 2));
+        ZipUtils.zipDirectory(project, best, new ZipWriteOptions(9, 2));
+
+        assertTrue(Files.size(best) < Files.size(stored));
+    }
+
+    @Test
+    @DisplayName("zipDirectory - les fichiers déjà compressés sont stockés sans compression")
+    void testZipDirectory_incompressibleEntriesStored() throws IOException {
+        Path project = createProject();
+        Random random = new Random(42);
+        byte[] noise = new byte[8192];
+        random.nextBytes(noise);
+        Files.write(project.resolve("student0/logo.png"), noise);
+        Files.write(project.resolve("student0/data.bin"), noise);
+        Files.writeString(project.resolve("student0/notes.xyz"), "notes de cours\n".repeat(600));
+        Path zip = tempDir.resolve("policy.zip");
+
+        CompressionStats stats = new CompressionStats();
+        ZipUtils.zipDirectory(project, zip, new ZipWriteOptions(6, 2), stats);
+
+        try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+            assertEquals(ZipEntry.STORED, zipFile.getEntry("student0/logo.png").getMethod());
+            assertEquals(ZipEntry.STORED, zipFile.getEntry("student0/data.bin").getMethod());
+            assertEquals(ZipEntry.DEFLATED, zipFile.getEntry("student0/notes.xyz").getMethod());
+            assertEquals(ZipEntry.DEFLATED, zipFile.getEntry("student0/src/Main.java").getMethod());
+            assertArrayEquals(noise, zipFile.getInputStream(zipFile.getEntry("student0/data.bin")).readAllBytes());
+        }
+        assertEquals(2, stats.getStoredEntries());
+        assertEquals(2L * noise.length, stats.getStoredBytes());
+        assertEquals(21, stats.getDeflatedEntries());
+        assertTrue(stats.getBytesSaved() > 0);
+
+        Path deflateAll = tempDir.resolve("deflate-all.zip");
+        ZipUtils.zipDirectory(project, deflateAll, new ZipWriteOptions(6, 2, CompressionPolicy.DEFLATE_ALL));
+        try (ZipFile zipFile = new ZipFile(deflateAll.toFile())) {
+            assertEquals(ZipEntry.DEFLATED, zipFile.getEntry("student0/logo.png").getMethod());
+        }
+    }
+
+    @Test
+    @DisplayName("zipWriteOptions - un cours peut avoir son propre niveau de compression")
+    void testZipWriteOptions_courseLevel() {
+        RestructuringProperties properties = new RestructuringProperties();
+        properties.getZip().setCompressionLevel(6);
+        properties.getZip().getCourseLevels().put("63-21", 1);
+
+        assertEquals(1, properties.zipWriteOptions("63-21").compressionLevel());
+        assertEquals(6, properties.zipWriteOptions("62-11").compressionLevel());
+
+        properties.getZip().setStoreIncompressible(false);
+        assertFalse(properties.zipWriteOptions("63-21").stores("logo.png", null, 0));
+    }
+
+    @Test
+    @DisplayName("copyAll - les dossiers exclus ne sont pas copiés et les règles sont appliquées")
+    void testCopyAll_prunesIgnoredDirectories() throws IOException {
+        Path project = createProject();
+        Files.createDirectories(project.resolve("student0/target/classes"));
+        Files.writeString(project.resolve("student0/target/classes/Main.class"), "bytecode");
+        Files.writeString(project.resolve("student0/student0.iml"), "<module/>");
+        Path target = tempDir.resolve("copy");
+
+        ZipUtils.copyAll(project, target, IgnoreRules.compile(List.of("target/", "*.iml")));
+
+        assertTrue(Files.exists(target.resolve("student0/src/Main.java")));
+        assertFalse(Files.exists(target.resolve("student0/target")));
+        assertFalse(Files.exists(target.resolve("student0/student0.iml")));
+    }
+}
@@ -0,0 +1,49 @@
+// État d'un traitement des rendus (les valeurs doivent correspondre au backend)
+export type ProcessingJobStatus = 'QUEUED' | 'RUNNING' | 'SUCCEEDED' | 'FAILED' | 'CANCELLED';
+
+// Modèle de traitement - Restructuration des rendus d'un TP exécutée en arrière-plan
+export interface ProcessingJobModel {
+    id: number;
+    courseId: number;
+    tpNo: number;
+    status: ProcessingJobStatus;
+    studentsTotal: number;
+    studentsProcessed: number;
+    studentFailures: number;
+    workerId?: string;
+    attempts: number;
+    errorMessage?: string;
+    errorReport?: string;
+    createdAt: string;
+    startedAt?: string;
+    finishedAt?: string;
+}
+
+// Étape d'un traitement en cours
+export type ProcessingStage = 'UNZIP' | 'STUDENTS' | 'ZIP' | 'CLEANUP';
+
+// Progression d'un traitement (événements SSE « progress » et « stage »)
+// Les octets ne sont connus que de l'instance du backend qui exécute le traitement
+export interface ProcessingJobProgressModel {
+    jobId: number;
+    stage?: ProcessingStage;
+    studentsProcessed: number;
+    studentsTotal: number;
+    studentFailures: number;
+    bytesExtracted?: number;
+    bytesWritten?: number;
+}
+
+// Rendu d'un étudiant qui n'a pas pu être restructuré (événement SSE « warning »)
+export interface ProcessingJobWarningModel {
+    jobId: number;
+    student: string;
+    message: string;
+    limitExceeded: boolean;
+}
+
+// Événement reçu sur GET /jobs/{jobId}/events
+export type ProcessingJobEvent =
+    | { type: 'progress' | 'stage'; data: ProcessingJobProgressModel }
+    | { type: 'warning'; data: ProcessingJobWarningModel }
+    | { type: 'finished'; data: ProcessingJobModel };
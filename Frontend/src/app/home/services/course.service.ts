@@ -218,6 +218,7 @@ export class CourseService {
   /**
    * Démarre le traitement de restructuration pour un TP.
    * POST /course/{courseId}/startProcessSubmission/{tpNo}
+   * N'émet qu'une fois le traitement (exécuté en arrière-plan) terminé.
    * @param courseId - L'identifiant du cours
    * @param tpNo - Le numéro du TP
    * @returns Observable<any>
@@ -1,11 +1,12 @@
 import { Injectable, inject } from '@angular/core';
 import { HttpClient, HttpErrorResponse, HttpHeaders } from '@angular/common/http';
 import { Observable, throwError, of, switchMap, tap } from 'rxjs';
-import { retry, catchError } from 'rxjs/operators';
+import { retry, catchError, filter, map } from 'rxjs/operators';
 import { environment } from '../../../environments/environment';
 import { CoursePreview } from '../../home/models/coursePreview.model';
 import { CourseDetailsModel, StudentModel, TP_Model } from '../../home/models/courseDetails.model';
 import { TPStatusModel, StudentSubmissionType } from '../../home/models/tpStatus.model';
+import { ProcessingJobEvent, ProcessingJobModel } from '../../home/models/processingJob.model';
 
 const API_URL = environment.apiUrl;
 
@@ -489,17 +490,37 @@ export class ApiService {
   /**
    * Démarre le traitement de restructuration pour un TP.
    * POST /course/{courseId}/startProcessSubmission/{tpNo}
+   * Le traitement s'exécute en arrière-plan : son état est interrogé jusqu'à ce qu'il soit terminé.
+   * L'Observable émet le traitement terminé, ou une erreur s'il a échoué ou a été annulé.
    * @param courseId - L'identifiant du cours
    * @param tpNo - Le numéro du TP
-   * @returns Observable<any>
+   * @returns Observable<ProcessingJobModel>
    */
-  startProcessSubmission(courseId: number, tpNo: number): Observable<any> {
+  startProcessSubmission(courseId: number, tpNo: number): Observable<ProcessingJobModel> {
     return this.http
-      .post(
+      .post<ProcessingJobModel>(
         `${API_URL}/course/${courseId}/startProcessSubmission/${tpNo}`,
         {},
         this.httpOptions
       )
+      .pipe(
+        catchError((err: HttpErrorResponse) => {
+          this.handleError(err);
+          return throwError(() => err);
+        }),
+        switchMap(job => this.waitForProcessingJob(job.id))
+      );
+  }
+
+  /**
+   * Récupère l'état d'un traitement des rendus.
+   * GET /jobs/{jobId}
+   * @param jobId - L'identifiant du traitement
+   * @returns Observable<ProcessingJobModel>
+   */
+  getProcessingJob(jobId: number): Observable<ProcessingJobModel> {
+    return this.http
+      .get<ProcessingJobModel>(`${API_URL}/jobs/${jobId}`)
       .pipe(
         retry(1),
         catchError((err: HttpErrorResponse) => {
@@ -509,6 +530,58 @@ export class ApiService {
       );
   }
 
+  /**
+   * S'abonne aux événements d'un traitement des rendus (Server-Sent Events).
+   * GET /jobs/{jobId}/events
+   * L'Observable se termine après l'événement « finished ».
+   * @param jobId - L'identifiant du traitement
+   * @returns Observable<ProcessingJobEvent>
+   */
+  watchProcessingJob(jobId: number): Observable<ProcessingJobEvent> {
+    return new Observable<ProcessingJobEvent>(subscriber => {
+      const source = new EventSource(`${API_URL}/jobs/${jobId}/events`);
+      const listen = (type: ProcessingJobEvent['type']) =>
+        source.addEventListener(type, (event: MessageEvent) => {
+          subscriber.next({ type, data: JSON.parse(event.data) } as ProcessingJobEvent);
+          if (type === 'finished') {
+            source.close();
+            subscriber.complete();
+          }
+        });
+      listen('progress');
+      listen('stage');
+      listen('warning');
+      listen('finished');
+      // Le navigateur se reconnecte seul ; on abandonne si le serveur a fermé le flux
+      source.onerror = () => {
+        if (source.readyState === EventSource.CLOSED) {
+          subscriber.error(new Error(`Flux du traitement ${jobId} interrompu`));
+        }
+      };
+      return () => source.close();
+    });
+  }
+
+  /**
+   * Attend la fin d'un traitement à partir de ses événements.
+   * @param jobId - L'identifiant du traitement
+   * @returns Observable<ProcessingJobModel> - le traitement réussi, sinon une erreur
+   */
+  private waitForProcessingJob(jobId: number): Observable<ProcessingJobModel> {
+    return this.watchProcessingJob(jobId).pipe(
+      tap(event => {
+        if (event.type === 'warning') {
+          console.warn(`Traitement ${jobId} : ${event.data.student} → ${event.data.message}`);
+        }
+      }),
+      filter((event): event is Extract<ProcessingJobEvent, { type: 'finished' }> => event.type === 'finished'),
+      map(event => event.data),
+      switchMap(job => job.status === 'SUCCEEDED'
+        ? of(job)
+        : throwError(() => new Error(job.errorMessage ?? `Traitement ${job.id} : ${job.status}`)))
+    );
+  }
+
   /**
    * Gère les statuts du TP pour tous les étudiants.
    * POST /course/{courseId}/manageTP/{tpNo}
@@ -540,12 +613,7 @@ export class ApiService {
    * @returns Observable<TP_Model>
    */
   manageTPsubmissionv2(courseId: number, tpNo: number) {
-    return this.http
-      .post<TP_Model>(
-        `${API_URL}/course/${courseId}/startProcessSubmission/${tpNo}`,
-        {},
-        this.httpOptions
-      )
+    return this.startProcessSubmission(courseId, tpNo)
       .pipe(
         tap({
           next: resp => console.log('Réponse du backend à startProcessZip:', resp),
@@ -569,10 +637,9 @@ export class ApiService {
    * @returns Observable<TP_Model>
    */
   manageTPsubmission(courseId: number, tpNo: number): Observable<TP_Model> {
-    const startUrl = `${API_URL}/course/${courseId}/startProcessSubmission/${tpNo}`;
     const manageUrl = `${API_URL}/course/${courseId}/manageTP/${tpNo}`;
 
-    return this.http.post(startUrl, {}, { responseType: 'text' as const }).pipe(
+    return this.startProcessSubmission(courseId, tpNo).pipe(
       switchMap(() => this.http.post<TP_Model>(manageUrl, {})),
       catchError(err => {
         this.handleError(err);